@@ -6,6 +6,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class KeycloakConfig {
 
@@ -24,6 +27,9 @@ public class KeycloakConfig {
     @Value("${keycloak.admin.client-id}")
     private String adminClientId;
 
+    @Value("${keycloak.admin.max-concurrency:10}")
+    private int adminMaxConcurrency;
+
     @Bean
     public Keycloak keycloak() {
         return KeycloakBuilder.builder()
@@ -34,4 +40,12 @@ public class KeycloakConfig {
                 .password(adminPassword)
                 .build();
     }
+
+    // Admin calls run on a bounded platform-thread pool: the client's TokenManager is synchronized around
+    // its HTTP calls, which would pin virtual threads. Sized like the client's default connection pool.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService keycloakAdminExecutor() {
+        return Executors.newFixedThreadPool(adminMaxConcurrency,
+                Thread.ofPlatform().name("keycloak-admin-", 0).factory());
+    }
 }
@@ -18,6 +18,9 @@ import org.springframework.web.client.RestTemplate;
 
 import jakarta.ws.rs.core.Response;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -25,6 +28,7 @@ public class AuthService {
 
     private final Keycloak keycloak;
     private final RestTemplate restTemplate;
+    private final ExecutorService keycloakAdminExecutor;
 
     @Value("${keycloak.auth-server-url}")
     private String authServerUrl;
@@ -94,44 +98,52 @@ public class AuthService {
     }
 
     public UserResponse register(RegisterRequest request) {
+        // The admin client refreshes its token inside synchronized methods: run it on platform threads
+        // so that request virtual threads never get pinned while Keycloak answers
         try {
-            RealmResource realmResource = keycloak.realm(realm);
-            UsersResource usersResource = realmResource.users();
-
-            UserRepresentation user = new UserRepresentation();
-            user.setUsername(request.getUsername());
-            user.setEmail(request.getEmail());
-            user.setFirstName(request.getFirstName());
-            user.setLastName(request.getLastName());
-            user.setEnabled(true);
-            user.setEmailVerified(true);
-
-            try (Response response = usersResource.create(user)) {
-                if (response.getStatus() != 201) {
-                    throw new RuntimeException("Failed to create user: " + response.getStatusInfo());
-                }
-
-                String userId = response.getLocation().getPath().replaceAll(".*/([^/]+)$", "$1");
-
-                CredentialRepresentation credential = new CredentialRepresentation();
-                credential.setType(CredentialRepresentation.PASSWORD);
-                credential.setValue(request.getPassword());
-                credential.setTemporary(false);
-
-                usersResource.get(userId).resetPassword(credential);
-
-                return UserResponse.builder()
-                        .id(userId)
-                        .username(request.getUsername())
-                        .email(request.getEmail())
-                        .firstName(request.getFirstName())
-                        .lastName(request.getLastName())
-                        .enabled(true)
-                        .build();
+            return keycloakAdminExecutor.submit(() -> createUser(request)).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Registration failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Registration interrupted");
+        }
+    }
+
+    private UserResponse createUser(RegisterRequest request) {
+        RealmResource realmResource = keycloak.realm(realm);
+        UsersResource usersResource = realmResource.users();
+
+        UserRepresentation user = new UserRepresentation();
+        user.setUsername(request.getUsername());
+        user.setEmail(request.getEmail());
+        user.setFirstName(request.getFirstName());
+        user.setLastName(request.getLastName());
+        user.setEnabled(true);
+        user.setEmailVerified(true);
+
+        try (Response response = usersResource.create(user)) {
+            if (response.getStatus() != 201) {
+                throw new RuntimeException("Failed to create user: " + response.getStatusInfo());
             }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Registration failed: " + e.getMessage());
+            String userId = response.getLocation().getPath().replaceAll(".*/([^/]+)$", "$1");
+
+            CredentialRepresentation credential = new CredentialRepresentation();
+            credential.setType(CredentialRepresentation.PASSWORD);
+            credential.setValue(request.getPassword());
+            credential.setTemporary(false);
+
+            usersResource.get(userId).resetPassword(credential);
+
+            return UserResponse.builder()
+                    .id(userId)
+                    .username(request.getUsername())
+                    .email(request.getEmail())
+                    .firstName(request.getFirstName())
+                    .lastName(request.getLastName())
+                    .enabled(true)
+                    .build();
         }
     }
 
@@ -1,6 +1,6 @@
 from fastapi import APIRouter, HTTPException
 from pydantic import BaseModel
-from typing import Optional, Literal, Dict
+from typing import Optional, Literal, Dict, List
 from decimal import Decimal
 import logging
 
@@ -41,6 +41,31 @@ class ProductVariantWebhookPayload(BaseModel):
     data: WebhookProductVariant
 
 
+class ProductVariantsWebhookPayload(BaseModel):
+    """Aggregated webhook payload for variants created in bulk"""
+
+    event: Literal["variants.created"]
+    timestamp: str
+    data: List[WebhookProductVariant]
+
+
+def _to_product_variant(data: WebhookProductVariant) -> ProductVariant:
+    return ProductVariant(
+        id=data.id,
+        product_id=data.product_id,
+        shop_id=data.shop_id,
+        sku=data.sku,
+        price=data.price,
+        stock=data.stock,
+        is_active=data.is_active,
+        product_name=data.product_name,
+        product_slug=data.product_slug,
+        product_description=data.product_description or "",
+        category_id=data.category_id,
+        attributes=data.attributes,
+    )
+
+
 @router.post("/webhook/product-variant")
 async def product_variant_webhook(payload: ProductVariantWebhookPayload):
     """
@@ -96,20 +121,7 @@ async def product_variant_webhook(payload: ProductVariantWebhookPayload):
 
         elif payload.event in ["variant.created", "variant.updated"]:
             # Convert webhook variant to ProductVariant format
-            variant = ProductVariant(
-                id=payload.data.id,
-                product_id=payload.data.product_id,
-                shop_id=payload.data.shop_id,
-                sku=payload.data.sku,
-                price=payload.data.price,
-                stock=payload.data.stock,
-                is_active=payload.data.is_active,
-                product_name=payload.data.product_name,
-                product_slug=payload.data.product_slug,
-                product_description=payload.data.product_description or "",
-                category_id=payload.data.category_id,
-                attributes=payload.data.attributes,
-            )
+            variant = _to_product_variant(payload.data)
 
             # Update in vector database
             upsert_product_variants([variant])
@@ -132,11 +144,44 @@ async def product_variant_webhook(payload: ProductVariantWebhookPayload):
         )
 
 
+@router.post("/webhook/product-variants")
+async def product_variants_webhook(payload: ProductVariantsWebhookPayload):
+    """
+    Webhook to receive one notification for a batch of variants created in bulk.
+
+    Supported events:
+    - variants.created: Product variants created by POST /api/shops/{shopId}/variants/bulk
+
+    The payload has the same shape as /webhook/product-variant, with `data` being a list.
+    """
+    logger.info(
+        f"Received webhook event: {payload.event} for {len(payload.data)} variants"
+    )
+
+    try:
+        count = upsert_product_variants(
+            [_to_product_variant(data) for data in payload.data]
+        )
+        logger.info(f"{count} variants successfully indexed in vector DB")
+
+        return {
+            "status": "success",
+            "event": payload.event,
+            "indexed": count,
+        }
+
+    except Exception as e:
+        logger.error(f"Error processing webhook: {str(e)}", exc_info=True)
+        raise HTTPException(
+            status_code=500, detail=f"Failed to process webhook: {str(e)}"
+        )
+
+
 @router.get("/webhook/health")
 def webhook_health():
     """Health check for webhook endpoint"""
     return {
         "status": "ok",
         "service": "webhook",
-        "endpoints": ["/webhook/product-variant"],
+        "endpoints": ["/webhook/product-variant", "/webhook/product-variants"],
     }
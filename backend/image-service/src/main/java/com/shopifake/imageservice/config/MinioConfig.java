@@ -1,11 +1,17 @@
 package com.shopifake.imageservice.config;
 
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @ConfigurationProperties(prefix = "minio")
 @Data
@@ -16,6 +22,8 @@ public class MinioConfig {
     private String secretKey;
     private String bucketName;
     private String region;
+    // Max concurrent requests to MinIO (OkHttp allows only 5 per host by default)
+    private int maxConcurrentRequests = 64;
 
     @Bean
     public MinioClient minioClient() {
@@ -23,6 +31,21 @@ public class MinioConfig {
                 .endpoint(endpoint)
                 .credentials(accessKey, secretKey)
                 .region(region)
+                .httpClient(httpClient())
+                .build();
+    }
+
+    // Calls run on the OkHttp dispatcher and are awaited without locks, so virtual threads are not pinned;
+    // the default dispatcher would still queue everything beyond 5 requests per host
+    private OkHttpClient httpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConcurrentRequests);
+        dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+        // MinIO client default timeouts (5 minutes)
+        long timeout = TimeUnit.MINUTES.toMillis(5);
+        return HttpUtils.newDefaultHttpClient(timeout, timeout, timeout).newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxConcurrentRequests, 5, TimeUnit.MINUTES))
                 .build();
     }
 }
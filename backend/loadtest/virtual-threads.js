@@ -0,0 +1,61 @@
+// Comparative load test for the virtual-thread execution model (see `make loadtest-virtual-threads`).
+// Holds CONNECTIONS concurrent clients (5000 by default) on read endpoints that block on the database
+// or on MinIO, so the platform-thread mode saturates Tomcat's 200 workers while the virtual-thread mode does not.
+//
+//   k6 run -e MAIN_API_URL=http://localhost:5001 -e IMAGE_SERVICE_URL=http://localhost:5002 \
+//          -e SHOP_ID=1 -e LABEL=virtual loadtest/virtual-threads.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const MAIN_API_URL = __ENV.MAIN_API_URL || 'http://localhost:5001';
+const IMAGE_SERVICE_URL = __ENV.IMAGE_SERVICE_URL || 'http://localhost:5002';
+const SHOP_ID = __ENV.SHOP_ID || '1';
+const CONNECTIONS = parseInt(__ENV.CONNECTIONS || '5000', 10);
+const LABEL = __ENV.LABEL || 'run';
+
+export const options = {
+    scenarios: {
+        hold: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: CONNECTIONS },
+                { duration: __ENV.DURATION || '2m', target: CONNECTIONS },
+                { duration: '10s', target: 0 },
+            ],
+            gracefulRampDown: '10s',
+        },
+    },
+    // Reused keep-alive connections: one open connection per virtual user
+    noConnectionReuse: false,
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const requests = [
+    ['main-api products', `${MAIN_API_URL}/api/shops/${SHOP_ID}/products/with-variants`],
+    ['main-api category tree', `${MAIN_API_URL}/api/shops/${SHOP_ID}/categories/tree`],
+    ['main-api shop', `${MAIN_API_URL}/api/v1/shops/${SHOP_ID}`],
+    ['image-service store images', `${IMAGE_SERVICE_URL}/api/images/store/${SHOP_ID}`],
+];
+
+export default function () {
+    const [name, url] = requests[Math.floor(Math.random() * requests.length)];
+    const res = http.get(url, { tags: { name }, timeout: '30s' });
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
+
+export function handleSummary(data) {
+    const m = data.metrics;
+    const line = [
+        `mode=${LABEL}`,
+        `connections=${CONNECTIONS}`,
+        `throughput=${m.http_reqs.values.rate.toFixed(1)} req/s`,
+        `p95=${m.http_req_duration.values['p(95)'].toFixed(0)} ms`,
+        `p99=${m.http_req_duration.values['p(99)'].toFixed(0)} ms`,
+        `errors=${(m.http_req_failed.values.rate * 100).toFixed(2)} %`,
+    ].join('  ');
+    return {
+        stdout: line + '\n',
+        [`loadtest/results-${LABEL}.json`]: JSON.stringify(data, null, 2),
+    };
+}
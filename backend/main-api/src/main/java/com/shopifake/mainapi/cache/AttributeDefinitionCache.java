@@ -0,0 +1,86 @@
+package com.shopifake.mainapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.datasource.ReadRouting;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.model.AttributeDefinition;
+import com.shopifake.mainapi.repository.AttributeDefinitionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Cache des dictionnaires d'attributs par produit (attributeDefinitionId -> attributeName).
+ * Borné en taille et en durée de vie ; les statistiques hit/miss sont exportées sous le nom "attributeDefinitions".
+ * Invalidé après commit de chaque écriture sur un produit : une éviction dans la transaction laisserait
+ * une lecture concurrente recharger l'ancien dictionnaire avant le commit.
+ */
+@Component
+public class AttributeDefinitionCache {
+
+    private static final String CACHE_NAME = "attributeDefinitions";
+
+    private final AttributeDefinitionRepository attributeDefinitionRepository;
+    private final TransactionTemplate readTransaction;
+    private final Cache<Long, Map<Long, String>> cache;
+    private final KeyLocks productLocks = new KeyLocks();
+
+    public AttributeDefinitionCache(AttributeDefinitionRepository attributeDefinitionRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    CacheProperties cacheProperties,
+                                    MeterRegistry meterRegistry) {
+        this.attributeDefinitionRepository = attributeDefinitionRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        CacheProperties.AttributeDefinitionsConfig config = cacheProperties.getAttributeDefinitions();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                // Borne le retard des autres instances, qui ne reçoivent pas les invalidations
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retourne le dictionnaire des noms d'attributs d'un produit, chargé en une requête en cas d'absence
+     */
+    public Map<Long, String> getAttributeNames(Long productId) {
+        return productLocks.getOrLoad(cache, productId, this::load);
+    }
+
+    /**
+     * Un import (entityId null) peut ajouter des attributs à n'importe quel produit de la boutique :
+     * le cache étant indexé par produit, il est alors vidé entièrement
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.scope() != CatalogChangedEvent.Scope.PRODUCT) {
+            return;
+        }
+        if (event.entityId() == null) {
+            productLocks.invalidateAll(cache);
+        } else {
+            productLocks.invalidate(cache, event.entityId());
+        }
+    }
+
+    private Map<Long, String> load(Long productId) {
+        return ReadRouting.fromPrimary(() -> readTransaction.execute(status ->
+                attributeDefinitionRepository.findByProductIdOrderByPosition(productId)
+                        .stream()
+                        .collect(Collectors.toUnmodifiableMap(
+                                AttributeDefinition::getId,
+                                AttributeDefinition::getAttributeName
+                        ))));
+    }
+}
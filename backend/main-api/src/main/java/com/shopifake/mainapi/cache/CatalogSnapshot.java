@@ -0,0 +1,336 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.dto.AttributeDefinitionDto;
+import com.shopifake.mainapi.dto.CategoryDto;
+import com.shopifake.mainapi.dto.CategoryTreeDto;
+import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.dto.ProductVariantDto;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import com.shopifake.mainapi.pagination.KeysetCursor.NameIdPosition;
+import com.shopifake.mainapi.service.CatalogVersionService.CatalogVersion;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Vue du catalogue d'une boutique : catégories (à plat et en arbre), produits, variants et attributs résolus.
+ * Les produits sont conservés dans l'ordre (name, id) renvoyé par Postgres, pour que la pagination keyset
+ * servie depuis le snapshot reste cohérente avec celle servie depuis la base.
+ * Seul le stock des variants évolue après construction : un mouvement remplace en place le produit concerné,
+ * les index restent partagés. Le snapshot connaît la version du catalogue qu'il contient ({@link #getVersion()}).
+ */
+public final class CatalogSnapshot {
+
+    // Estimations grossières de l'empreinte mémoire, utilisées pour le budget du cache
+    private static final int OBJECT_OVERHEAD = 64;
+    private static final int ENTRY_OVERHEAD = 48;
+
+    private final Long shopId;
+    private final List<CategoryDto> categories;
+    private final CategoryTreeDto categoryTree;
+    // Un mouvement de stock remplace un élément : les lecteurs voient l'ancien produit ou le nouveau, jamais un mélange
+    private final AtomicReferenceArray<ProductWithVariantsDto> productSlots;
+    private final List<ProductWithVariantsDto> products;
+
+    private final Map<Long, CategoryDto> categoriesById;
+    private final Map<Long, List<CategoryDto>> childrenByParentId;
+    private final Map<Long, List<ProductWithVariantsDto>> productsByCategoryId;
+    private final Map<Long, Integer> productPositions;
+    private final Map<Long, Integer> categoryProductPositions;
+    private final Map<Long, Long> productIdByVariantId;
+    private final Map<Long, Integer> variantOrdinals;
+    private final AtomicLongArray stockVersions;
+    private final long catalogVersion;
+    // Révision du stock lue au chargement, plus les incréments de version appliqués depuis ; écrite après le stock
+    private volatile long stockRevision;
+    private final long estimatedBytes;
+
+    /**
+     * @param version       version du catalogue, lue dans le même instantané que les données
+     * @param stockVersions version du stock de chaque variant (product_variants.stock_version), lue avec les produits
+     */
+    CatalogSnapshot(Long shopId,
+                    CatalogVersion version,
+                    List<CategoryDto> categories,
+                    CategoryTreeDto categoryTree,
+                    List<ProductWithVariantsDto> products,
+                    Map<Long, Long> stockVersions) {
+        this.shopId = shopId;
+        this.catalogVersion = version.catalogVersion();
+        this.stockRevision = version.stockRevision();
+        this.categories = List.copyOf(categories);
+        this.categoryTree = categoryTree;
+        this.productSlots = new AtomicReferenceArray<>(products.toArray(ProductWithVariantsDto[]::new));
+        this.products = new ProductView(null);
+
+        Map<Long, CategoryDto> byId = new HashMap<>();
+        Map<Long, List<CategoryDto>> children = new HashMap<>();
+        for (CategoryDto category : this.categories) {
+            byId.put(category.id(), category);
+            children.computeIfAbsent(category.parentId(), k -> new ArrayList<>()).add(category);
+        }
+
+        Map<Long, List<Integer>> byCategory = new HashMap<>();
+        Map<Long, Integer> positions = new HashMap<>();
+        Map<Long, Integer> categoryPositions = new HashMap<>();
+        Map<Long, Long> variantOwners = new HashMap<>();
+        Map<Long, Integer> ordinals = new HashMap<>();
+        List<Long> versions = new ArrayList<>();
+        for (int i = 0; i < this.products.size(); i++) {
+            ProductWithVariantsDto item = this.products.get(i);
+            ProductDto product = item.product();
+            List<Integer> categoryProducts = byCategory.computeIfAbsent(product.categoryId(), k -> new ArrayList<>());
+            positions.put(product.id(), i);
+            categoryPositions.put(product.id(), categoryProducts.size());
+            categoryProducts.add(i);
+            for (ProductVariantDto variant : item.variants()) {
+                variantOwners.put(variant.id(), product.id());
+                ordinals.put(variant.id(), versions.size());
+                versions.add(stockVersions.getOrDefault(variant.id(), 0L));
+            }
+        }
+
+        Map<Long, List<ProductWithVariantsDto>> categoryViews = new HashMap<>();
+        byCategory.forEach((categoryId, categoryProducts) -> categoryViews.put(categoryId,
+                new ProductView(categoryProducts.stream().mapToInt(Integer::intValue).toArray())));
+
+        this.categoriesById = byId;
+        this.childrenByParentId = children;
+        this.productsByCategoryId = categoryViews;
+        this.productPositions = positions;
+        this.categoryProductPositions = categoryPositions;
+        this.productIdByVariantId = variantOwners;
+        this.variantOrdinals = ordinals;
+        this.stockVersions = new AtomicLongArray(versions.stream().mapToLong(Long::longValue).toArray());
+        this.estimatedBytes = estimateBytes();
+    }
+
+    public Long getShopId() {
+        return shopId;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Version du catalogue contenue dans le snapshot, stock appliqué compris
+     */
+    public CatalogVersion getVersion() {
+        return new CatalogVersion(catalogVersion, stockRevision);
+    }
+
+    // ========== Catégories ==========
+
+    /**
+     * Toutes les catégories de la boutique, triées par position
+     */
+    public List<CategoryDto> getCategories() {
+        return categories;
+    }
+
+    public CategoryTreeDto getCategoryTree() {
+        return categoryTree;
+    }
+
+    public Optional<CategoryDto> findCategory(Long categoryId) {
+        return Optional.ofNullable(categoriesById.get(categoryId));
+    }
+
+    /**
+     * Enfants directs d'une catégorie (null pour les catégories racines), triés par position
+     */
+    public List<CategoryDto> getChildren(Long parentId) {
+        return List.copyOf(childrenByParentId.getOrDefault(parentId, List.of()));
+    }
+
+    /**
+     * Chemin de la racine jusqu'à la catégorie incluse
+     */
+    public List<CategoryDto> getAncestors(Long categoryId) {
+        List<CategoryDto> path = new ArrayList<>();
+        CategoryDto current = categoriesById.get(categoryId);
+        while (current != null) {
+            path.add(0, current);
+            current = current.parentId() == null ? null : categoriesById.get(current.parentId());
+        }
+        return path;
+    }
+
+    /**
+     * IDs de la catégorie et de tous ses descendants
+     */
+    public Set<Long> getDescendantIds(Long categoryId) {
+        Set<Long> ids = new HashSet<>();
+        List<Long> pending = new ArrayList<>(List.of(categoryId));
+        while (!pending.isEmpty()) {
+            Long id = pending.remove(pending.size() - 1);
+            if (ids.add(id)) {
+                for (CategoryDto child : childrenByParentId.getOrDefault(id, List.of())) {
+                    pending.add(child.id());
+                }
+            }
+        }
+        return ids;
+    }
+
+    // ========== Produits et variants ==========
+
+    /**
+     * Tous les produits de la boutique, triés par (name, id)
+     */
+    public List<ProductWithVariantsDto> getProducts() {
+        return products;
+    }
+
+    public Optional<ProductWithVariantsDto> findProduct(Long productId) {
+        Integer position = productPositions.get(productId);
+        return position == null ? Optional.empty() : Optional.of(productSlots.get(position));
+    }
+
+    public Optional<ProductVariantDto> findVariant(Long variantId) {
+        Long productId = productIdByVariantId.get(variantId);
+        if (productId == null) {
+            return Optional.empty();
+        }
+        return findProduct(productId)
+                .flatMap(item -> item.variants().stream().filter(v -> v.id().equals(variantId)).findFirst());
+    }
+
+    /**
+     * Produits de la boutique dans l'ensemble de catégories donné, triés par (name, id)
+     */
+    public List<ProductWithVariantsDto> getProductsInCategories(Set<Long> categoryIds) {
+        return products.stream()
+                .filter(item -> categoryIds.contains(item.product().categoryId()))
+                .toList();
+    }
+
+    /**
+     * Au plus count produits situés après la position (name, id), dans toute la boutique (categoryId null)
+     * ou dans une catégorie. Vide si la position ne correspond plus à un produit du snapshot
+     * (produit supprimé ou renommé) : l'appelant doit alors se replier sur la base.
+     */
+    public Optional<List<ProductWithVariantsDto>> getProductsAfter(Long categoryId, NameIdPosition after, int count) {
+        List<ProductWithVariantsDto> source = categoryId == null
+                ? products
+                : productsByCategoryId.getOrDefault(categoryId, List.of());
+
+        int start = 0;
+        if (!NameIdPosition.START.equals(after)) {
+            Integer position = (categoryId == null ? productPositions : categoryProductPositions).get(after.id());
+            if (position == null || position >= source.size()) {
+                return Optional.empty();
+            }
+            ProductDto product = source.get(position).product();
+            if (!product.id().equals(after.id()) || !product.name().equals(after.name())) {
+                return Optional.empty();
+            }
+            start = position + 1;
+        }
+
+        return Optional.of(List.copyOf(source.subList(start, Math.min(source.size(), start + count))));
+    }
+
+    /**
+     * Applique le stock committé d'un variant : seul son produit est remplacé, en O(nombre de variants du produit).
+     * Une valeur dont la version n'est pas plus récente que celle du snapshot est ignorée (listeners exécutés
+     * dans le désordre, ou snapshot construit après le commit). Les appels pour une même boutique sont sérialisés
+     * par l'appelant.
+     */
+    void applyVariantStock(Long variantId, int stock, long version) {
+        Integer ordinal = variantOrdinals.get(variantId);
+        if (ordinal == null) {
+            return;
+        }
+        long current = stockVersions.get(ordinal);
+        if (version <= current) {
+            return;
+        }
+
+        int position = productPositions.get(productIdByVariantId.get(variantId));
+        ProductWithVariantsDto item = productSlots.get(position);
+        List<ProductVariantDto> variants = item.variants().stream()
+                .map(v -> v.id().equals(variantId) ? withStock(v, stock) : v)
+                .toList();
+        productSlots.set(position, new ProductWithVariantsDto(item.product(), variants));
+        stockVersions.set(ordinal, version);
+        stockRevision += version - current;
+    }
+
+    private static ProductVariantDto withStock(ProductVariantDto variant, int stock) {
+        return new ProductVariantDto(
+                variant.id(),
+                variant.productId(),
+                variant.shopId(),
+                variant.sku(),
+                variant.price(),
+                stock,
+                variant.isActive(),
+                variant.createdAt(),
+                variant.updatedAt(),
+                variant.attributes()
+        );
+    }
+
+    private long estimateBytes() {
+        long bytes = OBJECT_OVERHEAD;
+        for (CategoryDto category : categories) {
+            // Compté deux fois : liste à plat et noeud de l'arbre
+            bytes += 2 * (OBJECT_OVERHEAD + sizeOf(category.label()) + sizeOf(category.slug())) + 3L * ENTRY_OVERHEAD;
+        }
+        for (ProductWithVariantsDto item : products) {
+            ProductDto product = item.product();
+            bytes += 2 * OBJECT_OVERHEAD + 4L * ENTRY_OVERHEAD
+                    + sizeOf(product.name()) + sizeOf(product.slug()) + sizeOf(product.description());
+            for (AttributeDefinitionDto definition : product.attributeDefinitions()) {
+                bytes += OBJECT_OVERHEAD + sizeOf(definition.attributeName());
+            }
+            for (ProductVariantDto variant : item.variants()) {
+                bytes += 2 * OBJECT_OVERHEAD + 2L * ENTRY_OVERHEAD + Long.BYTES + sizeOf(variant.sku());
+                for (Map.Entry<String, String> attribute : variant.attributes().entrySet()) {
+                    bytes += ENTRY_OVERHEAD + sizeOf(attribute.getKey()) + sizeOf(attribute.getValue());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : OBJECT_OVERHEAD + value.length();
+    }
+
+    /**
+     * Liste en lecture seule des produits du snapshot, tous (positions null) ou ceux des positions données
+     */
+    private final class ProductView extends AbstractList<ProductWithVariantsDto> implements RandomAccess {
+
+        private final int[] positions;
+
+        private ProductView(int[] positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public ProductWithVariantsDto get(int index) {
+            if (positions == null) {
+                return productSlots.get(index);
+            }
+            return productSlots.get(positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions == null ? productSlots.length() : positions.length;
+        }
+    }
+}
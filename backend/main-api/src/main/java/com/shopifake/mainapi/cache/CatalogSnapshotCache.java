@@ -0,0 +1,217 @@
+package com.shopifake.mainapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.datasource.ReadRouting;
+import com.shopifake.mainapi.dto.CategoryDto;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.mapper.CategoryMapper;
+import com.shopifake.mainapi.mapper.CategoryTreeBuilder;
+import com.shopifake.mainapi.model.Category;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.service.CatalogReadService;
+import com.shopifake.mainapi.service.CatalogVersionService;
+import com.shopifake.mainapi.service.CatalogVersionService.CatalogVersion;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Cache des snapshots de catalogue par boutique.
+ * Un snapshot est construit en un nombre constant de requêtes au premier accès, puis servi à toutes les lectures.
+ * Les écritures publient un {@link CatalogChangedEvent} : après commit, le snapshot est invalidé,
+ * sauf pour un mouvement de stock dont le stock committé, porté par l'événement, est appliqué en place au snapshot.
+ * La mémoire est bornée à la fois par le nombre de boutiques et par une estimation de la taille des snapshots :
+ * chaque entrée pèse au moins maximumBytes / maximumShops.
+ * Le snapshot est évincé après le commit, alors que la nouvelle version du catalogue est déjà visible :
+ * une lecture qui doit correspondre à une version donnée (un ETag) passe par {@link #readAtLeast},
+ * et un snapshot qui ne contient pas cette version est alors reconstruit.
+ */
+@Component
+@Slf4j
+public class CatalogSnapshotCache {
+
+    private static final String CACHE_NAME = "catalogSnapshots";
+
+    private static final String STOCK_VERSIONS_SQL = "SELECT id, stock_version FROM product_variants WHERE shop_id = ?";
+
+    // Version minimale que doivent contenir les snapshots lus par le thread courant
+    private static final ThreadLocal<RequiredVersion> REQUIRED_VERSION = new ThreadLocal<>();
+
+    private final CatalogVersionService catalogVersionService;
+    private final CategoryRepository categoryRepository;
+    private final CategoryMapper categoryMapper;
+    private final CategoryTreeBuilder categoryTreeBuilder;
+    private final CatalogReadService catalogReadService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final boolean enabled;
+    private final Cache<Long, CatalogSnapshot> cache;
+    private final KeyLocks shopLocks = new KeyLocks();
+
+    public CatalogSnapshotCache(CatalogVersionService catalogVersionService,
+                                CategoryRepository categoryRepository,
+                                CategoryMapper categoryMapper,
+                                CategoryTreeBuilder categoryTreeBuilder,
+                                CatalogReadService catalogReadService,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                CacheProperties cacheProperties,
+                                MeterRegistry meterRegistry) {
+        this.catalogVersionService = catalogVersionService;
+        this.categoryRepository = categoryRepository;
+        this.categoryMapper = categoryMapper;
+        this.categoryTreeBuilder = categoryTreeBuilder;
+        this.catalogReadService = catalogReadService;
+        this.jdbcTemplate = jdbcTemplate;
+
+        // Transaction propre au chargement : la version du catalogue, les catégories, les produits et les versions
+        // de leur stock sont lus dans le même instantané de la base, et jamais dans les écritures non committées de la transaction appelante
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        CacheProperties.CatalogSnapshotConfig config = cacheProperties.getCatalogSnapshot();
+        this.enabled = config.isEnabled();
+        long minimumWeight = Math.max(1, config.getMaximumBytes() / config.getMaximumShops());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaximumBytes())
+                .weigher((Long shopId, CatalogSnapshot snapshot) ->
+                        (int) Math.min(Integer.MAX_VALUE, Math.max(minimumWeight, snapshot.getEstimatedBytes())))
+                .expireAfterAccess(config.getExpireAfterAccess())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("cache.catalog.snapshot.estimated.bytes", cache,
+                        c -> c.asMap().values().stream().mapToLong(CatalogSnapshot::getEstimatedBytes).sum())
+                .description("Estimated memory held by catalog snapshots")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retourne le snapshot du catalogue d'une boutique, construit en cas d'absence.
+     * Vide si le cache est désactivé : l'appelant lit alors directement la base.
+     */
+    public Optional<CatalogSnapshot> getSnapshot(Long shopId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CatalogSnapshot snapshot = shopLocks.getOrLoad(cache, shopId, this::load);
+        RequiredVersion required = REQUIRED_VERSION.get();
+        if (required != null && required.shopId().equals(shopId) && !snapshot.getVersion().covers(required.version())) {
+            // Écriture committée dont l'éviction n'a pas encore eu lieu (ou chargement commencé avant le commit) :
+            // le chargement suivant démarre après la lecture de la version requise et la contient
+            log.debug("Catalog snapshot of shop {} is behind version {}, rebuilding", shopId, required.version());
+            CatalogSnapshot stale = snapshot;
+            shopLocks.withLock(shopId, () -> cache.asMap().remove(shopId, stale));
+            snapshot = shopLocks.getOrLoad(cache, shopId, this::load);
+        }
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Exécute une lecture dont les snapshots de la boutique contiennent au moins la version donnée,
+     * lue auparavant en base (version annoncée par l'ETag de la réponse)
+     */
+    public <T> T readAtLeast(Long shopId, CatalogVersion version, Supplier<T> read) {
+        RequiredVersion outer = REQUIRED_VERSION.get();
+        REQUIRED_VERSION.set(new RequiredVersion(shopId, version));
+        try {
+            return read.get();
+        } finally {
+            if (outer == null) {
+                REQUIRED_VERSION.remove();
+            } else {
+                REQUIRED_VERSION.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Invalide le snapshot d'une boutique
+     */
+    public void evict(Long shopId) {
+        shopLocks.invalidate(cache, shopId);
+    }
+
+    // Avant FacetIndexCache, qui reconstruit ses index à partir des snapshots
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.scope() == CatalogChangedEvent.Scope.STOCK && event.entityId() != null && event.stock() != null) {
+            patchStock(event.shopId(), event.entityId(), event.stock());
+        } else {
+            evict(event.shopId());
+        }
+    }
+
+    /**
+     * Applique au snapshot le stock renvoyé par l'UPDATE committé, sans relire la base.
+     * La boutique est verrouillée le temps du remplacement : un chargement en cours est attendu, puis corrigé.
+     */
+    private void patchStock(Long shopId, Long variantId, CatalogChangedEvent.VariantStock stock) {
+        shopLocks.withLock(shopId, () -> {
+            CatalogSnapshot snapshot = cache.asMap().get(shopId);
+            if (snapshot != null) {
+                snapshot.applyVariantStock(variantId, stock.stock(), stock.version());
+            }
+        });
+    }
+
+    /**
+     * Construit depuis le primaire : un snapshot lu sur un réplica en retard resterait périmé jusqu'à la prochaine écriture
+     */
+    private CatalogSnapshot load(Long shopId) {
+        return ReadRouting.fromPrimary(() -> readTransaction.execute(status -> {
+            CatalogVersion version = catalogVersionService.findVersion(shopId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Boutique", "id", shopId));
+
+            List<Category> categories = categoryRepository.findByShopIdOrderByPosition(shopId);
+            List<CategoryDto> categoryDtos = categories.stream()
+                    .map(categoryMapper::toDto)
+                    .toList();
+
+            Map<Long, Long> stockVersions = new HashMap<>();
+            jdbcTemplate.query(STOCK_VERSIONS_SQL,
+                    rs -> {
+                        stockVersions.put(rs.getLong("id"), rs.getLong("stock_version"));
+                    },
+                    shopId);
+
+            // Arbre construit dans le même instantané : celui de CategoryTreeCache n'est évincé qu'après le commit
+            CatalogSnapshot snapshot = new CatalogSnapshot(
+                    shopId,
+                    version,
+                    categoryDtos,
+                    categoryTreeBuilder.build(categories),
+                    catalogReadService.getShopCatalog(shopId),
+                    stockVersions
+            );
+            log.debug("Catalog snapshot built for shop {} ({} products, ~{} bytes)",
+                    shopId, snapshot.getProducts().size(), snapshot.getEstimatedBytes());
+            return snapshot;
+        }));
+    }
+
+    private record RequiredVersion(Long shopId, CatalogVersion version) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.shopifake.mainapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.datasource.ReadRouting;
+import com.shopifake.mainapi.dto.CategoryTreeDto;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.mapper.CategoryTreeBuilder;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.repository.ShopRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cache de l'arbre des catégories par boutique, invalidé après chaque création, modification,
+ * déplacement ou suppression de catégorie. Les modifications de produits ne le touchent pas.
+ */
+@Component
+public class CategoryTreeCache {
+
+    private static final String CACHE_NAME = "categoryTrees";
+
+    private final ShopRepository shopRepository;
+    private final CategoryRepository categoryRepository;
+    private final CategoryTreeBuilder categoryTreeBuilder;
+    private final TransactionTemplate readTransaction;
+    private final Cache<Long, CategoryTreeDto> cache;
+    private final KeyLocks shopLocks = new KeyLocks();
+
+    public CategoryTreeCache(ShopRepository shopRepository,
+                             CategoryRepository categoryRepository,
+                             CategoryTreeBuilder categoryTreeBuilder,
+                             PlatformTransactionManager transactionManager,
+                             CacheProperties cacheProperties,
+                             MeterRegistry meterRegistry) {
+        this.shopRepository = shopRepository;
+        this.categoryRepository = categoryRepository;
+        this.categoryTreeBuilder = categoryTreeBuilder;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getCategoryTrees().getMaximumSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retourne l'arbre des catégories d'une boutique, construit en cas d'absence
+     */
+    public CategoryTreeDto getTree(Long shopId) {
+        return shopLocks.getOrLoad(cache, shopId, this::load);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.scope() == CatalogChangedEvent.Scope.CATEGORY || event.scope() == CatalogChangedEvent.Scope.SHOP) {
+            shopLocks.invalidate(cache, event.shopId());
+        }
+    }
+
+    private CategoryTreeDto load(Long shopId) {
+        return ReadRouting.fromPrimary(() -> readTransaction.execute(status -> {
+            if (!shopRepository.existsById(shopId)) {
+                throw new ResourceNotFoundException("Boutique", "id", shopId);
+            }
+            return categoryTreeBuilder.build(categoryRepository.findByShopIdOrderByPosition(shopId));
+        }));
+    }
+}
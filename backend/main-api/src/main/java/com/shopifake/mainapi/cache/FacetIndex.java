@@ -0,0 +1,254 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.dto.ProductVariantDto;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index de facettes d'une boutique : pour chaque couple (attributeName, value), le bitmap compressé
+ * des variants qui portent cette valeur, plus un bitmap par catégorie et le bitmap des variants en stock.
+ * Les variants sont numérotés par des ordinaux denses (les IDs Postgres sont des BIGINT) ;
+ * un ordinal libéré par une suppression n'est pas réattribué avant la reconstruction de l'index.
+ * Les lectures prennent le verrou partagé, les mises à jour incrémentales le verrou exclusif.
+ */
+public final class FacetIndex {
+
+    private record IndexedVariant(Long variantId, Long productId, Map<String, String> attributes) {
+    }
+
+    private record IndexedProduct(Long id, String name, Long categoryId, RoaringBitmap ordinals) {
+    }
+
+    /**
+     * Produit correspondant aux filtres, trié par (name, id)
+     */
+    public record ProductRef(Long id, String name) {
+    }
+
+    /**
+     * Résultat d'un filtrage : produits correspondants, nombre de variants correspondants
+     * et, pour chaque attribut, le nombre de variants par valeur (facettes disjonctives)
+     */
+    public record Result(List<ProductRef> products,
+                         int variantCount,
+                         Map<String, Map<String, Integer>> facets) {
+    }
+
+    private static final Comparator<ProductRef> NAME_ID_ORDER =
+            Comparator.comparing(ProductRef::name).thenComparing(ProductRef::id);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<IndexedVariant> variants = new ArrayList<>();
+    private final Map<Long, Integer> ordinalsByVariantId = new HashMap<>();
+    private final Map<Long, IndexedProduct> productsById = new HashMap<>();
+    private final Map<String, Map<String, RoaringBitmap>> valueBitmaps = new HashMap<>();
+    private final Map<Long, RoaringBitmap> categoryBitmaps = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final RoaringBitmap inStock = new RoaringBitmap();
+
+    FacetIndex(List<ProductWithVariantsDto> products) {
+        products.forEach(this::addProduct);
+        runOptimize();
+    }
+
+    // ========== Lecture ==========
+
+    /**
+     * Filtre les variants : catégories (null pour toute la boutique) ET, pour chaque attribut filtré,
+     * une des valeurs demandées (OU), ET en stock si demandé.
+     * La facette d'un attribut est comptée sans le filtre portant sur cet attribut, pour que ses autres valeurs
+     * restent sélectionnables.
+     */
+    public Result filter(Set<Long> categoryIds, Map<String, Set<String>> filters, boolean inStockOnly) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap base = categoryIds == null ? all.clone() : union(categoryIds.stream()
+                    .map(categoryBitmaps::get)
+                    .toList());
+            if (inStockOnly) {
+                base.and(inStock);
+            }
+
+            Map<String, RoaringBitmap> filterBitmaps = new HashMap<>();
+            filters.forEach((name, values) -> {
+                Map<String, RoaringBitmap> byValue = valueBitmaps.getOrDefault(name, Map.of());
+                filterBitmaps.put(name, union(values.stream().map(byValue::get).toList()));
+            });
+
+            RoaringBitmap matches = base.clone();
+            filterBitmaps.values().forEach(matches::and);
+
+            Map<String, Map<String, Integer>> facets = new TreeMap<>();
+            valueBitmaps.forEach((name, byValue) -> {
+                RoaringBitmap scope = base.clone();
+                filterBitmaps.forEach((otherName, bitmap) -> {
+                    if (!otherName.equals(name)) {
+                        scope.and(bitmap);
+                    }
+                });
+                Map<String, Integer> counts = new TreeMap<>();
+                byValue.forEach((value, bitmap) -> {
+                    int count = RoaringBitmap.andCardinality(scope, bitmap);
+                    if (count > 0) {
+                        counts.put(value, count);
+                    }
+                });
+                if (!counts.isEmpty()) {
+                    facets.put(name, counts);
+                }
+            });
+
+            Set<Long> productIds = new HashSet<>();
+            matches.forEach((int ordinal) -> productIds.add(variants.get(ordinal).productId()));
+            List<ProductRef> products = productIds.stream()
+                    .map(productsById::get)
+                    .map(product -> new ProductRef(product.id(), product.name()))
+                    .sorted(NAME_ID_ORDER)
+                    .toList();
+
+            return new Result(products, matches.getCardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Mises à jour incrémentales ==========
+
+    /**
+     * Remplace toutes les entrées d'un produit (renommage, variants ajoutés ou supprimés)
+     */
+    void putProduct(ProductWithVariantsDto item) {
+        lock.writeLock().lock();
+        try {
+            removeProductEntries(item.product().id());
+            addProduct(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeProduct(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeProductEntries(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Met à jour la disponibilité d'un variant après un mouvement de stock
+     */
+    void updateStock(Long variantId, Integer stock, Boolean active) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalsByVariantId.get(variantId);
+            if (ordinal == null) {
+                return;
+            }
+            if (isAvailable(stock, active)) {
+                inStock.add(ordinal);
+            } else {
+                inStock.remove(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Produit propriétaire d'un variant indexé, null si le variant n'est pas dans l'index
+     */
+    Long findProductId(Long variantId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinalsByVariantId.get(variantId);
+            return ordinal == null ? null : variants.get(ordinal).productId();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Méthodes privées ==========
+
+    private void addProduct(ProductWithVariantsDto item) {
+        ProductDto product = item.product();
+        IndexedProduct indexed = new IndexedProduct(product.id(), product.name(), product.categoryId(), new RoaringBitmap());
+        productsById.put(product.id(), indexed);
+        RoaringBitmap category = categoryBitmaps.computeIfAbsent(product.categoryId(), k -> new RoaringBitmap());
+
+        for (ProductVariantDto variant : item.variants()) {
+            int ordinal = variants.size();
+            variants.add(new IndexedVariant(variant.id(), product.id(), Map.copyOf(variant.attributes())));
+            ordinalsByVariantId.put(variant.id(), ordinal);
+            indexed.ordinals().add(ordinal);
+            category.add(ordinal);
+            all.add(ordinal);
+            if (isAvailable(variant.stock(), variant.isActive())) {
+                inStock.add(ordinal);
+            }
+            variant.attributes().forEach((name, value) -> valueBitmaps
+                    .computeIfAbsent(name, k -> new HashMap<>())
+                    .computeIfAbsent(value, k -> new RoaringBitmap())
+                    .add(ordinal));
+        }
+    }
+
+    private void removeProductEntries(Long productId) {
+        IndexedProduct product = productsById.remove(productId);
+        if (product == null) {
+            return;
+        }
+        RoaringBitmap ordinals = product.ordinals();
+        for (int ordinal : ordinals) {
+            IndexedVariant variant = variants.get(ordinal);
+            ordinalsByVariantId.remove(variant.variantId());
+            variant.attributes().forEach((name, value) -> {
+                Map<String, RoaringBitmap> byValue = valueBitmaps.get(name);
+                RoaringBitmap bitmap = byValue.get(value);
+                bitmap.remove(ordinal);
+                if (bitmap.isEmpty()) {
+                    byValue.remove(value);
+                    if (byValue.isEmpty()) {
+                        valueBitmaps.remove(name);
+                    }
+                }
+            });
+            variants.set(ordinal, null);
+        }
+        categoryBitmaps.get(product.categoryId()).andNot(ordinals);
+        all.andNot(ordinals);
+        inStock.andNot(ordinals);
+    }
+
+    private void runOptimize() {
+        all.runOptimize();
+        inStock.runOptimize();
+        categoryBitmaps.values().forEach(RoaringBitmap::runOptimize);
+        valueBitmaps.values().forEach(byValue -> byValue.values().forEach(RoaringBitmap::runOptimize));
+    }
+
+    private static RoaringBitmap union(List<RoaringBitmap> bitmaps) {
+        List<RoaringBitmap> present = bitmaps.stream()
+                .filter(Objects::nonNull)
+                .toList();
+        return present.isEmpty() ? new RoaringBitmap() : RoaringBitmap.or(present.iterator());
+    }
+
+    private static boolean isAvailable(Integer stock, Boolean active) {
+        return stock != null && stock > 0 && !Boolean.FALSE.equals(active);
+    }
+}
@@ -0,0 +1,189 @@
+package com.shopifake.mainapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.datasource.ReadRouting;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.ProductVariant;
+import com.shopifake.mainapi.repository.ProductVariantRepository;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.service.CatalogReadService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Cache des index de facettes par boutique.
+ * Un index est construit à partir du snapshot du catalogue (ou de la base si les snapshots sont désactivés),
+ * puis maintenu de façon incrémentale après commit : un mouvement de stock ne touche que le bitmap des variants
+ * en stock, une écriture sur un produit ou un variant ne réindexe que le produit concerné.
+ * Les changements de catégories ou de boutique invalident l'index.
+ */
+@Component
+@Slf4j
+public class FacetIndexCache {
+
+    private static final String CACHE_NAME = "facetIndexes";
+
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final CatalogReadService catalogReadService;
+    private final ShopRepository shopRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate committedReadTransaction;
+    private final boolean enabled;
+    private final Cache<Long, FacetIndex> cache;
+    private final KeyLocks shopLocks = new KeyLocks();
+
+    public FacetIndexCache(CatalogSnapshotCache catalogSnapshotCache,
+                           CatalogReadService catalogReadService,
+                           ShopRepository shopRepository,
+                           ProductVariantRepository productVariantRepository,
+                           PlatformTransactionManager transactionManager,
+                           CacheProperties cacheProperties,
+                           MeterRegistry meterRegistry) {
+        this.catalogSnapshotCache = catalogSnapshotCache;
+        this.catalogReadService = catalogReadService;
+        this.shopRepository = shopRepository;
+        this.productVariantRepository = productVariantRepository;
+
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        // Les listeners AFTER_COMMIT ne peuvent plus lire dans la transaction d'origine
+        this.committedReadTransaction = new TransactionTemplate(transactionManager);
+        this.committedReadTransaction.setReadOnly(true);
+        this.committedReadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        CacheProperties.FacetIndexConfig config = cacheProperties.getFacetIndex();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumShops())
+                .expireAfterAccess(config.getExpireAfterAccess())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retourne l'index de facettes d'une boutique, construit en cas d'absence.
+     * Si le cache est désactivé, l'index est reconstruit à chaque appel.
+     */
+    public FacetIndex getIndex(Long shopId) {
+        if (!enabled) {
+            return load(shopId);
+        }
+        return shopLocks.getOrLoad(cache, shopId, this::load);
+    }
+
+    /**
+     * Invalide l'index d'une boutique
+     */
+    public void evict(Long shopId) {
+        shopLocks.invalidate(cache, shopId);
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.entityId() == null) {
+            evict(event.shopId());
+            return;
+        }
+        switch (event.scope()) {
+            case STOCK -> updateStock(event.shopId(), event.entityId());
+            case VARIANT -> reindexVariantProduct(event.shopId(), event.entityId());
+            case PRODUCT -> reindexProduct(event.shopId(), event.entityId());
+            default -> evict(event.shopId());
+        }
+    }
+
+    // ========== Méthodes privées ==========
+
+    /**
+     * Les mises à jour lisent l'état committé sous le verrou de la boutique ({@link KeyLocks}),
+     * pour que deux écritures concurrentes ne s'appliquent pas dans le désordre et qu'un chargement en cours
+     * soit terminé avant d'être corrigé
+     */
+    private void updateStock(Long shopId, Long variantId) {
+        shopLocks.withLock(shopId, () -> {
+            if (!cache.asMap().containsKey(shopId)) {
+                return;
+            }
+            ProductVariant variant = ReadRouting.fromPrimary(() -> committedReadTransaction.execute(
+                    status -> productVariantRepository.findById(variantId).orElse(null)));
+            if (variant != null) {
+                cache.asMap().computeIfPresent(shopId, (id, index) -> {
+                    index.updateStock(variantId, variant.getStock(), variant.getIsActive());
+                    return index;
+                });
+            }
+        });
+    }
+
+    private void reindexVariantProduct(Long shopId, Long variantId) {
+        shopLocks.withLock(shopId, () -> {
+            FacetIndex index = cache.getIfPresent(shopId);
+            if (index == null) {
+                return;
+            }
+            // Un variant supprimé n'est plus en base : son produit est retrouvé dans l'index
+            Long productId = ReadRouting.fromPrimary(() -> committedReadTransaction.execute(
+                    status -> productVariantRepository.findById(variantId)
+                            .map(ProductVariant::getProductId)
+                            .orElse(null)));
+            reindex(shopId, productId != null ? productId : index.findProductId(variantId));
+        });
+    }
+
+    private void reindexProduct(Long shopId, Long productId) {
+        shopLocks.withLock(shopId, () -> {
+            if (cache.asMap().containsKey(shopId)) {
+                reindex(shopId, productId);
+            }
+        });
+    }
+
+    private void reindex(Long shopId, Long productId) {
+        if (productId == null) {
+            return;
+        }
+        List<ProductWithVariantsDto> items = ReadRouting.fromPrimary(() -> committedReadTransaction.execute(
+                status -> catalogReadService.getProductsWithVariants(List.of(productId))));
+        cache.asMap().computeIfPresent(shopId, (id, index) -> {
+            if (items == null || items.isEmpty()) {
+                index.removeProduct(productId);
+            } else {
+                index.putProduct(items.get(0));
+            }
+            return index;
+        });
+    }
+
+    private FacetIndex load(Long shopId) {
+        List<ProductWithVariantsDto> products = catalogSnapshotCache.getSnapshot(shopId)
+                .map(CatalogSnapshot::getProducts)
+                .orElseGet(() -> ReadRouting.fromPrimary(() -> readTransaction.execute(status -> {
+                    if (!shopRepository.existsById(shopId)) {
+                        throw new ResourceNotFoundException("Boutique", "id", shopId);
+                    }
+                    return catalogReadService.getShopCatalog(shopId);
+                })));
+
+        FacetIndex index = new FacetIndex(products);
+        log.debug("Facet index built for shop {} ({} products)", shopId, products.size());
+        return index;
+    }
+}
@@ -0,0 +1,93 @@
+package com.shopifake.mainapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Verrous par clé de cache (boutique, produit, domaine), répartis sur un nombre fixe de verrous,
+ * pour charger et mettre à jour les entrées d'un cache Caffeine hors de sa map.
+ * Le chargement par cache.get(key, loader) et les mises à jour par asMap().compute* s'exécutent sous le verrou
+ * de l'entrée Caffeine : un bloc synchronized de ConcurrentHashMap, qui épingle un thread virtuel à son porteur
+ * pendant toute la requête SQL. Un ReentrantLock libère le porteur pendant l'attente et les entrées/sorties.
+ * Les lectures concurrentes d'une même clé absente ne font qu'un chargement ; les invalidations et mises à jour
+ * prennent le même verrou, pour qu'un chargement commencé avant un commit ne remette pas en cache l'état
+ * d'avant ce commit.
+ */
+public final class KeyLocks {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public KeyLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(Object key, Supplier<T> action) {
+        ReentrantLock lock = locks[Math.floorMod(key.hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(Object key, Runnable action) {
+        withLock(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Retourne l'entrée d'une clé, chargée sous le verrou de la clé en cas d'absence.
+     * Un chargement qui renvoie null n'est pas mis en cache.
+     */
+    public <K, V> V getOrLoad(Cache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        return withLock(key, () -> {
+            // Relecture sans statistiques : l'absence est déjà comptée
+            V current = cache.asMap().get(key);
+            if (current != null) {
+                return current;
+            }
+            V loaded = loader.apply(key);
+            if (loaded != null) {
+                cache.put(key, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Invalide une entrée, après la fin d'un chargement en cours de la clé
+     */
+    public <K> void invalidate(Cache<K, ?> cache, K key) {
+        withLock(key, () -> cache.invalidate(key));
+    }
+
+    /**
+     * Invalide toutes les entrées, après la fin des chargements en cours (verrous pris dans l'ordre)
+     */
+    public void invalidateAll(Cache<?, ?> cache) {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            cache.invalidateAll();
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.shopifake.mainapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.datasource.ReadRouting;
+import com.shopifake.mainapi.dto.StockActionDto;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.event.StockActionsRecordedEvent;
+import com.shopifake.mainapi.repository.StockActionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Derniers mouvements de stock par boutique, gardés dans un tampon circulaire de taille fixe.
+ * Le tampon est chargé depuis le journal à la première consultation, puis complété après commit de
+ * chaque écriture de l'instance : la synthèse du stock ne relit plus le journal.
+ * Une modification de variant ou de produit (dont la suppression, qui efface aussi ses mouvements) vide
+ * le tampon de la boutique ; sa durée de vie depuis le chargement borne le retard des autres instances.
+ */
+@Component
+public class RecentStockActionsCache {
+
+    private static final String CACHE_NAME = "recentStockActions";
+
+    private static final Comparator<StockActionDto> NEWEST_FIRST = Comparator
+            .comparing(StockActionDto::createdAt)
+            .thenComparing(StockActionDto::id)
+            .reversed();
+
+    /**
+     * Tampon circulaire : un ajout remplace le mouvement le plus ancien une fois la capacité atteinte
+     */
+    private static final class RingBuffer {
+        private final StockActionDto[] actions;
+        private int next;
+
+        private RingBuffer(int capacity) {
+            this.actions = new StockActionDto[capacity];
+        }
+
+        private synchronized void add(StockActionDto action) {
+            // Un mouvement commité pendant le chargement peut déjà avoir été lu dans le journal
+            for (StockActionDto existing : actions) {
+                if (existing != null && existing.id().equals(action.id())) {
+                    return;
+                }
+            }
+            actions[next] = action;
+            next = (next + 1) % actions.length;
+        }
+
+        private synchronized List<StockActionDto> newestFirst() {
+            return Arrays.stream(actions)
+                    .filter(Objects::nonNull)
+                    .sorted(NEWEST_FIRST)
+                    .toList();
+        }
+    }
+
+    private final StockActionRepository stockActionRepository;
+    private final TransactionTemplate readTransaction;
+    private final int size;
+    private final Cache<Long, RingBuffer> cache;
+    private final KeyLocks shopLocks = new KeyLocks();
+
+    public RecentStockActionsCache(StockActionRepository stockActionRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   CacheProperties cacheProperties,
+                                   MeterRegistry meterRegistry) {
+        this.stockActionRepository = stockActionRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+
+        CacheProperties.RecentStockActionsConfig config = cacheProperties.getRecentStockActions();
+        this.size = config.getSize();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumShops())
+                // Les ajouts ne prolongent pas la durée de vie : elle court depuis le chargement
+                .expireAfter(Expiry.<Long, RingBuffer>creating((shopId, buffer) -> config.getExpireAfterLoad()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retourne les derniers mouvements de stock d'une boutique, du plus récent au plus ancien
+     */
+    public List<StockActionDto> getRecent(Long shopId) {
+        return shopLocks.getOrLoad(cache, shopId, this::load).newestFirst();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onStockActionsRecorded(StockActionsRecordedEvent event) {
+        // Attend un chargement en cours de la boutique : il a pu lire le journal avant ce commit
+        shopLocks.withLock(event.shopId(), () -> {
+            RingBuffer buffer = cache.asMap().get(event.shopId());
+            if (buffer != null) {
+                event.actions().forEach(buffer::add);
+            }
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.scope() == CatalogChangedEvent.Scope.VARIANT
+                || event.scope() == CatalogChangedEvent.Scope.PRODUCT
+                || event.scope() == CatalogChangedEvent.Scope.SHOP) {
+            shopLocks.invalidate(cache, event.shopId());
+        }
+    }
+
+    private RingBuffer load(Long shopId) {
+        List<StockActionDto> recent = ReadRouting.fromPrimary(() -> readTransaction.execute(status ->
+                stockActionRepository.findRecentByShopId(shopId, PageRequest.of(0, size)).stream()
+                        .map(action -> new StockActionDto(action.getId(), action.getSku(), action.getActionType(),
+                                action.getQuantity(), action.getCreatedAt()))
+                        .toList()));
+        RingBuffer buffer = new RingBuffer(size);
+        // Du plus ancien au plus récent : les premiers remplacés seront les plus anciens
+        recent.reversed().forEach(buffer::add);
+        return buffer;
+    }
+}
@@ -0,0 +1,35 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.model.AttributeDefinition;
+import com.shopifake.mainapi.model.Category;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Invalide le cache de second niveau quand la base supprime des lignes sans passer par Hibernate.
+ * La suppression d'une boutique efface ses catégories et ses définitions d'attributs par ON DELETE CASCADE :
+ * les régions correspondantes sont vidées après commit (suppression rare, régions rechargées à la demande).
+ */
+@Component
+public class ReferenceCacheEvictor {
+
+    private final Cache cache;
+
+    public ReferenceCacheEvictor(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.scope() == CatalogChangedEvent.Scope.SHOP) {
+            cache.evictEntityData(Category.class);
+            cache.evictNaturalIdData(Category.class);
+            cache.evictEntityData(AttributeDefinition.class);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.shopifake.mainapi.client;
 
 import com.shopifake.mainapi.config.WebhookProperties;
 import com.shopifake.mainapi.dto.webhook.ProductVariantWebhookPayload;
+import com.shopifake.mainapi.dto.webhook.ProductVariantsWebhookPayload;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -23,12 +24,23 @@ public class ChatbotWebhookClient {
      * Non-blocking call that fails silently if configured
      */
     public void sendProductVariantWebhook(ProductVariantWebhookPayload payload) {
+        send("/webhook/product-variant", payload, payload.getEvent());
+    }
+
+    /**
+     * Send an aggregated webhook for several product variants in a single call
+     */
+    public void sendProductVariantsWebhook(ProductVariantsWebhookPayload payload) {
+        send("/webhook/product-variants", payload, payload.getEvent());
+    }
+
+    private void send(String path, Object payload, String event) {
         if (!webhookProperties.isEnabled()) {
             log.debug("Webhooks disabled, skipping chatbot notification");
             return;
         }
 
-        String url = webhookProperties.getChatbot().getUrl() + "/webhook/product-variant";
+        String url = webhookProperties.getChatbot().getUrl() + path;
         int timeout = webhookProperties.getChatbot().getTimeout();
 
         webClientBuilder.build()
@@ -46,7 +58,7 @@ public class ChatbotWebhookClient {
                     return Mono.error(error);
                 })
                 .subscribe(
-                        result -> log.debug("Successfully sent {} webhook to chatbot service", payload.getEvent()),
+                        result -> log.debug("Successfully sent {} webhook to chatbot service", event),
                         error -> log.error("Webhook error: {}", error.getMessage())
                 );
     }
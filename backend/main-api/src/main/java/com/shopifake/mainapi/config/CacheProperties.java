@@ -0,0 +1,112 @@
+package com.shopifake.mainapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "cache")
+@Getter
+@Setter
+public class CacheProperties {
+
+    private AttributeDefinitionsConfig attributeDefinitions = new AttributeDefinitionsConfig();
+    private CategoryTreesConfig categoryTrees = new CategoryTreesConfig();
+    private CatalogSnapshotConfig catalogSnapshot = new CatalogSnapshotConfig();
+    private FacetIndexConfig facetIndex = new FacetIndexConfig();
+    private OwnershipConfig ownership = new OwnershipConfig();
+    private RecentStockActionsConfig recentStockActions = new RecentStockActionsConfig();
+    private ShopDomainsConfig shopDomains = new ShopDomainsConfig();
+    private SecondLevelConfig secondLevel = new SecondLevelConfig();
+
+    @Getter
+    @Setter
+    public static class AttributeDefinitionsConfig {
+        // Nombre maximum de produits dont le dictionnaire d'attributs est gardé en mémoire
+        private long maximumSize = 10_000;
+        // Un dictionnaire est relu après cette durée (retard maximal des autres instances)
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class CategoryTreesConfig {
+        // Nombre maximum de boutiques dont l'arbre des catégories est gardé en mémoire
+        private long maximumSize = 1_000;
+    }
+
+    @Getter
+    @Setter
+    public static class CatalogSnapshotConfig {
+        private boolean enabled = true;
+        // Nombre maximum de boutiques dont le catalogue est gardé en mémoire
+        private int maximumShops = 500;
+        // Budget mémoire total (estimé) des snapshots, en octets
+        private long maximumBytes = 256L * 1024 * 1024;
+        // Un catalogue non consulté pendant cette durée est évincé
+        private Duration expireAfterAccess = Duration.ofMinutes(30);
+    }
+
+    @Getter
+    @Setter
+    public static class FacetIndexConfig {
+        private boolean enabled = true;
+        // Nombre maximum de boutiques dont l'index de facettes est gardé en mémoire
+        private long maximumShops = 500;
+        // Un index non consulté pendant cette durée est évincé
+        private Duration expireAfterAccess = Duration.ofMinutes(30);
+    }
+
+    @Getter
+    @Setter
+    public static class OwnershipConfig {
+        // Nombre maximum d'associations id -> shopId (catégories, produits, variants) gardées en mémoire
+        private long maximumSize = 100_000;
+    }
+
+    @Getter
+    @Setter
+    public static class RecentStockActionsConfig {
+        // Nombre maximum de boutiques dont les derniers mouvements de stock sont gardés en mémoire
+        private long maximumShops = 10_000;
+        // Nombre de mouvements gardés par boutique
+        private int size = 20;
+        // Les derniers mouvements sont relus après cette durée (retard maximal des autres instances)
+        private Duration expireAfterLoad = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class ShopDomainsConfig {
+        // Nombre maximum de noms de domaine résolus gardés en mémoire
+        private long maximumSize = 10_000;
+        // Une boutique résolue est relue après cette durée (retard maximal des autres instances)
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+        // Nombre maximum de domaines inconnus gardés en mémoire (cache négatif)
+        private long unknownMaximumSize = 10_000;
+        // Un domaine inconnu est recherché de nouveau après cette durée
+        private Duration unknownExpireAfterWrite = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class SecondLevelConfig {
+        private boolean enabled = true;
+        // Régions du cache de second niveau d'Hibernate, par nom (une région non déclarée empêche le démarrage)
+        private Map<String, RegionConfig> regions = new LinkedHashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class RegionConfig {
+        // Nombre maximum d'entrées gardées dans la région
+        private long maximumSize = 10_000;
+        // Une entrée est évincée cette durée après son écriture
+        private Duration expireAfterWrite = Duration.ofHours(1);
+    }
+}
@@ -0,0 +1,33 @@
+package com.shopifake.mainapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "flash-sale")
+@Getter
+@Setter
+public class FlashSaleProperties {
+
+    // Identifiant stable de l'instance (nom du pod) : au redémarrage, elle reprend ses allocations.
+    // Vide : identifiant aléatoire, les allocations d'une instance arrêtée brutalement expirent
+    private String instanceId = "";
+    // Intervalle entre deux écritures groupées ; un retrait attend au plus cet intervalle plus l'écriture
+    private Duration flushInterval = Duration.ofMillis(20);
+    // Quantité d'un SKU que l'instance cherche à garder en allocation
+    private int allocationSize = 200;
+    // Durée de vie d'une allocation non renouvelée (instance arrêtée brutalement)
+    private Duration allocationTtl = Duration.ofSeconds(30);
+    // Nombre de compteurs par SKU, pour répartir la contention entre les requêtes
+    private int stripes = 16;
+    // Intervalle de relecture de la liste des boutiques en vente flash
+    private Duration refreshInterval = Duration.ofSeconds(2);
+    // Durée sans retrait au-delà de laquelle l'allocation d'un SKU est rendue
+    private Duration idleTimeout = Duration.ofMinutes(1);
+    // Attente maximale de l'écriture d'un retrait admis
+    private Duration admissionTimeout = Duration.ofSeconds(10);
+}
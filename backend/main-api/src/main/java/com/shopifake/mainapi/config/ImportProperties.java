@@ -0,0 +1,24 @@
+package com.shopifake.mainapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "catalog-import")
+@Getter
+@Setter
+public class ImportProperties {
+
+    // Nombre d'imports exécutés en parallèle ; les suivants attendent dans la file
+    private int maxConcurrentJobs = 2;
+    // Nombre d'imports en attente au-delà duquel un nouvel import est refusé
+    private int maxQueuedJobs = 20;
+    // Nombre maximum de lignes (variants) par fichier
+    private long maxRows = 1_000_000;
+    // Durée pendant laquelle le statut d'un import reste consultable
+    private Duration jobRetention = Duration.ofHours(24);
+}
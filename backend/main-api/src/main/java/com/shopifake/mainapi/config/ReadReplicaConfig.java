@@ -0,0 +1,107 @@
+package com.shopifake.mainapi.config;
+
+import com.shopifake.mainapi.datasource.ReadRouting;
+import com.shopifake.mainapi.datasource.ReadYourWritesTracker;
+import com.shopifake.mainapi.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routage des transactions vers le primaire ou les réplicas en lecture (read-replicas.enabled=true).
+ * La DataSource exposée est un LazyConnectionDataSourceProxy : la connexion physique n'est obtenue qu'à
+ * la première requête, une fois la transaction marquée readOnly, ce qui permet de choisir le pool.
+ * Les transactions d'écriture utilisent le pool primaire (spring.datasource), les transactions readOnly
+ * la source des réplicas.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "read-replicas", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(ObjectProvider<JdbcConnectionDetails> connectionDetails,
+                                              DataSourceProperties dataSourceProperties) {
+        // Les détails de connexion auto-configurés disparaissent avec la DataSource par défaut (sauf @ServiceConnection)
+        JdbcConnectionDetails details = connectionDetails.getIfAvailable();
+        DataSourceBuilder<HikariDataSource> builder = details != null
+                ? DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(details.getJdbcUrl())
+                        .username(details.getUsername())
+                        .password(details.getPassword())
+                        .driverClassName(details.getDriverClassName())
+                : dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class);
+        HikariDataSource dataSource = builder.build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(ReadReplicaProperties properties) {
+        return new ReadYourWritesTracker(properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             ReadReplicaProperties properties,
+                                                             ReadYourWritesTracker readYourWritesTracker,
+                                                             MeterRegistry meterRegistry) {
+        List<String> urls = properties.getUrls();
+        if (urls.isEmpty()) {
+            log.warn("Read replica routing enabled without replicas: read-only transactions use the primary");
+        }
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String name = "replica-" + (i + 1);
+            replicas.add(new ReplicaRoutingDataSource.Replica(name, replicaPool(name, urls.get(i), primaryDataSource, properties)));
+        }
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                () -> ReadRouting.isPrimaryForced() || readYourWritesTracker.requiresPrimary(),
+                properties.getMaxReplicationLag(), properties.getHealthCheckInterval());
+        Gauge.builder("datasource.replicas.healthy", routing, ReplicaRoutingDataSource::healthyReplicaCount)
+                .description("Read replicas currently serving read-only transactions")
+                .register(meterRegistry);
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaRoutingDataSource);
+        return dataSource;
+    }
+
+    private static HikariDataSource replicaPool(String name, String url, HikariDataSource primary, ReadReplicaProperties properties) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(properties.getUsername() != null ? properties.getUsername() : primary.getUsername());
+        pool.setPassword(properties.getPassword() != null ? properties.getPassword() : primary.getPassword());
+        pool.setDriverClassName(primary.getDriverClassName());
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        pool.setConnectionTimeout(properties.getConnectionTimeout().toMillis());
+        pool.setReadOnly(true);
+        // Un réplica injoignable au démarrage est écarté par la vérification de santé au lieu de bloquer l'application
+        pool.setInitializationFailTimeout(-1);
+        return pool;
+    }
+}
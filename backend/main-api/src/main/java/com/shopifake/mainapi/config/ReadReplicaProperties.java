@@ -0,0 +1,34 @@
+package com.shopifake.mainapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "read-replicas")
+@Getter
+@Setter
+public class ReadReplicaProperties {
+
+    // Active le routage des transactions readOnly vers les réplicas (désactivé : tout passe par le primaire)
+    private boolean enabled = false;
+    // URLs JDBC des réplicas ; les identifiants sont ceux du primaire sauf si username/password sont renseignés
+    private List<String> urls = new ArrayList<>();
+    private String username;
+    private String password;
+    // Taille maximale du pool de chaque réplica
+    private int maximumPoolSize = 10;
+    // Attente maximale d'une connexion de réplica avant de l'écarter et de passer au suivant
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+    // Intervalle entre deux vérifications de l'état des réplicas
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    // Retard de réplication au-delà duquel un réplica est écarté
+    private Duration maxReplicationLag = Duration.ofSeconds(10);
+    // Après une écriture, les lectures du même client restent sur le primaire pendant cette durée (0 : désactivé)
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+}
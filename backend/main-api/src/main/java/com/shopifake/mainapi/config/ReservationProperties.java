@@ -0,0 +1,28 @@
+package com.shopifake.mainapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "stock-reservations")
+@Getter
+@Setter
+public class ReservationProperties {
+
+    // Durée d'une réservation quand la requête n'en précise pas
+    private Duration defaultTtl = Duration.ofMinutes(15);
+    // Durée maximale qu'une requête peut demander
+    private Duration maxTtl = Duration.ofHours(1);
+    // Résolution de la roue d'expiration : une réservation est libérée au plus un tick après son échéance
+    private Duration tick = Duration.ofSeconds(1);
+    // Nombre de cases de la roue ; une échéance au-delà d'un tour attend les tours suivants dans sa case
+    private int wheelSize = 512;
+    // Nombre maximum de réservations libérées par requête
+    private int releaseBatchSize = 500;
+    // Intervalle du balayage de la table, pour les réservations absentes de la roue (autre instance, redémarrage)
+    private Duration sweepInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,67 @@
+package com.shopifake.mainapi.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Cache de second niveau d'Hibernate (JCache, implémentation Caffeine) pour les entités de référence :
+ * boutiques, catégories et définitions d'attributs, ainsi que leurs identifiants naturels.
+ * Chaque région est créée à partir de cache.second-level.regions (taille et durée de vie) ; une région
+ * utilisée par une entité mais non déclarée fait échouer le démarrage plutôt que d'être créée sans limite.
+ * Les statistiques Hibernate sont activées : elles alimentent les métriques hibernate.second.level.cache.*
+ * (par région) et hibernate.cache.natural.id.* exposées par l'actuator.
+ */
+@Configuration(proxyBeanMethods = false)
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "cache.second-level", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager hibernateCacheManager(CacheProperties cacheProperties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // Gestionnaire propre à ce contexte : celui de l'URI par défaut est partagé par tout le classloader
+        URI uri = URI.create("hibernate:" + UUID.randomUUID());
+        CacheManager cacheManager = provider.getCacheManager(uri, getClass().getClassLoader());
+        cacheProperties.getSecondLevel().getRegions().forEach((name, region) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+            configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanos()));
+            // Les entrées d'Hibernate sont déjà des copies déshydratées : pas de sérialisation à chaque accès
+            configuration.setStoreByValue(false);
+            cacheManager.createCache(name, configuration);
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(ObjectProvider<CacheManager> hibernateCacheManager) {
+        return properties -> {
+            CacheManager cacheManager = hibernateCacheManager.getIfAvailable();
+            if (cacheManager == null) {
+                // hibernate-jcache présent sur le classpath serait sinon détecté et utilisé avec des caches non bornés
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                return;
+            }
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            // Les statistiques servent aux métriques, pas à un journal par session
+            properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.shopifake.mainapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "streaming")
+@Getter
+@Setter
+public class StreamingProperties {
+
+    // Nombre de lignes ramenées par aller-retour avec le curseur JDBC
+    private int fetchSize = 500;
+
+    // Fetch size du curseur d'export : une ligne par variant, plus légère qu'un produit complet
+    private int exportFetchSize = 2000;
+}
@@ -0,0 +1,65 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.cache.CatalogSnapshotCache;
+import com.shopifake.mainapi.service.CatalogVersionService;
+import com.shopifake.mainapi.service.CatalogVersionService.CatalogVersion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * GET conditionnels sur les endpoints du catalogue.
+ * L'ETag est lu avant le corps : si If-None-Match correspond, la réponse 304 est renvoyée
+ * sans exécuter la lecture du catalogue. Sinon le corps est lu dans un snapshot qui contient au moins
+ * la version annoncée par l'ETag : un ETag n'est jamais associé à un corps plus ancien.
+ * La version et le corps sont lus dans la même transaction, donc sur la même connexion : avec des réplicas,
+ * le corps n'est jamais lu sur un réplica plus en retard que celui qui a fourni la version.
+ */
+@Component
+public class CatalogConditionalGet {
+
+    private final CatalogVersionService catalogVersionService;
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final TransactionTemplate readTransaction;
+
+    public CatalogConditionalGet(CatalogVersionService catalogVersionService,
+                                 CatalogSnapshotCache catalogSnapshotCache,
+                                 PlatformTransactionManager transactionManager) {
+        this.catalogVersionService = catalogVersionService;
+        this.catalogSnapshotCache = catalogSnapshotCache;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public <T> ResponseEntity<T> respond(Long shopId, WebRequest request, Supplier<T> body) {
+        return readTransaction.execute(status -> doRespond(shopId, request, body));
+    }
+
+    private <T> ResponseEntity<T> doRespond(Long shopId, WebRequest request, Supplier<T> body) {
+        Optional<CatalogVersion> version = catalogVersionService.findVersion(shopId);
+        if (version.isEmpty()) {
+            // Boutique inconnue : le service lève l'erreur adaptée
+            return ResponseEntity.ok(body.get());
+        }
+
+        String etag = version.get().toETag(shopId);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(catalogSnapshotCache.readAtLeast(shopId, version.get(), body));
+    }
+}
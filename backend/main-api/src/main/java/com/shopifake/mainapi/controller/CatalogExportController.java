@@ -0,0 +1,82 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.service.ProductService;
+import com.shopifake.mainapi.streaming.CatalogExportWriter;
+import com.shopifake.mainapi.streaming.CatalogFileFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Catalog Export", description = "API d'export de catalogue en flux")
+public class CatalogExportController {
+
+    private final CatalogExportWriter catalogExportWriter;
+    private final ProductService productService;
+
+    @GetMapping("/api/shops/{shopId}/export")
+    @Operation(
+            summary = "Exporte le catalogue d'une boutique",
+            description = "Renvoie une ligne par variant au format de l'import (CSV ou NDJSON), augmentée des colonnes "
+                    + "shopId, productId, productSlug et variantId, triée par id de variant. Le catalogue est lu par "
+                    + "curseur et écrit au fil de l'eau ; gzip=true compresse la réponse (Content-Encoding: gzip)."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux de l'export"),
+            @ApiResponse(responseCode = "400", description = "Format non supporté"),
+            @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
+    })
+    public ResponseEntity<StreamingResponseBody> exportShopCatalog(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Parameter(description = "Format : csv ou ndjson (défaut)") @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(description = "Compresse la réponse en gzip") @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        CatalogFileFormat fileFormat = CatalogFileFormat.fromName(format);
+        productService.validateShopExists(shopId);
+        return export(shopId, fileFormat, gzip, "catalog-shop-" + shopId);
+    }
+
+    @GetMapping("/api/admin/export")
+    @Operation(
+            summary = "Exporte le catalogue de toutes les boutiques",
+            description = "Export d'administration de tous les variants de toutes les boutiques, dans le même format "
+                    + "que l'export d'une boutique (colonne shopId pour les distinguer). En CSV, l'en-tête contient "
+                    + "une colonne par nom d'attribut utilisé dans l'ensemble des boutiques."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux de l'export"),
+            @ApiResponse(responseCode = "400", description = "Format non supporté")
+    })
+    public ResponseEntity<StreamingResponseBody> exportAllCatalogs(
+            @Parameter(description = "Format : csv ou ndjson (défaut)") @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(description = "Compresse la réponse en gzip") @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        return export(null, CatalogFileFormat.fromName(format), gzip, "catalog");
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(Long shopId, CatalogFileFormat format, boolean gzip, String baseName) {
+        StreamingResponseBody body = out -> catalogExportWriter.export(shopId, format, gzip, out);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(baseName + "." + format.extension())
+                        .build()
+                        .toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+}
@@ -0,0 +1,63 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.dto.CatalogImportJobDto;
+import com.shopifake.mainapi.service.CatalogImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/shops/{shopId}/imports")
+@RequiredArgsConstructor
+@Tag(name = "Catalog Import", description = "API d'import de catalogue en masse")
+public class CatalogImportController {
+
+    private final CatalogImportService catalogImportService;
+
+    @PostMapping(consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(
+            summary = "Lance un import de catalogue",
+            description = "Importe un fichier CSV (avec en-tête, attributs en colonnes \"attributes.<nom>\") ou NDJSON "
+                    + "d'une ligne par variant : categoryId, productName, productDescription, productActive, sku, price, "
+                    + "stock, variantActive, attributes. Les produits sont identifiés par (catégorie, slug du nom), "
+                    + "les variants par leur SKU. L'import est exécuté en tâche de fond et entièrement appliqué ou rejeté."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Import planifié"),
+            @ApiResponse(responseCode = "400", description = "Format non supporté ou trop d'imports en cours"),
+            @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
+    })
+    public ResponseEntity<CatalogImportJobDto> startImport(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) {
+        return ResponseEntity.accepted().body(catalogImportService.startImport(shopId, contentType, body));
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(
+            summary = "Récupère le statut d'un import",
+            description = "Phase en cours (QUEUED, STAGING, MERGING, COMPLETED, FAILED), lignes lues, "
+                    + "nombre de produits et variants créés ou mis à jour, et message d'erreur éventuel"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Statut récupéré avec succès"),
+            @ApiResponse(responseCode = "404", description = "Import inconnu ou expiré")
+    })
+    public ResponseEntity<CatalogImportJobDto> getJob(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Parameter(description = "ID de l'import") @PathVariable String jobId
+    ) {
+        return ResponseEntity.ok(catalogImportService.getJob(shopId, jobId));
+    }
+}
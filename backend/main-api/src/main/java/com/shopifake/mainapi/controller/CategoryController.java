@@ -12,6 +12,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -22,6 +23,7 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogConditionalGet conditionalGet;
 
     @GetMapping
     @Operation(
@@ -30,12 +32,14 @@ public class CategoryController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des catégories racines récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
     })
     public ResponseEntity<List<CategoryDto>> getRootCategories(
-            @Parameter(description = "ID de la boutique") @PathVariable Long shopId
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(categoryService.getRootCategories(shopId));
+        return conditionalGet.respond(shopId, webRequest, () -> categoryService.getRootCategories(shopId));
     }
 
     @GetMapping("/all")
@@ -45,12 +49,14 @@ public class CategoryController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des catégories récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
     })
     public ResponseEntity<List<CategoryDto>> getAllCategories(
-            @Parameter(description = "ID de la boutique") @PathVariable Long shopId
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(categoryService.getAllCategories(shopId));
+        return conditionalGet.respond(shopId, webRequest, () -> categoryService.getAllCategories(shopId));
     }
 
     @GetMapping("/tree")
@@ -60,12 +66,14 @@ public class CategoryController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Arbre des catégories récupéré avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
     })
     public ResponseEntity<CategoryTreeDto> getCategoryTree(
-            @Parameter(description = "ID de la boutique") @PathVariable Long shopId
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(categoryService.getCategoryTree(shopId));
+        return conditionalGet.respond(shopId, webRequest, () -> categoryService.getCategoryTree(shopId));
     }
 
     @GetMapping("/{categoryId}")
@@ -75,13 +83,15 @@ public class CategoryController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Catégorie récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Catégorie ou boutique non trouvée")
     })
     public ResponseEntity<CategoryDto> getCategoryById(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId
+            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(categoryService.getCategoryById(shopId, categoryId));
+        return conditionalGet.respond(shopId, webRequest, () -> categoryService.getCategoryById(shopId, categoryId));
     }
 
     @GetMapping("/{categoryId}/children")
@@ -91,13 +101,15 @@ public class CategoryController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Enfants récupérés avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Catégorie ou boutique non trouvée")
     })
     public ResponseEntity<List<CategoryDto>> getChildren(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID de la catégorie parente") @PathVariable Long categoryId
+            @Parameter(description = "ID de la catégorie parente") @PathVariable Long categoryId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(categoryService.getChildren(shopId, categoryId));
+        return conditionalGet.respond(shopId, webRequest, () -> categoryService.getChildren(shopId, categoryId));
     }
 
     @GetMapping("/{categoryId}/breadcrumb")
@@ -107,13 +119,15 @@ public class CategoryController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Fil d'Ariane récupéré avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Catégorie ou boutique non trouvée")
     })
     public ResponseEntity<List<CategoryDto>> getBreadcrumb(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId
+            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(categoryService.getBreadcrumb(shopId, categoryId));
+        return conditionalGet.respond(shopId, webRequest, () -> categoryService.getBreadcrumb(shopId, categoryId));
     }
 
     @PostMapping
@@ -1,11 +1,16 @@
 package com.shopifake.mainapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shopifake.mainapi.dto.AttributeDefinitionDto;
 import com.shopifake.mainapi.dto.CreateProductRequest;
+import com.shopifake.mainapi.dto.CursorPage;
+import com.shopifake.mainapi.dto.FacetedProductsDto;
 import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.dto.ProductSearchResultDto;
 import com.shopifake.mainapi.dto.ProductWithVariantsDto;
 import com.shopifake.mainapi.dto.UpdateProductRequest;
 import com.shopifake.mainapi.service.ProductService;
+import com.shopifake.mainapi.streaming.NdjsonWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -14,8 +19,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -26,51 +34,139 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final CatalogConditionalGet conditionalGet;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     @Operation(
             summary = "Récupère tous les produits d'une boutique",
-            description = "Récupère tous les produits de toutes les catégories d'une boutique"
+            description = "Récupère une page des produits de toutes les catégories d'une boutique, triés par nom (pagination par curseur)"
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des produits récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
     })
-    public ResponseEntity<List<ProductDto>> getProductsByShop(
-            @Parameter(description = "ID de la boutique") @PathVariable Long shopId
+    public ResponseEntity<CursorPage<ProductDto>> getProductsByShop(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(productService.getProductsByShop(shopId));
+        return conditionalGet.respond(shopId, webRequest, () -> productService.getProductsByShop(shopId, cursor, limit));
+    }
+
+    @GetMapping("/search")
+    @Operation(
+            summary = "Recherche des produits d'une boutique",
+            description = "Recherche plein texte (nom, description, valeurs d'attributs des variants) avec la syntaxe web "
+                    + "(\"expression exacte\", OR, -exclusion). Résultats triés par pertinence (pagination par curseur), "
+                    + "avec un extrait où les termes trouvés sont entourés de <mark>."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Résultats de recherche récupérés avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
+            @ApiResponse(responseCode = "400", description = "Texte de recherche manquant ou curseur invalide"),
+            @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
+    })
+    public ResponseEntity<CursorPage<ProductSearchResultDto>> searchProducts(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Parameter(description = "Texte recherché") @RequestParam("q") String query,
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest
+    ) {
+        return conditionalGet.respond(shopId, webRequest, () -> productService.searchProducts(shopId, query, cursor, limit));
+    }
+
+    @GetMapping("/facets")
+    @Operation(
+            summary = "Filtre les produits par facettes",
+            description = "Filtre les produits d'une boutique ou d'une catégorie (sous-catégories incluses) par valeurs d'attributs "
+                    + "(filter=Couleur:Rouge&filter=Taille:M&filter=Taille:L : OU entre les valeurs d'un attribut, ET entre attributs) "
+                    + "et par disponibilité. Renvoie une page de produits triés par nom et le nombre de variants par valeur d'attribut."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Produits filtrés et facettes récupérés avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
+            @ApiResponse(responseCode = "400", description = "Filtre ou curseur invalide, ou catégorie d'une autre boutique"),
+            @ApiResponse(responseCode = "404", description = "Boutique ou catégorie non trouvée")
+    })
+    public ResponseEntity<FacetedProductsDto> filterProducts(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Parameter(description = "ID de la catégorie (optionnel)") @RequestParam(required = false) Long categoryId,
+            @Parameter(description = "Filtres attributeName:value (répétables)") @RequestParam(name = "filter", required = false) List<String> filters,
+            @Parameter(description = "Uniquement les variants actifs en stock") @RequestParam(defaultValue = "false") boolean inStock,
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest
+    ) {
+        return conditionalGet.respond(shopId, webRequest,
+                () -> productService.filterProducts(shopId, categoryId, filters, inStock, cursor, limit));
     }
 
     @GetMapping("/with-variants")
     @Operation(
             summary = "Récupère tous les produits avec variants d'une boutique",
-            description = "Récupère tous les produits avec leurs variants de toutes les catégories d'une boutique"
+            description = "Récupère une page des produits avec leurs variants de toutes les catégories d'une boutique, triés par nom (pagination par curseur)"
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des produits avec variants récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
+            @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
+    })
+    public ResponseEntity<CursorPage<ProductWithVariantsDto>> getAllProductsWithVariants(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest
+    ) {
+        return conditionalGet.respond(shopId, webRequest, () -> productService.getAllProductsWithVariants(shopId, cursor, limit));
+    }
+
+    @GetMapping(value = "/with-variants", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Exporte en flux tous les produits avec variants d'une boutique",
+            description = "Avec Accept: application/x-ndjson, renvoie tous les produits avec leurs variants, un par ligne, "
+                    + "triés par nom. Le catalogue est lu par curseur et écrit au fil de l'eau, sans pagination."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flux NDJSON des produits avec variants"),
             @ApiResponse(responseCode = "404", description = "Boutique non trouvée")
     })
-    public ResponseEntity<List<ProductWithVariantsDto>> getAllProductsWithVariants(
+    public ResponseEntity<StreamingResponseBody> streamAllProductsWithVariants(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId
     ) {
-        return ResponseEntity.ok(productService.getAllProductsWithVariants(shopId));
+        productService.validateShopExists(shopId);
+
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                productService.streamAllProductsWithVariants(shopId, writer::write);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/by-category/{categoryId}")
     @Operation(
             summary = "Récupère les produits d'une catégorie",
-            description = "Récupère tous les produits d'une catégorie spécifique"
+            description = "Récupère une page des produits d'une catégorie spécifique, triés par nom (pagination par curseur)"
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des produits récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Catégorie ou boutique non trouvée")
     })
-    public ResponseEntity<List<ProductDto>> getProductsByCategory(
+    public ResponseEntity<CursorPage<ProductDto>> getProductsByCategory(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId
+            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId,
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(productService.getProductsByCategory(shopId, categoryId));
+        return conditionalGet.respond(shopId, webRequest, () -> productService.getProductsByCategory(shopId, categoryId, cursor, limit));
     }
 
     @GetMapping("/by-category/{categoryId}/with-variants")
@@ -80,13 +176,15 @@ public class ProductController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des produits avec variants récupérée avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Catégorie ou boutique non trouvée")
     })
     public ResponseEntity<List<ProductWithVariantsDto>> getProductsWithVariantsByCategory(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId
+            @Parameter(description = "ID de la catégorie") @PathVariable Long categoryId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(productService.getProductsWithVariantsByCategory(shopId, categoryId));
+        return conditionalGet.respond(shopId, webRequest, () -> productService.getProductsWithVariantsByCategory(shopId, categoryId));
     }
 
     @GetMapping("/{productId}")
@@ -96,13 +194,15 @@ public class ProductController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Produit récupéré avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Produit ou boutique non trouvée")
     })
     public ResponseEntity<ProductDto> getProductById(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID du produit") @PathVariable Long productId
+            @Parameter(description = "ID du produit") @PathVariable Long productId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(productService.getProductById(shopId, productId));
+        return conditionalGet.respond(shopId, webRequest, () -> productService.getProductById(shopId, productId));
     }
 
     @GetMapping("/{productId}/attribute-definitions")
@@ -112,13 +212,15 @@ public class ProductController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Définitions d'attributs récupérées avec succès"),
+            @ApiResponse(responseCode = "304", description = "Catalogue inchangé depuis l'ETag fourni (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Produit ou boutique non trouvée")
     })
     public ResponseEntity<List<AttributeDefinitionDto>> getAttributeDefinitions(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID du produit") @PathVariable Long productId
+            @Parameter(description = "ID du produit") @PathVariable Long productId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(productService.getAttributeDefinitions(shopId, productId));
+        return conditionalGet.respond(shopId, webRequest, () -> productService.getAttributeDefinitions(shopId, productId));
     }
 
     @PostMapping
@@ -1,6 +1,9 @@
 package com.shopifake.mainapi.controller;
 
+import com.shopifake.mainapi.dto.BulkCreateProductVariantsRequest;
+import com.shopifake.mainapi.dto.BulkCreatedVariantsDto;
 import com.shopifake.mainapi.dto.CreateProductVariantRequest;
+import com.shopifake.mainapi.dto.CursorPage;
 import com.shopifake.mainapi.dto.ProductVariantDto;
 import com.shopifake.mainapi.dto.UpdateProductVariantRequest;
 import com.shopifake.mainapi.service.ProductVariantService;
@@ -15,8 +18,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/shops/{shopId}/variants")
 @RequiredArgsConstructor
@@ -28,17 +29,19 @@ public class ProductVariantController {
     @GetMapping("/by-product/{productId}")
     @Operation(
             summary = "Récupère les variants d'un produit",
-            description = "Récupère tous les variants d'un produit spécifique"
+            description = "Récupère une page des variants d'un produit spécifique, triés par id (pagination par curseur)"
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Liste des variants récupérée avec succès"),
             @ApiResponse(responseCode = "404", description = "Produit ou boutique non trouvée")
     })
-    public ResponseEntity<List<ProductVariantDto>> getVariantsByProduct(
+    public ResponseEntity<CursorPage<ProductVariantDto>> getVariantsByProduct(
             @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
-            @Parameter(description = "ID du produit") @PathVariable Long productId
+            @Parameter(description = "ID du produit") @PathVariable Long productId,
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)") @RequestParam(required = false) Integer limit
     ) {
-        return ResponseEntity.ok(productVariantService.getVariantsByProduct(shopId, productId));
+        return ResponseEntity.ok(productVariantService.getVariantsByProduct(shopId, productId, cursor, limit));
     }
 
     @GetMapping("/{variantId}")
@@ -75,6 +78,25 @@ public class ProductVariantController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @PostMapping("/bulk")
+    @Operation(
+            summary = "Crée des variants en masse",
+            description = "Crée jusqu'à 5000 variants en une requête (synchronisation de catalogue). "
+                    + "Le lot est validé dans son ensemble puis inséré en batch : il est entièrement créé ou entièrement rejeté."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Variants créés avec succès"),
+            @ApiResponse(responseCode = "400", description = "Requête invalide (SKU dupliqué, attributs invalides ou combinaison existante)"),
+            @ApiResponse(responseCode = "404", description = "Produit ou boutique non trouvée")
+    })
+    public ResponseEntity<BulkCreatedVariantsDto> createVariants(
+            @Parameter(description = "ID de la boutique") @PathVariable Long shopId,
+            @Valid @RequestBody BulkCreateProductVariantsRequest request
+    ) {
+        BulkCreatedVariantsDto created = productVariantService.createVariants(shopId, request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+    }
+
     @PutMapping("/{variantId}")
     @Operation(
             summary = "Met à jour un variant",
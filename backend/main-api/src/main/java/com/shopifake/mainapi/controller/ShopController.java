@@ -1,6 +1,7 @@
 package com.shopifake.mainapi.controller;
 
 import com.shopifake.mainapi.dto.CreateShopRequest;
+import com.shopifake.mainapi.dto.CursorPage;
 import com.shopifake.mainapi.dto.ShopResponse;
 import com.shopifake.mainapi.dto.UpdateShopRequest;
 import com.shopifake.mainapi.service.ShopService;
@@ -77,11 +78,15 @@ public class ShopController {
     @GetMapping
     @Operation(
             summary = "Obtenir toutes les boutiques",
-            description = "Récupère la liste de toutes les boutiques"
+            description = "Récupère une page de boutiques, triées par id (pagination par curseur)"
     )
-    @ApiResponse(responseCode = "200", description = "Liste des boutiques récupérée")
-    public ResponseEntity<List<ShopResponse>> getAllShops() {
-        List<ShopResponse> shops = shopService.getAllShops();
+    @ApiResponse(responseCode = "200", description = "Page de boutiques récupérée")
+    public ResponseEntity<CursorPage<ShopResponse>> getAllShops(
+            @Parameter(description = "Curseur opaque renvoyé par la page précédente")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Taille de page (défaut 50, max 200)")
+            @RequestParam(required = false) Integer limit) {
+        CursorPage<ShopResponse> shops = shopService.getAllShops(cursor, limit);
         return ResponseEntity.ok(shops);
     }
 
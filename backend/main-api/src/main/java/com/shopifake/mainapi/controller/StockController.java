@@ -1,8 +1,14 @@
 package com.shopifake.mainapi.controller;
 
+import com.shopifake.mainapi.dto.BulkStockActionRequest;
+import com.shopifake.mainapi.dto.CreateStockReservationRequest;
 import com.shopifake.mainapi.dto.StockActionDto;
 import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.dto.StockAvailabilityDto;
+import com.shopifake.mainapi.dto.StockReservationDto;
 import com.shopifake.mainapi.dto.StockSummaryDto;
+import com.shopifake.mainapi.service.FlashSaleStockService;
+import com.shopifake.mainapi.service.StockReservationService;
 import com.shopifake.mainapi.service.StockService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -10,12 +16,16 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/shops/{shopId}/stock")
 @RequiredArgsConstructor
 public class StockController {
 
     private final StockService stockService;
+    private final StockReservationService stockReservationService;
+    private final FlashSaleStockService flashSaleStockService;
 
     @GetMapping("/summary")
     public ResponseEntity<StockSummaryDto> getStockSummary(@PathVariable Long shopId) {
@@ -23,12 +33,61 @@ public class StockController {
         return ResponseEntity.ok(summary);
     }
 
+    @GetMapping("/availability")
+    public ResponseEntity<StockAvailabilityDto> getAvailability(
+            @PathVariable Long shopId,
+            @RequestParam String sku) {
+        StockAvailabilityDto availability = stockReservationService.getAvailability(shopId, sku);
+        return ResponseEntity.ok(availability);
+    }
+
     @PostMapping("/action")
     public ResponseEntity<StockActionDto> performStockAction(
             @PathVariable Long shopId,
             @Valid @RequestBody StockActionRequest request) {
-        StockActionDto result = stockService.performStockAction(request);
+        // En vente flash, un retrait couvert par l'allocation en mémoire du SKU est écrit par lots
+        StockActionDto result = flashSaleStockService.tryRemove(shopId, request)
+                .orElseGet(() -> stockService.performStockAction(request));
         return ResponseEntity.status(HttpStatus.CREATED).body(result);
     }
-}
 
+    @PostMapping("/actions")
+    public ResponseEntity<List<StockActionDto>> performStockActions(
+            @PathVariable Long shopId,
+            @Valid @RequestBody BulkStockActionRequest request) {
+        List<StockActionDto> result = stockService.performStockActions(shopId, request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
+    @PutMapping("/flash-sale")
+    public ResponseEntity<Void> setFlashSale(
+            @PathVariable Long shopId,
+            @RequestParam boolean enabled) {
+        flashSaleStockService.setEnabled(shopId, enabled);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/reservations")
+    public ResponseEntity<StockReservationDto> reserve(
+            @PathVariable Long shopId,
+            @Valid @RequestBody CreateStockReservationRequest request) {
+        StockReservationDto reservation = stockReservationService.reserve(shopId, request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public ResponseEntity<StockActionDto> confirmReservation(
+            @PathVariable Long shopId,
+            @PathVariable Long reservationId) {
+        StockActionDto result = stockReservationService.confirm(shopId, reservationId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<Void> cancelReservation(
+            @PathVariable Long shopId,
+            @PathVariable Long reservationId) {
+        stockReservationService.cancel(shopId, reservationId);
+        return ResponseEntity.noContent().build();
+    }
+}
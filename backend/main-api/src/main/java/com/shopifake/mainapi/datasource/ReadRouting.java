@@ -0,0 +1,51 @@
+package com.shopifake.mainapi.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Force la lecture sur le primaire pour une portion de code, quand une lecture sur un réplica en retard
+ * laisserait un état périmé durablement en mémoire (chargement des caches, relecture après commit).
+ * Sans effet si le routage vers les réplicas est désactivé. Le choix du pool se fait à la première requête
+ * d'une transaction : une transaction qui a déjà une connexion de réplica la conserve.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Integer> PRIMARY_DEPTH = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Exécute une lecture sur le primaire
+     */
+    public static <T> T fromPrimary(Supplier<T> read) {
+        Integer outer = PRIMARY_DEPTH.get();
+        PRIMARY_DEPTH.set(outer == null ? 1 : outer + 1);
+        try {
+            return read.get();
+        } finally {
+            if (outer == null) {
+                PRIMARY_DEPTH.remove();
+            } else {
+                PRIMARY_DEPTH.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Exécute une lecture sans résultat sur le primaire
+     */
+    public static void fromPrimary(Runnable read) {
+        fromPrimary(() -> {
+            read.run();
+            return null;
+        });
+    }
+
+    /**
+     * Vrai si le thread courant exécute une lecture forcée sur le primaire
+     */
+    public static boolean isPrimaryForced() {
+        return PRIMARY_DEPTH.get() != null;
+    }
+}
@@ -0,0 +1,106 @@
+package com.shopifake.mainapi.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+/**
+ * Lecture de ses propres écritures malgré le retard des réplicas.
+ * Avant le commit d'une transaction d'écriture, le client est marqué pour que ses lectures suivantes
+ * passent par le primaire :
+ * - dans la même requête HTTP (listeners AFTER_COMMIT, relecture avant la réponse) ;
+ * - dans les requêtes suivantes pendant la fenêtre configurée, par un cookie qui porte l'échéance
+ *   (sans état côté serveur : fonctionne quelle que soit l'instance qui reçoit la requête) ;
+ * - hors requête HTTP (imports, tâches de fond), sur le thread courant pendant la fenêtre.
+ */
+public class ReadYourWritesTracker implements TransactionExecutionListener {
+
+    public static final String COOKIE_NAME = "primary-reads-until";
+
+    private static final String WROTE_ATTRIBUTE = ReadYourWritesTracker.class.getName() + ".WROTE";
+
+    private final Duration window;
+    private final ThreadLocal<Long> threadDeadline = new ThreadLocal<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this.window = window;
+    }
+
+    /**
+     * Marqué avant le commit pour couvrir les listeners AFTER_COMMIT, qui relisent l'état committé
+     */
+    @Override
+    public void beforeCommit(TransactionExecution transaction) {
+        if (transaction.isReadOnly()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + window.toMillis();
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            attributes.getRequest().setAttribute(WROTE_ATTRIBUTE, Boolean.TRUE);
+            addCookie(attributes.getResponse(), deadline);
+        } else if (!window.isZero()) {
+            threadDeadline.set(deadline);
+        }
+    }
+
+    /**
+     * Vrai si le client courant a écrit récemment et doit lire sur le primaire
+     */
+    public boolean requiresPrimary() {
+        long now = System.currentTimeMillis();
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            if (request.getAttribute(WROTE_ATTRIBUTE) != null) {
+                return true;
+            }
+            // Une échéance au-delà de la fenêtre ne vient pas de ce serveur : ignorée
+            long cookieDeadline = cookieDeadline(request);
+            return cookieDeadline > now && cookieDeadline <= now + window.toMillis();
+        }
+        Long deadline = threadDeadline.get();
+        if (deadline == null) {
+            return false;
+        }
+        if (deadline <= now) {
+            threadDeadline.remove();
+            return false;
+        }
+        return true;
+    }
+
+    // ========== Méthodes privées ==========
+
+    private void addCookie(HttpServletResponse response, long deadline) {
+        if (window.isZero() || response == null || response.isCommitted()) {
+            return;
+        }
+        Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(deadline));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+        response.addCookie(cookie);
+    }
+
+    private static long cookieDeadline(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
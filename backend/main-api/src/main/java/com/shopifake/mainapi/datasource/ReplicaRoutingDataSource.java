@@ -0,0 +1,171 @@
+package com.shopifake.mainapi.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Source des connexions en lecture seule : répartit les connexions entre les réplicas en bonne santé
+ * (tourniquet), et se replie sur le primaire quand aucun réplica n'est disponible ou quand le client
+ * doit relire ses propres écritures.
+ * Un réplica est écarté dès qu'une connexion échoue, ou quand la vérification périodique le trouve
+ * injoignable ou trop en retard ; il est réintégré à la première vérification réussie.
+ * Une erreur transitoire (pool du réplica saturé, délai d'attente dépassé) n'écarte pas le réplica :
+ * seule la connexion en cours passe au réplica suivant, et la vérification périodique tranche sur son état.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    // Retard de réplication en secondes ; nul sur un serveur qui n'est pas en réplication ou qui a tout rejoué
+    private static final String REPLICATION_LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0) END
+            """;
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final BooleanSupplier primaryRequired;
+    private final Duration maxReplicationLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    List<Replica> replicas,
+                                    BooleanSupplier primaryRequired,
+                                    Duration maxReplicationLag,
+                                    Duration healthCheckInterval) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.primaryRequired = primaryRequired;
+        this.maxReplicationLag = maxReplicationLag;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("replica-health")
+                .daemon(true)
+                .factory());
+        if (!this.replicas.isEmpty()) {
+            // Un réplica injoignable dès le démarrage est écarté à sa première connexion en échec
+            long interval = healthCheckInterval.toMillis();
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * Nombre de réplicas actuellement utilisés pour les lectures
+     */
+    public int healthyReplicaCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    /**
+     * Vérifie chaque réplica (connexion et retard de réplication) et met à jour son état
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+                try (ResultSet rs = statement.executeQuery(REPLICATION_LAG_SQL)) {
+                    rs.next();
+                    Duration lag = Duration.ofMillis((long) (rs.getDouble(1) * 1000));
+                    if (lag.compareTo(maxReplicationLag) > 0) {
+                        eject(replica, "replication lag " + lag.toMillis() + " ms");
+                    } else {
+                        admit(replica);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                eject(replica, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // ========== Méthodes privées ==========
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (primaryRequired.getAsBoolean() || replicas.isEmpty()) {
+            return source.get(primary);
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return source.get(replica.dataSource);
+            } catch (SQLTransientException e) {
+                log.debug("Read replica {} unavailable for this connection: {}", replica.name, e.getMessage());
+            } catch (SQLException e) {
+                eject(replica, e.getMessage());
+            }
+        }
+        return source.get(primary);
+    }
+
+    private static void eject(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Read replica {} ejected: {}", replica.name, reason);
+        }
+    }
+
+    private static void admit(Replica replica) {
+        if (!replica.healthy) {
+            replica.healthy = true;
+            log.info("Read replica {} back in rotation", replica.name);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.shopifake.mainapi.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkCreateProductVariantsRequest(
+        @NotEmpty(message = "La liste des variants est obligatoire")
+        @Size(max = 5000, message = "Une création groupée ne peut pas dépasser 5000 variants")
+        List<@Valid CreateProductVariantRequest> variants
+) {
+}
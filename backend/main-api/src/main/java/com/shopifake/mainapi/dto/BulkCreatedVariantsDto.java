@@ -0,0 +1,11 @@
+package com.shopifake.mainapi.dto;
+
+import java.util.List;
+
+/**
+ * Résultat d'une création groupée : nombre de variants créés et leurs IDs, dans l'ordre de la requête
+ */
+public record BulkCreatedVariantsDto(
+        int created,
+        List<Long> variantIds
+) {}
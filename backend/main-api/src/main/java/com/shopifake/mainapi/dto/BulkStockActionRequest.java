@@ -0,0 +1,14 @@
+package com.shopifake.mainapi.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkStockActionRequest(
+        @NotEmpty(message = "La liste des actions est obligatoire")
+        @Size(max = 500, message = "Un lot ne peut pas dépasser 500 actions de stock")
+        List<@Valid StockActionRequest> actions
+) {
+}
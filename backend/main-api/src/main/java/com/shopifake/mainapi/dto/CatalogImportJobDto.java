@@ -0,0 +1,29 @@
+package com.shopifake.mainapi.dto;
+
+import java.time.Instant;
+
+/**
+ * Statut d'un import de catalogue
+ */
+public record CatalogImportJobDto(
+        String id,
+        Long shopId,
+        Status status,
+        long rowsRead,
+        int productsCreated,
+        int productsUpdated,
+        int variantsCreated,
+        int variantsUpdated,
+        String error,
+        Instant createdAt,
+        Instant finishedAt
+) {
+
+    public enum Status {
+        QUEUED,
+        STAGING,
+        MERGING,
+        COMPLETED,
+        FAILED
+    }
+}
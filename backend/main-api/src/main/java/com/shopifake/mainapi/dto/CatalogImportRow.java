@@ -0,0 +1,22 @@
+package com.shopifake.mainapi.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Ligne d'un fichier d'import de catalogue : un variant et le produit auquel il appartient.
+ * Le produit est identifié par (categoryId, slug du nom) ; le variant par son SKU.
+ * En CSV, les attributs sont des colonnes "attributes.<nom>" ; en NDJSON, un objet "attributes".
+ */
+public record CatalogImportRow(
+        Long categoryId,
+        String productName,
+        String productDescription,
+        Boolean productActive,
+        String sku,
+        BigDecimal price,
+        Integer stock,
+        Boolean variantActive,
+        Map<String, String> attributes
+) {
+}
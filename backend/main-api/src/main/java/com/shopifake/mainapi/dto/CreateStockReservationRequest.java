@@ -0,0 +1,18 @@
+package com.shopifake.mainapi.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public record CreateStockReservationRequest(
+        @NotNull(message = "Le SKU est obligatoire")
+        String sku,
+
+        @NotNull(message = "La quantité est obligatoire")
+        @Positive(message = "La quantité doit être positive")
+        Integer quantity,
+
+        // Durée de la réservation en secondes ; la durée par défaut s'applique si elle est absente
+        @Positive(message = "La durée de réservation doit être positive")
+        Integer ttlSeconds
+) {
+}
@@ -0,0 +1,13 @@
+package com.shopifake.mainapi.dto;
+
+import java.util.List;
+
+/**
+ * Page de résultats paginée par curseur (keyset).
+ * nextCursor est opaque et vaut null sur la dernière page.
+ */
+public record CursorPage<T>(
+        List<T> items,
+        String nextCursor
+) {
+}
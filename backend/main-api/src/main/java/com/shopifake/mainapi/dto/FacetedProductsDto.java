@@ -0,0 +1,13 @@
+package com.shopifake.mainapi.dto;
+
+import java.util.Map;
+
+/**
+ * Produits filtrés par facettes : page de produits correspondants, nombre de variants correspondants
+ * et nombre de variants par valeur pour chaque attribut (attributeName -> value -> count)
+ */
+public record FacetedProductsDto(
+        CursorPage<ProductDto> products,
+        int matchingVariants,
+        Map<String, Map<String, Integer>> facets
+) {}
@@ -0,0 +1,10 @@
+package com.shopifake.mainapi.dto;
+
+/**
+ * Résultat de recherche : le produit, sa pertinence et un extrait surligné (balises &lt;mark&gt;)
+ */
+public record ProductSearchResultDto(
+        ProductDto product,
+        float rank,
+        String highlight
+) {}
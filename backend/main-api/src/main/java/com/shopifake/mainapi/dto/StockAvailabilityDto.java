@@ -0,0 +1,12 @@
+package com.shopifake.mainapi.dto;
+
+/**
+ * Stock d'un variant : stock physique, quantité retenue par les réservations actives et stock disponible
+ */
+public record StockAvailabilityDto(
+        String sku,
+        Integer stock,
+        Integer reserved,
+        Integer available
+) {
+}
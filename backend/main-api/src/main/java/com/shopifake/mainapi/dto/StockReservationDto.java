@@ -0,0 +1,11 @@
+package com.shopifake.mainapi.dto;
+
+import java.time.Instant;
+
+public record StockReservationDto(
+        Long id,
+        String sku,
+        Integer quantity,
+        Instant expiresAt
+) {
+}
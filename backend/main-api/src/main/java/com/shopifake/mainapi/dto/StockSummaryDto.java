@@ -4,7 +4,7 @@ import java.math.BigDecimal;
 import java.util.List;
 
 public record StockSummaryDto(
-        Integer totalUnits,
+        Long totalUnits,
         BigDecimal totalValue,
         List<StockActionDto> recentActions
 ) {
@@ -0,0 +1,28 @@
+package com.shopifake.mainapi.dto.webhook;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductVariantsWebhookPayload {
+
+    private String event; // "variants.created"
+    private String timestamp;
+    private List<WebhookProductVariantDto> data;
+
+    public static ProductVariantsWebhookPayload created(List<WebhookProductVariantDto> data) {
+        return ProductVariantsWebhookPayload.builder()
+                .event("variants.created")
+                .timestamp(Instant.now().toString())
+                .data(data)
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.shopifake.mainapi.event;
+
+/**
+ * Événement publié par chaque écriture sur le catalogue d'une boutique.
+ * entityId identifie l'entité modifiée (catégorie, produit ou variant) ; null signifie "toute la boutique".
+ * Pour un mouvement de stock, stock porte le stock committé du variant tel que renvoyé par l'UPDATE.
+ */
+public record CatalogChangedEvent(
+        Long shopId,
+        Scope scope,
+        Long entityId,
+        VariantStock stock
+) {
+
+    public CatalogChangedEvent(Long shopId, Scope scope, Long entityId) {
+        this(shopId, scope, entityId, null);
+    }
+
+    /**
+     * Mouvement de stock d'un variant
+     */
+    public static CatalogChangedEvent stock(Long shopId, Long variantId, int stock, long version) {
+        return new CatalogChangedEvent(shopId, Scope.STOCK, variantId, new VariantStock(stock, version));
+    }
+
+    public enum Scope {
+        SHOP,
+        CATEGORY,
+        PRODUCT,
+        VARIANT,
+        STOCK
+    }
+
+    /**
+     * Stock d'un variant et sa version (product_variants.stock_version), qui ordonne les valeurs d'un même variant
+     */
+    public record VariantStock(
+            int stock,
+            long version
+    ) {
+    }
+}
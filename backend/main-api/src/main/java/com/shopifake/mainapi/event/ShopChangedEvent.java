@@ -0,0 +1,14 @@
+package com.shopifake.mainapi.event;
+
+import com.shopifake.mainapi.dto.ShopResponse;
+
+/**
+ * Événement publié par la création, la modification ou la suppression d'une boutique.
+ * previousDomainName est le nom de domaine avant l'écriture (null pour une création),
+ * shop l'état après l'écriture (null pour une suppression).
+ */
+public record ShopChangedEvent(
+        String previousDomainName,
+        ShopResponse shop
+) {
+}
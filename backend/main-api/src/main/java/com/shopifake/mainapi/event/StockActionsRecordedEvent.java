@@ -0,0 +1,15 @@
+package com.shopifake.mainapi.event;
+
+import com.shopifake.mainapi.dto.StockActionDto;
+
+import java.util.List;
+
+/**
+ * Événement publié par chaque écriture dans le journal stock_actions d'une boutique,
+ * avec les mouvements enregistrés dans leur ordre d'écriture.
+ */
+public record StockActionsRecordedEvent(
+        Long shopId,
+        List<StockActionDto> actions
+) {
+}
@@ -0,0 +1,47 @@
+package com.shopifake.mainapi.mapper;
+
+import com.shopifake.mainapi.dto.CategoryTreeDto;
+import com.shopifake.mainapi.dto.CategoryTreeNodeDto;
+import com.shopifake.mainapi.model.Category;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeBuilder {
+
+    private final CategoryMapper categoryMapper;
+
+    /**
+     * Construit l'arbre des catégories d'une boutique à partir de la liste à plat triée par position.
+     * Les catégories sont regroupées par parent en une seule passe, puis chaque noeud est visité une fois : O(n).
+     * L'ordre des frères suit l'ordre de la liste d'entrée.
+     */
+    public CategoryTreeDto build(List<Category> categories) {
+        Map<Long, List<Category>> childrenByParentId = new HashMap<>();
+        for (Category category : categories) {
+            childrenByParentId.computeIfAbsent(category.getParentId(), k -> new ArrayList<>()).add(category);
+        }
+
+        return new CategoryTreeDto(buildNodes(childrenByParentId, null));
+    }
+
+    private List<CategoryTreeNodeDto> buildNodes(Map<Long, List<Category>> childrenByParentId, Long parentId) {
+        List<Category> children = childrenByParentId.get(parentId);
+        if (children == null) {
+            return List.of();
+        }
+
+        List<CategoryTreeNodeDto> nodes = new ArrayList<>(children.size());
+        for (Category child : children) {
+            nodes.add(categoryMapper.toTreeNodeDto(child, buildNodes(childrenByParentId, child.getId())));
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+}
@@ -1,10 +1,9 @@
 package com.shopifake.mainapi.mapper;
 
+import com.shopifake.mainapi.cache.AttributeDefinitionCache;
 import com.shopifake.mainapi.dto.ProductVariantDto;
-import com.shopifake.mainapi.model.AttributeDefinition;
 import com.shopifake.mainapi.model.ProductVariant;
 import com.shopifake.mainapi.model.VariantAttribute;
-import com.shopifake.mainapi.repository.AttributeDefinitionRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -15,22 +14,32 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ProductVariantMapper {
 
-    private final AttributeDefinitionRepository attributeDefinitionRepository;
+    private final AttributeDefinitionCache attributeDefinitionCache;
 
     public ProductVariantDto toDto(ProductVariant variant) {
+        return toDto(variant, attributeDefinitionCache.getAttributeNames(variant.getProductId()));
+    }
+
+    /**
+     * Convertit un variant en résolvant les noms d'attributs depuis un dictionnaire déjà chargé
+     * (attributeDefinitionId -> attributeName), sans aucun accès à la base
+     */
+    public ProductVariantDto toDto(ProductVariant variant, Map<Long, String> attributeNames) {
         Map<String, String> attributes = new HashMap<>();
 
         if (variant.getAttributes() != null) {
             for (VariantAttribute va : variant.getAttributes()) {
-                AttributeDefinition def = attributeDefinitionRepository
-                        .findById(va.getAttributeDefinitionId())
-                        .orElse(null);
-                if (def != null) {
-                    attributes.put(def.getAttributeName(), va.getAttributeValue());
+                String name = attributeNames.get(va.getAttributeDefinitionId());
+                if (name != null) {
+                    attributes.put(name, va.getAttributeValue());
                 }
             }
         }
 
+        return buildDto(variant, attributes);
+    }
+
+    private ProductVariantDto buildDto(ProductVariant variant, Map<String, String> attributes) {
         return new ProductVariantDto(
                 variant.getId(),
                 variant.getProductId(),
@@ -45,4 +54,3 @@ public class ProductVariantMapper {
         );
     }
 }
-
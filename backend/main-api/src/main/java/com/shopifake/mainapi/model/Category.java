@@ -3,13 +3,20 @@ package com.shopifake.mainapi.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
 
 @Entity
 @Table(name = "categories")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "categories")
+@NaturalIdCache(region = "category-slugs")
 @Data
 @NoArgsConstructor
 public class Category {
@@ -18,6 +25,7 @@ public class Category {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId(mutable = true)
     @Column(name = "shop_id", nullable = false)
     private Long shopId;
 
@@ -27,6 +35,7 @@ public class Category {
     @Column(nullable = false, length = 100)
     private String label;
 
+    @NaturalId(mutable = true)
     @Column(nullable = false, length = 100)
     private String slug;
 
@@ -19,8 +19,10 @@ import java.util.List;
 @AllArgsConstructor
 public class ProductVariant {
 
+    // Séquence à pas de 50 (V16) : les ids sont réservés par blocs et les insertions peuvent être regroupées en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_variants_seq")
+    @SequenceGenerator(name = "product_variants_seq", sequenceName = "product_variants_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "product_id", nullable = false)
@@ -41,6 +43,9 @@ public class ProductVariant {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    @Column(name = "attribute_signature", length = 64)
+    private String attributeSignature;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
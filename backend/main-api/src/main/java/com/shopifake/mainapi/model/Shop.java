@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -12,6 +16,9 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "shops")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "shops")
+@NaturalIdCache(region = "shop-domains")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,6 +31,7 @@ public class Shop {
     @Column(name = "admin_id", nullable = false)
     private UUID adminId;
 
+    @NaturalId(mutable = true)
     @Column(name = "domain_name", unique = true, nullable = false, length = 255)
     private String domainName;
 
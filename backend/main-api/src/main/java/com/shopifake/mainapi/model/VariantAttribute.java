@@ -12,8 +12,10 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class VariantAttribute {
 
+    // Séquence à pas de 50 (V16) : les ids sont réservés par blocs et les insertions peuvent être regroupées en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "variant_attributes_seq")
+    @SequenceGenerator(name = "variant_attributes_seq", sequenceName = "variant_attributes_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "variant_id", nullable = false)
@@ -0,0 +1,145 @@
+package com.shopifake.mainapi.pagination;
+
+import com.shopifake.mainapi.dto.CursorPage;
+import com.shopifake.mainapi.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Curseurs opaques pour la pagination keyset.
+ * Un curseur encode la clé de tri du dernier élément renvoyé : (id), (name, id) ou (rank, id).
+ * Les requêtes demandent limit + 1 lignes pour savoir s'il existe une page suivante.
+ */
+public final class KeysetCursor {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Position de départ (name, id) : la première page part de ("", 0), inférieur à toute clé existante
+     */
+    public record NameIdPosition(String name, Long id) {
+        public static final NameIdPosition START = new NameIdPosition("", 0L);
+    }
+
+    /**
+     * Position de départ (rank, id) : la première page part de (+Infinity, 0), supérieur à toute pertinence
+     */
+    public record RankIdPosition(float rank, Long id) {
+        public static final RankIdPosition START = new RankIdPosition(Float.POSITIVE_INFINITY, 0L);
+    }
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Borne la taille de page demandée entre 1 et MAX_LIMIT
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("La taille de page doit être positive");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public static String encodeId(Long id) {
+        return encode(String.valueOf(id));
+    }
+
+    /**
+     * Décode un curseur (id) ; l'absence de curseur correspond à la première page
+     */
+    public static long decodeId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(decode(cursor));
+        } catch (NumberFormatException e) {
+            throw invalidCursor();
+        }
+    }
+
+    public static String encodeNameId(String name, Long id) {
+        return encode(id + ":" + name);
+    }
+
+    /**
+     * Décode un curseur (name, id) ; l'absence de curseur correspond à la première page
+     */
+    public static NameIdPosition decodeNameId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return NameIdPosition.START;
+        }
+        String value = decode(cursor);
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            throw invalidCursor();
+        }
+        try {
+            return new NameIdPosition(value.substring(separator + 1), Long.parseLong(value.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            throw invalidCursor();
+        }
+    }
+
+    public static String encodeRankId(float rank, Long id) {
+        return encode(id + ":" + Float.floatToIntBits(rank));
+    }
+
+    /**
+     * Décode un curseur (rank, id) ; le rang est encodé bit à bit pour que la comparaison d'égalité reste exacte
+     */
+    public static RankIdPosition decodeRankId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return RankIdPosition.START;
+        }
+        String value = decode(cursor);
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            throw invalidCursor();
+        }
+        try {
+            return new RankIdPosition(Float.intBitsToFloat(Integer.parseInt(value.substring(separator + 1))),
+                    Long.parseLong(value.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            throw invalidCursor();
+        }
+    }
+
+    /**
+     * Construit une page à partir de limit + 1 lignes : la ligne en trop indique qu'une page suivante existe
+     */
+    public static <T> CursorPage<T> page(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(List.copyOf(items), cursorOf.apply(items.get(limit - 1)));
+    }
+
+    private static String encode(String value) {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static BadRequestException invalidCursor() {
+        return new BadRequestException("Curseur de pagination invalide");
+    }
+}
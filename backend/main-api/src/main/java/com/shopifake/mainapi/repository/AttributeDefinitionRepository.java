@@ -4,6 +4,7 @@ import com.shopifake.mainapi.model.AttributeDefinition;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,6 +12,8 @@ public interface AttributeDefinitionRepository extends JpaRepository<AttributeDe
 
     List<AttributeDefinition> findByProductIdOrderByPosition(Long productId);
 
+    List<AttributeDefinition> findByProductIdIn(Collection<Long> productIds);
+
     boolean existsByProductIdAndAttributeName(Long productId, String attributeName);
 }
 
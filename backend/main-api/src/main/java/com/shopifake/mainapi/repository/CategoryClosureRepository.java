@@ -0,0 +1,91 @@
+package com.shopifake.mainapi.repository;
+
+import com.shopifake.mainapi.model.CategoryClosure;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Les écritures natives déclarent la table qu'elles modifient : sans cela, Hibernate viderait toutes les régions
+ * du cache de second niveau à chaque écriture
+ */
+@Repository
+public interface CategoryClosureRepository extends JpaRepository<CategoryClosure, CategoryClosure.Key> {
+
+    /**
+     * Vérifie si une catégorie est un descendant (ou la catégorie elle-même) d'une autre
+     */
+    boolean existsByAncestorIdAndDescendantId(Long ancestorId, Long descendantId);
+
+    /**
+     * Compte les ancêtres d'une catégorie, elle-même incluse : c'est son niveau dans l'arbre (1 pour une racine)
+     */
+    long countByDescendantId(Long descendantId);
+
+    /**
+     * Hauteur du sous-arbre d'une catégorie : profondeur de son descendant le plus éloigné (0 pour une feuille)
+     */
+    @Query("SELECT COALESCE(MAX(c.depth), 0) FROM CategoryClosure c WHERE c.ancestorId = :categoryId")
+    int findSubtreeHeight(@Param("categoryId") Long categoryId);
+
+    /**
+     * Enregistre le chemin d'une nouvelle catégorie vers elle-même
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "category_closure"))
+    @Query(value = """
+        INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+        VALUES (:categoryId, :categoryId, 0)
+        """, nativeQuery = true)
+    int insertSelfPath(@Param("categoryId") Long categoryId);
+
+    /**
+     * Enregistre les chemins d'une nouvelle catégorie (feuille) vers tous les ancêtres de son parent
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "category_closure"))
+    @Query(value = """
+        INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+        SELECT ancestor_id, :categoryId, depth + 1
+        FROM category_closure
+        WHERE descendant_id = :parentId
+        """, nativeQuery = true)
+    int insertAncestorPaths(@Param("categoryId") Long categoryId, @Param("parentId") Long parentId);
+
+    /**
+     * Détache le sous-arbre d'une catégorie de ses ancêtres actuels (les chemins internes au sous-arbre sont conservés)
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "category_closure"))
+    @Query(value = """
+        DELETE FROM category_closure
+        WHERE descendant_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = :categoryId)
+          AND ancestor_id IN (SELECT ancestor_id FROM category_closure WHERE descendant_id = :categoryId AND ancestor_id <> :categoryId)
+        """, nativeQuery = true)
+    int detachSubtree(@Param("categoryId") Long categoryId);
+
+    /**
+     * Rattache le sous-arbre d'une catégorie sous un nouveau parent
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "category_closure"))
+    @Query(value = """
+        INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+        SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1
+        FROM category_closure a
+        CROSS JOIN category_closure d
+        WHERE a.descendant_id = :parentId
+          AND d.ancestor_id = :categoryId
+        """, nativeQuery = true)
+    int attachSubtree(@Param("categoryId") Long categoryId, @Param("parentId") Long parentId);
+}
@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+public interface CategoryRepository extends JpaRepository<Category, Long>, CategoryRepositoryCustom {
 
     /**
      * Trouve toutes les catégories racines d'une boutique (sans parent), triées par position
@@ -28,9 +28,30 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> findByShopIdOrderByPosition(Long shopId);
 
     /**
-     * Trouve une catégorie par son ID et son shop_id
+     * Boutique propriétaire d'une catégorie, sans charger l'entité
      */
-    Optional<Category> findByIdAndShopId(Long id, Long shopId);
+    @Query("SELECT c.shopId FROM Category c WHERE c.id = :id")
+    Optional<Long> findShopIdById(@Param("id") Long id);
+
+    /**
+     * Plus grand suffixe N des slugs "base-N" de la boutique (0 si seule la base est prise, -1 si elle est libre).
+     * Une seule requête, servie par l'index unique (shop_id, slug)
+     */
+    @Query(value = """
+        SELECT coalesce(max(CASE WHEN slug = :baseSlug THEN 0
+                                 ELSE CAST(substring(slug FROM char_length(:baseSlug) + 2) AS BIGINT) END), -1)
+        FROM categories
+        WHERE shop_id = :shopId
+        AND id <> :excludeId
+        AND (slug = :baseSlug
+             OR (slug LIKE :pattern ESCAPE '\\'
+                 AND substring(slug FROM char_length(:baseSlug) + 2) ~ '^[1-9][0-9]*$'
+                 AND char_length(slug) <= char_length(:baseSlug) + 1 + 18))
+        """, nativeQuery = true)
+    long findMaxSlugSuffix(@Param("shopId") Long shopId,
+                           @Param("baseSlug") String baseSlug,
+                           @Param("pattern") String pattern,
+                           @Param("excludeId") Long excludeId);
 
     /**
      * Vérifie si une catégorie a des enfants
@@ -43,41 +64,26 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     boolean existsByShopIdAndSlug(Long shopId, String slug);
 
     /**
-     * Trouve une catégorie par shop_id et slug
-     */
-    Optional<Category> findByShopIdAndSlug(Long shopId, String slug);
-
-    /**
-     * Trouve tous les descendants d'une catégorie (requête récursive)
+     * Trouve une catégorie et tous ses descendants (table de fermeture)
      */
     @Query(value = """
-        WITH RECURSIVE category_tree AS (
-            SELECT id, shop_id, parent_id, label, slug, position, created_at, updated_at, 0 as depth
-            FROM categories
-            WHERE id = :categoryId
-            UNION ALL
-            SELECT c.id, c.shop_id, c.parent_id, c.label, c.slug, c.position, c.created_at, c.updated_at, ct.depth + 1
-            FROM categories c
-            INNER JOIN category_tree ct ON c.parent_id = ct.id
-        )
-        SELECT id, shop_id, parent_id, label, slug, position, created_at, updated_at FROM category_tree ORDER BY depth, position
+        SELECT c.id, c.shop_id, c.parent_id, c.label, c.slug, c.position, c.created_at, c.updated_at
+        FROM category_closure cc
+        INNER JOIN categories c ON c.id = cc.descendant_id
+        WHERE cc.ancestor_id = :categoryId
+        ORDER BY cc.depth, c.position
         """, nativeQuery = true)
     List<Category> findDescendants(@Param("categoryId") Long categoryId);
 
     /**
-     * Trouve tous les ancêtres d'une catégorie (chemin vers la racine)
+     * Trouve une catégorie et tous ses ancêtres, de la racine jusqu'à elle (table de fermeture)
      */
     @Query(value = """
-        WITH RECURSIVE category_path AS (
-            SELECT id, shop_id, parent_id, label, slug, position, 0 as depth, created_at, updated_at
-            FROM categories
-            WHERE id = :categoryId
-            UNION ALL
-            SELECT c.id, c.shop_id, c.parent_id, c.label, c.slug, c.position, cp.depth + 1, c.created_at, c.updated_at
-            FROM categories c
-            INNER JOIN category_path cp ON c.id = cp.parent_id
-        )
-        SELECT * FROM category_path ORDER BY depth DESC
+        SELECT c.id, c.shop_id, c.parent_id, c.label, c.slug, c.position, c.created_at, c.updated_at
+        FROM category_closure cc
+        INNER JOIN categories c ON c.id = cc.ancestor_id
+        WHERE cc.descendant_id = :categoryId
+        ORDER BY cc.depth DESC
         """, nativeQuery = true)
     List<Category> findAncestors(@Param("categoryId") Long categoryId);
 
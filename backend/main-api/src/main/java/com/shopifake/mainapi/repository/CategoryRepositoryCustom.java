@@ -0,0 +1,22 @@
+package com.shopifake.mainapi.repository;
+
+import com.shopifake.mainapi.model.Category;
+
+import java.util.Optional;
+
+/**
+ * Lectures de {@link Category} servies par le cache de second niveau d'Hibernate
+ * (par clé primaire et par identifiant naturel) au lieu d'une requête dérivée
+ */
+public interface CategoryRepositoryCustom {
+
+    /**
+     * Trouve une catégorie par son ID et son shop_id
+     */
+    Optional<Category> findByIdAndShopId(Long id, Long shopId);
+
+    /**
+     * Trouve une catégorie par shop_id et slug
+     */
+    Optional<Category> findByShopIdAndSlug(Long shopId, String slug);
+}
@@ -0,0 +1,32 @@
+package com.shopifake.mainapi.repository;
+
+import com.shopifake.mainapi.model.Category;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Transactionnel comme SimpleJpaRepository : la session doit rester ouverte pendant la résolution
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+class CategoryRepositoryCustomImpl implements CategoryRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Optional<Category> findByIdAndShopId(Long id, Long shopId) {
+        return Optional.ofNullable(entityManager.find(Category.class, id))
+                .filter(category -> category.getShopId().equals(shopId));
+    }
+
+    @Override
+    public Optional<Category> findByShopIdAndSlug(Long shopId, String slug) {
+        return entityManager.unwrap(Session.class)
+                .byNaturalId(Category.class)
+                .using("shopId", shopId)
+                .using("slug", slug)
+                .loadOptional();
+    }
+}
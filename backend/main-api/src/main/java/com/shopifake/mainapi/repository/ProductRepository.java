@@ -1,11 +1,16 @@
 package com.shopifake.mainapi.repository;
 
 import com.shopifake.mainapi.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,10 +22,165 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.categoryId IN :categoryIds ORDER BY p.name")
     List<Product> findByCategoryIdInOrderByName(@Param("categoryIds") List<Long> categoryIds);
 
+    /**
+     * Charge les produits d'une boutique avec leurs définitions d'attributs en une seule requête
+     */
+    @Query("""
+        SELECT p FROM Product p
+        LEFT JOIN FETCH p.attributeDefinitions ad
+        WHERE p.shopId = :shopId
+        ORDER BY p.name, p.id, ad.position
+    """)
+    List<Product> findByShopIdWithAttributeDefinitions(@Param("shopId") Long shopId);
+
+    /**
+     * Charge les produits d'une catégorie et de ses descendants avec leurs définitions d'attributs,
+     * par jointure sur la table de fermeture
+     */
+    @Query("""
+        SELECT p FROM Product p
+        LEFT JOIN FETCH p.attributeDefinitions ad
+        JOIN CategoryClosure cc ON cc.descendantId = p.categoryId
+        WHERE cc.ancestorId = :categoryId
+        ORDER BY p.name, p.id, ad.position
+    """)
+    List<Product> findBySubtreeWithAttributeDefinitions(@Param("categoryId") Long categoryId);
+
+    /**
+     * Charge un ensemble de produits avec leurs définitions d'attributs, triés par (name, id)
+     */
+    @Query("""
+        SELECT p FROM Product p
+        LEFT JOIN FETCH p.attributeDefinitions ad
+        WHERE p.id IN :ids
+        ORDER BY p.name, p.id, ad.position
+    """)
+    List<Product> findByIdInWithAttributeDefinitions(@Param("ids") List<Long> ids);
+
+    /**
+     * Boutique propriétaire d'un produit, sans charger l'entité
+     */
+    @Query("SELECT p.shopId FROM Product p WHERE p.id = :id")
+    Optional<Long> findShopIdById(@Param("id") Long id);
+
+    /**
+     * Boutiques propriétaires d'un ensemble de produits, en une seule requête
+     */
+    @Query("SELECT p.id AS id, p.shopId AS shopId FROM Product p WHERE p.id IN :ids")
+    List<ProductOwner> findOwnersByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Page keyset des produits d'une boutique après la position (afterName, afterId), indexée par (shop_id, name, id)
+     */
+    @Query(value = """
+        SELECT id FROM products
+        WHERE shop_id = :shopId
+        AND (name, id) > (:afterName, :afterId)
+        ORDER BY name, id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Long> findPageIdsByShopId(@Param("shopId") Long shopId,
+                                   @Param("afterName") String afterName,
+                                   @Param("afterId") Long afterId,
+                                   @Param("limit") int limit);
+
+    /**
+     * Page keyset des produits d'une catégorie après la position (afterName, afterId), indexée par (category_id, name, id)
+     */
+    @Query(value = """
+        SELECT id FROM products
+        WHERE category_id = :categoryId
+        AND (name, id) > (:afterName, :afterId)
+        ORDER BY name, id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Long> findPageIdsByCategoryId(@Param("categoryId") Long categoryId,
+                                       @Param("afterName") String afterName,
+                                       @Param("afterId") Long afterId,
+                                       @Param("limit") int limit);
+
+    /**
+     * Page de recherche plein texte, triée par pertinence décroissante puis par id, après la position (afterRank, afterId).
+     * Le GIN (shop_id, search_vector) sélectionne les correspondances ; ts_headline n'est calculé que pour la page renvoyée.
+     */
+    @Query(value = """
+        WITH q AS (SELECT websearch_to_tsquery('french', :query) AS query)
+        SELECT m.id AS id, m.rank AS rank,
+               ts_headline('french', m.name || ' ' || coalesce(m.description, ''), q.query,
+                           'StartSel=<mark>, StopSel=</mark>, MaxWords=30, MinWords=10, MaxFragments=2') AS headline
+        FROM (
+            SELECT p.id, p.name, p.description, ts_rank_cd(p.search_vector, q.query)::real AS rank
+            FROM products p, q
+            WHERE p.shop_id = :shopId
+            AND p.search_vector @@ q.query
+        ) m, q
+        WHERE m.rank < :afterRank OR (m.rank = :afterRank AND m.id > :afterId)
+        ORDER BY m.rank DESC, m.id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<SearchHit> search(@Param("shopId") Long shopId,
+                           @Param("query") String query,
+                           @Param("afterRank") float afterRank,
+                           @Param("afterId") Long afterId,
+                           @Param("limit") int limit);
+
+    /**
+     * Recalcule les valeurs d'attributs indexées par la recherche à partir des variants du produit
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "products"))
+    @Query(value = """
+        UPDATE products p
+        SET search_attributes = coalesce((
+            SELECT string_agg(DISTINCT va.attribute_value, ' ')
+            FROM product_variants v
+            INNER JOIN variant_attributes va ON va.variant_id = v.id
+            WHERE v.product_id = p.id
+        ), '')
+        WHERE p.id = :productId
+        """, nativeQuery = true)
+    void refreshSearchAttributes(@Param("productId") Long productId);
+
+    /**
+     * Plus grand suffixe N des slugs "base-N" de la catégorie (0 si seule la base est prise, -1 si elle est libre).
+     * Une seule requête, servie par l'index unique (category_id, slug)
+     */
+    @Query(value = """
+        SELECT coalesce(max(CASE WHEN slug = :baseSlug THEN 0
+                                 ELSE CAST(substring(slug FROM char_length(:baseSlug) + 2) AS BIGINT) END), -1)
+        FROM products
+        WHERE category_id = :categoryId
+        AND id <> :excludeId
+        AND (slug = :baseSlug
+             OR (slug LIKE :pattern ESCAPE '\\'
+                 AND substring(slug FROM char_length(:baseSlug) + 2) ~ '^[1-9][0-9]*$'
+                 AND char_length(slug) <= char_length(:baseSlug) + 1 + 18))
+        """, nativeQuery = true)
+    long findMaxSlugSuffix(@Param("categoryId") Long categoryId,
+                           @Param("baseSlug") String baseSlug,
+                           @Param("pattern") String pattern,
+                           @Param("excludeId") Long excludeId);
+
     Optional<Product> findByCategoryIdAndSlug(Long categoryId, String slug);
 
-    boolean existsByCategoryIdAndSlug(Long categoryId, String slug);
 
-    boolean existsByCategoryIdAndSlugAndIdNot(Long categoryId, String slug, Long id);
-}
+    /**
+     * Boutique propriétaire d'un produit
+     */
+    interface ProductOwner {
+        Long getId();
+
+        Long getShopId();
+    }
 
+    /**
+     * Résultat brut de la recherche plein texte
+     */
+    interface SearchHit {
+        Long getId();
+
+        Float getRank();
+
+        String getHeadline();
+    }
+}
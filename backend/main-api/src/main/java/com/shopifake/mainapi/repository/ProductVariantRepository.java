@@ -1,11 +1,16 @@
 package com.shopifake.mainapi.repository;
 
 import com.shopifake.mainapi.model.ProductVariant;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,34 +21,114 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
 
     Optional<ProductVariant> findBySku(String sku);
 
+    /**
+     * Charge tous les variants des produits d'une boutique avec leurs attributs en une seule requête
+     */
+    @Query("""
+        SELECT v FROM ProductVariant v
+        LEFT JOIN FETCH v.attributes
+        WHERE v.productId IN (SELECT p.id FROM Product p WHERE p.shopId = :shopId)
+        ORDER BY v.productId, v.id
+    """)
+    List<ProductVariant> findByShopIdWithAttributes(@Param("shopId") Long shopId);
+
+    /**
+     * Charge tous les variants des produits d'une catégorie et de ses descendants avec leurs attributs,
+     * par jointure sur la table de fermeture
+     */
+    @Query("""
+        SELECT v FROM ProductVariant v
+        LEFT JOIN FETCH v.attributes
+        JOIN Product p ON p.id = v.productId
+        JOIN CategoryClosure cc ON cc.descendantId = p.categoryId
+        WHERE cc.ancestorId = :categoryId
+        ORDER BY v.productId, v.id
+    """)
+    List<ProductVariant> findBySubtreeWithAttributes(@Param("categoryId") Long categoryId);
+
     boolean existsBySku(String sku);
 
     boolean existsBySkuAndIdNot(String sku, Long id);
 
+    /**
+     * Charge les variants d'un ensemble de produits avec leurs attributs en une seule requête
+     */
     @Query("""
-        SELECT CASE WHEN COUNT(v) > 0 THEN true ELSE false END
-        FROM ProductVariant v
-        JOIN v.attributes va
-        WHERE v.productId = :productId
-        AND v.id != :excludeVariantId
-        GROUP BY v.id
-        HAVING COUNT(va) = :attributeCount
-        AND SUM(CASE WHEN CONCAT(va.attributeDefinitionId, ':', va.attributeValue) IN :attributeCombination THEN 1 ELSE 0 END) = :attributeCount
+        SELECT v FROM ProductVariant v
+        LEFT JOIN FETCH v.attributes
+        WHERE v.productId IN :productIds
+        ORDER BY v.productId, v.id
+    """)
+    List<ProductVariant> findByProductIdInWithAttributes(@Param("productIds") List<Long> productIds);
+
+    /**
+     * Charge un ensemble de variants avec leurs attributs, triés par id
+     */
+    @Query("""
+        SELECT v FROM ProductVariant v
+        LEFT JOIN FETCH v.attributes
+        WHERE v.id IN :ids
+        ORDER BY v.id
     """)
-    boolean existsByProductIdAndAttributeCombination(
-            @Param("productId") Long productId,
-            @Param("excludeVariantId") Long excludeVariantId,
-            @Param("attributeCombination") List<String> attributeCombination,
-            @Param("attributeCount") long attributeCount
-    );
+    List<ProductVariant> findByIdInWithAttributes(@Param("ids") List<Long> ids);
+
+    /**
+     * Page keyset des variants d'un produit après afterId, indexée par (product_id, id)
+     */
+    @Query(value = """
+        SELECT id FROM product_variants
+        WHERE product_id = :productId
+        AND id > :afterId
+        ORDER BY id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Long> findPageIdsByProductId(@Param("productId") Long productId,
+                                      @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
 
-    @Query("SELECT COALESCE(SUM(pv.stock), 0) FROM ProductVariant pv WHERE pv.shopId = :shopId")
-    Integer sumStockByShopId(@Param("shopId") Long shopId);
+    /**
+     * Vérifie si une combinaison d'attributs existe déjà pour un produit (index unique product_id, attribute_signature)
+     */
+    boolean existsByProductIdAndAttributeSignature(Long productId, String attributeSignature);
 
-    @Query("SELECT COALESCE(SUM(pv.stock * pv.price), 0) FROM ProductVariant pv WHERE pv.shopId = :shopId")
-    java.math.BigDecimal sumStockValueByShopId(@Param("shopId") Long shopId);
+    /**
+     * SKU déjà pris parmi un ensemble de SKU
+     */
+    @Query("SELECT v.sku FROM ProductVariant v WHERE v.sku IN :skus")
+    List<String> findExistingSkus(@Param("skus") Collection<String> skus);
+
+    /**
+     * Combinaisons d'attributs déjà présentes parmi un ensemble de signatures, pour un ensemble de produits
+     */
+    @Query("""
+        SELECT v.productId AS productId, v.attributeSignature AS attributeSignature
+        FROM ProductVariant v
+        WHERE v.productId IN :productIds
+        AND v.attributeSignature IN :signatures
+    """)
+    List<VariantSignature> findSignatures(@Param("productIds") Collection<Long> productIds,
+                                          @Param("signatures") Collection<String> signatures);
 
     @Query("SELECT pv FROM ProductVariant pv LEFT JOIN FETCH pv.attributes WHERE pv.id = :id")
     Optional<ProductVariant> findByIdWithAttributes(@Param("id") Long id);
+
+    /**
+     * Remplace le stock d'un variant s'il couvre la quantité réservée ; renvoie 0 sinon.
+     * La ligne reste verrouillée jusqu'au commit : aucune réservation ne peut s'intercaler.
+     */
+    // Espace déclaré : sans espace, Hibernate viderait tout le cache de second niveau à chaque appel
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "product_variants"))
+    @Query(value = "UPDATE product_variants SET stock = :stock WHERE id = :id AND reserved_stock <= :stock", nativeQuery = true)
+    int updateStockCoveringReserved(@Param("id") Long id, @Param("stock") int stock);
+
+    /**
+     * Combinaison d'attributs d'un variant existant
+     */
+    interface VariantSignature {
+        Long getProductId();
+
+        String getAttributeSignature();
+    }
 }
 
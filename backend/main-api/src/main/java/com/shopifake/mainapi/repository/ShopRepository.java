@@ -1,15 +1,21 @@
 package com.shopifake.mainapi.repository;
 
 import com.shopifake.mainapi.model.Shop;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ShopRepository extends JpaRepository<Shop, Long> {
+public interface ShopRepository extends JpaRepository<Shop, Long>, ShopRepositoryCustom {
 
     /**
      * Trouver toutes les boutiques d'un administrateur
@@ -17,9 +23,16 @@ public interface ShopRepository extends JpaRepository<Shop, Long> {
     List<Shop> findByAdminId(UUID adminId);
 
     /**
-     * Trouver une boutique par son nom de domaine
+     * Page keyset des boutiques après afterId
      */
-    Optional<Shop> findByDomainName(String domainName);
+    List<Shop> findByIdGreaterThanOrderById(Long afterId, Limit limit);
+
+    /**
+     * Vérifier qu'une boutique existe (déclaré ici pour lever l'ambiguïté avec CrudRepository,
+     * implémenté par {@link ShopRepositoryCustom})
+     */
+    @Override
+    boolean existsById(Long id);
 
     /**
      * Vérifier si un nom de domaine existe déjà
@@ -30,5 +43,14 @@ public interface ShopRepository extends JpaRepository<Shop, Long> {
      * Vérifier si un nom de domaine existe pour une boutique différente
      */
     boolean existsByDomainNameAndIdNot(String domainName, Long id);
-}
 
+    /**
+     * Incrémente la version du catalogue d'une boutique
+     */
+    // catalog_version n'est pas mappée sur Shop : l'espace déclaré ne correspond à aucune région du cache
+    // de second niveau (sans espace, Hibernate viderait tout le cache à chaque écriture sur le catalogue)
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "shops.catalog_version"))
+    @Query(value = "UPDATE shops SET catalog_version = catalog_version + 1 WHERE id = :shopId", nativeQuery = true)
+    int incrementCatalogVersion(@Param("shopId") Long shopId);
+}
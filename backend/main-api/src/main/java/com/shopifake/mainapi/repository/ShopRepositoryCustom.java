@@ -0,0 +1,22 @@
+package com.shopifake.mainapi.repository;
+
+import com.shopifake.mainapi.model.Shop;
+
+import java.util.Optional;
+
+/**
+ * Lectures de {@link Shop} servies par le cache de second niveau d'Hibernate
+ * (par clé primaire et par identifiant naturel) au lieu d'une requête dérivée
+ */
+public interface ShopRepositoryCustom {
+
+    /**
+     * Trouver une boutique par son nom de domaine
+     */
+    Optional<Shop> findByDomainName(String domainName);
+
+    /**
+     * Vérifier qu'une boutique existe, par chargement de l'entité plutôt que par un count
+     */
+    boolean existsById(Long id);
+}
@@ -0,0 +1,29 @@
+package com.shopifake.mainapi.repository;
+
+import com.shopifake.mainapi.model.Shop;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Transactionnel comme SimpleJpaRepository : la session doit rester ouverte pendant la résolution
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+class ShopRepositoryCustomImpl implements ShopRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Optional<Shop> findByDomainName(String domainName) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Shop.class)
+                .loadOptional(domainName);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return entityManager.find(Shop.class, id) != null;
+    }
+}
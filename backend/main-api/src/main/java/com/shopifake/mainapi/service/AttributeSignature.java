@@ -0,0 +1,41 @@
+package com.shopifake.mainapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Empreinte canonique d'une combinaison d'attributs (attributeDefinitionId -> value) :
+ * SHA-256 en hexadécimal des couples triés par definitionId, chacun encodé "definitionId:longueur:valeur"
+ * et séparés par un saut de ligne. Le préfixe de longueur rend l'encodage non ambigu quelle que soit la valeur.
+ * Doit rester identique au calcul SQL de la migration V15.
+ */
+public final class AttributeSignature {
+
+    private AttributeSignature() {
+    }
+
+    public static String of(Map<Long, String> attributes) {
+        StringBuilder canonical = new StringBuilder();
+        new TreeMap<>(attributes).forEach((definitionId, value) -> {
+            if (!canonical.isEmpty()) {
+                canonical.append('\n');
+            }
+            canonical.append(definitionId)
+                    .append(':')
+                    .append(value.codePointCount(0, value.length()))
+                    .append(':')
+                    .append(value);
+        });
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
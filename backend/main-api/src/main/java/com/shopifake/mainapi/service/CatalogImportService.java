@@ -0,0 +1,648 @@
+package com.shopifake.mainapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.config.ImportProperties;
+import com.shopifake.mainapi.dto.CatalogImportJobDto;
+import com.shopifake.mainapi.dto.CatalogImportRow;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.streaming.CatalogFileFormat;
+import com.shopifake.mainapi.streaming.CatalogImportReader;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Import de catalogue en masse (onboarding d'un marchand).
+ * Le fichier reçu est recopié sur disque, puis traité en tâche de fond en une seule transaction :
+ * les lignes sont lues en flux et chargées dans une table temporaire par COPY FROM STDIN,
+ * puis fusionnées de façon ensembliste dans products, attribute_definitions, product_variants et variant_attributes.
+ * Un import est entièrement appliqué ou entièrement rejeté.
+ * Les produits sont identifiés par (catégorie, slug du nom) et les variants par leur SKU : un produit ou un variant
+ * existant est mis à jour (prix, stock, statut), les attributs d'un variant existant ne changent pas.
+ * Les stocks importés remplacent les stocks existants sans passer par le journal des mouvements de stock.
+ */
+@Service
+@Slf4j
+public class CatalogImportService {
+
+    // Pas des séquences product_variants_id_seq et variant_attributes_id_seq (V16)
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final String VARIANT_SEQUENCE = "product_variants_id_seq";
+    private static final String VARIANT_ATTRIBUTE_SEQUENCE = "variant_attributes_id_seq";
+    private static final int NOTIFICATION_CHUNK_SIZE = 1_000;
+    private static final int COPY_BUFFER_SIZE = 65_536;
+
+    private static final String CREATE_STAGING_SQL = """
+            CREATE TEMPORARY TABLE import_rows (
+                line_no BIGINT NOT NULL,
+                category_id BIGINT NOT NULL,
+                product_name VARCHAR(255) NOT NULL,
+                product_slug VARCHAR(255) NOT NULL,
+                description TEXT,
+                product_active BOOLEAN,
+                sku VARCHAR(100) NOT NULL,
+                price NUMERIC(10, 2) NOT NULL,
+                stock INTEGER NOT NULL,
+                variant_active BOOLEAN,
+                attributes JSON NOT NULL,
+                product_id BIGINT,
+                variant_id BIGINT,
+                existing BOOLEAN NOT NULL DEFAULT false,
+                attribute_signature VARCHAR(64)
+            ) ON COMMIT DROP
+            """;
+
+    private static final String COPY_SQL = """
+            COPY import_rows (line_no, category_id, product_name, product_slug, description, product_active,
+                              sku, price, stock, variant_active, attributes)
+            FROM STDIN (FORMAT csv)
+            """;
+
+    private static final String UNKNOWN_CATEGORY_SQL = """
+            SELECT r.line_no FROM import_rows r
+            WHERE NOT EXISTS (SELECT 1 FROM categories c WHERE c.id = r.category_id AND c.shop_id = ?)
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    private static final String DUPLICATE_SKU_SQL = """
+            SELECT (array_agg(line_no ORDER BY line_no))[2] AS line_no FROM import_rows
+            GROUP BY sku HAVING count(*) > 1
+            ORDER BY line_no LIMIT 1
+            """;
+
+    private static final String FOREIGN_SKU_SQL = """
+            SELECT r.line_no FROM import_rows r
+            INNER JOIN product_variants v ON v.sku = r.sku
+            WHERE v.shop_id <> ?
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    private static final String RESOLVE_PRODUCTS_SQL = """
+            UPDATE import_rows r SET product_id = p.id
+            FROM products p
+            WHERE r.product_id IS NULL AND p.category_id = r.category_id AND p.slug = r.product_slug
+            """;
+
+    // La première ligne d'un produit porte ses champs ; un champ absent conserve sa valeur
+    private static final String UPDATE_PRODUCTS_SQL = """
+            UPDATE products p
+            SET name = s.product_name,
+                description = coalesce(s.description, p.description),
+                is_active = coalesce(s.product_active, p.is_active),
+                updated_at = CURRENT_TIMESTAMP
+            FROM (
+                SELECT DISTINCT ON (product_id) product_id, product_name, description, product_active
+                FROM import_rows
+                WHERE product_id IS NOT NULL
+                ORDER BY product_id, line_no
+            ) s
+            WHERE p.id = s.product_id
+            """;
+
+    // Un produit créé entre-temps par une autre écriture est adopté par la résolution suivante
+    private static final String INSERT_PRODUCTS_SQL = """
+            INSERT INTO products (category_id, shop_id, name, slug, description, is_active)
+            SELECT DISTINCT ON (category_id, product_slug)
+                   category_id, ?, product_name, product_slug, description, coalesce(product_active, true)
+            FROM import_rows
+            WHERE product_id IS NULL
+            ORDER BY category_id, product_slug, line_no
+            ON CONFLICT (category_id, slug) DO NOTHING
+            """;
+
+    // Ajouter une définition à un produit qui a déjà des variants les rendrait incomplets
+    private static final String NEW_ATTRIBUTE_ON_EXISTING_VARIANTS_SQL = """
+            SELECT r.line_no FROM import_rows r
+            CROSS JOIN LATERAL json_object_keys(r.attributes) AS a(name)
+            WHERE NOT EXISTS (SELECT 1 FROM attribute_definitions d WHERE d.product_id = r.product_id AND d.attribute_name = a.name)
+            AND EXISTS (SELECT 1 FROM product_variants v WHERE v.product_id = r.product_id)
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    // Positions dans l'ordre d'apparition des attributs (JSON conserve l'ordre des clés, contrairement à JSONB)
+    private static final String INSERT_DEFINITIONS_SQL = """
+            INSERT INTO attribute_definitions (product_id, attribute_name, position)
+            SELECT n.product_id, n.attribute_name,
+                   coalesce((SELECT max(d.position) FROM attribute_definitions d WHERE d.product_id = n.product_id), -1)
+                       + row_number() OVER (PARTITION BY n.product_id ORDER BY n.first_line_no, n.first_ordinal)
+            FROM (
+                SELECT r.product_id, a.name AS attribute_name, min(r.line_no) AS first_line_no, min(a.ordinal) AS first_ordinal
+                FROM import_rows r
+                CROSS JOIN LATERAL json_object_keys(r.attributes) WITH ORDINALITY AS a(name, ordinal)
+                GROUP BY r.product_id, a.name
+            ) n
+            WHERE NOT EXISTS (
+                SELECT 1 FROM attribute_definitions d WHERE d.product_id = n.product_id AND d.attribute_name = n.attribute_name
+            )
+            """;
+
+    // Toutes les clés sont désormais des définitions du produit : il suffit de comparer les nombres
+    private static final String INCOMPLETE_ATTRIBUTES_SQL = """
+            SELECT r.line_no FROM import_rows r
+            WHERE (SELECT count(*) FROM json_object_keys(r.attributes))
+                <> (SELECT count(*) FROM attribute_definitions d WHERE d.product_id = r.product_id)
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    // Même encodage que AttributeSignature.of et la migration V15
+    private static final String COMPUTE_SIGNATURES_SQL = """
+            UPDATE import_rows r
+            SET attribute_signature = encode(sha256(convert_to(coalesce((
+                SELECT string_agg(d.id || ':' || char_length(a.value) || ':' || a.value, E'\\n' ORDER BY d.id)
+                FROM json_each_text(r.attributes) AS a(name, value)
+                INNER JOIN attribute_definitions d ON d.product_id = r.product_id AND d.attribute_name = a.name
+            ), ''), 'UTF8')), 'hex')
+            """;
+
+    private static final String RESOLVE_VARIANTS_SQL = """
+            UPDATE import_rows r SET variant_id = v.id, existing = true
+            FROM product_variants v
+            WHERE v.sku = r.sku
+            """;
+
+    private static final String CHANGED_VARIANT_SQL = """
+            SELECT r.line_no FROM import_rows r
+            INNER JOIN product_variants v ON v.id = r.variant_id
+            WHERE r.existing
+            AND (v.product_id <> r.product_id OR v.attribute_signature IS DISTINCT FROM r.attribute_signature)
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    private static final String DUPLICATE_COMBINATION_SQL = """
+            SELECT (array_agg(line_no ORDER BY line_no))[2] AS line_no FROM import_rows
+            GROUP BY product_id, attribute_signature HAVING count(*) > 1
+            ORDER BY line_no LIMIT 1
+            """;
+
+    private static final String EXISTING_COMBINATION_SQL = """
+            SELECT r.line_no FROM import_rows r
+            INNER JOIN product_variants v ON v.product_id = r.product_id AND v.attribute_signature = r.attribute_signature
+            WHERE v.sku <> r.sku
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    private static final String COUNT_NEW_VARIANTS_SQL = "SELECT count(*) FROM import_rows WHERE NOT existing";
+
+    // Chaque valeur de séquence hi réserve les ids [hi - 49, hi], comme l'optimiseur pooled d'Hibernate
+    private static final String ASSIGN_VARIANT_IDS_SQL = """
+            UPDATE import_rows r
+            SET variant_id = b.hi - 49 + n.rn % 50
+            FROM (
+                SELECT line_no, row_number() OVER (ORDER BY line_no) - 1 AS rn
+                FROM import_rows
+                WHERE NOT existing
+            ) n
+            INNER JOIN unnest(?::bigint[]) WITH ORDINALITY AS b(hi, block) ON b.block = n.rn / 50 + 1
+            WHERE r.line_no = n.line_no
+            """;
+
+    private static final String INSERT_VARIANTS_SQL = """
+            INSERT INTO product_variants (id, product_id, shop_id, sku, price, stock, is_active, attribute_signature)
+            SELECT variant_id, product_id, ?, sku, price, stock, coalesce(variant_active, true), attribute_signature
+            FROM import_rows
+            WHERE NOT existing
+            ORDER BY variant_id
+            """;
+
+    private static final String COUNT_EXISTING_VARIANTS_SQL = "SELECT count(*) FROM import_rows WHERE existing";
+
+    // Le stock importé doit couvrir la quantité réservée : les variants qui ne la couvrent pas sont laissés
+    // intacts et l'import est rejeté
+    private static final String UPDATE_VARIANTS_SQL = """
+            UPDATE product_variants v
+            SET price = r.price,
+                stock = r.stock,
+                is_active = coalesce(r.variant_active, v.is_active),
+                updated_at = CURRENT_TIMESTAMP
+            FROM import_rows r
+            WHERE r.existing AND v.id = r.variant_id AND r.stock >= v.reserved_stock
+            """;
+
+    private static final String STOCK_BELOW_RESERVED_SQL = """
+            SELECT r.line_no FROM import_rows r
+            INNER JOIN product_variants v ON v.id = r.variant_id
+            WHERE r.existing AND r.stock < v.reserved_stock
+            ORDER BY r.line_no LIMIT 1
+            """;
+
+    private static final String COUNT_NEW_VARIANT_ATTRIBUTES_SQL = """
+            SELECT count(*) FROM import_rows r
+            CROSS JOIN LATERAL json_object_keys(r.attributes)
+            WHERE NOT r.existing
+            """;
+
+    private static final String INSERT_VARIANT_ATTRIBUTES_SQL = """
+            INSERT INTO variant_attributes (id, variant_id, attribute_definition_id, attribute_value)
+            SELECT b.hi - 49 + n.rn % 50, n.variant_id, n.definition_id, n.value
+            FROM (
+                SELECT r.variant_id, d.id AS definition_id, a.value,
+                       row_number() OVER (ORDER BY r.variant_id, d.id) - 1 AS rn
+                FROM import_rows r
+                CROSS JOIN LATERAL json_each_text(r.attributes) AS a(name, value)
+                INNER JOIN attribute_definitions d ON d.product_id = r.product_id AND d.attribute_name = a.name
+                WHERE NOT r.existing
+            ) n
+            INNER JOIN unnest(?::bigint[]) WITH ORDINALITY AS b(hi, block) ON b.block = n.rn / 50 + 1
+            """;
+
+    private static final String REFRESH_SEARCH_ATTRIBUTES_SQL = """
+            UPDATE products p
+            SET search_attributes = coalesce((
+                SELECT string_agg(DISTINCT va.attribute_value, ' ')
+                FROM product_variants v
+                INNER JOIN variant_attributes va ON va.variant_id = v.id
+                WHERE v.product_id = p.id
+            ), '')
+            WHERE p.id IN (SELECT DISTINCT product_id FROM import_rows)
+            """;
+
+    private static final String CREATED_VARIANT_IDS_SQL = "SELECT variant_id FROM import_rows WHERE NOT existing ORDER BY line_no";
+
+    private final ShopRepository shopRepository;
+    private final CatalogImportReader catalogImportReader;
+    private final ChatbotWebhookService chatbotWebhookService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate importTransaction;
+    private final ThreadPoolTaskExecutor executor;
+    private final Cache<String, Job> jobs;
+    private final long maxRows;
+
+    public CatalogImportService(ShopRepository shopRepository,
+                                CatalogImportReader catalogImportReader,
+                                ChatbotWebhookService chatbotWebhookService,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper,
+                                DataSource dataSource,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ImportProperties importProperties) {
+        this.shopRepository = shopRepository;
+        this.catalogImportReader = catalogImportReader;
+        this.chatbotWebhookService = chatbotWebhookService;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.importTransaction = new TransactionTemplate(transactionManager);
+        this.maxRows = importProperties.getMaxRows();
+
+        // Exécuteur dédié : un import long ne doit pas occuper l'exécuteur @Async des webhooks
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(importProperties.getMaxConcurrentJobs());
+        this.executor.setMaxPoolSize(importProperties.getMaxConcurrentJobs());
+        this.executor.setQueueCapacity(importProperties.getMaxQueuedJobs());
+        this.executor.setThreadNamePrefix("catalog-import-");
+        this.executor.initialize();
+
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(importProperties.getJobRetention())
+                .build();
+    }
+
+    /**
+     * Enregistre le fichier reçu et planifie son import ; le statut est ensuite consultable par getJob
+     */
+    public CatalogImportJobDto startImport(Long shopId, String contentType, InputStream body) {
+        CatalogFileFormat format = CatalogFileFormat.fromContentType(contentType);
+        if (!shopRepository.existsById(shopId)) {
+            throw new ResourceNotFoundException("Boutique", "id", shopId);
+        }
+
+        Path file = spool(body, format);
+        Job job = new Job(UUID.randomUUID().toString(), shopId);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, file, format));
+        } catch (TaskRejectedException e) {
+            jobs.invalidate(job.id);
+            deleteQuietly(file);
+            throw new BadRequestException("Trop d'imports en cours, veuillez réessayer plus tard");
+        }
+        log.info("Catalog import {} queued for shop {} ({})", job.id, shopId, format);
+        return job.toDto();
+    }
+
+    /**
+     * Statut d'un import de la boutique
+     */
+    public CatalogImportJobDto getJob(Long shopId, String jobId) {
+        Job job = jobs.getIfPresent(jobId);
+        if (job == null || !job.shopId.equals(shopId)) {
+            throw new ResourceNotFoundException("Import", "id", jobId);
+        }
+        return job.toDto();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // ========== Méthodes privées ==========
+
+    private void run(Job job, Path file, CatalogFileFormat format) {
+        try {
+            MergeResult result = importTransaction.execute(status -> importCatalog(job, file, format));
+            job.complete(result);
+            log.info("Catalog import {} completed for shop {}: {} products created, {} updated, {} variants created, {} updated",
+                    job.id, job.shopId, result.productsCreated(), result.productsUpdated(),
+                    result.variantsCreated(), result.variantsUpdated());
+            notifyChatbot(result.createdVariantIds());
+        } catch (BadRequestException e) {
+            job.fail(e.getMessage());
+            log.info("Catalog import {} rejected for shop {}: {}", job.id, job.shopId, e.getMessage());
+        } catch (RuntimeException e) {
+            job.fail("Échec de l'import");
+            log.error("Catalog import {} failed for shop {}", job.id, job.shopId, e);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private MergeResult importCatalog(Job job, Path file, CatalogFileFormat format) {
+        Long shopId = job.shopId;
+        job.status = CatalogImportJobDto.Status.STAGING;
+        jdbcTemplate.execute(CREATE_STAGING_SQL);
+        if (copyRows(job, file, format) == 0) {
+            throw new BadRequestException("Le fichier d'import est vide");
+        }
+        // Les tables temporaires ne sont jamais analysées automatiquement
+        jdbcTemplate.execute("ANALYZE import_rows");
+
+        job.status = CatalogImportJobDto.Status.MERGING;
+        failIfAny(UNKNOWN_CATEGORY_SQL, "la catégorie n'existe pas dans cette boutique", shopId);
+        failIfAny(DUPLICATE_SKU_SQL, "SKU présent plusieurs fois dans le fichier");
+        failIfAny(FOREIGN_SKU_SQL, "SKU déjà utilisé par une autre boutique", shopId);
+
+        jdbcTemplate.update(RESOLVE_PRODUCTS_SQL);
+        int productsUpdated = jdbcTemplate.update(UPDATE_PRODUCTS_SQL);
+        int productsCreated = jdbcTemplate.update(INSERT_PRODUCTS_SQL, shopId);
+        jdbcTemplate.update(RESOLVE_PRODUCTS_SQL);
+
+        failIfAny(NEW_ATTRIBUTE_ON_EXISTING_VARIANTS_SQL, "attribut inconnu pour ce produit, qui a déjà des variants");
+        jdbcTemplate.update(INSERT_DEFINITIONS_SQL);
+        failIfAny(INCOMPLETE_ATTRIBUTES_SQL, "les attributs ne correspondent pas aux définitions du produit");
+        jdbcTemplate.update(COMPUTE_SIGNATURES_SQL);
+
+        jdbcTemplate.update(RESOLVE_VARIANTS_SQL);
+        failIfAny(CHANGED_VARIANT_SQL, "ce SKU existe déjà pour un autre produit ou une autre combinaison d'attributs");
+        failIfAny(DUPLICATE_COMBINATION_SQL, "combinaison d'attributs présente plusieurs fois pour ce produit");
+        failIfAny(EXISTING_COMBINATION_SQL, "un variant avec cette combinaison d'attributs existe déjà");
+
+        Long[] variantIdBlocks = allocateIdBlocks(VARIANT_SEQUENCE, jdbcTemplate.queryForObject(COUNT_NEW_VARIANTS_SQL, Long.class));
+        jdbcTemplate.update(ASSIGN_VARIANT_IDS_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", variantIdBlocks)));
+        int variantsCreated = jdbcTemplate.update(INSERT_VARIANTS_SQL, shopId);
+        int variantsUpdated = jdbcTemplate.update(UPDATE_VARIANTS_SQL);
+        if (variantsUpdated < jdbcTemplate.queryForObject(COUNT_EXISTING_VARIANTS_SQL, Long.class)) {
+            failIfAny(STOCK_BELOW_RESERVED_SQL, "le stock est inférieur à la quantité réservée du variant");
+            // Réservation libérée depuis l'UPDATE : la ligne fautive n'est plus identifiable
+            throw new BadRequestException("Le stock d'un variant est inférieur à sa quantité réservée");
+        }
+
+        Long[] attributeIdBlocks = allocateIdBlocks(VARIANT_ATTRIBUTE_SEQUENCE,
+                jdbcTemplate.queryForObject(COUNT_NEW_VARIANT_ATTRIBUTES_SQL, Long.class));
+        jdbcTemplate.update(INSERT_VARIANT_ATTRIBUTES_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", attributeIdBlocks)));
+        jdbcTemplate.update(REFRESH_SEARCH_ATTRIBUTES_SQL);
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.PRODUCT, null));
+        return new MergeResult(productsCreated, productsUpdated, variantsCreated, variantsUpdated,
+                jdbcTemplate.queryForList(CREATED_VARIANT_IDS_SQL, Long.class));
+    }
+
+    /**
+     * Lit le fichier en flux et envoie les lignes validées à la table temporaire par COPY
+     */
+    private long copyRows(Job job, Path file, CatalogFileFormat format) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            PGCopyOutputStream copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class), COPY_SQL, COPY_BUFFER_SIZE);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+            try {
+                catalogImportReader.read(file, format, (lineNo, row) -> {
+                    if (lineNo > maxRows) {
+                        throw new BadRequestException("Le fichier dépasse " + maxRows + " lignes");
+                    }
+                    writeRow(writer, lineNo, row);
+                    job.rowsRead = lineNo;
+                });
+                writer.flush();
+                return copy.endCopy();
+            } catch (RuntimeException | IOException e) {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+                throw e;
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Échec du chargement du fichier d'import", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void writeRow(Writer writer, long lineNo, CatalogImportRow row) {
+        String slug = validateRow(lineNo, row);
+        try {
+            writer.write(Long.toString(lineNo));
+            field(writer, row.categoryId());
+            field(writer, row.productName());
+            field(writer, slug);
+            field(writer, row.productDescription());
+            field(writer, row.productActive());
+            field(writer, row.sku());
+            field(writer, row.price().toPlainString());
+            field(writer, row.stock());
+            field(writer, row.variantActive());
+            field(writer, objectMapper.writeValueAsString(row.attributes() != null ? row.attributes() : Map.of()));
+            writer.write('\n');
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Ligne " + lineNo + " : attributs invalides");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Contrôles ligne à ligne (ceux qui ne dépendent pas de la base) ; retourne le slug du produit
+     */
+    private static String validateRow(long lineNo, CatalogImportRow row) {
+        String prefix = "Ligne " + lineNo + " : ";
+        if (row.categoryId() == null) {
+            throw new BadRequestException(prefix + "categoryId est obligatoire");
+        }
+        if (row.productName() == null || row.productName().isBlank() || row.productName().length() > 255) {
+            throw new BadRequestException(prefix + "productName est obligatoire (255 caractères maximum)");
+        }
+        String slug = ProductService.slugify(row.productName());
+        if (slug.isEmpty()) {
+            throw new BadRequestException(prefix + "productName doit contenir au moins une lettre ou un chiffre");
+        }
+        if (row.sku() == null || row.sku().isBlank() || row.sku().length() > 100) {
+            throw new BadRequestException(prefix + "sku est obligatoire (100 caractères maximum)");
+        }
+        BigDecimal price = row.price();
+        if (price == null || price.signum() < 0 || price.precision() - price.scale() > 8) {
+            throw new BadRequestException(prefix + "price est obligatoire, positif et inférieur à 100000000");
+        }
+        if (row.stock() == null || row.stock() < 0) {
+            throw new BadRequestException(prefix + "stock est obligatoire et doit être positif ou nul");
+        }
+        if (row.attributes() != null) {
+            row.attributes().forEach((name, value) -> {
+                if (name.isBlank() || name.length() > 100 || value == null || value.isBlank() || value.length() > 100) {
+                    throw new BadRequestException(prefix + "attribut invalide: " + name);
+                }
+            });
+        }
+        return slug;
+    }
+
+    /**
+     * Champ CSV pour COPY : null est un champ vide, toute autre valeur est entre guillemets
+     */
+    private static void field(Writer writer, Object value) throws IOException {
+        writer.write(',');
+        if (value != null) {
+            writer.write('"');
+            writer.write(value.toString().replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private void failIfAny(String sql, String message, Object... args) {
+        List<Long> lines = jdbcTemplate.queryForList(sql, Long.class, args);
+        if (!lines.isEmpty()) {
+            throw new BadRequestException("Ligne " + lines.get(0) + " : " + message);
+        }
+    }
+
+    /**
+     * Réserve assez de blocs de 50 ids pour count lignes, un appel nextval par bloc.
+     * La première valeur d'une séquence neuve (1) ne couvre pas un bloc entier et est ignorée.
+     */
+    private Long[] allocateIdBlocks(String sequence, long count) {
+        int blocks = Math.toIntExact((count + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE);
+        List<Long> his = new ArrayList<>(blocks);
+        while (his.size() < blocks) {
+            jdbcTemplate.queryForList("SELECT nextval(?::regclass) FROM generate_series(1, ?)",
+                            Long.class, sequence, blocks - his.size())
+                    .stream()
+                    .filter(hi -> hi >= ID_BLOCK_SIZE)
+                    .forEach(his::add);
+        }
+        return his.toArray(Long[]::new);
+    }
+
+    private void notifyChatbot(List<Long> variantIds) {
+        for (int from = 0; from < variantIds.size(); from += NOTIFICATION_CHUNK_SIZE) {
+            int to = Math.min(from + NOTIFICATION_CHUNK_SIZE, variantIds.size());
+            chatbotWebhookService.notifyVariantsCreated(List.copyOf(variantIds.subList(from, to)));
+        }
+    }
+
+    private static Path spool(InputStream body, CatalogFileFormat format) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("catalog-import-", "." + format.extension());
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new BadRequestException("Impossible de lire le fichier d'import");
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete import file {}", file, e);
+        }
+    }
+
+    private record MergeResult(int productsCreated, int productsUpdated, int variantsCreated, int variantsUpdated,
+                               List<Long> createdVariantIds) {
+    }
+
+    /**
+     * État d'un import, lu par les requêtes de statut pendant son exécution
+     */
+    private static final class Job {
+        private final String id;
+        private final Long shopId;
+        private final Instant createdAt = Instant.now();
+        private volatile CatalogImportJobDto.Status status = CatalogImportJobDto.Status.QUEUED;
+        private volatile long rowsRead;
+        private volatile MergeResult result;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private Job(String id, Long shopId) {
+            this.id = id;
+            this.shopId = shopId;
+        }
+
+        private void complete(MergeResult result) {
+            this.result = result;
+            this.finishedAt = Instant.now();
+            this.status = CatalogImportJobDto.Status.COMPLETED;
+        }
+
+        private void fail(String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+            this.status = CatalogImportJobDto.Status.FAILED;
+        }
+
+        private CatalogImportJobDto toDto() {
+            MergeResult merged = result;
+            return new CatalogImportJobDto(id, shopId, status, rowsRead,
+                    merged != null ? merged.productsCreated() : 0,
+                    merged != null ? merged.productsUpdated() : 0,
+                    merged != null ? merged.variantsCreated() : 0,
+                    merged != null ? merged.variantsUpdated() : 0,
+                    error, createdAt, finishedAt);
+        }
+    }
+}
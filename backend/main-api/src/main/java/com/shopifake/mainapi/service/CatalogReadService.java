@@ -0,0 +1,115 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.dto.ProductVariantDto;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import com.shopifake.mainapi.mapper.ProductMapper;
+import com.shopifake.mainapi.mapper.ProductVariantMapper;
+import com.shopifake.mainapi.model.AttributeDefinition;
+import com.shopifake.mainapi.model.Product;
+import com.shopifake.mainapi.model.ProductVariant;
+import com.shopifake.mainapi.repository.ProductRepository;
+import com.shopifake.mainapi.repository.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Chemin de lecture du catalogue (produits + variants + attributs).
+ * Le nombre de requêtes SQL est constant quelle que soit la taille du catalogue :
+ * une requête pour les produits et leurs définitions d'attributs, une pour les variants et leurs valeurs.
+ * Les noms d'attributs sont résolus en mémoire à partir des définitions déjà chargées.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class CatalogReadService {
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductMapper productMapper;
+    private final ProductVariantMapper productVariantMapper;
+
+    /**
+     * Charge tous les produits d'une boutique avec leurs variants
+     */
+    public List<ProductWithVariantsDto> getShopCatalog(Long shopId) {
+        List<Product> products = productRepository.findByShopIdWithAttributeDefinitions(shopId);
+        if (products.isEmpty()) {
+            return List.of();
+        }
+
+        List<ProductVariant> variants = productVariantRepository.findByShopIdWithAttributes(shopId);
+        return assemble(products, variants);
+    }
+
+    /**
+     * Charge tous les produits d'une catégorie et de ses descendants avec leurs variants
+     */
+    public List<ProductWithVariantsDto> getSubtreeCatalog(Long categoryId) {
+        List<Product> products = productRepository.findBySubtreeWithAttributeDefinitions(categoryId);
+        if (products.isEmpty()) {
+            return List.of();
+        }
+
+        List<ProductVariant> variants = productVariantRepository.findBySubtreeWithAttributes(categoryId);
+        return assemble(products, variants);
+    }
+
+    /**
+     * Charge un ensemble de produits avec leurs définitions d'attributs, triés par (name, id)
+     */
+    public List<ProductDto> getProducts(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+
+        return productRepository.findByIdInWithAttributeDefinitions(productIds)
+                .stream()
+                .map(productMapper::toDto)
+                .toList();
+    }
+
+    /**
+     * Charge un ensemble de produits avec leurs variants, triés par (name, id)
+     */
+    public List<ProductWithVariantsDto> getProductsWithVariants(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<Product> products = productRepository.findByIdInWithAttributeDefinitions(productIds);
+        List<ProductVariant> variants = productVariantRepository.findByProductIdInWithAttributes(productIds);
+        return assemble(products, variants);
+    }
+
+    /**
+     * Assemble les DTOs en mémoire, en conservant l'ordre des produits et des variants
+     */
+    private List<ProductWithVariantsDto> assemble(List<Product> products, List<ProductVariant> variants) {
+        Map<Long, String> attributeNames = new HashMap<>();
+        for (Product product : products) {
+            for (AttributeDefinition definition : product.getAttributeDefinitions()) {
+                attributeNames.put(definition.getId(), definition.getAttributeName());
+            }
+        }
+
+        Map<Long, List<ProductVariantDto>> variantsByProduct = variants.stream()
+                .collect(Collectors.groupingBy(
+                        ProductVariant::getProductId,
+                        Collectors.mapping(v -> productVariantMapper.toDto(v, attributeNames), Collectors.toList())
+                ));
+
+        return products.stream()
+                .map(product -> new ProductWithVariantsDto(
+                        productMapper.toDto(product),
+                        variantsByProduct.getOrDefault(product.getId(), List.of())
+                ))
+                .toList();
+    }
+}
@@ -0,0 +1,105 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.repository.ShopRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Version monotone du catalogue de chaque boutique, qui sert à calculer les ETags des endpoints de lecture.
+ * Elle combine deux compteurs :
+ * - shops.catalog_version, incrémentée une fois par transaction et par boutique, juste avant le commit,
+ *   par toute écriture autre qu'un mouvement de stock ;
+ * - la révision du stock (somme de shop_stock_totals.stock_revision), maintenue par trigger sur les lignes
+ *   de totaux que le mouvement verrouille déjà : un mouvement de stock ne verrouille pas la ligne de la boutique.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogVersionService {
+
+    private static final String VERSION_SQL = """
+            SELECT s.catalog_version,
+                   (SELECT COALESCE(SUM(t.stock_revision), 0) FROM shop_stock_totals t WHERE t.shop_id = s.id)
+                       AS stock_revision
+            FROM shops s
+            WHERE s.id = ?
+            """;
+
+    private final ShopRepository shopRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Version courante du catalogue d'une boutique, lue en une requête ; vide si la boutique n'existe pas.
+     * Lue dans la transaction de l'appelant, elle correspond à l'instantané de ses autres lectures,
+     * et à la connexion, primaire ou réplica, qui les sert.
+     */
+    public Optional<CatalogVersion> findVersion(Long shopId) {
+        return jdbcTemplate.query(VERSION_SQL,
+                (rs, rowNum) -> new CatalogVersion(rs.getLong("catalog_version"), rs.getLong("stock_revision")),
+                shopId).stream().findFirst();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        // Le stock est versionné par la révision du stock, maintenue en base
+        if (event.scope() == CatalogChangedEvent.Scope.STOCK) {
+            return;
+        }
+        if (bumpedShops().add(event.shopId())) {
+            shopRepository.incrementCatalogVersion(event.shopId());
+        }
+    }
+
+    private static Set<Long> bumpedShops() {
+        // Porté par une synchronisation, propre à la transaction : une transaction REQUIRES_NEW en a une autre
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof BumpedShops bumped) {
+                return bumped.shopIds;
+            }
+        }
+        BumpedShops bumped = new BumpedShops();
+        TransactionSynchronizationManager.registerSynchronization(bumped);
+        return bumped.shopIds;
+    }
+
+    /**
+     * Boutiques dont la version a déjà été incrémentée par la transaction
+     */
+    private static final class BumpedShops implements TransactionSynchronization {
+
+        private final Set<Long> shopIds = new HashSet<>();
+    }
+
+    /**
+     * Version du catalogue d'une boutique : un catalogue de version (c, s) contient toutes les écritures
+     * committées jusqu'à catalog_version c et révision du stock s
+     */
+    public record CatalogVersion(
+            long catalogVersion,
+            long stockRevision
+    ) {
+
+        /**
+         * Vrai si cette version contient toutes les écritures de la version other
+         */
+        public boolean covers(CatalogVersion other) {
+            return catalogVersion >= other.catalogVersion && stockRevision >= other.stockRevision;
+        }
+
+        /**
+         * ETag fort du catalogue de la boutique à cette version
+         */
+        public String toETag(Long shopId) {
+            return "\"" + shopId + "-" + catalogVersion + "-" + stockRevision + "\"";
+        }
+    }
+}
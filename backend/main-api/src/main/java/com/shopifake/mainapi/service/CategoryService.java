@@ -1,20 +1,26 @@
 package com.shopifake.mainapi.service;
 
+import com.shopifake.mainapi.cache.CatalogSnapshot;
+import com.shopifake.mainapi.cache.CatalogSnapshotCache;
+import com.shopifake.mainapi.cache.CategoryTreeCache;
 import com.shopifake.mainapi.dto.*;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
 import com.shopifake.mainapi.exception.BadRequestException;
 import com.shopifake.mainapi.exception.ResourceNotFoundException;
 import com.shopifake.mainapi.mapper.CategoryMapper;
 import com.shopifake.mainapi.model.Category;
+import com.shopifake.mainapi.repository.CategoryClosureRepository;
 import com.shopifake.mainapi.repository.CategoryRepository;
 import com.shopifake.mainapi.repository.ShopRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.text.Normalizer;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -23,8 +29,13 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CategoryClosureRepository categoryClosureRepository;
     private final ShopRepository shopRepository;
     private final CategoryMapper categoryMapper;
+    private final CategoryTreeCache categoryTreeCache;
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SlugAllocator slugAllocator;
 
     private static final int MAX_DEPTH = 4;
 
@@ -32,6 +43,11 @@ public class CategoryService {
      * Récupère toutes les catégories racines d'une boutique
      */
     public List<CategoryDto> getRootCategories(Long shopId) {
+        Optional<CatalogSnapshot> snapshot = catalogSnapshotCache.getSnapshot(shopId);
+        if (snapshot.isPresent()) {
+            return snapshot.get().getChildren(null);
+        }
+
         validateShopExists(shopId);
         return categoryRepository.findByShopIdAndParentIdIsNullOrderByPosition(shopId)
                 .stream()
@@ -43,6 +59,11 @@ public class CategoryService {
      * Récupère toutes les catégories d'une boutique
      */
     public List<CategoryDto> getAllCategories(Long shopId) {
+        Optional<CatalogSnapshot> snapshot = catalogSnapshotCache.getSnapshot(shopId);
+        if (snapshot.isPresent()) {
+            return snapshot.get().getCategories();
+        }
+
         validateShopExists(shopId);
         return categoryRepository.findByShopIdOrderByPosition(shopId)
                 .stream()
@@ -51,19 +72,24 @@ public class CategoryService {
     }
 
     /**
-     * Récupère l'arbre complet des catégories d'une boutique
+     * Récupère l'arbre complet des catégories d'une boutique (mis en cache par boutique)
      */
     public CategoryTreeDto getCategoryTree(Long shopId) {
-        validateShopExists(shopId);
-        List<Category> allCategories = categoryRepository.findByShopIdOrderByPosition(shopId);
-        List<CategoryTreeNodeDto> rootNodes = buildTree(allCategories, null);
-        return new CategoryTreeDto(rootNodes);
+        return catalogSnapshotCache.getSnapshot(shopId)
+                .map(CatalogSnapshot::getCategoryTree)
+                .orElseGet(() -> categoryTreeCache.getTree(shopId));
     }
 
     /**
      * Récupère une catégorie par son ID
      */
     public CategoryDto getCategoryById(Long shopId, Long categoryId) {
+        Optional<CategoryDto> cached = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.findCategory(categoryId));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         Category category = findByIdAndShopId(categoryId, shopId);
         return categoryMapper.toDto(category);
     }
@@ -72,6 +98,12 @@ public class CategoryService {
      * Récupère les enfants directs d'une catégorie
      */
     public List<CategoryDto> getChildren(Long shopId, Long categoryId) {
+        Optional<CatalogSnapshot> snapshot = catalogSnapshotCache.getSnapshot(shopId)
+                .filter(s -> s.findCategory(categoryId).isPresent());
+        if (snapshot.isPresent()) {
+            return snapshot.get().getChildren(categoryId);
+        }
+
         validateShopExists(shopId);
         validateCategoryExists(categoryId, shopId);
 
@@ -85,6 +117,12 @@ public class CategoryService {
      * Récupère le chemin de navigation (breadcrumb) d'une catégorie
      */
     public List<CategoryDto> getBreadcrumb(Long shopId, Long categoryId) {
+        Optional<CatalogSnapshot> snapshot = catalogSnapshotCache.getSnapshot(shopId)
+                .filter(s -> s.findCategory(categoryId).isPresent());
+        if (snapshot.isPresent()) {
+            return snapshot.get().getAncestors(categoryId);
+        }
+
         validateCategoryExists(categoryId, shopId);
         return categoryRepository.findAncestors(categoryId)
                 .stream()
@@ -95,68 +133,19 @@ public class CategoryService {
     /**
      * Crée une nouvelle catégorie
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public CategoryDto create(Long shopId, CreateCategoryRequest request) {
-        log.info("Creating category for shop {}: {}", shopId, request.label());
-
-        validateShopExists(shopId);
-
-        // Valider le parent si spécifié
-        if (request.parentId() != null) {
-            validateParentCategory(shopId, request.parentId());
-            validateDepthLimit(request.parentId());
-        }
-
-        // Générer le slug unique
-        String slug = generateUniqueSlug(shopId, request.label());
-
-        // Créer la catégorie
-        Category category = new Category();
-        category.setShopId(shopId);
-        category.setParentId(request.parentId());
-        category.setLabel(request.label());
-        category.setSlug(slug);
-        category.setPosition(request.position() != null ? request.position() : 0);
-
-        Category saved = categoryRepository.save(category);
-        log.info("Category created with id: {}", saved.getId());
-
-        return categoryMapper.toDto(saved);
+        return slugAllocator.executeWithRetry(SlugAllocator.CATEGORY_SLUG_CONSTRAINT,
+                () -> doCreate(shopId, request));
     }
 
     /**
      * Met à jour une catégorie
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public CategoryDto update(Long shopId, Long categoryId, UpdateCategoryRequest request) {
-        log.info("Updating category {} for shop {}", categoryId, shopId);
-
-        Category category = findByIdAndShopId(categoryId, shopId);
-
-        // Valider le nouveau parent si changé
-        if (request.parentId() != null && !Objects.equals(category.getParentId(), request.parentId())) {
-            validateParentCategory(shopId, request.parentId());
-            validateNotMovingToDescendant(categoryId, request.parentId());
-            validateDepthLimit(request.parentId());
-        }
-
-        // Mettre à jour le label et générer un nouveau slug si nécessaire
-        if (!category.getLabel().equals(request.label())) {
-            category.setLabel(request.label());
-            String newSlug = generateUniqueSlug(shopId, request.label(), categoryId);
-            category.setSlug(newSlug);
-        }
-
-        category.setParentId(request.parentId());
-
-        if (request.position() != null) {
-            category.setPosition(request.position());
-        }
-
-        Category updated = categoryRepository.save(category);
-        log.info("Category {} updated successfully", categoryId);
-
-        return categoryMapper.toDto(updated);
+        return slugAllocator.executeWithRetry(SlugAllocator.CATEGORY_SLUG_CONSTRAINT,
+                () -> doUpdate(shopId, categoryId, request));
     }
 
     /**
@@ -172,16 +161,17 @@ public class CategoryService {
         if (request.parentId() != null) {
             validateParentCategory(shopId, request.parentId());
             validateNotMovingToDescendant(categoryId, request.parentId());
-            validateDepthLimit(request.parentId());
+            validateDepthLimit(request.parentId(), categoryId);
         }
 
-        category.setParentId(request.parentId());
+        moveSubtree(category, request.parentId());
 
         if (request.position() != null) {
             category.setPosition(request.position());
         }
 
         Category moved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.CATEGORY, categoryId));
         log.info("Category {} moved successfully", categoryId);
 
         return categoryMapper.toDto(moved);
@@ -203,50 +193,96 @@ public class CategoryService {
 
         // TODO: Vérifier qu'il n'y a pas de produits associés (à implémenter plus tard)
 
+        // Les chemins de la table de fermeture sont supprimés en cascade
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.CATEGORY, categoryId));
         log.info("Category {} deleted successfully", categoryId);
     }
 
     /**
-     * Construit l'arbre des catégories de manière récursive
+     * Crée une catégorie ; exécuté dans la transaction ouverte par SlugAllocator
      */
-    private List<CategoryTreeNodeDto> buildTree(List<Category> categories, Long parentId) {
-        Map<Long, List<Category>> grouped = categories.stream()
-                .collect(Collectors.groupingBy(
-                        c -> c.getParentId() == null ? -1L : c.getParentId()
-                ));
+    private CategoryDto doCreate(Long shopId, CreateCategoryRequest request) {
+        log.info("Creating category for shop {}: {}", shopId, request.label());
 
-        long actualParentId = parentId == null ? -1L : parentId;
+        validateShopExists(shopId);
 
-        return grouped.getOrDefault(actualParentId, Collections.emptyList())
-                .stream()
-                .map(cat -> categoryMapper.toTreeNodeDto(
-                        cat,
-                        buildTree(categories, cat.getId())
-                ))
-                .toList();
+        // Valider le parent si spécifié
+        if (request.parentId() != null) {
+            validateParentCategory(shopId, request.parentId());
+            validateDepthLimit(request.parentId());
+        }
+
+        // Générer le slug unique
+        String slug = slugAllocator.allocateCategorySlug(shopId, generateSlug(request.label()), null);
+
+        // Créer la catégorie
+        Category category = new Category();
+        category.setShopId(shopId);
+        category.setParentId(request.parentId());
+        category.setLabel(request.label());
+        category.setSlug(slug);
+        category.setPosition(request.position() != null ? request.position() : 0);
+
+        Category saved = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(saved.getId());
+        if (saved.getParentId() != null) {
+            categoryClosureRepository.insertAncestorPaths(saved.getId(), saved.getParentId());
+        }
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.CATEGORY, saved.getId()));
+        log.info("Category created with id: {}", saved.getId());
+
+        return categoryMapper.toDto(saved);
     }
 
     /**
-     * Génère un slug unique pour une catégorie
+     * Met à jour une catégorie ; exécuté dans la transaction ouverte par SlugAllocator
      */
-    private String generateUniqueSlug(Long shopId, String label) {
-        return generateUniqueSlug(shopId, label, null);
+    private CategoryDto doUpdate(Long shopId, Long categoryId, UpdateCategoryRequest request) {
+        log.info("Updating category {} for shop {}", categoryId, shopId);
+
+        Category category = findByIdAndShopId(categoryId, shopId);
+
+        // Valider le nouveau parent si changé
+        if (request.parentId() != null && !Objects.equals(category.getParentId(), request.parentId())) {
+            validateParentCategory(shopId, request.parentId());
+            validateNotMovingToDescendant(categoryId, request.parentId());
+            validateDepthLimit(request.parentId(), categoryId);
+        }
+
+        // Mettre à jour le label et générer un nouveau slug si nécessaire
+        if (!category.getLabel().equals(request.label())) {
+            category.setLabel(request.label());
+            String newSlug = slugAllocator.allocateCategorySlug(shopId, generateSlug(request.label()), categoryId);
+            category.setSlug(newSlug);
+        }
+
+        moveSubtree(category, request.parentId());
+
+        if (request.position() != null) {
+            category.setPosition(request.position());
+        }
+
+        Category updated = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.CATEGORY, categoryId));
+        log.info("Category {} updated successfully", categoryId);
+
+        return categoryMapper.toDto(updated);
     }
 
     /**
-     * Génère un slug unique pour une catégorie (avec exclusion d'un ID pour les updates)
+     * Rattache une catégorie (et son sous-arbre) à un nouveau parent, table de fermeture comprise
      */
-    private String generateUniqueSlug(Long shopId, String label, Long excludeId) {
-        String baseSlug = generateSlug(label);
-        String slug = baseSlug;
-        int counter = 1;
-
-        while (slugExistsForOtherCategory(shopId, slug, excludeId)) {
-            slug = baseSlug + "-" + counter++;
+    private void moveSubtree(Category category, Long newParentId) {
+        if (Objects.equals(category.getParentId(), newParentId)) {
+            return;
         }
 
-        return slug;
+        categoryClosureRepository.detachSubtree(category.getId());
+        if (newParentId != null) {
+            categoryClosureRepository.attachSubtree(category.getId(), newParentId);
+        }
+        category.setParentId(newParentId);
     }
 
     /**
@@ -260,14 +296,6 @@ public class CategoryService {
                 .replaceAll("^-|-$", "");
     }
 
-    /**
-     * Vérifie si un slug existe déjà pour une autre catégorie
-     */
-    private boolean slugExistsForOtherCategory(Long shopId, String slug, Long excludeId) {
-        Optional<Category> existing = categoryRepository.findByShopIdAndSlug(shopId, slug);
-        return existing.isPresent() && (excludeId == null || !existing.get().getId().equals(excludeId));
-    }
-
     /**
      * Valide qu'une boutique existe
      */
@@ -312,11 +340,7 @@ public class CategoryService {
             throw new BadRequestException("Une catégorie ne peut pas être son propre parent");
         }
 
-        List<Category> descendants = categoryRepository.findDescendants(categoryId);
-        boolean isDescendant = descendants.stream()
-                .anyMatch(d -> d.getId().equals(newParentId));
-
-        if (isDescendant) {
+        if (categoryClosureRepository.existsByAncestorIdAndDescendantId(categoryId, newParentId)) {
             throw new BadRequestException(
                     "Une catégorie ne peut pas être déplacée vers un de ses descendants"
             );
@@ -327,13 +351,25 @@ public class CategoryService {
      * Valide que la profondeur maximale n'est pas dépassée
      */
     private void validateDepthLimit(Long parentId) {
-        List<Category> ancestors = categoryRepository.findAncestors(parentId);
-
-        if (ancestors.size() >= MAX_DEPTH) {
+        if (categoryClosureRepository.countByDescendantId(parentId) >= MAX_DEPTH) {
             throw new BadRequestException(
                     "La profondeur maximale de " + MAX_DEPTH + " niveaux est atteinte"
             );
         }
     }
+
+    /**
+     * Valide qu'une catégorie déplacée sous parentId garde tout son sous-arbre dans la profondeur maximale :
+     * son descendant le plus profond arrive au niveau du parent + 1 + la hauteur du sous-arbre
+     */
+    private void validateDepthLimit(Long parentId, Long categoryId) {
+        long deepestLevel = categoryClosureRepository.countByDescendantId(parentId) + 1
+                + categoryClosureRepository.findSubtreeHeight(categoryId);
+        if (deepestLevel > MAX_DEPTH) {
+            throw new BadRequestException(
+                    "La profondeur maximale de " + MAX_DEPTH + " niveaux serait dépassée par les sous-catégories déplacées"
+            );
+        }
+    }
 }
 
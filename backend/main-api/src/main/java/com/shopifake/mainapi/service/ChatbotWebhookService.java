@@ -1,7 +1,9 @@
 package com.shopifake.mainapi.service;
 
+import com.shopifake.mainapi.cache.AttributeDefinitionCache;
 import com.shopifake.mainapi.client.ChatbotWebhookClient;
 import com.shopifake.mainapi.dto.webhook.ProductVariantWebhookPayload;
+import com.shopifake.mainapi.dto.webhook.ProductVariantsWebhookPayload;
 import com.shopifake.mainapi.dto.webhook.WebhookProductVariantDto;
 import com.shopifake.mainapi.model.Product;
 import com.shopifake.mainapi.model.ProductVariant;
@@ -13,9 +15,16 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Sends catalog changes to the chatbot service.
+ * Payloads are built from rows that were just written: transactions here are deliberately not readOnly,
+ * so they run on the primary and never on a read replica that has not replayed the write yet.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -23,7 +32,7 @@ public class ChatbotWebhookService {
 
     private final ChatbotWebhookClient chatbotWebhookClient;
     private final ProductRepository productRepository;
-    private final com.shopifake.mainapi.repository.AttributeDefinitionRepository attributeDefinitionRepository;
+    private final AttributeDefinitionCache attributeDefinitionCache;
     private final com.shopifake.mainapi.repository.ProductVariantRepository productVariantRepository;
 
     /**
@@ -31,7 +40,7 @@ public class ChatbotWebhookService {
      * Async and non-blocking
      */
     @Async
-    @Transactional(readOnly = true)
+    @Transactional
     public void notifyVariantCreated(ProductVariant variant) {
         try {
             // Refetch variant with attributes to avoid LazyInitializationException
@@ -53,7 +62,7 @@ public class ChatbotWebhookService {
      * Async and non-blocking
      */
     @Async
-    @Transactional(readOnly = true)
+    @Transactional
     public void notifyVariantUpdated(ProductVariant variant) {
         try {
             // Refetch variant with attributes to avoid LazyInitializationException
@@ -75,7 +84,7 @@ public class ChatbotWebhookService {
      * Async and non-blocking
      */
     @Async
-    @Transactional(readOnly = true)
+    @Transactional
     public void notifyVariantDeleted(ProductVariant variant) {
         try {
             // Refetch variant with attributes to avoid LazyInitializationException
@@ -92,6 +101,34 @@ public class ChatbotWebhookService {
         }
     }
 
+    /**
+     * Notify chatbot service once for a batch of created variants (bulk creation)
+     * Variants and their products are loaded with one query each
+     * Async and non-blocking
+     */
+    @Async
+    @Transactional
+    public void notifyVariantsCreated(List<Long> variantIds) {
+        try {
+            List<ProductVariant> variants = productVariantRepository.findByIdInWithAttributes(variantIds);
+            Map<Long, Product> products = productRepository.findAllById(variants.stream()
+                            .map(ProductVariant::getProductId)
+                            .distinct()
+                            .toList())
+                    .stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+            List<WebhookProductVariantDto> dtos = variants.stream()
+                    .filter(variant -> products.containsKey(variant.getProductId()))
+                    .map(variant -> buildWebhookDto(variant, products.get(variant.getProductId())))
+                    .toList();
+            chatbotWebhookClient.sendProductVariantsWebhook(ProductVariantsWebhookPayload.created(dtos));
+            log.debug("Sent variants.created webhook for {} variants", dtos.size());
+        } catch (Exception e) {
+            log.error("Error sending variants.created webhook: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Build webhook DTO from ProductVariant entity
      */
@@ -99,16 +136,15 @@ public class ChatbotWebhookService {
         // Fetch product details
         Product product = productRepository.findById(variant.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found for variant " + variant.getId()));
+        return buildWebhookDto(variant, product);
+    }
 
-        // Convert variant attributes to map (attribute name -> value)
+    private WebhookProductVariantDto buildWebhookDto(ProductVariant variant, Product product) {
+        // Convert variant attributes to map (attribute name -> value), names resolved from the cache
+        Map<Long, String> attributeNames = attributeDefinitionCache.getAttributeNames(variant.getProductId());
         Map<String, String> attributesMap = variant.getAttributes().stream()
                 .collect(Collectors.toMap(
-                        attr -> {
-                            // Fetch attribute definition to get the name
-                            return attributeDefinitionRepository.findById(attr.getAttributeDefinitionId())
-                                    .map(def -> def.getAttributeName())
-                                    .orElse("Unknown");
-                        },
+                        attr -> attributeNames.getOrDefault(attr.getAttributeDefinitionId(), "Unknown"),
                         VariantAttribute::getAttributeValue
                 ));
 
@@ -0,0 +1,483 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.config.FlashSaleProperties;
+import com.shopifake.mainapi.dto.StockActionDto;
+import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.event.StockActionsRecordedEvent;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.ActionType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mode vente flash : pour les boutiques qui l'activent, les retraits sur les SKU sollicités sont servis
+ * depuis la mémoire au lieu de se disputer la ligne du variant (et celle de la boutique, dont la version
+ * du catalogue change à chaque écriture).
+ * Chaque instance prend en séquestre une partie du stock d'un SKU (allocation) : une réservation à son nom,
+ * comptée dans reserved_stock, que ni les autres instances ni le chemin classique ne peuvent consommer.
+ * Les requêtes prélèvent sur cette allocation sans verrou (compteurs répartis), puis attendent qu'un thread
+ * d'écriture unique applique tous les retraits admis en un lot : stock, allocation et lignes stock_actions
+ * dans une même transaction. Un retrait n'est confirmé au client qu'une fois son lot commité.
+ * Quand l'allocation ne suffit pas, le retrait passe par le chemin classique sur le stock non alloué.
+ * Reprise : au démarrage, l'instance reprend les allocations enregistrées à son nom ; celles d'une instance
+ * qui ne revient pas cessent d'être renouvelées et sont libérées à échéance comme toute réservation.
+ */
+@Service
+@Slf4j
+public class FlashSaleStockService {
+
+    private static final String FLASH_SHOPS_SQL = "SELECT id FROM shops WHERE flash_sale";
+
+    private static final String SET_FLASH_SALE_SQL = "UPDATE shops SET flash_sale = ? WHERE id = ?";
+
+    private static final String RESOLVE_VARIANT_SQL = "SELECT id FROM product_variants WHERE shop_id = ? AND sku = ?";
+
+    private static final String ADOPT_ALLOCATIONS_SQL = """
+            SELECT id, shop_id, variant_id, sku, quantity FROM stock_reservations WHERE holder = ?
+            """;
+
+    private static final String RENEW_ALLOCATIONS_SQL = """
+            UPDATE stock_reservations
+            SET expires_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond'
+            WHERE holder = ?
+            """;
+
+    // Verrouille l'allocation avant le variant, dans le même ordre que la confirmation d'une réservation
+    private static final String LOCK_ALLOCATION_SQL = """
+            UPDATE stock_reservations
+            SET expires_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond'
+            WHERE id = ? AND holder = ?
+            RETURNING quantity
+            """;
+
+    // Applique les retraits du lot (pris sur l'allocation) et prélève si besoin du stock non réservé
+    // pour reconstituer l'allocation ; retourne la quantité accordée
+    private static final String APPLY_SQL = """
+            WITH v AS (
+                SELECT id, GREATEST(LEAST(?, stock - reserved_stock), 0) AS granted
+                FROM product_variants
+                WHERE id = ?
+                FOR UPDATE
+            )
+            UPDATE product_variants p
+            SET stock = p.stock - ?, reserved_stock = p.reserved_stock - ? + v.granted,
+                updated_at = CASE WHEN ? > 0 THEN CURRENT_TIMESTAMP ELSE p.updated_at END
+            FROM v
+            WHERE p.id = v.id
+            RETURNING v.granted, p.stock, p.stock_version
+            """;
+
+    private static final String INSERT_ALLOCATION_SQL = """
+            INSERT INTO stock_reservations (shop_id, variant_id, sku, quantity, expires_at, created_at, holder)
+            VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond', CURRENT_TIMESTAMP, ?)
+            RETURNING id
+            """;
+
+    private static final String UPDATE_ALLOCATION_SQL = "UPDATE stock_reservations SET quantity = ? WHERE id = ?";
+
+    private static final String DELETE_ALLOCATION_SQL = "DELETE FROM stock_reservations WHERE id = ?";
+
+    private static final String RELEASE_ALLOCATION_SQL = """
+            WITH released AS (
+                DELETE FROM stock_reservations
+                WHERE id = ? AND holder = ?
+                RETURNING variant_id, quantity
+            )
+            UPDATE product_variants v
+            SET reserved_stock = v.reserved_stock - r.quantity
+            FROM released r
+            WHERE v.id = r.variant_id
+            """;
+
+    // Les IDs sont tirés dans l'ordre des lignes insérées : trier le RETURNING par ID redonne l'ordre du lot
+    private static final String INSERT_STOCK_ACTIONS_SQL = """
+            INSERT INTO stock_actions (variant_id, sku, action_type, quantity, created_at)
+            SELECT ?, ?, 'REMOVE', q.quantity, CURRENT_TIMESTAMP
+            FROM unnest(?::int[]) WITH ORDINALITY AS q(quantity, position)
+            ORDER BY q.position
+            RETURNING id, created_at
+            """;
+
+    private record Key(Long shopId, String sku) {
+    }
+
+    private record Admission(int quantity, CompletableFuture<StockActionDto> result) {
+    }
+
+    private record Allocation(Long id, Key key, Long variantId, int quantity) {
+    }
+
+    private record Flushed(int granted, Long allocationId, List<StockActionDto> actions) {
+    }
+
+    private record Applied(int granted, int stock, long stockVersion) {
+    }
+
+    private record InsertedAction(Long id, Instant createdAt) {
+    }
+
+    /**
+     * L'allocation d'un SKU n'est plus au nom de l'instance ou ne correspond plus à l'état en mémoire
+     */
+    private static final class AllocationLostException extends RuntimeException {
+        AllocationLostException(Long allocationId) {
+            super("Flash sale allocation " + allocationId + " is no longer held by this instance");
+        }
+    }
+
+    /**
+     * Compteur d'un SKU en vente flash. Les champs non volatils sont réservés au thread d'écriture.
+     */
+    private static final class HotSku {
+        private final Key key;
+        private final StripedQuota quota;
+        private final ConcurrentLinkedQueue<Admission> pending = new ConcurrentLinkedQueue<>();
+        // Requêtes entre la vérification de closed et l'ajout à pending
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean closed;
+        private volatile long lastAdmissionNanos = System.nanoTime();
+
+        private Long variantId;
+        private Long allocationId;
+        private int allocated;
+        private long nextGrantNanos;
+
+        private HotSku(Key key, int stripes) {
+            this.key = key;
+            this.quota = new StripedQuota(stripes);
+            this.nextGrantNanos = lastAdmissionNanos;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate writeTransaction;
+    private final FlashSaleProperties properties;
+    private final String holder;
+    private final Set<Long> flashShops = ConcurrentHashMap.newKeySet();
+    private final Map<Key, HotSku> hotSkus = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer;
+    // État du thread d'écriture
+    private boolean adopted;
+    private long nextRefreshNanos;
+    private long nextRenewNanos;
+
+    public FlashSaleStockService(JdbcTemplate jdbcTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 PlatformTransactionManager transactionManager,
+                                 FlashSaleProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.holder = properties.getInstanceId().isBlank()
+                ? "instance-" + UUID.randomUUID()
+                : properties.getInstanceId();
+
+        this.nextRefreshNanos = System.nanoTime();
+        this.nextRenewNanos = nextRefreshNanos;
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("flash-sale-writer")
+                .daemon(true)
+                .factory());
+        long interval = properties.getFlushInterval().toMillis();
+        writer.scheduleWithFixedDelay(this::cycle, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Active ou désactive le mode vente flash d'une boutique ; les autres instances suivent à leur prochaine relecture
+     */
+    public void setEnabled(Long shopId, boolean enabled) {
+        if (jdbcTemplate.update(SET_FLASH_SALE_SQL, enabled, shopId) == 0) {
+            throw new ResourceNotFoundException("Boutique", "id", shopId);
+        }
+        if (enabled) {
+            flashShops.add(shopId);
+        } else {
+            flashShops.remove(shopId);
+        }
+        log.info("Flash sale {} for shop {}", enabled ? "enabled" : "disabled", shopId);
+    }
+
+    /**
+     * Applique un retrait depuis l'allocation en mémoire du SKU, et attend que son lot soit commité.
+     * Vide si la boutique n'est pas en vente flash, si l'action n'est pas un retrait ou si l'allocation
+     * ne couvre pas la quantité : le retrait doit alors passer par le chemin classique.
+     */
+    public Optional<StockActionDto> tryRemove(Long shopId, StockActionRequest request) {
+        if (request.actionType() != ActionType.REMOVE || !flashShops.contains(shopId)) {
+            return Optional.empty();
+        }
+        HotSku hot = hotSkus.computeIfAbsent(new Key(shopId, request.sku()),
+                key -> new HotSku(key, properties.getStripes()));
+
+        Admission admission;
+        hot.inFlight.incrementAndGet();
+        try {
+            if (hot.closed || !hot.quota.tryAcquire(request.quantity())) {
+                return Optional.empty();
+            }
+            admission = new Admission(request.quantity(), new CompletableFuture<>());
+            hot.pending.add(admission);
+            hot.lastAdmissionNanos = System.nanoTime();
+        } finally {
+            hot.inFlight.decrementAndGet();
+        }
+        return Optional.of(await(admission));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(properties.getAdmissionTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        // Arrêt normal : les retraits admis sont écrits et les allocations rendues
+        hotSkus.values().forEach(this::close);
+    }
+
+    // ========== Méthodes privées ==========
+
+    private StockActionDto await(Admission admission) {
+        try {
+            return admission.result().get(properties.getAdmissionTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Flash sale removal not written within " + properties.getAdmissionTimeout(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Passage du thread d'écriture : relecture des boutiques, écriture des lots, renouvellement des allocations
+     */
+    private void cycle() {
+        try {
+            long now = System.nanoTime();
+            if (now - nextRefreshNanos >= 0) {
+                refreshFlashShops();
+                nextRefreshNanos = now + properties.getRefreshInterval().toNanos();
+            }
+            long idleTimeout = properties.getIdleTimeout().toNanos();
+            for (HotSku hot : hotSkus.values()) {
+                boolean idle = now - hot.lastAdmissionNanos > idleTimeout && hot.pending.isEmpty();
+                if (!flashShops.contains(hot.key.shopId()) || idle) {
+                    close(hot);
+                } else {
+                    flush(hot, now);
+                }
+            }
+            if (now - nextRenewNanos >= 0) {
+                jdbcTemplate.update(RENEW_ALLOCATIONS_SQL, properties.getAllocationTtl().toMillis(), holder);
+                nextRenewNanos = now + properties.getAllocationTtl().toNanos() / 3;
+            }
+        } catch (RuntimeException e) {
+            log.error("Flash sale writer cycle failed", e);
+        }
+    }
+
+    private void refreshFlashShops() {
+        Set<Long> current = new HashSet<>(jdbcTemplate.queryForList(FLASH_SHOPS_SQL, Long.class));
+        if (!adopted) {
+            // Avant toute admission : les compteurs repris ne peuvent pas entrer en concurrence avec des nouveaux
+            adoptAllocations(current);
+            adopted = true;
+        }
+        flashShops.retainAll(current);
+        flashShops.addAll(current);
+    }
+
+    /**
+     * Reconstruit les compteurs à partir des allocations enregistrées au nom de l'instance (redémarrage)
+     */
+    private void adoptAllocations(Set<Long> currentFlashShops) {
+        List<Allocation> allocations = jdbcTemplate.query(ADOPT_ALLOCATIONS_SQL,
+                (rs, rowNum) -> new Allocation(rs.getLong("id"), new Key(rs.getLong("shop_id"), rs.getString("sku")),
+                        rs.getLong("variant_id"), rs.getInt("quantity")),
+                holder);
+        for (Allocation allocation : allocations) {
+            if (!currentFlashShops.contains(allocation.key().shopId()) || hotSkus.containsKey(allocation.key())) {
+                jdbcTemplate.update(RELEASE_ALLOCATION_SQL, allocation.id(), holder);
+                continue;
+            }
+            HotSku hot = new HotSku(allocation.key(), properties.getStripes());
+            hot.variantId = allocation.variantId();
+            hot.allocationId = allocation.id();
+            hot.allocated = allocation.quantity();
+            hot.quota.add(allocation.quantity());
+            hotSkus.put(allocation.key(), hot);
+            log.info("Adopted flash sale allocation of {} x {} for shop {}",
+                    allocation.quantity(), allocation.key().sku(), allocation.key().shopId());
+        }
+    }
+
+    private void flush(HotSku hot, long now) {
+        if (hot.variantId == null) {
+            List<Long> variantIds = jdbcTemplate.queryForList(RESOLVE_VARIANT_SQL, Long.class, hot.key.shopId(), hot.key.sku());
+            if (variantIds.isEmpty()) {
+                // SKU inconnu de la boutique : les requêtes sont passées par le chemin classique, qui l'a rejeté
+                close(hot);
+                return;
+            }
+            hot.variantId = variantIds.get(0);
+        }
+
+        List<Admission> batch = drain(hot.pending);
+        int consumed = batch.stream().mapToInt(Admission::quantity).sum();
+        int remaining = hot.allocated - consumed;
+        int requested = remaining < properties.getAllocationSize() / 2 && now - hot.nextGrantNanos >= 0
+                ? properties.getAllocationSize() - remaining
+                : 0;
+        if (consumed == 0 && requested == 0) {
+            return;
+        }
+
+        Flushed flushed;
+        try {
+            flushed = writeTransaction.execute(status -> apply(hot, batch, consumed, requested));
+        } catch (RuntimeException e) {
+            log.error("Flash sale flush failed for {} in shop {}, releasing its allocation", hot.key.sku(), hot.key.shopId(), e);
+            batch.forEach(admission -> admission.result().completeExceptionally(e));
+            close(hot);
+            return;
+        }
+
+        hot.allocated = remaining + flushed.granted();
+        hot.allocationId = flushed.allocationId();
+        hot.quota.add(flushed.granted());
+        if (requested > 0 && flushed.granted() == 0) {
+            // Plus de stock non réservé : inutile de redemander à chaque passage
+            hot.nextGrantNanos = now + properties.getRefreshInterval().toNanos();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(flushed.actions().get(i));
+        }
+    }
+
+    private Flushed apply(HotSku hot, List<Admission> batch, int consumed, int requested) {
+        long ttl = properties.getAllocationTtl().toMillis();
+        if (hot.allocationId != null) {
+            List<Integer> held = jdbcTemplate.queryForList(LOCK_ALLOCATION_SQL, Integer.class, ttl, hot.allocationId, holder);
+            if (held.isEmpty() || held.get(0) != hot.allocated) {
+                throw new AllocationLostException(hot.allocationId);
+            }
+        }
+
+        Applied applied = jdbcTemplate.queryForObject(APPLY_SQL,
+                (rs, rowNum) -> new Applied(rs.getInt("granted"), rs.getInt("stock"), rs.getLong("stock_version")),
+                requested, hot.variantId, consumed, consumed, consumed);
+        int granted = applied.granted();
+        int allocation = hot.allocated - consumed + granted;
+        Long allocationId = hot.allocationId;
+        if (allocationId == null && allocation > 0) {
+            allocationId = jdbcTemplate.queryForObject(INSERT_ALLOCATION_SQL, Long.class,
+                    hot.key.shopId(), hot.variantId, hot.key.sku(), allocation, ttl, holder);
+        } else if (allocationId != null && allocation > 0) {
+            jdbcTemplate.update(UPDATE_ALLOCATION_SQL, allocation, allocationId);
+        } else if (allocationId != null) {
+            jdbcTemplate.update(DELETE_ALLOCATION_SQL, allocationId);
+            allocationId = null;
+        }
+
+        List<StockActionDto> actions = List.of();
+        if (consumed > 0) {
+            actions = insertStockActions(hot, batch);
+            eventPublisher.publishEvent(CatalogChangedEvent.stock(hot.key.shopId(), hot.variantId, applied.stock(), applied.stockVersion()));
+            eventPublisher.publishEvent(new StockActionsRecordedEvent(hot.key.shopId(), actions));
+        }
+        return new Flushed(granted, allocationId, actions);
+    }
+
+    private List<StockActionDto> insertStockActions(HotSku hot, List<Admission> batch) {
+        Integer[] quantities = batch.stream().map(Admission::quantity).toArray(Integer[]::new);
+        List<InsertedAction> inserted = jdbcTemplate.query(INSERT_STOCK_ACTIONS_SQL,
+                ps -> {
+                    ps.setLong(1, hot.variantId);
+                    ps.setString(2, hot.key.sku());
+                    ps.setArray(3, ps.getConnection().createArrayOf("integer", quantities));
+                },
+                (rs, rowNum) -> new InsertedAction(rs.getLong("id"), rs.getTimestamp("created_at").toInstant()));
+        List<InsertedAction> ordered = inserted.stream().sorted(Comparator.comparing(InsertedAction::id)).toList();
+
+        List<StockActionDto> actions = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            actions.add(new StockActionDto(ordered.get(i).id(), hot.key.sku(), ActionType.REMOVE,
+                    batch.get(i).quantity(), ordered.get(i).createdAt()));
+        }
+        return actions;
+    }
+
+    /**
+     * Retire le compteur : plus aucune admission, écriture des retraits déjà admis, allocation rendue
+     */
+    private void close(HotSku hot) {
+        hot.closed = true;
+        hotSkus.remove(hot.key, hot);
+        hot.quota.drain();
+        // Une requête qui a vu closed à faux termine son admission avant l'écriture finale
+        while (hot.inFlight.get() > 0) {
+            Thread.onSpinWait();
+        }
+
+        List<Admission> batch = drain(hot.pending);
+        if (!batch.isEmpty()) {
+            int consumed = batch.stream().mapToInt(Admission::quantity).sum();
+            try {
+                Flushed flushed = writeTransaction.execute(status -> apply(hot, batch, consumed, 0));
+                hot.allocationId = flushed.allocationId();
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(flushed.actions().get(i));
+                }
+            } catch (RuntimeException e) {
+                batch.forEach(admission -> admission.result().completeExceptionally(e));
+            }
+        }
+        if (hot.allocationId != null) {
+            try {
+                jdbcTemplate.update(RELEASE_ALLOCATION_SQL, hot.allocationId, holder);
+            } catch (RuntimeException e) {
+                // L'allocation n'est plus renouvelée : elle sera libérée à son échéance
+                log.warn("Failed to release flash sale allocation {}: {}", hot.allocationId, e.getMessage());
+            }
+            hot.allocationId = null;
+        }
+    }
+
+    private static List<Admission> drain(ConcurrentLinkedQueue<Admission> pending) {
+        List<Admission> batch = new ArrayList<>();
+        for (Admission admission = pending.poll(); admission != null; admission = pending.poll()) {
+            batch.add(admission);
+        }
+        return batch;
+    }
+}
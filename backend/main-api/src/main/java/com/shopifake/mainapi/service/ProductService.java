@@ -1,25 +1,43 @@
 package com.shopifake.mainapi.service;
 
+import com.shopifake.mainapi.cache.CatalogSnapshot;
+import com.shopifake.mainapi.cache.CatalogSnapshotCache;
+import com.shopifake.mainapi.cache.FacetIndex;
+import com.shopifake.mainapi.cache.FacetIndexCache;
 import com.shopifake.mainapi.dto.*;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
 import com.shopifake.mainapi.exception.BadRequestException;
 import com.shopifake.mainapi.exception.ResourceNotFoundException;
 import com.shopifake.mainapi.mapper.ProductMapper;
-import com.shopifake.mainapi.mapper.ProductVariantMapper;
 import com.shopifake.mainapi.model.AttributeDefinition;
 import com.shopifake.mainapi.model.Category;
 import com.shopifake.mainapi.model.Product;
+import com.shopifake.mainapi.pagination.KeysetCursor;
+import com.shopifake.mainapi.pagination.KeysetCursor.NameIdPosition;
+import com.shopifake.mainapi.pagination.KeysetCursor.RankIdPosition;
 import com.shopifake.mainapi.repository.AttributeDefinitionRepository;
 import com.shopifake.mainapi.repository.CategoryRepository;
 import com.shopifake.mainapi.repository.ProductRepository;
-import com.shopifake.mainapi.repository.ProductVariantRepository;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.streaming.CatalogCursorReader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,97 +48,209 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ShopRepository shopRepository;
     private final AttributeDefinitionRepository attributeDefinitionRepository;
-    private final ProductVariantRepository productVariantRepository;
     private final ProductMapper productMapper;
-    private final ProductVariantMapper productVariantMapper;
+    private final CatalogReadService catalogReadService;
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogCursorReader catalogCursorReader;
+    private final FacetIndexCache facetIndexCache;
+    private final ShopOwnershipValidator shopOwnershipValidator;
+    private final SlugAllocator slugAllocator;
 
     /**
-     * Récupère tous les produits d'une catégorie
+     * Récupère une page des produits d'une catégorie, triés par (name, id)
      */
-    public List<ProductDto> getProductsByCategory(Long shopId, Long categoryId) {
-        validateCategoryBelongsToShop(categoryId, shopId);
-        return productRepository.findByCategoryIdOrderByName(categoryId)
-                .stream()
-                .map(productMapper::toDto)
-                .toList();
+    public CursorPage<ProductDto> getProductsByCategory(Long shopId, Long categoryId, String cursor, Integer limit) {
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        NameIdPosition after = KeysetCursor.decodeNameId(cursor);
+
+        Optional<List<ProductWithVariantsDto>> cached = catalogSnapshotCache.getSnapshot(shopId)
+                .filter(snapshot -> snapshot.findCategory(categoryId).isPresent())
+                .flatMap(snapshot -> snapshot.getProductsAfter(categoryId, after, pageSize + 1));
+        if (cached.isPresent()) {
+            return KeysetCursor.page(products(cached.get()), pageSize,
+                    product -> KeysetCursor.encodeNameId(product.name(), product.id()));
+        }
+
+        shopOwnershipValidator.validateCategory(shopId, categoryId);
+        List<Long> productIds = productRepository.findPageIdsByCategoryId(categoryId, after.name(), after.id(), pageSize + 1);
+
+        return KeysetCursor.page(catalogReadService.getProducts(productIds), pageSize,
+                product -> KeysetCursor.encodeNameId(product.name(), product.id()));
     }
 
     /**
      * Récupère tous les produits avec leurs variants d'une catégorie et ses sous-catégories (récursif)
      */
     public List<ProductWithVariantsDto> getProductsWithVariantsByCategory(Long shopId, Long categoryId) {
-        validateCategoryBelongsToShop(categoryId, shopId);
-        
-        // Récupérer la catégorie et tous ses descendants
-        List<Category> descendants = categoryRepository.findDescendants(categoryId);
-        List<Long> categoryIds = descendants.stream()
-                .map(Category::getId)
-                .toList();
-        
-        // Récupérer tous les produits de ces catégories
-        List<Product> products = productRepository.findByCategoryIdInOrderByName(categoryIds);
-        
-        // Pour chaque produit, récupérer ses variants
-        return products.stream()
-                .map(product -> {
-                    List<ProductVariantDto> variants = productVariantRepository
-                            .findByProductIdOrderById(product.getId())
-                            .stream()
-                            .map(productVariantMapper::toDto)
-                            .toList();
-                    return new ProductWithVariantsDto(productMapper.toDto(product), variants);
-                })
-                .toList();
+        Optional<CatalogSnapshot> snapshot = catalogSnapshotCache.getSnapshot(shopId)
+                .filter(s -> s.findCategory(categoryId).isPresent());
+        if (snapshot.isPresent()) {
+            return snapshot.get().getProductsInCategories(snapshot.get().getDescendantIds(categoryId));
+        }
+
+        shopOwnershipValidator.validateCategory(shopId, categoryId);
+
+        // La catégorie et tous ses descendants, par jointure sur la table de fermeture
+        return catalogReadService.getSubtreeCatalog(categoryId);
     }
 
     /**
-     * Récupère tous les produits avec leurs variants de toutes les catégories d'une boutique
+     * Récupère une page des produits avec leurs variants de toutes les catégories d'une boutique, triés par (name, id)
      */
-    public List<ProductWithVariantsDto> getAllProductsWithVariants(Long shopId) {
-        // Récupérer tous les produits de la boutique
-        List<Product> products = getProductsByShop(shopId).stream()
-                .map(dto -> findProductById(dto.id()))
-                .toList();
-        
-        // Pour chaque produit, récupérer ses variants
-        return products.stream()
-                .map(product -> {
-                    List<ProductVariantDto> variants = productVariantRepository
-                            .findByProductIdOrderById(product.getId())
-                            .stream()
-                            .map(productVariantMapper::toDto)
-                            .toList();
-                    return new ProductWithVariantsDto(productMapper.toDto(product), variants);
-                })
-                .toList();
+    public CursorPage<ProductWithVariantsDto> getAllProductsWithVariants(Long shopId, String cursor, Integer limit) {
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        NameIdPosition after = KeysetCursor.decodeNameId(cursor);
+
+        List<ProductWithVariantsDto> rows = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.getProductsAfter(null, after, pageSize + 1))
+                .orElseGet(() -> catalogReadService.getProductsWithVariants(
+                        productRepository.findPageIdsByShopId(shopId, after.name(), after.id(), pageSize + 1)));
+
+        return KeysetCursor.page(rows, pageSize,
+                item -> KeysetCursor.encodeNameId(item.product().name(), item.product().id()));
+    }
+
+    /**
+     * Parcourt en flux tous les produits avec leurs variants d'une boutique, triés par (name, id).
+     * Chaque produit est remis au consommateur dès qu'il est lu : rien n'est accumulé en mémoire.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamAllProductsWithVariants(Long shopId, Consumer<ProductWithVariantsDto> consumer) {
+        catalogCursorReader.streamShopCatalog(shopId, consumer);
+    }
+
+    /**
+     * Valide qu'une boutique existe
+     */
+    public void validateShopExists(Long shopId) {
+        if (!shopRepository.existsById(shopId)) {
+            throw new ResourceNotFoundException("Boutique", "id", shopId);
+        }
+    }
+
+    /**
+     * Récupère une page des produits d'une boutique (toutes catégories), triés par (name, id)
+     */
+    public CursorPage<ProductDto> getProductsByShop(Long shopId, String cursor, Integer limit) {
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        NameIdPosition after = KeysetCursor.decodeNameId(cursor);
+
+        List<ProductDto> rows = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.getProductsAfter(null, after, pageSize + 1))
+                .map(this::products)
+                .orElseGet(() -> catalogReadService.getProducts(
+                        productRepository.findPageIdsByShopId(shopId, after.name(), after.id(), pageSize + 1)));
+
+        return KeysetCursor.page(rows, pageSize,
+                product -> KeysetCursor.encodeNameId(product.name(), product.id()));
     }
 
     /**
-     * Récupère tous les produits d'une boutique (toutes catégories)
+     * Recherche plein texte dans les produits d'une boutique (nom, description, valeurs d'attributs des variants).
+     * Les résultats sont triés par pertinence décroissante et paginés par curseur (rank, id).
      */
-    public List<ProductDto> getProductsByShop(Long shopId) {
-        List<Long> categoryIds = categoryRepository.findByShopIdOrderByPosition(shopId)
+    public CursorPage<ProductSearchResultDto> searchProducts(Long shopId, String query, String cursor, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Le texte de recherche est obligatoire");
+        }
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        RankIdPosition after = KeysetCursor.decodeRankId(cursor);
+
+        List<ProductRepository.SearchHit> hits =
+                productRepository.search(shopId, query.strip(), after.rank(), after.id(), pageSize + 1);
+        if (hits.isEmpty()) {
+            validateShopExists(shopId);
+            return new CursorPage<>(List.of(), null);
+        }
+
+        List<Long> productIds = hits.stream().map(ProductRepository.SearchHit::getId).toList();
+        Map<Long, ProductDto> productsById = catalogSnapshotCache.getSnapshot(shopId)
+                .map(snapshot -> productIds.stream()
+                        .map(snapshot::findProduct)
+                        .flatMap(Optional::stream)
+                        .map(ProductWithVariantsDto::product)
+                        .toList())
+                .filter(found -> found.size() == productIds.size())
+                .orElseGet(() -> catalogReadService.getProducts(productIds))
                 .stream()
-                .map(Category::getId)
+                .collect(Collectors.toMap(ProductDto::id, Function.identity()));
+
+        List<ProductSearchResultDto> rows = hits.stream()
+                .filter(hit -> productsById.containsKey(hit.getId()))
+                .map(hit -> new ProductSearchResultDto(productsById.get(hit.getId()), hit.getRank(), hit.getHeadline()))
                 .toList();
 
-        if (categoryIds.isEmpty()) {
-            return List.of();
+        return KeysetCursor.page(rows, pageSize,
+                result -> KeysetCursor.encodeRankId(result.rank(), result.product().id()));
+    }
+
+    /**
+     * Filtre les produits d'une boutique (ou d'une catégorie et de ses sous-catégories) par valeurs d'attributs,
+     * à partir de l'index de facettes en mémoire. Chaque filtre a la forme "attributeName:value" :
+     * les valeurs d'un même attribut sont combinées en OU, les attributs entre eux en ET.
+     * Les produits sont triés par (name, id) et paginés par curseur.
+     */
+    public FacetedProductsDto filterProducts(Long shopId, Long categoryId, List<String> filters, boolean inStock,
+                                             String cursor, Integer limit) {
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        NameIdPosition after = KeysetCursor.decodeNameId(cursor);
+        Map<String, Set<String>> attributeFilters = parseFilters(filters);
+
+        Optional<CatalogSnapshot> snapshot = catalogSnapshotCache.getSnapshot(shopId);
+        Set<Long> categoryIds = null;
+        if (categoryId != null) {
+            if (snapshot.isPresent() && snapshot.get().findCategory(categoryId).isPresent()) {
+                categoryIds = snapshot.get().getDescendantIds(categoryId);
+            } else {
+                shopOwnershipValidator.validateCategory(shopId, categoryId);
+                categoryIds = categoryRepository.findDescendants(categoryId).stream()
+                        .map(Category::getId)
+                        .collect(Collectors.toSet());
+            }
         }
 
-        return productRepository.findByCategoryIdInOrderByName(categoryIds)
+        FacetIndex.Result result = facetIndexCache.getIndex(shopId).filter(categoryIds, attributeFilters, inStock);
+
+        List<Long> pageIds = result.products().stream()
+                .filter(ref -> isAfter(ref, after))
+                .limit(pageSize + 1L)
+                .map(FacetIndex.ProductRef::id)
+                .toList();
+        Map<Long, ProductDto> productsById = snapshot
+                .map(s -> pageIds.stream()
+                        .map(s::findProduct)
+                        .flatMap(Optional::stream)
+                        .map(ProductWithVariantsDto::product)
+                        .toList())
+                .filter(found -> found.size() == pageIds.size())
+                .orElseGet(() -> catalogReadService.getProducts(pageIds))
                 .stream()
-                .map(productMapper::toDto)
+                .collect(Collectors.toMap(ProductDto::id, Function.identity()));
+        List<ProductDto> rows = pageIds.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
                 .toList();
+
+        CursorPage<ProductDto> page = KeysetCursor.page(rows, pageSize,
+                product -> KeysetCursor.encodeNameId(product.name(), product.id()));
+        return new FacetedProductsDto(page, result.variantCount(), result.facets());
     }
 
     /**
      * Récupère un produit par son ID
      */
     public ProductDto getProductById(Long shopId, Long productId) {
+        Optional<ProductWithVariantsDto> cached = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.findProduct(productId));
+        if (cached.isPresent()) {
+            return cached.get().product();
+        }
+
         Product product = findProductById(productId);
-        validateCategoryBelongsToShop(product.getCategoryId(), shopId);
+        shopOwnershipValidator.validateProduct(shopId, product);
         return productMapper.toDto(product);
     }
 
@@ -128,8 +258,13 @@ public class ProductService {
      * Récupère les définitions d'attributs d'un produit
      */
     public List<AttributeDefinitionDto> getAttributeDefinitions(Long shopId, Long productId) {
-        Product product = findProductById(productId);
-        validateCategoryBelongsToShop(product.getCategoryId(), shopId);
+        Optional<ProductWithVariantsDto> cached = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.findProduct(productId));
+        if (cached.isPresent()) {
+            return cached.get().product().attributeDefinitions();
+        }
+
+        shopOwnershipValidator.validateProduct(shopId, productId);
 
         return attributeDefinitionRepository.findByProductIdOrderByPosition(productId)
                 .stream()
@@ -140,17 +275,52 @@ public class ProductService {
     /**
      * Crée un nouveau produit
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ProductDto createProduct(Long shopId, CreateProductRequest request) {
+        return slugAllocator.executeWithRetry(SlugAllocator.PRODUCT_SLUG_CONSTRAINT,
+                () -> doCreateProduct(shopId, request));
+    }
+
+    /**
+     * Met à jour un produit (nom, description, statut actif uniquement)
+     * Les attributeDefinitions ne peuvent pas être modifiés s'il existe des variants
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ProductDto updateProduct(Long shopId, Long productId, UpdateProductRequest request) {
+        return slugAllocator.executeWithRetry(SlugAllocator.PRODUCT_SLUG_CONSTRAINT,
+                () -> doUpdateProduct(shopId, productId, request));
+    }
+
+    /**
+     * Supprime un produit (et tous ses variants en cascade)
+     */
+    @Transactional
+    public void deleteProduct(Long shopId, Long productId) {
+        log.info("Deleting product {} for shop {}", productId, shopId);
+
+        Product product = findProductById(productId);
+        shopOwnershipValidator.validateProduct(shopId, product);
+
+        productRepository.delete(product);
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.PRODUCT, productId));
+        log.info("Product {} deleted successfully", productId);
+    }
+
+    // ========== Méthodes privées ==========
+
+    /**
+     * Crée un produit ; exécuté dans la transaction ouverte par SlugAllocator
+     */
+    private ProductDto doCreateProduct(Long shopId, CreateProductRequest request) {
         log.info("Creating product for shop {}: {}", shopId, request.name());
 
-        validateCategoryBelongsToShop(request.categoryId(), shopId);
+        shopOwnershipValidator.validateCategory(shopId, request.categoryId());
 
-        String slug = generateUniqueSlug(request.categoryId(), request.name());
+        String slug = slugAllocator.allocateProductSlug(request.categoryId(), slugify(request.name()), null);
 
         Product product = new Product();
         product.setCategoryId(request.categoryId());
-        product.setShopId(request.shopId());
+        product.setShopId(shopId);
         product.setName(request.name());
         product.setSlug(slug);
         product.setDescription(request.description());
@@ -168,25 +338,25 @@ public class ProductService {
             savedProduct.setAttributeDefinitions(attributeDefinitionRepository.saveAll(attributeDefinitions));
         }
 
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.PRODUCT, savedProduct.getId()));
+
         log.info("Product created with id: {}", savedProduct.getId());
         return productMapper.toDto(savedProduct);
     }
 
     /**
-     * Met à jour un produit (nom, description, statut actif uniquement)
-     * Les attributeDefinitions ne peuvent pas être modifiés s'il existe des variants
+     * Met à jour un produit ; exécuté dans la transaction ouverte par SlugAllocator
      */
-    @Transactional
-    public ProductDto updateProduct(Long shopId, Long productId, UpdateProductRequest request) {
+    private ProductDto doUpdateProduct(Long shopId, Long productId, UpdateProductRequest request) {
         log.info("Updating product {} for shop {}", productId, shopId);
 
         Product product = findProductById(productId);
-        validateCategoryBelongsToShop(product.getCategoryId(), shopId);
+        shopOwnershipValidator.validateProduct(shopId, product);
 
         // Mettre à jour le nom et régénérer le slug si nécessaire
         if (!product.getName().equals(request.name())) {
             product.setName(request.name());
-            String newSlug = generateUniqueSlug(product.getCategoryId(), request.name(), productId);
+            String newSlug = slugAllocator.allocateProductSlug(product.getCategoryId(), slugify(request.name()), productId);
             product.setSlug(newSlug);
         }
 
@@ -196,67 +366,45 @@ public class ProductService {
         }
 
         Product updated = productRepository.save(product);
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.PRODUCT, productId));
         log.info("Product {} updated successfully", productId);
 
         return productMapper.toDto(updated);
     }
 
-    /**
-     * Supprime un produit (et tous ses variants en cascade)
-     */
-    @Transactional
-    public void deleteProduct(Long shopId, Long productId) {
-        log.info("Deleting product {} for shop {}", productId, shopId);
-
-        Product product = findProductById(productId);
-        validateCategoryBelongsToShop(product.getCategoryId(), shopId);
-
-        productRepository.delete(product);
-        log.info("Product {} deleted successfully", productId);
+    private List<ProductDto> products(List<ProductWithVariantsDto> items) {
+        return items.stream()
+                .map(ProductWithVariantsDto::product)
+                .toList();
     }
 
-    // ========== Méthodes privées ==========
-
-    private Product findProductById(Long productId) {
-        return productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Produit", "id", productId));
+    private static boolean isAfter(FacetIndex.ProductRef ref, NameIdPosition after) {
+        int byName = ref.name().compareTo(after.name());
+        return byName > 0 || (byName == 0 && ref.id() > after.id());
     }
 
-    private void validateCategoryBelongsToShop(Long categoryId, Long shopId) {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new ResourceNotFoundException("Catégorie", "id", categoryId));
-
-        if (!category.getShopId().equals(shopId)) {
-            throw new BadRequestException("La catégorie n'appartient pas à cette boutique");
+    private static Map<String, Set<String>> parseFilters(List<String> filters) {
+        Map<String, Set<String>> parsed = new HashMap<>();
+        if (filters == null) {
+            return parsed;
         }
-    }
-
-    private String generateUniqueSlug(Long categoryId, String name) {
-        return generateUniqueSlug(categoryId, name, null);
-    }
-
-    private String generateUniqueSlug(Long categoryId, String name, Long excludeProductId) {
-        String baseSlug = slugify(name);
-        String slug = baseSlug;
-        int counter = 1;
-
-        while (true) {
-            if (excludeProductId != null) {
-                if (!productRepository.existsByCategoryIdAndSlugAndIdNot(categoryId, slug, excludeProductId)) {
-                    break;
-                }
-            } else {
-                if (!productRepository.existsByCategoryIdAndSlug(categoryId, slug)) {
-                    break;
-                }
+        for (String filter : filters) {
+            int separator = filter.indexOf(':');
+            if (separator <= 0 || separator == filter.length() - 1) {
+                throw new BadRequestException("Filtre invalide, format attendu attributeName:value : " + filter);
             }
-            slug = baseSlug + "-" + counter++;
+            parsed.computeIfAbsent(filter.substring(0, separator), k -> new HashSet<>())
+                    .add(filter.substring(separator + 1));
         }
+        return parsed;
+    }
 
-        return slug;
+    private Product findProductById(Long productId) {
+        return productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Produit", "id", productId));
     }
 
-    private String slugify(String input) {
+    static String slugify(String input) {
         if (input == null || input.isEmpty()) {
             return "";
         }
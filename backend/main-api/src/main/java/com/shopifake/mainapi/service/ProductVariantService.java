@@ -1,21 +1,35 @@
 package com.shopifake.mainapi.service;
 
+import com.shopifake.mainapi.cache.CatalogSnapshotCache;
+import com.shopifake.mainapi.dto.BulkCreateProductVariantsRequest;
+import com.shopifake.mainapi.dto.BulkCreatedVariantsDto;
 import com.shopifake.mainapi.dto.CreateProductVariantRequest;
+import com.shopifake.mainapi.dto.CursorPage;
 import com.shopifake.mainapi.dto.ProductVariantDto;
 import com.shopifake.mainapi.dto.UpdateProductVariantRequest;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
 import com.shopifake.mainapi.exception.BadRequestException;
 import com.shopifake.mainapi.exception.ResourceNotFoundException;
 import com.shopifake.mainapi.mapper.ProductVariantMapper;
 import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.pagination.KeysetCursor;
 import com.shopifake.mainapi.repository.*;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,34 +38,63 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProductVariantService {
 
+    // Tranche de variants insérés avant de vider le contexte de persistance (multiple du batch JDBC)
+    private static final int BULK_FLUSH_SIZE = 500;
+    private static final int BULK_ERROR_SAMPLE_SIZE = 10;
+
     private final ProductVariantRepository productVariantRepository;
     private final ProductRepository productRepository;
-    private final CategoryRepository categoryRepository;
     private final AttributeDefinitionRepository attributeDefinitionRepository;
     private final VariantAttributeRepository variantAttributeRepository;
     private final ProductVariantMapper productVariantMapper;
     private final ChatbotWebhookService chatbotWebhookService;
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShopOwnershipValidator shopOwnershipValidator;
+    private final EntityManager entityManager;
 
     /**
-     * Récupère tous les variants d'un produit
+     * Récupère une page des variants d'un produit, triés par id
      */
-    public List<ProductVariantDto> getVariantsByProduct(Long shopId, Long productId) {
-        Product product = findProductById(productId);
-        validateProductBelongsToShop(product, shopId);
+    public CursorPage<ProductVariantDto> getVariantsByProduct(Long shopId, Long productId, String cursor, Integer limit) {
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        long afterId = KeysetCursor.decodeId(cursor);
+
+        Optional<List<ProductVariantDto>> cached = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.findProduct(productId))
+                .map(item -> item.variants().stream()
+                        .filter(variant -> variant.id() > afterId)
+                        .limit(pageSize + 1)
+                        .toList());
+        if (cached.isPresent()) {
+            return KeysetCursor.page(cached.get(), pageSize, variant -> KeysetCursor.encodeId(variant.id()));
+        }
 
-        return productVariantRepository.findByProductIdOrderById(productId)
-                .stream()
-                .map(productVariantMapper::toDto)
-                .toList();
+        shopOwnershipValidator.validateProduct(shopId, productId);
+
+        List<Long> variantIds = productVariantRepository.findPageIdsByProductId(productId, afterId, pageSize + 1);
+        List<ProductVariantDto> variants = variantIds.isEmpty()
+                ? List.of()
+                : productVariantRepository.findByIdInWithAttributes(variantIds)
+                        .stream()
+                        .map(productVariantMapper::toDto)
+                        .toList();
+
+        return KeysetCursor.page(variants, pageSize, variant -> KeysetCursor.encodeId(variant.id()));
     }
 
     /**
      * Récupère un variant par son ID
      */
     public ProductVariantDto getVariantById(Long shopId, Long variantId) {
+        Optional<ProductVariantDto> cached = catalogSnapshotCache.getSnapshot(shopId)
+                .flatMap(snapshot -> snapshot.findVariant(variantId));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         ProductVariant variant = findVariantById(variantId);
-        Product product = findProductById(variant.getProductId());
-        validateProductBelongsToShop(product, shopId);
+        shopOwnershipValidator.validateVariant(shopId, variant);
 
         return productVariantMapper.toDto(variant);
     }
@@ -63,8 +106,7 @@ public class ProductVariantService {
     public ProductVariantDto createVariant(Long shopId, CreateProductVariantRequest request) {
         log.info("Creating variant for product {}: {}", request.productId(), request.sku());
 
-        Product product = findProductById(request.productId());
-        validateProductBelongsToShop(product, shopId);
+        shopOwnershipValidator.validateProduct(shopId, request.productId());
 
         // Valider le SKU unique
         if (productVariantRepository.existsBySku(request.sku())) {
@@ -96,31 +138,18 @@ public class ProductVariantService {
             }
         }
 
-        // Valider l'unicité de la combinaison d'attributs
-        validateUniqueAttributeCombination(request.productId(), null, request.attributes());
-
-        // Créer le variant
-        ProductVariant variant = new ProductVariant();
-        variant.setProductId(request.productId());
-        variant.setShopId(request.shopId());
-        variant.setSku(request.sku());
-        variant.setPrice(request.price());
-        variant.setStock(request.stock());
-        variant.setIsActive(request.isActive() != null ? request.isActive() : true);
-
-        ProductVariant savedVariant = productVariantRepository.save(variant);
-
-        // Créer les attributs du variant
-        List<VariantAttribute> variantAttributes = new ArrayList<>();
-        for (Map.Entry<Long, String> entry : request.attributes().entrySet()) {
-            VariantAttribute va = new VariantAttribute();
-            va.setVariantId(savedVariant.getId());
-            va.setAttributeDefinitionId(entry.getKey());
-            va.setAttributeValue(entry.getValue());
-            variantAttributes.add(va);
+        // Valider l'unicité de la combinaison d'attributs (l'index unique couvre les créations concurrentes)
+        String attributeSignature = AttributeSignature.of(request.attributes());
+        if (productVariantRepository.existsByProductIdAndAttributeSignature(request.productId(), attributeSignature)) {
+            throw new BadRequestException("Un variant avec cette combinaison d'attributs existe déjà");
         }
-        savedVariant.setAttributes(variantAttributeRepository.saveAll(variantAttributes));
 
+        // Créer le variant et ses attributs
+        ProductVariant savedVariant = productVariantRepository.save(newVariant(shopId, request, attributeSignature));
+        savedVariant.setAttributes(variantAttributeRepository.saveAll(newAttributes(savedVariant.getId(), request.attributes())));
+        productRepository.refreshSearchAttributes(request.productId());
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.VARIANT, savedVariant.getId()));
         log.info("Variant created with id: {}", savedVariant.getId());
         
         // Notify chatbot service asynchronously
@@ -129,6 +158,60 @@ public class ProductVariantService {
         return productVariantMapper.toDto(savedVariant);
     }
 
+    /**
+     * Crée un lot de variants (synchronisation de catalogue).
+     * Les validations portent sur l'ensemble du lot en quelques requêtes (propriété des produits, SKU,
+     * définitions d'attributs, combinaisons existantes) : le lot est entièrement créé ou entièrement rejeté.
+     * Les IDs viennent des séquences à pas de 50 et les insertions partent en batch JDBC ;
+     * le contexte de persistance est vidé par tranches pour borner la mémoire.
+     */
+    @Transactional
+    public BulkCreatedVariantsDto createVariants(Long shopId, BulkCreateProductVariantsRequest request) {
+        List<CreateProductVariantRequest> items = request.variants();
+        log.info("Bulk creating {} variants for shop {}", items.size(), shopId);
+
+        Set<Long> productIds = items.stream()
+                .map(CreateProductVariantRequest::productId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        shopOwnershipValidator.validateProducts(shopId, productIds);
+        List<String> signatures = validateBulkVariants(items, productIds);
+
+        List<Long> variantIds = new ArrayList<>(items.size());
+        for (int from = 0; from < items.size(); from += BULK_FLUSH_SIZE) {
+            int to = Math.min(from + BULK_FLUSH_SIZE, items.size());
+            List<ProductVariant> variants = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                variants.add(newVariant(shopId, items.get(i), signatures.get(i)));
+            }
+            // persist attribue les IDs depuis la séquence sans insérer : les attributs peuvent les référencer
+            productVariantRepository.saveAll(variants);
+            List<VariantAttribute> attributes = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                attributes.addAll(newAttributes(variants.get(i - from).getId(), items.get(i).attributes()));
+            }
+            variantAttributeRepository.saveAll(attributes);
+            entityManager.flush();
+            entityManager.clear();
+            variants.forEach(variant -> variantIds.add(variant.getId()));
+        }
+
+        for (Long productId : productIds) {
+            productRepository.refreshSearchAttributes(productId);
+            eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.PRODUCT, productId));
+        }
+        log.info("{} variants created for shop {}", variantIds.size(), shopId);
+
+        // Une seule notification pour tout le lot, envoyée après commit pour que les variants soient visibles
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                chatbotWebhookService.notifyVariantsCreated(variantIds);
+            }
+        });
+
+        return new BulkCreatedVariantsDto(variantIds.size(), variantIds);
+    }
+
     /**
      * Met à jour un variant
      */
@@ -137,8 +220,7 @@ public class ProductVariantService {
         log.info("Updating variant {}", variantId);
 
         ProductVariant variant = findVariantById(variantId);
-        Product product = findProductById(variant.getProductId());
-        validateProductBelongsToShop(product, shopId);
+        shopOwnershipValidator.validateVariant(shopId, variant);
 
         // Valider le SKU unique si modifié
         if (!variant.getSku().equals(request.sku())) {
@@ -149,12 +231,16 @@ public class ProductVariantService {
         }
 
         variant.setPrice(request.price());
+        if (productVariantRepository.updateStockCoveringReserved(variantId, request.stock()) == 0) {
+            throw new BadRequestException("Le stock ne peut pas être inférieur à la quantité réservée du variant");
+        }
         variant.setStock(request.stock());
         if (request.isActive() != null) {
             variant.setIsActive(request.isActive());
         }
 
         ProductVariant updated = productVariantRepository.save(variant);
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.VARIANT, variantId));
         log.info("Variant {} updated successfully", variantId);
 
         // Notify chatbot service asynchronously
@@ -171,13 +257,14 @@ public class ProductVariantService {
         log.info("Deleting variant {}", variantId);
 
         ProductVariant variant = findVariantById(variantId);
-        Product product = findProductById(variant.getProductId());
-        validateProductBelongsToShop(product, shopId);
+        shopOwnershipValidator.validateVariant(shopId, variant);
 
         // Notify chatbot service before deletion
         chatbotWebhookService.notifyVariantDeleted(variant);
         
         productVariantRepository.delete(variant);
+        productRepository.refreshSearchAttributes(variant.getProductId());
+        eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.VARIANT, variantId));
         log.info("Variant {} deleted successfully", variantId);
     }
 
@@ -188,49 +275,72 @@ public class ProductVariantService {
                 .orElseThrow(() -> new ResourceNotFoundException("Variant", "id", variantId));
     }
 
-    private Product findProductById(Long productId) {
-        return productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Produit", "id", productId));
-    }
-
-    private void validateProductBelongsToShop(Product product, Long shopId) {
-        Category category = categoryRepository.findById(product.getCategoryId())
-                .orElseThrow(() -> new ResourceNotFoundException("Catégorie", "id", product.getCategoryId()));
+    /**
+     * Valide un lot de variants et retourne la signature d'attributs de chacun, dans l'ordre du lot
+     */
+    private List<String> validateBulkVariants(List<CreateProductVariantRequest> items, Set<Long> productIds) {
+        Map<Long, Set<Long>> definitionIdsByProduct = attributeDefinitionRepository.findByProductIdIn(productIds)
+                .stream()
+                .collect(Collectors.groupingBy(AttributeDefinition::getProductId,
+                        Collectors.mapping(AttributeDefinition::getId, Collectors.toSet())));
+
+        Set<String> skus = new HashSet<>();
+        Set<String> combinations = new HashSet<>();
+        List<String> signatures = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            CreateProductVariantRequest item = items.get(i);
+            if (!skus.add(item.sku())) {
+                throw new BadRequestException("variants[" + i + "] : SKU présent plusieurs fois dans la requête: " + item.sku());
+            }
+            Set<Long> definitionIds = definitionIdsByProduct.getOrDefault(item.productId(), Set.of());
+            if (!definitionIds.equals(item.attributes().keySet())) {
+                throw new BadRequestException("variants[" + i + "] : les attributs fournis ne correspondent pas "
+                        + "aux définitions du produit " + item.productId());
+            }
+            String signature = AttributeSignature.of(item.attributes());
+            if (!combinations.add(item.productId() + ":" + signature)) {
+                throw new BadRequestException("variants[" + i + "] : combinaison d'attributs présente plusieurs fois dans la requête");
+            }
+            signatures.add(signature);
+        }
 
-        if (!category.getShopId().equals(shopId)) {
-            throw new BadRequestException("Le produit n'appartient pas à cette boutique");
+        List<String> existingSkus = productVariantRepository.findExistingSkus(skus);
+        if (!existingSkus.isEmpty()) {
+            throw new BadRequestException("Des variants avec ces SKU existent déjà: "
+                    + String.join(", ", existingSkus.stream().limit(BULK_ERROR_SAMPLE_SIZE).toList()));
         }
+        productVariantRepository.findSignatures(productIds, new HashSet<>(signatures)).stream()
+                .filter(existing -> combinations.contains(existing.getProductId() + ":" + existing.getAttributeSignature()))
+                .findFirst()
+                .ifPresent(existing -> {
+                    throw new BadRequestException("Un variant avec cette combinaison d'attributs existe déjà pour le produit "
+                            + existing.getProductId());
+                });
+        return signatures;
     }
 
-    private void validateUniqueAttributeCombination(Long productId, Long excludeVariantId, Map<Long, String> attributes) {
-        // Récupérer tous les variants du produit
-        List<ProductVariant> existingVariants = productVariantRepository.findByProductIdOrderById(productId);
-
-        for (ProductVariant existingVariant : existingVariants) {
-            if (excludeVariantId != null && existingVariant.getId().equals(excludeVariantId)) {
-                continue;
-            }
-
-            // Comparer les attributs
-            List<VariantAttribute> existingAttributes = existingVariant.getAttributes();
-
-            if (existingAttributes.size() != attributes.size()) {
-                continue;
-            }
-
-            boolean allMatch = true;
-            for (VariantAttribute va : existingAttributes) {
-                String providedValue = attributes.get(va.getAttributeDefinitionId());
-                if (providedValue == null || !providedValue.equals(va.getAttributeValue())) {
-                    allMatch = false;
-                    break;
-                }
-            }
+    private static ProductVariant newVariant(Long shopId, CreateProductVariantRequest request, String attributeSignature) {
+        ProductVariant variant = new ProductVariant();
+        variant.setProductId(request.productId());
+        variant.setShopId(shopId);
+        variant.setSku(request.sku());
+        variant.setPrice(request.price());
+        variant.setStock(request.stock());
+        variant.setIsActive(request.isActive() != null ? request.isActive() : true);
+        variant.setAttributeSignature(attributeSignature);
+        return variant;
+    }
 
-            if (allMatch) {
-                throw new BadRequestException("Un variant avec cette combinaison d'attributs existe déjà");
-            }
+    private static List<VariantAttribute> newAttributes(Long variantId, Map<Long, String> attributes) {
+        List<VariantAttribute> variantAttributes = new ArrayList<>(attributes.size());
+        for (Map.Entry<Long, String> entry : attributes.entrySet()) {
+            VariantAttribute va = new VariantAttribute();
+            va.setVariantId(variantId);
+            va.setAttributeDefinitionId(entry.getKey());
+            va.setAttributeValue(entry.getValue());
+            variantAttributes.add(va);
         }
+        return variantAttributes;
     }
 }
 
@@ -0,0 +1,84 @@
+package com.shopifake.mainapi.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Roue d'expiration des réservations (roue temporelle hachée) : chaque réservation est rangée dans la case
+ * de son tick d'échéance, et chaque passage ne parcourt que les cases des ticks écoulés. Planifier une
+ * réservation coûte O(1) et trouver les réservations échues ne lit jamais la table.
+ * Les échéances au-delà d'un tour de roue restent dans leur case jusqu'au tour concerné.
+ * La roue ne fait que désigner des candidats : le libérateur revérifie l'échéance en base, une réservation
+ * confirmée ou annulée entre-temps est simplement ignorée.
+ */
+final class ReservationExpiryWheel {
+
+    private record Entry(long reservationId, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final List<ConcurrentLinkedQueue<Entry>> slots;
+    private final LongSupplier clock;
+    // Dernier tick traité ; écrit uniquement par le thread qui fait avancer la roue
+    private volatile long currentTick;
+
+    ReservationExpiryWheel(Duration tick, int size, LongSupplier clock) {
+        this.tickMillis = tick.toMillis();
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ConcurrentLinkedQueue<>());
+        }
+        this.clock = clock;
+        this.currentTick = clock.getAsLong() / tickMillis;
+    }
+
+    /**
+     * Planifie une réservation au premier tick qui suit son échéance
+     */
+    void schedule(long reservationId, Instant expiresAt) {
+        // Une échéance dans un tick déjà traité part au tick suivant plutôt qu'au tour suivant
+        long deadlineTick = Math.max(Math.ceilDiv(expiresAt.toEpochMilli(), tickMillis), currentTick + 1);
+        slotOf(deadlineTick).add(new Entry(reservationId, deadlineTick));
+    }
+
+    /**
+     * Traite les ticks écoulés depuis le dernier passage et retire de la roue les réservations échues
+     */
+    List<Long> advance() {
+        long now = clock.getAsLong() / tickMillis;
+        // Après une pause plus longue qu'un tour, chaque case n'a besoin d'être parcourue qu'une fois
+        long first = Math.max(currentTick + 1, now - slots.size() + 1);
+        List<Long> due = new ArrayList<>();
+        for (long tick = first; tick <= now; tick++) {
+            collectDue(slotOf(tick), now, due);
+        }
+        currentTick = Math.max(currentTick, now);
+        return due;
+    }
+
+    // ========== Méthodes privées ==========
+
+    private ConcurrentLinkedQueue<Entry> slotOf(long tick) {
+        return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+    }
+
+    private static void collectDue(ConcurrentLinkedQueue<Entry> slot, long now, List<Long> due) {
+        // Seules les entrées présentes au début du parcours sont examinées : celles remises en place
+        // (tours suivants) ou ajoutées pendant le parcours attendent le prochain passage sur la case
+        for (int remaining = slot.size(); remaining > 0; remaining--) {
+            Entry entry = slot.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.deadlineTick() <= now) {
+                due.add(entry.reservationId());
+            } else {
+                slot.add(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.shopifake.mainapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.cache.KeyLocks;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.dto.ShopResponse;
+import com.shopifake.mainapi.event.ShopChangedEvent;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.mapper.ShopMapper;
+import com.shopifake.mainapi.repository.ShopRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Résolution nom de domaine -> boutique, appelée au début de chaque page de la vitrine.
+ * Les boutiques résolues sont gardées en mémoire et servies sans transaction ni requête ; les domaines
+ * inconnus sont mis en cache négatif pour une courte durée, pour que le trafic sur des domaines inexistants
+ * (robots) n'atteigne pas la base à chaque requête.
+ * Les deux caches sont séparés : un afflux de domaines inconnus ne peut pas évincer les boutiques connues.
+ * Après commit d'une création, modification ou suppression, les entrées concernées sont remplacées ;
+ * la durée de vie des entrées borne le retard des autres instances.
+ */
+@Component
+public class ShopDomainResolver {
+
+    private static final String CACHE_NAME = "shopDomains";
+    private static final String UNKNOWN_CACHE_NAME = "unknownShopDomains";
+
+    private final ShopRepository shopRepository;
+    private final ShopMapper shopMapper;
+    private final Cache<String, ShopResponse> shops;
+    private final Cache<String, Boolean> unknownDomains;
+    private final KeyLocks domainLocks = new KeyLocks();
+
+    public ShopDomainResolver(ShopRepository shopRepository,
+                              ShopMapper shopMapper,
+                              CacheProperties cacheProperties,
+                              MeterRegistry meterRegistry) {
+        this.shopRepository = shopRepository;
+        this.shopMapper = shopMapper;
+
+        CacheProperties.ShopDomainsConfig config = cacheProperties.getShopDomains();
+        this.shops = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        this.unknownDomains = Caffeine.newBuilder()
+                .maximumSize(config.getUnknownMaximumSize())
+                .expireAfterWrite(config.getUnknownExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, shops, CACHE_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownDomains, UNKNOWN_CACHE_NAME);
+    }
+
+    /**
+     * Retourne la boutique d'un nom de domaine ; les lectures concurrentes d'un même domaine absent
+     * du cache ne font qu'une requête
+     */
+    public ShopResponse resolve(String domainName) {
+        ShopResponse shop = shops.getIfPresent(domainName);
+        if (shop != null) {
+            return shop;
+        }
+        if (unknownDomains.getIfPresent(domainName) == null) {
+            shop = domainLocks.getOrLoad(shops, domainName, this::load);
+            if (shop != null) {
+                return shop;
+            }
+            unknownDomains.put(domainName, Boolean.TRUE);
+        }
+        throw new ResourceNotFoundException("Boutique", "domain_name", domainName);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onShopChanged(ShopChangedEvent event) {
+        // Sous le verrou du domaine : un chargement en cours ne peut pas remplacer l'entrée par l'état d'avant le commit
+        if (event.previousDomainName() != null) {
+            domainLocks.invalidate(shops, event.previousDomainName());
+        }
+        ShopResponse shop = event.shop();
+        if (shop != null) {
+            domainLocks.withLock(shop.getDomainName(), () -> {
+                unknownDomains.invalidate(shop.getDomainName());
+                shops.put(shop.getDomainName(), shop);
+            });
+        }
+    }
+
+    // ========== Méthodes privées ==========
+
+    private ShopResponse load(String domainName) {
+        return shopRepository.findByDomainName(domainName)
+                .map(shopMapper::toResponse)
+                .orElse(null);
+    }
+}
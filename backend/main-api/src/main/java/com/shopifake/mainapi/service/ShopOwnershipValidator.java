@@ -0,0 +1,140 @@
+package com.shopifake.mainapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.config.CacheProperties;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.Product;
+import com.shopifake.mainapi.model.ProductVariant;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Vérifie qu'une catégorie, un produit ou un variant appartient à une boutique.
+ * Les colonnes shop_id dénormalisées (V8) sont lues directement, et l'association id -> shopId,
+ * qui ne change jamais pour une entité, est gardée dans un cache borné.
+ * Une entité inexistante n'est pas mise en cache. Les entrées sont invalidées après commit
+ * d'une écriture sur l'entité, pour qu'un id supprimé redevienne introuvable.
+ */
+@Component
+public class ShopOwnershipValidator {
+
+    private static final String CACHE_NAME = "shopOwnership";
+
+    private enum Kind { CATEGORY, PRODUCT, VARIANT }
+
+    private record Key(Kind kind, Long id) {
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final Cache<Key, Long> cache;
+
+    public ShopOwnershipValidator(CategoryRepository categoryRepository,
+                                  ProductRepository productRepository,
+                                  CacheProperties cacheProperties,
+                                  MeterRegistry meterRegistry) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getOwnership().getMaximumSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Valide qu'une catégorie existe et appartient à la boutique
+     */
+    public void validateCategory(Long shopId, Long categoryId) {
+        Long ownerId = cache.get(new Key(Kind.CATEGORY, categoryId),
+                key -> categoryRepository.findShopIdById(key.id()).orElse(null));
+        if (ownerId == null) {
+            throw new ResourceNotFoundException("Catégorie", "id", categoryId);
+        }
+        if (!ownerId.equals(shopId)) {
+            throw new BadRequestException("La catégorie n'appartient pas à cette boutique");
+        }
+    }
+
+    /**
+     * Valide qu'un produit existe et appartient à la boutique
+     */
+    public void validateProduct(Long shopId, Long productId) {
+        Long ownerId = cache.get(new Key(Kind.PRODUCT, productId),
+                key -> productRepository.findShopIdById(key.id()).orElse(null));
+        if (ownerId == null) {
+            throw new ResourceNotFoundException("Produit", "id", productId);
+        }
+        validateProductOwner(ownerId, shopId);
+    }
+
+    /**
+     * Valide qu'un ensemble de produits existe et appartient à la boutique ;
+     * les produits absents du cache sont chargés en une seule requête
+     */
+    public void validateProducts(Long shopId, Collection<Long> productIds) {
+        Map<Key, Long> owners = cache.getAll(
+                productIds.stream().map(id -> new Key(Kind.PRODUCT, id)).toList(),
+                missing -> productRepository.findOwnersByIdIn(missing.stream().map(Key::id).toList())
+                        .stream()
+                        .collect(Collectors.toMap(owner -> new Key(Kind.PRODUCT, owner.getId()),
+                                ProductRepository.ProductOwner::getShopId)));
+        for (Long productId : productIds) {
+            Long ownerId = owners.get(new Key(Kind.PRODUCT, productId));
+            if (ownerId == null) {
+                throw new ResourceNotFoundException("Produit", "id", productId);
+            }
+            validateProductOwner(ownerId, shopId);
+        }
+    }
+
+    /**
+     * Valide qu'un produit déjà chargé appartient à la boutique, sans requête
+     */
+    public void validateProduct(Long shopId, Product product) {
+        cache.put(new Key(Kind.PRODUCT, product.getId()), product.getShopId());
+        validateProductOwner(product.getShopId(), shopId);
+    }
+
+    /**
+     * Valide qu'un variant déjà chargé appartient à la boutique, sans requête
+     */
+    public void validateVariant(Long shopId, ProductVariant variant) {
+        cache.put(new Key(Kind.VARIANT, variant.getId()), variant.getShopId());
+        if (!variant.getShopId().equals(shopId)) {
+            throw new BadRequestException("Le variant n'appartient pas à cette boutique");
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.scope()) {
+            // Suppression d'une boutique : ses catégories, produits et variants disparaissent en cascade
+            case SHOP -> cache.invalidateAll();
+            case CATEGORY -> cache.invalidate(new Key(Kind.CATEGORY, event.entityId()));
+            case PRODUCT -> cache.invalidate(new Key(Kind.PRODUCT, event.entityId()));
+            case VARIANT -> cache.invalidate(new Key(Kind.VARIANT, event.entityId()));
+            default -> {
+                // Un mouvement de stock ne change pas le propriétaire
+            }
+        }
+    }
+
+    private static void validateProductOwner(Long ownerId, Long shopId) {
+        if (!ownerId.equals(shopId)) {
+            throw new BadRequestException("Le produit n'appartient pas à cette boutique");
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package com.shopifake.mainapi.service;
 
 import com.shopifake.mainapi.dto.CreateShopRequest;
+import com.shopifake.mainapi.dto.CursorPage;
 import com.shopifake.mainapi.dto.ShopResponse;
 import com.shopifake.mainapi.dto.UpdateShopRequest;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.event.ShopChangedEvent;
 import com.shopifake.mainapi.exception.BadRequestException;
 import com.shopifake.mainapi.exception.ResourceNotFoundException;
 import com.shopifake.mainapi.mapper.ShopMapper;
 import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.pagination.KeysetCursor;
 import com.shopifake.mainapi.repository.ShopRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +30,8 @@ public class ShopService {
 
     private final ShopRepository shopRepository;
     private final ShopMapper shopMapper;
+    private final ShopDomainResolver shopDomainResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Créer une nouvelle boutique
@@ -40,8 +48,10 @@ public class ShopService {
         Shop shop = shopMapper.toEntity(request);
         Shop savedShop = shopRepository.save(shop);
 
+        ShopResponse response = shopMapper.toResponse(savedShop);
+        eventPublisher.publishEvent(new ShopChangedEvent(null, response));
         log.info("Boutique créée avec succès, ID: {}", savedShop.getId());
-        return shopMapper.toResponse(savedShop);
+        return response;
     }
 
     /**
@@ -58,28 +68,29 @@ public class ShopService {
     }
 
     /**
-     * Obtenir une boutique par son nom de domaine
+     * Obtenir une boutique par son nom de domaine (appelé par chaque page de la vitrine : servi par le
+     * cache de {@link ShopDomainResolver}, sans transaction)
      */
-    @Transactional(readOnly = true)
     public ShopResponse getShopByDomainName(String domainName) {
-        log.info("Récupération de la boutique avec le nom de domaine: {}", domainName);
-
-        Shop shop = shopRepository.findByDomainName(domainName)
-                .orElseThrow(() -> new ResourceNotFoundException("Boutique", "domain_name", domainName));
-
-        return shopMapper.toResponse(shop);
+        log.debug("Récupération de la boutique avec le nom de domaine: {}", domainName);
+        return shopDomainResolver.resolve(domainName);
     }
 
     /**
-     * Obtenir toutes les boutiques
+     * Obtenir une page de boutiques, triées par id
      */
     @Transactional(readOnly = true)
-    public List<ShopResponse> getAllShops() {
-        log.info("Récupération de toutes les boutiques");
+    public CursorPage<ShopResponse> getAllShops(String cursor, Integer limit) {
+        log.info("Récupération d'une page de boutiques");
 
-        return shopRepository.findAll().stream()
+        int pageSize = KeysetCursor.normalizeLimit(limit);
+        List<ShopResponse> shops = shopRepository
+                .findByIdGreaterThanOrderById(KeysetCursor.decodeId(cursor), Limit.of(pageSize + 1))
+                .stream()
                 .map(shopMapper::toResponse)
-                .collect(Collectors.toList());
+                .toList();
+
+        return KeysetCursor.page(shops, pageSize, shop -> KeysetCursor.encodeId(shop.getId()));
     }
 
     /**
@@ -103,6 +114,7 @@ public class ShopService {
 
         Shop shop = shopRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Boutique", "id", id));
+        String previousDomainName = shop.getDomainName();
 
         // Vérifier si le nouveau nom de domaine existe déjà (pour une autre boutique)
         if (request.getDomainName() != null && !request.getDomainName().equals(shop.getDomainName())) {
@@ -124,9 +136,11 @@ public class ShopService {
         }
 
         Shop updatedShop = shopRepository.save(shop);
+        ShopResponse response = shopMapper.toResponse(updatedShop);
+        eventPublisher.publishEvent(new ShopChangedEvent(previousDomainName, response));
         log.info("Boutique mise à jour avec succès, ID: {}", updatedShop.getId());
 
-        return shopMapper.toResponse(updatedShop);
+        return response;
     }
 
     /**
@@ -140,6 +154,8 @@ public class ShopService {
                 .orElseThrow(() -> new ResourceNotFoundException("Boutique", "id", id));
 
         shopRepository.delete(shop);
+        eventPublisher.publishEvent(new CatalogChangedEvent(id, CatalogChangedEvent.Scope.SHOP, null));
+        eventPublisher.publishEvent(new ShopChangedEvent(shop.getDomainName(), null));
         log.info("Boutique supprimée avec succès, ID: {}", id);
     }
 }
@@ -0,0 +1,119 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Attribution de slugs uniques (base, base-1, base-2, ...).
+ * Le prochain suffixe libre est obtenu en une seule requête (plus grand suffixe existant + 1),
+ * et l'unicité est garantie par les contraintes uq_products_category_slug et uq_categories_shop_slug :
+ * en cas de collision concurrente, l'écriture est rejouée dans une nouvelle transaction.
+ */
+@Component
+@Slf4j
+public class SlugAllocator {
+
+    public static final String PRODUCT_SLUG_CONSTRAINT = "uq_products_category_slug";
+    public static final String CATEGORY_SLUG_CONSTRAINT = "uq_categories_shop_slug";
+
+    // Chaque tour de collisions n'a qu'un gagnant : le plafond doit couvrir la concurrence attendue sur un même nom
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 20;
+    // Aucun id réel n'est négatif : sert d'exclusion neutre à la création
+    private static final long NO_EXCLUDED_ID = -1L;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate writeTransaction;
+
+    public SlugAllocator(ProductRepository productRepository,
+                         CategoryRepository categoryRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Slug libre pour un produit dans sa catégorie (excludeProductId : produit renommé, null à la création)
+     */
+    public String allocateProductSlug(Long categoryId, String baseSlug, Long excludeProductId) {
+        long maxSuffix = productRepository.findMaxSlugSuffix(categoryId, baseSlug, likePattern(baseSlug),
+                excludeProductId != null ? excludeProductId : NO_EXCLUDED_ID);
+        return next(baseSlug, maxSuffix);
+    }
+
+    /**
+     * Slug libre pour une catégorie dans sa boutique (excludeCategoryId : catégorie renommée, null à la création)
+     */
+    public String allocateCategorySlug(Long shopId, String baseSlug, Long excludeCategoryId) {
+        long maxSuffix = categoryRepository.findMaxSlugSuffix(shopId, baseSlug, likePattern(baseSlug),
+                excludeCategoryId != null ? excludeCategoryId : NO_EXCLUDED_ID);
+        return next(baseSlug, maxSuffix);
+    }
+
+    /**
+     * Exécute une écriture qui attribue un slug dans sa propre transaction, et la rejoue si une écriture
+     * concurrente a pris le même slug entre-temps (violation de constraintName).
+     * Une transaction Postgres est inutilisable après une violation de contrainte : chaque tentative
+     * repart donc d'une transaction neuve, l'appelant ne doit pas être transactionnel.
+     */
+    public <T> T executeWithRetry(String constraintName, Supplier<T> write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return writeTransaction.execute(status -> write.get());
+            } catch (DataIntegrityViolationException e) {
+                if (!violates(e, constraintName)) {
+                    throw e;
+                }
+                if (attempt == MAX_ATTEMPTS) {
+                    throw new BadRequestException("Impossible d'attribuer un slug unique, veuillez réessayer");
+                }
+                log.debug("Slug collision on {} (attempt {}), retrying", constraintName, attempt);
+                backoff();
+            }
+        }
+    }
+
+    private static void backoff() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, MAX_BACKOFF_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying slug allocation", e);
+        }
+    }
+
+    private static String next(String baseSlug, long maxSuffix) {
+        // -1 : base libre ; 0 : seule la base est prise ; n : base-n est le plus grand suffixe pris
+        return maxSuffix < 0 ? baseSlug : baseSlug + "-" + (maxSuffix + 1);
+    }
+
+    /**
+     * Motif LIKE des slugs suffixés "base-N", les caractères spéciaux de LIKE étant échappés
+     */
+    private static String likePattern(String baseSlug) {
+        return baseSlug.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "-%";
+    }
+
+    private static boolean violates(Throwable e, String constraintName) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return constraintName.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,317 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.config.ReservationProperties;
+import com.shopifake.mainapi.dto.CreateStockReservationRequest;
+import com.shopifake.mainapi.dto.StockActionDto;
+import com.shopifake.mainapi.dto.StockAvailabilityDto;
+import com.shopifake.mainapi.dto.StockReservationDto;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.event.StockActionsRecordedEvent;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.ActionType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réservations de stock pendant le paiement : une réservation retient une quantité d'un variant pour
+ * une durée limitée, sans toucher au stock physique.
+ * La quantité retenue est cumulée dans product_variants.reserved_stock, mis à jour dans la même requête
+ * que la réservation : le stock disponible (stock - reserved_stock) se lit sur la ligne du variant, sans
+ * parcourir les réservations, et les retraits de stock ne peuvent pas consommer une quantité réservée.
+ * Une réservation est confirmée (elle devient un retrait journalisé dans stock_actions), annulée,
+ * ou libérée à échéance par lots : une roue d'expiration en mémoire désigne les réservations échues
+ * placées par cette instance, et un balayage périodique de la table rattrape les autres
+ * (autre instance, redémarrage, échéance manquée).
+ */
+@Service
+@Slf4j
+public class StockReservationService {
+
+    // La réservation n'est acceptée que si le stock non réservé couvre la quantité demandée
+    private static final String RESERVE_SQL = """
+            WITH held AS (
+                UPDATE product_variants
+                SET reserved_stock = reserved_stock + ?
+                WHERE shop_id = ? AND sku = ? AND stock - reserved_stock >= ?
+                RETURNING id, shop_id
+            )
+            INSERT INTO stock_reservations (shop_id, variant_id, sku, quantity, expires_at, created_at)
+            SELECT shop_id, id, ?, ?, CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond', CURRENT_TIMESTAMP FROM held
+            RETURNING id, expires_at
+            """;
+
+    // Une réservation échue mais pas encore libérée ne peut plus être confirmée
+    private static final String CONFIRM_SQL = """
+            WITH confirmed AS (
+                DELETE FROM stock_reservations
+                WHERE id = ? AND shop_id = ? AND holder IS NULL AND expires_at > CURRENT_TIMESTAMP
+                RETURNING variant_id, sku, quantity
+            ), updated AS (
+                UPDATE product_variants v
+                SET stock = v.stock - c.quantity, reserved_stock = v.reserved_stock - c.quantity,
+                    updated_at = CURRENT_TIMESTAMP
+                FROM confirmed c
+                WHERE v.id = c.variant_id
+                RETURNING v.stock, v.stock_version
+            ), action AS (
+                INSERT INTO stock_actions (variant_id, sku, action_type, quantity, created_at)
+                SELECT variant_id, sku, 'REMOVE', quantity, CURRENT_TIMESTAMP FROM confirmed
+                RETURNING id, variant_id, sku, quantity, created_at
+            )
+            SELECT action.*, updated.stock, updated.stock_version
+            FROM action CROSS JOIN updated
+            """;
+
+    private static final String CANCEL_SQL = """
+            WITH cancelled AS (
+                DELETE FROM stock_reservations
+                WHERE id = ? AND shop_id = ? AND holder IS NULL
+                RETURNING variant_id, quantity
+            )
+            UPDATE product_variants v
+            SET reserved_stock = v.reserved_stock - c.quantity
+            FROM cancelled c
+            WHERE v.id = c.variant_id
+            """;
+
+    private static final String RELEASE_DUE_SQL = """
+            DELETE FROM stock_reservations
+            WHERE id = ANY(?) AND expires_at <= CURRENT_TIMESTAMP
+            RETURNING variant_id, quantity
+            """;
+
+    // SKIP LOCKED : deux instances qui balaient en même temps se partagent les réservations échues
+    private static final String RELEASE_EXPIRED_SQL = """
+            DELETE FROM stock_reservations
+            WHERE id IN (
+                SELECT id FROM stock_reservations
+                WHERE expires_at <= CURRENT_TIMESTAMP
+                ORDER BY expires_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING variant_id, quantity
+            """;
+
+    // Variants verrouillés dans l'ordre des SKU, comme les lots d'actions de stock : pas de verrou mortel
+    private static final String LOCK_VARIANTS_SQL = """
+            SELECT id FROM product_variants WHERE id = ANY(?) ORDER BY sku FOR UPDATE
+            """;
+
+    private static final String RELEASE_HOLDS_SQL = """
+            UPDATE product_variants v
+            SET reserved_stock = v.reserved_stock - d.quantity
+            FROM unnest(?::bigint[], ?::int[]) AS d(id, quantity)
+            WHERE v.id = d.id
+            """;
+
+    private static final String AVAILABILITY_SQL = """
+            SELECT stock, reserved_stock FROM product_variants WHERE shop_id = ? AND sku = ?
+            """;
+
+    private record Hold(Long id, Instant expiresAt) {
+    }
+
+    private record ConfirmedHold(Long variantId, int stock, long stockVersion, StockActionDto action) {
+    }
+
+    private record ReleasedHold(Long variantId, int quantity) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate writeTransaction;
+    private final ReservationProperties properties;
+    private final ReservationExpiryWheel wheel;
+    private final ScheduledExecutorService scheduler;
+
+    public StockReservationService(JdbcTemplate jdbcTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   PlatformTransactionManager transactionManager,
+                                   ReservationProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.wheel = new ReservationExpiryWheel(properties.getTick(), properties.getWheelSize(), System::currentTimeMillis);
+
+        // Un seul thread fait avancer la roue et balaie la table : les deux ne se chevauchent jamais
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("stock-reservations")
+                .daemon(true)
+                .factory());
+        long tick = properties.getTick().toMillis();
+        long sweep = properties.getSweepInterval().toMillis();
+        scheduler.scheduleAtFixedRate(this::releaseDue, tick, tick, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::releaseExpired, sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Réserve une quantité d'un variant de la boutique jusqu'à l'échéance demandée (ou par défaut)
+     */
+    public StockReservationDto reserve(Long shopId, CreateStockReservationRequest request) {
+        Duration ttl = request.ttlSeconds() == null
+                ? properties.getDefaultTtl()
+                : Duration.ofSeconds(request.ttlSeconds());
+        if (ttl.compareTo(properties.getMaxTtl()) > 0) {
+            throw new BadRequestException("La durée de réservation ne peut pas dépasser "
+                    + properties.getMaxTtl().toSeconds() + " secondes");
+        }
+
+        List<Hold> holds = writeTransaction.execute(status -> jdbcTemplate.query(RESERVE_SQL,
+                (rs, rowNum) -> new Hold(rs.getLong("id"), rs.getTimestamp("expires_at").toInstant()),
+                request.quantity(), shopId, request.sku(), request.quantity(),
+                request.sku(), request.quantity(), ttl.toMillis()));
+        if (holds.isEmpty()) {
+            throw rejection(shopId, request);
+        }
+
+        // Planifiée après le commit : la libération ne doit pas passer avant que la réservation soit visible
+        Hold hold = holds.get(0);
+        wheel.schedule(hold.id(), hold.expiresAt());
+        log.debug("Reserved {} x {} for shop {} until {}", request.quantity(), request.sku(), shopId, hold.expiresAt());
+        return new StockReservationDto(hold.id(), request.sku(), request.quantity(), hold.expiresAt());
+    }
+
+    /**
+     * Confirme une réservation : la quantité retenue est retirée du stock et journalisée comme un retrait.
+     * Une réservation échue, même pas encore libérée, est introuvable.
+     */
+    @Transactional
+    public StockActionDto confirm(Long shopId, Long reservationId) {
+        List<ConfirmedHold> confirmed = jdbcTemplate.query(CONFIRM_SQL,
+                (rs, rowNum) -> new ConfirmedHold(rs.getLong("variant_id"), rs.getInt("stock"), rs.getLong("stock_version"),
+                        new StockActionDto(rs.getLong("id"), rs.getString("sku"), ActionType.REMOVE, rs.getInt("quantity"),
+                                rs.getTimestamp("created_at").toInstant())),
+                reservationId, shopId);
+        if (confirmed.isEmpty()) {
+            throw new ResourceNotFoundException("Réservation", "id", reservationId);
+        }
+        ConfirmedHold hold = confirmed.get(0);
+
+        eventPublisher.publishEvent(CatalogChangedEvent.stock(shopId, hold.variantId(), hold.stock(), hold.stockVersion()));
+        eventPublisher.publishEvent(new StockActionsRecordedEvent(shopId, List.of(hold.action())));
+
+        return hold.action();
+    }
+
+    /**
+     * Annule une réservation avant son échéance : la quantité retenue redevient disponible
+     */
+    @Transactional
+    public void cancel(Long shopId, Long reservationId) {
+        if (jdbcTemplate.update(CANCEL_SQL, reservationId, shopId) == 0) {
+            throw new ResourceNotFoundException("Réservation", "id", reservationId);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public StockAvailabilityDto getAvailability(Long shopId, String sku) {
+        List<StockAvailabilityDto> availability = jdbcTemplate.query(AVAILABILITY_SQL,
+                (rs, rowNum) -> {
+                    int stock = rs.getInt("stock");
+                    int reserved = rs.getInt("reserved_stock");
+                    // Le stock peut avoir été corrigé sous la quantité réservée : rien n'est alors disponible
+                    return new StockAvailabilityDto(sku, stock, reserved, Math.max(stock - reserved, 0));
+                },
+                shopId, sku);
+        if (availability.isEmpty()) {
+            throw new ResourceNotFoundException("ProductVariant", "sku", sku);
+        }
+        return availability.get(0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // ========== Méthodes privées ==========
+
+    private RuntimeException rejection(Long shopId, CreateStockReservationRequest request) {
+        StockAvailabilityDto availability = getAvailability(shopId, request.sku());
+        return new BadRequestException(
+                "Stock disponible insuffisant pour le SKU " + request.sku() +
+                ". Stock disponible : " + availability.available() +
+                ", quantité demandée : " + request.quantity()
+        );
+    }
+
+    /**
+     * Libère les réservations désignées par la roue, par lots
+     */
+    private void releaseDue() {
+        try {
+            List<Long> due = wheel.advance();
+            int batchSize = properties.getReleaseBatchSize();
+            for (int from = 0; from < due.size(); from += batchSize) {
+                Long[] ids = due.subList(from, Math.min(from + batchSize, due.size())).toArray(Long[]::new);
+                release(RELEASE_DUE_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+            }
+        } catch (RuntimeException e) {
+            // Les réservations non libérées restent en base et seront reprises par le balayage
+            log.error("Failed to release expired stock reservations", e);
+        }
+    }
+
+    /**
+     * Libère par lots toutes les réservations échues présentes en base
+     */
+    private void releaseExpired() {
+        try {
+            int batchSize = properties.getReleaseBatchSize();
+            int released;
+            do {
+                released = release(RELEASE_EXPIRED_SQL, ps -> ps.setInt(1, batchSize));
+            } while (released == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Failed to sweep expired stock reservations", e);
+        }
+    }
+
+    /**
+     * Supprime un lot de réservations et rend leurs quantités disponibles, en une transaction
+     */
+    private int release(String deleteSql, PreparedStatementSetter parameters) {
+        Integer released = writeTransaction.execute(status -> {
+            List<ReleasedHold> holds = jdbcTemplate.query(deleteSql, parameters,
+                    (rs, rowNum) -> new ReleasedHold(rs.getLong("variant_id"), rs.getInt("quantity")));
+            if (holds.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Integer> quantities = new TreeMap<>();
+            holds.forEach(hold -> quantities.merge(hold.variantId(), hold.quantity(), Integer::sum));
+            Long[] variantIds = quantities.keySet().toArray(Long[]::new);
+            Integer[] variantQuantities = quantities.values().toArray(Integer[]::new);
+            jdbcTemplate.query(LOCK_VARIANTS_SQL,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", variantIds)),
+                    (rs, rowNum) -> rs.getLong(1));
+            jdbcTemplate.update(RELEASE_HOLDS_SQL, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", variantIds));
+                ps.setArray(2, ps.getConnection().createArrayOf("integer", variantQuantities));
+            });
+            return holds.size();
+        });
+        if (released != null && released > 0) {
+            log.info("Released {} expired stock reservations", released);
+        }
+        return released == null ? 0 : released;
+    }
+}
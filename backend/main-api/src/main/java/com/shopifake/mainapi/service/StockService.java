@@ -1,94 +1,273 @@
 package com.shopifake.mainapi.service;
 
+import com.shopifake.mainapi.cache.RecentStockActionsCache;
+import com.shopifake.mainapi.dto.BulkStockActionRequest;
 import com.shopifake.mainapi.dto.StockActionDto;
 import com.shopifake.mainapi.dto.StockActionRequest;
 import com.shopifake.mainapi.dto.StockSummaryDto;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.event.StockActionsRecordedEvent;
 import com.shopifake.mainapi.exception.BadRequestException;
 import com.shopifake.mainapi.exception.ResourceNotFoundException;
 import com.shopifake.mainapi.model.ActionType;
-import com.shopifake.mainapi.model.ProductVariant;
-import com.shopifake.mainapi.model.StockAction;
-import com.shopifake.mainapi.repository.ProductVariantRepository;
-import com.shopifake.mainapi.repository.StockActionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Mouvements de stock et synthèse du stock d'une boutique.
+ * Un mouvement est appliqué par une seule requête : la mise à jour conditionnelle du variant
+ * (le retrait n'a lieu que si le stock disponible, hors réservations, suffit) et l'écriture dans
+ * le journal stock_actions partagent le même aller-retour. Aucune lecture préalable : deux retraits concurrents sur le même SKU
+ * sont sérialisés par le verrou de ligne de l'UPDATE et le second revérifie la condition sur la
+ * valeur à jour, sans survente ni mise à jour perdue.
+ */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class StockService {
 
-    private final ProductVariantRepository variantRepository;
-    private final StockActionRepository stockActionRepository;
+    // Paramètre delta : positif pour un ajout, toujours accepté ; négatif pour un retrait, accepté
+    // seulement si le stock non réservé le couvre
+    private static final String APPLY_STOCK_ACTION_SQL = """
+            WITH updated AS (
+                UPDATE product_variants
+                SET stock = stock + ?, updated_at = CURRENT_TIMESTAMP
+                WHERE sku = ? AND (? > 0 OR stock - reserved_stock + ? >= 0)
+                RETURNING id, shop_id, stock, stock_version
+            ), action AS (
+                INSERT INTO stock_actions (variant_id, sku, action_type, quantity, created_at)
+                SELECT id, ?, ?, ?, CURRENT_TIMESTAMP FROM updated
+                RETURNING id, created_at
+            )
+            SELECT action.id, action.created_at, updated.id AS variant_id, updated.shop_id,
+                   updated.stock, updated.stock_version
+            FROM action CROSS JOIN updated
+            """;
+
+    private static final String CURRENT_STOCK_SQL = "SELECT id, stock, reserved_stock FROM product_variants WHERE sku = ?";
+
+    // Verrous posés dans l'ordre des SKU : deux lots qui se recoupent ne peuvent pas s'attendre mutuellement
+    private static final String LOCK_VARIANTS_SQL = """
+            SELECT id, sku, stock, reserved_stock
+            FROM product_variants
+            WHERE shop_id = ? AND sku = ANY(?)
+            ORDER BY sku
+            FOR UPDATE
+            """;
+
+    private static final String APPLY_STOCK_DELTAS_SQL = """
+            UPDATE product_variants v
+            SET stock = v.stock + d.delta, updated_at = CURRENT_TIMESTAMP
+            FROM unnest(?::bigint[], ?::int[]) AS d(id, delta)
+            WHERE v.id = d.id
+            RETURNING v.id, v.stock, v.stock_version
+            """;
+
+    // Les IDs sont tirés dans l'ordre des lignes insérées : trier le RETURNING par ID redonne l'ordre du lot
+    private static final String INSERT_STOCK_ACTIONS_SQL = """
+            INSERT INTO stock_actions (variant_id, sku, action_type, quantity, created_at)
+            SELECT a.variant_id, a.sku, a.action_type, a.quantity, CURRENT_TIMESTAMP
+            FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::int[]) WITH ORDINALITY
+                AS a(variant_id, sku, action_type, quantity, position)
+            ORDER BY a.position
+            RETURNING id, created_at
+            """;
+
+    // Lignes maintenues par les triggers de product_variants, réparties par variant (voir V20 et V22)
+    private static final String STOCK_TOTALS_SQL = """
+            SELECT COALESCE(SUM(units), 0) AS units, COALESCE(SUM(value), 0) AS value
+            FROM shop_stock_totals
+            WHERE shop_id = ?
+            """;
+
+    private static final int BULK_ERROR_SAMPLE_SIZE = 10;
+
+    private static final RowMapper<VariantStock> VARIANT_STOCK_MAPPER = (rs, rowNum) ->
+            new VariantStock(rs.getLong("id"), rs.getInt("stock"), rs.getInt("reserved_stock"));
+
+    private record AppliedAction(Long id, Instant createdAt, Long variantId, Long shopId, int stock, long stockVersion) {
+    }
+
+    private record UpdatedStock(Long variantId, int stock, long stockVersion) {
+    }
+
+    private record VariantStock(Long id, int stock, int reserved) {
+
+        int available() {
+            return stock - reserved;
+        }
+    }
+
+    private record InsertedAction(Long id, Instant createdAt) {
+    }
+
+    private record StockTotals(long units, BigDecimal value) {
+    }
+
+    private final RecentStockActionsCache recentStockActionsCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
 
     @Transactional
     public StockActionDto performStockAction(StockActionRequest request) {
-        // Récupérer le variant par SKU
-        ProductVariant variant = variantRepository.findBySku(request.sku())
-                .orElseThrow(() -> new ResourceNotFoundException("ProductVariant", "sku", request.sku()));
-
-        // Valider l'action
-        if (request.actionType() == ActionType.REMOVE) {
-            if (variant.getStock() < request.quantity()) {
-                throw new BadRequestException(
-                        "Stock insuffisant pour le SKU " + request.sku() +
-                        ". Stock actuel : " + variant.getStock() +
-                        ", quantité demandée : " + request.quantity()
-                );
-            }
-            variant.setStock(variant.getStock() - request.quantity());
-        } else {
-            variant.setStock(variant.getStock() + request.quantity());
+        int quantity = request.quantity();
+        int delta = request.actionType() == ActionType.REMOVE ? -quantity : quantity;
+
+        List<AppliedAction> applied = jdbcTemplate.query(APPLY_STOCK_ACTION_SQL,
+                (rs, rowNum) -> new AppliedAction(
+                        rs.getLong("id"),
+                        rs.getTimestamp("created_at").toInstant(),
+                        rs.getLong("variant_id"),
+                        rs.getLong("shop_id"),
+                        rs.getInt("stock"),
+                        rs.getLong("stock_version")),
+                delta, request.sku(), delta, delta,
+                request.sku(), request.actionType().name(), quantity);
+
+        if (applied.isEmpty()) {
+            // Aucune ligne modifiée : SKU inconnu ou stock insuffisant, relu uniquement pour le message d'erreur
+            throw rejection(request);
+        }
+        AppliedAction action = applied.get(0);
+
+        StockActionDto result = new StockActionDto(action.id(), request.sku(), request.actionType(), quantity, action.createdAt());
+        eventPublisher.publishEvent(CatalogChangedEvent.stock(action.shopId(), action.variantId(), action.stock(), action.stockVersion()));
+        eventPublisher.publishEvent(new StockActionsRecordedEvent(action.shopId(), List.of(result)));
+        return result;
+    }
+
+    /**
+     * Applique un lot d'actions de stock (panier d'une commande) en une transaction : toutes les actions
+     * sont appliquées ou aucune.
+     * Les variants du lot sont verrouillés en une requête, dans l'ordre des SKU, puis le lot est vérifié
+     * sur les stocks verrouillés : les quantités d'un même SKU sont cumulées et un seul stock insuffisant
+     * rejette le lot entier. Les stocks sont ensuite mis à jour et les mouvements journalisés chacun
+     * en une seule requête.
+     * Retourne les mouvements enregistrés dans l'ordre du lot.
+     */
+    @Transactional
+    public List<StockActionDto> performStockActions(Long shopId, BulkStockActionRequest request) {
+        List<StockActionRequest> actions = request.actions();
+        log.info("Applying {} stock actions for shop {}", actions.size(), shopId);
+
+        Map<String, Integer> deltas = new TreeMap<>();
+        for (StockActionRequest action : actions) {
+            int delta = action.actionType() == ActionType.REMOVE ? -action.quantity() : action.quantity();
+            deltas.merge(action.sku(), delta, Integer::sum);
+        }
+
+        Map<String, VariantStock> variants = lockVariants(shopId, deltas.keySet());
+        deltas.keySet().stream()
+                .filter(sku -> !variants.containsKey(sku))
+                .findFirst()
+                .ifPresent(sku -> {
+                    throw new ResourceNotFoundException("ProductVariant", "sku", sku);
+                });
+        List<String> insufficient = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() < 0 && variants.get(entry.getKey()).available() + entry.getValue() < 0)
+                .map(entry -> entry.getKey() + " (stock actuel : " + variants.get(entry.getKey()).stock()
+                        + ", réservé : " + variants.get(entry.getKey()).reserved()
+                        + ", quantité demandée : " + -entry.getValue() + ")")
+                .toList();
+        if (!insufficient.isEmpty()) {
+            throw new BadRequestException("Stock insuffisant, aucune action appliquée : "
+                    + String.join(", ", insufficient.stream().limit(BULK_ERROR_SAMPLE_SIZE).toList()));
         }
 
-        // Sauvegarder le variant mis à jour
-        variantRepository.save(variant);
+        Long[] variantIds = deltas.keySet().stream().map(sku -> variants.get(sku).id()).toArray(Long[]::new);
+        Integer[] variantDeltas = deltas.values().toArray(Integer[]::new);
+        List<UpdatedStock> updated = jdbcTemplate.query(APPLY_STOCK_DELTAS_SQL,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", variantIds));
+                    ps.setArray(2, ps.getConnection().createArrayOf("integer", variantDeltas));
+                },
+                (rs, rowNum) -> new UpdatedStock(rs.getLong("id"), rs.getInt("stock"), rs.getLong("stock_version")));
 
-        // Créer l'action de stock
-        StockAction stockAction = new StockAction();
-        stockAction.setVariantId(variant.getId());
-        stockAction.setSku(request.sku());
-        stockAction.setActionType(request.actionType());
-        stockAction.setQuantity(request.quantity());
-        stockAction = stockActionRepository.save(stockAction);
+        List<InsertedAction> inserted = insertStockActions(actions, variants);
 
-        return toDto(stockAction);
+        for (UpdatedStock stock : updated) {
+            eventPublisher.publishEvent(CatalogChangedEvent.stock(shopId, stock.variantId(), stock.stock(), stock.stockVersion()));
+        }
+
+        List<StockActionDto> result = new ArrayList<>(actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            StockActionRequest action = actions.get(i);
+            result.add(new StockActionDto(inserted.get(i).id(), action.sku(), action.actionType(), action.quantity(),
+                    inserted.get(i).createdAt()));
+        }
+        eventPublisher.publishEvent(new StockActionsRecordedEvent(shopId, result));
+        return result;
     }
 
+    /**
+     * Synthèse du stock d'une boutique : totaux maintenus en base à chaque écriture sur les variants
+     * (les 16 lignes de la boutique, lues par clé primaire) et derniers mouvements gardés en mémoire,
+     * quel que soit le nombre de variants de la boutique
+     */
     @Transactional(readOnly = true)
     public StockSummaryDto getStockSummary(Long shopId) {
-        // Calculer le nombre total d'unités
-        Integer totalUnits = variantRepository.sumStockByShopId(shopId);
-        if (totalUnits == null) {
-            totalUnits = 0;
-        }
+        StockTotals totals = jdbcTemplate.queryForObject(STOCK_TOTALS_SQL,
+                (rs, rowNum) -> new StockTotals(rs.getLong("units"), rs.getBigDecimal("value")),
+                shopId);
 
-        // Calculer la valeur totale du stock
-        BigDecimal totalValue = variantRepository.sumStockValueByShopId(shopId);
-        if (totalValue == null) {
-            totalValue = BigDecimal.ZERO;
-        }
+        return new StockSummaryDto(totals.units(), totals.value(), recentStockActionsCache.getRecent(shopId));
+    }
 
-        // Récupérer les dernières actions (20 dernières)
-        List<StockAction> recentActions = stockActionRepository.findRecentByShopId(shopId, PageRequest.of(0, 20));
-        List<StockActionDto> recentActionsDto = recentActions.stream()
-                .map(this::toDto)
-                .toList();
+    // ========== Méthodes privées ==========
 
-        return new StockSummaryDto(totalUnits, totalValue, recentActionsDto);
+    private Map<String, VariantStock> lockVariants(Long shopId, Collection<String> skus) {
+        Map<String, VariantStock> variants = new HashMap<>();
+        jdbcTemplate.query(LOCK_VARIANTS_SQL,
+                ps -> {
+                    ps.setLong(1, shopId);
+                    ps.setArray(2, ps.getConnection().createArrayOf("varchar", skus.toArray()));
+                },
+                (RowCallbackHandler) rs -> variants.put(rs.getString("sku"), VARIANT_STOCK_MAPPER.mapRow(rs, 0)));
+        return variants;
     }
 
-    private StockActionDto toDto(StockAction stockAction) {
-        return new StockActionDto(
-                stockAction.getId(),
-                stockAction.getSku(),
-                stockAction.getActionType(),
-                stockAction.getQuantity(),
-                stockAction.getCreatedAt()
+    private List<InsertedAction> insertStockActions(List<StockActionRequest> actions, Map<String, VariantStock> variants) {
+        Long[] variantIds = actions.stream().map(action -> variants.get(action.sku()).id()).toArray(Long[]::new);
+        String[] skus = actions.stream().map(StockActionRequest::sku).toArray(String[]::new);
+        String[] actionTypes = actions.stream().map(action -> action.actionType().name()).toArray(String[]::new);
+        Integer[] quantities = actions.stream().map(StockActionRequest::quantity).toArray(Integer[]::new);
+        List<InsertedAction> inserted = jdbcTemplate.query(INSERT_STOCK_ACTIONS_SQL,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", variantIds));
+                    ps.setArray(2, ps.getConnection().createArrayOf("varchar", skus));
+                    ps.setArray(3, ps.getConnection().createArrayOf("varchar", actionTypes));
+                    ps.setArray(4, ps.getConnection().createArrayOf("integer", quantities));
+                },
+                (rs, rowNum) -> new InsertedAction(rs.getLong("id"), rs.getTimestamp("created_at").toInstant()));
+        return inserted.stream().sorted(Comparator.comparing(InsertedAction::id)).toList();
+    }
+
+    private RuntimeException rejection(StockActionRequest request) {
+        List<VariantStock> stock = jdbcTemplate.query(CURRENT_STOCK_SQL, VARIANT_STOCK_MAPPER, request.sku());
+        if (stock.isEmpty()) {
+            return new ResourceNotFoundException("ProductVariant", "sku", request.sku());
+        }
+        return new BadRequestException(
+                "Stock insuffisant pour le SKU " + request.sku() +
+                ". Stock actuel : " + stock.get(0).stock() +
+                ", réservé : " + stock.get(0).reserved() +
+                ", quantité demandée : " + request.quantity()
         );
     }
 }
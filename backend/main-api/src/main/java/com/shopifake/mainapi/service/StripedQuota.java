@@ -0,0 +1,95 @@
+package com.shopifake.mainapi.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Quantité disponible d'un SKU en vente flash, répartie sur plusieurs compteurs pour que les requêtes
+ * concurrentes ne se disputent pas une seule case mémoire.
+ * Les requêtes prélèvent sans verrou (compare-and-set), en commençant par le compteur associé à leur
+ * thread ; seul le thread d'écriture ajoute ou reprend de la quantité.
+ * Une quantité n'est jamais prélevée deux fois : la somme des compteurs ne descend pas sous zéro.
+ */
+final class StripedQuota {
+
+    // Un compteur toutes les 16 cases (64 octets) : deux compteurs ne partagent pas une ligne de cache
+    private static final int PADDING = 16;
+
+    private final int stripes;
+    private final AtomicIntegerArray counters;
+
+    StripedQuota(int stripes) {
+        this.stripes = stripes;
+        this.counters = new AtomicIntegerArray(stripes * PADDING);
+    }
+
+    /**
+     * Prélève la quantité, éventuellement sur plusieurs compteurs ; rien n'est prélevé si leur somme ne suffit pas
+     */
+    boolean tryAcquire(int quantity) {
+        int start = probe();
+        // Cas courant : le compteur du thread suffit
+        int first = start * PADDING;
+        for (int value = counters.get(first); value >= quantity; value = counters.get(first)) {
+            if (counters.compareAndSet(first, value, value - quantity)) {
+                return true;
+            }
+        }
+
+        int[] taken = new int[stripes];
+        int missing = quantity;
+        for (int i = 0; i < stripes && missing > 0; i++) {
+            int stripe = (start + i) % stripes;
+            int index = stripe * PADDING;
+            for (int value = counters.get(index); value > 0; value = counters.get(index)) {
+                int take = Math.min(value, missing);
+                if (counters.compareAndSet(index, value, value - take)) {
+                    taken[stripe] += take;
+                    missing -= take;
+                    break;
+                }
+            }
+        }
+        if (missing == 0) {
+            return true;
+        }
+        // Somme insuffisante : les prélèvements partiels sont rendus
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            if (taken[stripe] > 0) {
+                counters.addAndGet(stripe * PADDING, taken[stripe]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ajoute une quantité, répartie également entre les compteurs
+     */
+    void add(int quantity) {
+        int share = quantity / stripes;
+        int remainder = quantity % stripes;
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            int amount = share + (stripe < remainder ? 1 : 0);
+            if (amount > 0) {
+                counters.addAndGet(stripe * PADDING, amount);
+            }
+        }
+    }
+
+    /**
+     * Reprend toute la quantité restante ; les prélèvements suivants échouent jusqu'au prochain ajout
+     */
+    int drain() {
+        int drained = 0;
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            drained += counters.getAndSet(stripe * PADDING, 0);
+        }
+        return drained;
+    }
+
+    // ========== Méthodes privées ==========
+
+    private int probe() {
+        long id = Thread.currentThread().threadId();
+        return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), stripes);
+    }
+}
@@ -0,0 +1,169 @@
+package com.shopifake.mainapi.streaming;
+
+import com.shopifake.mainapi.config.StreamingProperties;
+import com.shopifake.mainapi.dto.AttributeDefinitionDto;
+import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.dto.ProductVariantDto;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lecture en flux du catalogue d'une boutique par curseurs JDBC (fetch size borné).
+ * Deux curseurs triés de la même façon (produits + définitions, variants + attributs) sont parcourus
+ * en parallèle ; chaque produit est remis au consommateur dès qu'il est complet.
+ * La mémoire utilisée ne dépend que du fetch size et de la taille d'un produit, pas de celle de la boutique.
+ */
+@Component
+public class CatalogCursorReader {
+
+    private static final String PRODUCTS_SQL = """
+            SELECT p.id, p.category_id, p.shop_id, p.name, p.slug, p.description, p.is_active,
+                   p.created_at, p.updated_at, ad.id AS definition_id, ad.attribute_name, ad.position
+            FROM products p
+            LEFT JOIN attribute_definitions ad ON ad.product_id = p.id
+            WHERE p.shop_id = ?
+            ORDER BY p.name, p.id, ad.position, ad.id
+            """;
+
+    private static final String VARIANTS_SQL = """
+            SELECT v.id, v.product_id, v.shop_id, v.sku, v.price, v.stock, v.is_active,
+                   v.created_at, v.updated_at, ad.attribute_name, va.attribute_value
+            FROM products p
+            INNER JOIN product_variants v ON v.product_id = p.id
+            LEFT JOIN variant_attributes va ON va.variant_id = v.id
+            LEFT JOIN attribute_definitions ad ON ad.id = va.attribute_definition_id
+            WHERE p.shop_id = ?
+            ORDER BY p.name, p.id, v.id, ad.position, ad.id
+            """;
+
+    private final DataSource dataSource;
+    private final TransactionTemplate snapshotTransaction;
+    private final int fetchSize;
+
+    public CatalogCursorReader(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               StreamingProperties streamingProperties) {
+        this.dataSource = dataSource;
+        // Les deux curseurs doivent voir le même état de la base : REPEATABLE READ partage un snapshot
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.fetchSize = streamingProperties.getFetchSize();
+    }
+
+    /**
+     * Parcourt tous les produits d'une boutique avec leurs variants, triés par (name, id)
+     */
+    public void streamShopCatalog(Long shopId, Consumer<ProductWithVariantsDto> consumer) {
+        snapshotTransaction.executeWithoutResult(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try (PreparedStatement productStatement = prepare(connection, PRODUCTS_SQL, shopId);
+                 PreparedStatement variantStatement = prepare(connection, VARIANTS_SQL, shopId);
+                 ResultSet products = productStatement.executeQuery();
+                 ResultSet variants = variantStatement.executeQuery()) {
+                merge(products, variants, consumer);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Échec de la lecture du catalogue de la boutique " + shopId, e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        });
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, Long shopId) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        statement.setLong(1, shopId);
+        return statement;
+    }
+
+    /**
+     * Fusionne les deux curseurs : les lignes d'un même produit (resp. variant) sont consécutives
+     */
+    private void merge(ResultSet products, ResultSet variants, Consumer<ProductWithVariantsDto> consumer) throws SQLException {
+        boolean hasProduct = products.next();
+        boolean hasVariant = variants.next();
+
+        while (hasProduct) {
+            long productId = products.getLong("id");
+            ProductRow product = ProductRow.read(products);
+            List<AttributeDefinitionDto> definitions = new ArrayList<>();
+            do {
+                long definitionId = products.getLong("definition_id");
+                if (!products.wasNull()) {
+                    definitions.add(new AttributeDefinitionDto(
+                            definitionId, products.getString("attribute_name"), products.getInt("position")));
+                }
+                hasProduct = products.next();
+            } while (hasProduct && products.getLong("id") == productId);
+
+            List<ProductVariantDto> productVariants = new ArrayList<>();
+            while (hasVariant && variants.getLong("product_id") == productId) {
+                long variantId = variants.getLong("id");
+                VariantRow variant = VariantRow.read(variants);
+                Map<String, String> attributes = new LinkedHashMap<>();
+                do {
+                    String attributeName = variants.getString("attribute_name");
+                    if (attributeName != null) {
+                        attributes.put(attributeName, variants.getString("attribute_value"));
+                    }
+                    hasVariant = variants.next();
+                } while (hasVariant && variants.getLong("id") == variantId);
+                productVariants.add(variant.toDto(attributes));
+            }
+
+            consumer.accept(new ProductWithVariantsDto(product.toDto(definitions), productVariants));
+        }
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+
+    private record ProductRow(Long id, Long categoryId, Long shopId, String name, String slug, String description,
+                              Boolean isActive, Instant createdAt, Instant updatedAt) {
+
+        static ProductRow read(ResultSet rs) throws SQLException {
+            return new ProductRow(rs.getLong("id"), rs.getLong("category_id"), rs.getLong("shop_id"),
+                    rs.getString("name"), rs.getString("slug"), rs.getString("description"),
+                    rs.getBoolean("is_active"), instant(rs, "created_at"), instant(rs, "updated_at"));
+        }
+
+        ProductDto toDto(List<AttributeDefinitionDto> definitions) {
+            return new ProductDto(id, categoryId, shopId, name, slug, description, isActive, createdAt, updatedAt, definitions);
+        }
+    }
+
+    private record VariantRow(Long id, Long productId, Long shopId, String sku, BigDecimal price,
+                              Integer stock, Boolean isActive, Instant createdAt, Instant updatedAt) {
+
+        static VariantRow read(ResultSet rs) throws SQLException {
+            return new VariantRow(rs.getLong("id"), rs.getLong("product_id"), rs.getLong("shop_id"),
+                    rs.getString("sku"), rs.getBigDecimal("price"), rs.getInt("stock"),
+                    rs.getBoolean("is_active"), instant(rs, "created_at"), instant(rs, "updated_at"));
+        }
+
+        ProductVariantDto toDto(Map<String, String> attributes) {
+            return new ProductVariantDto(id, productId, shopId, sku, price, stock, isActive, createdAt, updatedAt, attributes);
+        }
+    }
+}
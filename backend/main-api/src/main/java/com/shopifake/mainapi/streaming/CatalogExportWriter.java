@@ -0,0 +1,255 @@
+package com.shopifake.mainapi.streaming;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopifake.mainapi.config.StreamingProperties;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export du catalogue au format d'import (une ligne par variant, CSV ou NDJSON), lu par un curseur JDBC
+ * à sens unique et écrit au fil de l'eau : chaque ligne du curseur est écrite directement, sans DTO
+ * intermédiaire. La mémoire utilisée ne dépend que du fetch size, pas de la taille du catalogue.
+ * Les colonnes shopId, productId, productSlug et variantId s'ajoutent au format d'import, qui les ignore :
+ * un export peut être réimporté tel quel. Les produits sans variant ne sont pas exportés.
+ */
+@Component
+public class CatalogExportWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ATTRIBUTE_PREFIX = "attributes.";
+    private static final List<String> CSV_COLUMNS = List.of("shopId", "categoryId", "productId", "productName",
+            "productSlug", "productDescription", "productActive", "variantId", "sku", "price", "stock", "variantActive");
+
+    // Parcours dans l'ordre des index (shop_id, id) et de la clé primaire : pas de tri avant la première ligne
+    private static final String VARIANTS_SQL = """
+            SELECT v.shop_id, p.category_id, p.id AS product_id, p.name, p.slug, p.description,
+                   p.is_active AS product_active, v.id AS variant_id, v.sku, v.price, v.stock,
+                   v.is_active AS variant_active, a.attribute_names, a.attribute_values
+            FROM product_variants v
+            INNER JOIN products p ON p.id = v.product_id
+            CROSS JOIN LATERAL (
+                SELECT array_agg(ad.attribute_name ORDER BY ad.position, ad.id) AS attribute_names,
+                       array_agg(va.attribute_value ORDER BY ad.position, ad.id) AS attribute_values
+                FROM variant_attributes va
+                INNER JOIN attribute_definitions ad ON ad.id = va.attribute_definition_id
+                WHERE va.variant_id = v.id
+            ) a
+            %s
+            ORDER BY v.id
+            """;
+
+    private static final String ATTRIBUTE_NAMES_SQL = """
+            SELECT DISTINCT ad.attribute_name
+            FROM attribute_definitions ad
+            INNER JOIN products p ON p.id = ad.product_id
+            %s
+            ORDER BY ad.attribute_name
+            """;
+
+    private static final String SHOP_FILTER = "WHERE v.shop_id = ?";
+    private static final String PRODUCT_SHOP_FILTER = "WHERE p.shop_id = ?";
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate snapshotTransaction;
+    private final int fetchSize;
+
+    public CatalogExportWriter(DataSource dataSource,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               StreamingProperties streamingProperties) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        // L'en-tête CSV (noms d'attributs) et le curseur des variants doivent voir le même état de la base
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.fetchSize = streamingProperties.getExportFetchSize();
+    }
+
+    /**
+     * Écrit les variants d'une boutique (ou de toutes les boutiques si shopId est null), triés par id,
+     * éventuellement compressés en gzip. Le flux de sortie n'est pas fermé.
+     */
+    public void export(Long shopId, CatalogFileFormat format, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        OutputStream target = compressed != null ? compressed : out;
+
+        snapshotTransaction.executeWithoutResult(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                switch (format) {
+                    case CSV -> writeCsv(connection, shopId, target);
+                    case NDJSON -> writeNdjson(connection, shopId, target);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Échec de l'export du catalogue" + (shopId != null ? " de la boutique " + shopId : ""), e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        });
+
+        if (compressed != null) {
+            compressed.finish();
+        }
+    }
+
+    // ========== Méthodes privées ==========
+
+    private void writeNdjson(Connection connection, Long shopId, OutputStream out) throws SQLException, IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             PreparedStatement statement = prepare(connection, VARIANTS_SQL, SHOP_FILTER, shopId);
+             ResultSet rs = statement.executeQuery()) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (rs.next()) {
+                generator.writeStartObject();
+                generator.writeNumberField("shopId", rs.getLong("shop_id"));
+                generator.writeNumberField("categoryId", rs.getLong("category_id"));
+                generator.writeNumberField("productId", rs.getLong("product_id"));
+                generator.writeStringField("productName", rs.getString("name"));
+                generator.writeStringField("productSlug", rs.getString("slug"));
+                generator.writeStringField("productDescription", rs.getString("description"));
+                generator.writeBooleanField("productActive", rs.getBoolean("product_active"));
+                generator.writeNumberField("variantId", rs.getLong("variant_id"));
+                generator.writeStringField("sku", rs.getString("sku"));
+                generator.writeNumberField("price", rs.getBigDecimal("price"));
+                generator.writeNumberField("stock", rs.getInt("stock"));
+                generator.writeBooleanField("variantActive", rs.getBoolean("variant_active"));
+                generator.writeObjectFieldStart("attributes");
+                String[] names = strings(rs.getArray("attribute_names"));
+                String[] values = strings(rs.getArray("attribute_values"));
+                for (int i = 0; i < names.length; i++) {
+                    generator.writeStringField(names[i], values[i]);
+                }
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private void writeCsv(Connection connection, Long shopId, OutputStream out) throws SQLException, IOException {
+        List<String> attributeNames = attributeNames(connection, shopId);
+        Map<String, Integer> attributeColumns = new HashMap<>();
+        for (String name : attributeNames) {
+            attributeColumns.put(name, attributeColumns.size());
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        List<String> header = new ArrayList<>(CSV_COLUMNS);
+        attributeNames.forEach(name -> header.add(ATTRIBUTE_PREFIX + name));
+        writeCsvLine(writer, header.toArray(String[]::new));
+
+        String[] cells = new String[header.size()];
+        try (PreparedStatement statement = prepare(connection, VARIANTS_SQL, SHOP_FILTER, shopId);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                cells[0] = rs.getString("shop_id");
+                cells[1] = rs.getString("category_id");
+                cells[2] = rs.getString("product_id");
+                cells[3] = rs.getString("name");
+                cells[4] = rs.getString("slug");
+                cells[5] = rs.getString("description");
+                cells[6] = String.valueOf(rs.getBoolean("product_active"));
+                cells[7] = rs.getString("variant_id");
+                cells[8] = rs.getString("sku");
+                cells[9] = rs.getBigDecimal("price").toPlainString();
+                cells[10] = rs.getString("stock");
+                cells[11] = String.valueOf(rs.getBoolean("variant_active"));
+                Arrays.fill(cells, CSV_COLUMNS.size(), cells.length, null);
+                String[] names = strings(rs.getArray("attribute_names"));
+                String[] values = strings(rs.getArray("attribute_values"));
+                for (int i = 0; i < names.length; i++) {
+                    cells[CSV_COLUMNS.size() + attributeColumns.get(names[i])] = values[i];
+                }
+                writeCsvLine(writer, cells);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Noms d'attributs distincts du périmètre exporté, triés : une colonne "attributes.<nom>" chacun
+     */
+    private List<String> attributeNames(Connection connection, Long shopId) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement statement = prepare(connection, ATTRIBUTE_NAMES_SQL, PRODUCT_SHOP_FILTER, shopId);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, String shopFilter, Long shopId) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql.formatted(shopId != null ? shopFilter : ""),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        if (shopId != null) {
+            statement.setLong(1, shopId);
+        }
+        return statement;
+    }
+
+    private static String[] strings(Array array) throws SQLException {
+        return array == null ? new String[0] : (String[]) array.getArray();
+    }
+
+    private static void writeCsvLine(Writer writer, String[] cells) throws IOException {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvCell(writer, cells[i]);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Cellule CSV (RFC 4180) : guillemets uniquement si la valeur contient un séparateur, un guillemet ou un saut de ligne
+     */
+    private static void writeCsvCell(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,53 @@
+package com.shopifake.mainapi.streaming;
+
+import com.shopifake.mainapi.exception.BadRequestException;
+import org.springframework.http.MediaType;
+
+/**
+ * Formats de fichier des imports et exports de catalogue : une ligne par variant
+ */
+public enum CatalogFileFormat {
+    CSV(new MediaType("text", "csv")),
+    NDJSON(MediaType.APPLICATION_NDJSON);
+
+    private final MediaType mediaType;
+
+    CatalogFileFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Format correspondant à un Content-Type, paramètres (charset) ignorés
+     */
+    public static CatalogFileFormat fromContentType(String contentType) {
+        if (contentType != null) {
+            MediaType type = MediaType.parseMediaType(contentType);
+            for (CatalogFileFormat format : values()) {
+                if (type.isCompatibleWith(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        throw new BadRequestException("Format d'import non supporté: " + contentType + " (attendu: text/csv ou application/x-ndjson)");
+    }
+
+    /**
+     * Format désigné par son nom (csv, ndjson), sans tenir compte de la casse
+     */
+    public static CatalogFileFormat fromName(String name) {
+        for (CatalogFileFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new BadRequestException("Format non supporté: " + name + " (attendu: csv ou ndjson)");
+    }
+}
@@ -0,0 +1,150 @@
+package com.shopifake.mainapi.streaming;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.shopifake.mainapi.dto.CatalogImportRow;
+import com.shopifake.mainapi.exception.BadRequestException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Lecture en flux d'un fichier d'import de catalogue (CSV avec en-tête ou NDJSON).
+ * Les lignes sont remises une à une au consommateur, numérotées à partir de 1 (hors en-tête CSV) :
+ * la mémoire utilisée ne dépend pas de la taille du fichier.
+ */
+@Component
+public class CatalogImportReader {
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(long lineNo, CatalogImportRow row);
+    }
+
+    private static final String ATTRIBUTE_PREFIX = "attributes.";
+    private static final Set<String> CSV_COLUMNS = Set.of("categoryId", "productName", "productDescription",
+            "productActive", "sku", "price", "stock", "variantActive");
+    // Colonnes produites par l'export, ignorées pour qu'un export puisse être réimporté tel quel
+    private static final Set<String> IGNORED_CSV_COLUMNS = Set.of("shopId", "productId", "productSlug", "variantId");
+
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    public CatalogImportReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void read(Path file, CatalogFileFormat format, RowConsumer consumer) {
+        try {
+            switch (format) {
+                case CSV -> readCsv(file, consumer);
+                case NDJSON -> readNdjson(file, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ========== Méthodes privées ==========
+
+    private void readNdjson(Path file, RowConsumer consumer) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+             MappingIterator<CatalogImportRow> rows = objectMapper.readerFor(CatalogImportRow.class).readValues(in)) {
+            long lineNo = 0;
+            while (true) {
+                CatalogImportRow row;
+                try {
+                    if (!rows.hasNextValue()) {
+                        return;
+                    }
+                    lineNo++;
+                    row = rows.nextValue();
+                } catch (IOException | RuntimeJsonMappingException e) {
+                    throw new BadRequestException("Ligne " + Math.max(lineNo, 1) + " : JSON invalide");
+                }
+                consumer.accept(lineNo, row);
+            }
+        }
+    }
+
+    private void readCsv(Path file, RowConsumer consumer) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             MappingIterator<Map<String, String>> rows = csvMapper.readerForMapOf(String.class)
+                     .with(CsvSchema.emptySchema().withHeader())
+                     .readValues(in)) {
+            long lineNo = 0;
+            while (rows.hasNextValue()) {
+                lineNo++;
+                Map<String, String> columns = rows.nextValue();
+                if (lineNo == 1) {
+                    validateCsvHeader(columns.keySet());
+                }
+                consumer.accept(lineNo, toRow(lineNo, columns));
+            }
+        }
+    }
+
+    private static void validateCsvHeader(Set<String> header) {
+        for (String column : header) {
+            if (!CSV_COLUMNS.contains(column) && !IGNORED_CSV_COLUMNS.contains(column) && !column.startsWith(ATTRIBUTE_PREFIX)) {
+                throw new BadRequestException("Colonne CSV inconnue: " + column);
+            }
+        }
+    }
+
+    private static CatalogImportRow toRow(long lineNo, Map<String, String> columns) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        columns.forEach((column, value) -> {
+            if (column.startsWith(ATTRIBUTE_PREFIX) && !value.isEmpty()) {
+                attributes.put(column.substring(ATTRIBUTE_PREFIX.length()), value);
+            }
+        });
+        try {
+            return new CatalogImportRow(
+                    parse(columns.get("categoryId"), Long::valueOf),
+                    blankToNull(columns.get("productName")),
+                    blankToNull(columns.get("productDescription")),
+                    parse(columns.get("productActive"), CatalogImportReader::parseBoolean),
+                    blankToNull(columns.get("sku")),
+                    parse(columns.get("price"), BigDecimal::new),
+                    parse(columns.get("stock"), Integer::valueOf),
+                    parse(columns.get("variantActive"), CatalogImportReader::parseBoolean),
+                    attributes);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Ligne " + lineNo + " : valeur invalide (" + e.getMessage() + ")");
+        }
+    }
+
+    private static <T> T parse(String value, Function<String, T> parser) {
+        String trimmed = blankToNull(value);
+        return trimmed == null ? null : parser.apply(trimmed.trim());
+    }
+
+    private static Boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new IllegalArgumentException("booléen attendu: " + value);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,14 @@
+-- Seeds de développement pour la table de fermeture des catégories
+-- Les catégories de V101 sont insérées directement en SQL, sans passer par CategoryService
+
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+WITH RECURSIVE paths AS (
+    SELECT id AS ancestor_id, id AS descendant_id, 0 AS depth
+    FROM categories
+    UNION ALL
+    SELECT p.ancestor_id, c.id, p.depth + 1
+    FROM paths p
+    INNER JOIN categories c ON c.parent_id = p.descendant_id
+)
+SELECT ancestor_id, descendant_id, depth FROM paths
+ON CONFLICT (ancestor_id, descendant_id) DO NOTHING;
@@ -0,0 +1,12 @@
+-- Seeds de développement pour les valeurs d'attributs indexées par la recherche
+-- Les variants de V104/V105 sont insérés directement en SQL, sans passer par ProductVariantService
+
+UPDATE products p
+SET search_attributes = s.attributes
+FROM (
+    SELECT v.product_id, string_agg(DISTINCT va.attribute_value, ' ') AS attributes
+    FROM product_variants v
+    INNER JOIN variant_attributes va ON va.variant_id = v.id
+    GROUP BY v.product_id
+) s
+WHERE s.product_id = p.id;
@@ -0,0 +1,11 @@
+-- Seeds de développement pour les empreintes de combinaisons d'attributs
+-- Les variants de V104/V105 sont insérés directement en SQL, sans passer par ProductVariantService
+
+UPDATE product_variants v
+SET attribute_signature = encode(sha256(convert_to(coalesce((
+    SELECT string_agg(va.attribute_definition_id || ':' || char_length(va.attribute_value) || ':' || va.attribute_value,
+                      E'\n' ORDER BY va.attribute_definition_id)
+    FROM variant_attributes va
+    WHERE va.variant_id = v.id
+), ''), 'UTF8')), 'hex')
+WHERE v.attribute_signature IS NULL;
@@ -0,0 +1,9 @@
+-- Composite indexes backing keyset (cursor) pagination
+-- Products are paginated on (name, id) within a shop or a category
+CREATE INDEX idx_products_shop_name_id ON products(shop_id, name, id);
+CREATE INDEX idx_products_category_name_id ON products(category_id, name, id);
+
+-- Variants are paginated on (id) within a product
+CREATE INDEX idx_product_variants_product_id_id ON product_variants(product_id, id);
+
+-- Shops are paginated on (id), already covered by the primary key
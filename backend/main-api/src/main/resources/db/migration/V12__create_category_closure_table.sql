@@ -0,0 +1,35 @@
+-- Create category_closure table
+-- One row per (ancestor, descendant) pair, including the (id, id, 0) self pair of each category
+CREATE TABLE category_closure (
+    ancestor_id BIGINT NOT NULL,
+    descendant_id BIGINT NOT NULL,
+    depth INTEGER NOT NULL,
+
+    CONSTRAINT pk_category_closure PRIMARY KEY (ancestor_id, descendant_id),
+    CONSTRAINT fk_category_closure_ancestor FOREIGN KEY (ancestor_id) REFERENCES categories(id) ON DELETE CASCADE,
+    CONSTRAINT fk_category_closure_descendant FOREIGN KEY (descendant_id) REFERENCES categories(id) ON DELETE CASCADE,
+    CONSTRAINT chk_category_closure_depth CHECK (depth >= 0)
+);
+
+-- The primary key serves subtree lookups (by ancestor); this index serves path lookups (by descendant)
+CREATE INDEX idx_category_closure_descendant ON category_closure(descendant_id, depth);
+
+-- Backfill from the existing parent_id hierarchy
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+WITH RECURSIVE paths AS (
+    SELECT id AS ancestor_id, id AS descendant_id, 0 AS depth
+    FROM categories
+    UNION ALL
+    SELECT p.ancestor_id, c.id, p.depth + 1
+    FROM paths p
+    INNER JOIN categories c ON c.parent_id = p.descendant_id
+)
+SELECT ancestor_id, descendant_id, depth FROM paths;
+
+-- Add comments on table
+COMMENT ON TABLE category_closure IS 'Table de fermeture transitive de la hiérarchie des catégories';
+
+-- Add comments on columns
+COMMENT ON COLUMN category_closure.ancestor_id IS 'Identifiant de la catégorie ancêtre (ou de la catégorie elle-même)';
+COMMENT ON COLUMN category_closure.descendant_id IS 'Identifiant de la catégorie descendante';
+COMMENT ON COLUMN category_closure.depth IS 'Distance entre l''ancêtre et le descendant (0 pour la catégorie elle-même)';
@@ -0,0 +1,5 @@
+-- Add catalog_version to shops
+-- Bumped in the same transaction as every catalog write (categories, products, variants, stock)
+ALTER TABLE shops ADD COLUMN catalog_version BIGINT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN shops.catalog_version IS 'Version du catalogue de la boutique, incrémentée à chaque écriture (sert d''ETag)';
@@ -0,0 +1,30 @@
+-- Full-text search on products
+-- btree_gin lets shop_id and search_vector share a single GIN index
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+-- Distinct variant attribute values of the product, maintained by the application
+-- (a generated column cannot read variant_attributes)
+ALTER TABLE products ADD COLUMN search_attributes TEXT NOT NULL DEFAULT '';
+
+UPDATE products p
+SET search_attributes = s.attributes
+FROM (
+    SELECT v.product_id, string_agg(DISTINCT va.attribute_value, ' ') AS attributes
+    FROM product_variants v
+    INNER JOIN variant_attributes va ON va.variant_id = v.id
+    GROUP BY v.product_id
+) s
+WHERE s.product_id = p.id;
+
+-- Weighted document: name (A) > description (B) > attribute values (C)
+ALTER TABLE products ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('french', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('french', coalesce(description, '')), 'B') ||
+    setweight(to_tsvector('french', search_attributes), 'C')
+) STORED;
+
+CREATE INDEX idx_products_shop_search_vector ON products USING GIN (shop_id, search_vector);
+
+-- Add comments on columns
+COMMENT ON COLUMN products.search_attributes IS 'Valeurs distinctes des attributs des variants, indexées pour la recherche';
+COMMENT ON COLUMN products.search_vector IS 'Document de recherche plein texte (nom, description, valeurs d''attributs)';
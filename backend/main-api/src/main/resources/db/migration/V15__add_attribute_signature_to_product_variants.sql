@@ -0,0 +1,17 @@
+-- Add attribute_signature to product_variants
+-- SHA-256 (hex) of the variant's attributes sorted by definition id, each encoded as "definitionId:length:value".
+-- Must stay identical to AttributeSignature.of on the application side.
+ALTER TABLE product_variants ADD COLUMN attribute_signature VARCHAR(64);
+
+UPDATE product_variants v
+SET attribute_signature = encode(sha256(convert_to(coalesce((
+    SELECT string_agg(va.attribute_definition_id || ':' || char_length(va.attribute_value) || ':' || va.attribute_value,
+                      E'\n' ORDER BY va.attribute_definition_id)
+    FROM variant_attributes va
+    WHERE va.variant_id = v.id
+), ''), 'UTF8')), 'hex');
+
+-- A combination of attributes can exist only once per product
+CREATE UNIQUE INDEX uq_product_variants_product_signature ON product_variants(product_id, attribute_signature);
+
+COMMENT ON COLUMN product_variants.attribute_signature IS 'Empreinte canonique de la combinaison d''attributs du variant (unique par produit)';
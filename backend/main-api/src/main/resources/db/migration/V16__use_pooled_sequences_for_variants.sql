@@ -0,0 +1,6 @@
+-- Pooled id allocation for product_variants and variant_attributes
+-- Hibernate reserves 50 ids per nextval (allocationSize = 50 on the entities), which lets it batch inserts
+-- that IDENTITY columns forced to run one by one. Plain DEFAULT nextval inserts keep working:
+-- each one simply consumes a whole block.
+ALTER SEQUENCE product_variants_id_seq INCREMENT BY 50;
+ALTER SEQUENCE variant_attributes_id_seq INCREMENT BY 50;
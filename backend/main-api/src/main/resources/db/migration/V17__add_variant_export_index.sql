@@ -0,0 +1,5 @@
+-- Catalog export streams a shop's variants in id order through a forward-only cursor
+-- (shop_id, id) lets the scan return rows already sorted, so the first rows reach the client
+-- without sorting the whole shop first. It supersedes the single-column shop_id index.
+CREATE INDEX idx_product_variants_shop_id_id ON product_variants(shop_id, id);
+DROP INDEX idx_product_variants_shop_id;
@@ -0,0 +1,31 @@
+-- Stock reservations: time-bound holds placed during checkout
+-- A hold raises product_variants.reserved_stock in the same statement that inserts it, so
+-- availability (stock - reserved_stock) is read from the variant row without scanning the holds.
+-- Confirmed, cancelled and released holds are deleted: the table only contains active holds.
+ALTER TABLE product_variants ADD COLUMN reserved_stock INTEGER NOT NULL DEFAULT 0 CHECK (reserved_stock >= 0);
+
+CREATE TABLE stock_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    shop_id BIGINT NOT NULL,
+    variant_id BIGINT NOT NULL,
+    sku VARCHAR(100) NOT NULL,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT fk_stock_reservations_variant FOREIGN KEY (variant_id) REFERENCES product_variants(id) ON DELETE CASCADE
+);
+
+-- Expired holds are released oldest first
+CREATE INDEX idx_stock_reservations_expires_at ON stock_reservations(expires_at);
+CREATE INDEX idx_stock_reservations_variant_id ON stock_reservations(variant_id);
+
+COMMENT ON COLUMN product_variants.reserved_stock IS 'Quantité retenue par les réservations actives (stock disponible = stock - reserved_stock)';
+COMMENT ON TABLE stock_reservations IS 'Réservations de stock actives (paniers en cours de paiement)';
+COMMENT ON COLUMN stock_reservations.id IS 'Identifiant unique de la réservation';
+COMMENT ON COLUMN stock_reservations.shop_id IS 'Identifiant de la boutique';
+COMMENT ON COLUMN stock_reservations.variant_id IS 'Identifiant du variant réservé';
+COMMENT ON COLUMN stock_reservations.sku IS 'SKU du variant réservé (dénormalisé pour le journal des actions de stock)';
+COMMENT ON COLUMN stock_reservations.quantity IS 'Quantité réservée';
+COMMENT ON COLUMN stock_reservations.expires_at IS 'Date et heure à laquelle la réservation est libérée si elle n''est pas confirmée';
+COMMENT ON COLUMN stock_reservations.created_at IS 'Date et heure de la réservation';
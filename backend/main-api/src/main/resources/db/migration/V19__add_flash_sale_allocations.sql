@@ -0,0 +1,11 @@
+-- Flash sale mode: per-shop opt-in, read by every instance
+-- In that mode each instance escrows a block of a hot SKU's stock as a reservation row tagged with the
+-- instance's holder id, and serves decrements from memory against that block.
+-- A holder row that is no longer renewed expires and is released like any other hold.
+ALTER TABLE shops ADD COLUMN flash_sale BOOLEAN NOT NULL DEFAULT false;
+ALTER TABLE stock_reservations ADD COLUMN holder VARCHAR(100);
+
+CREATE INDEX idx_stock_reservations_holder ON stock_reservations(holder) WHERE holder IS NOT NULL;
+
+COMMENT ON COLUMN shops.flash_sale IS 'Indique si la boutique est en mode vente flash (stock des SKU sollicités servi depuis la mémoire)';
+COMMENT ON COLUMN stock_reservations.holder IS 'Instance détentrice d''une allocation de vente flash ; NULL pour une réservation de panier';
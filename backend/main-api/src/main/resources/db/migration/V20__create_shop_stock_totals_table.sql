@@ -0,0 +1,91 @@
+-- Per-shop stock totals, kept up to date by delta so the stock summary never aggregates the catalog
+-- Every write path (JPA, hand-written SQL, cascades) goes through product_variants, so the deltas are
+-- applied by statement-level triggers on that table: one update of the totals row per shop and per statement.
+CREATE TABLE shop_stock_totals (
+    shop_id BIGINT PRIMARY KEY,
+    units BIGINT NOT NULL DEFAULT 0,
+    value DECIMAL(19, 2) NOT NULL DEFAULT 0,
+
+    CONSTRAINT fk_shop_stock_totals_shop FOREIGN KEY (shop_id) REFERENCES shops(id) ON DELETE CASCADE
+);
+
+-- Backfill from the current catalog
+INSERT INTO shop_stock_totals (shop_id, units, value)
+SELECT s.id, COALESCE(SUM(pv.stock), 0), COALESCE(SUM(pv.stock * pv.price), 0)
+FROM shops s
+LEFT JOIN product_variants pv ON pv.shop_id = s.id
+GROUP BY s.id;
+
+-- The totals row is created with the shop; the variant triggers only ever update it,
+-- so a cascade delete of a shop's variants after its row is gone is a no-op
+CREATE FUNCTION create_shop_stock_totals() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO shop_stock_totals (shop_id) SELECT id FROM new_shops;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_shops_stock_totals_insert
+    AFTER INSERT ON shops
+    REFERENCING NEW TABLE AS new_shops
+    FOR EACH STATEMENT EXECUTE FUNCTION create_shop_stock_totals();
+
+-- Deltas per shop: rows entering the statement count positively, rows leaving it negatively.
+-- Statements that touch neither stock nor price (reservations, renames) produce no update.
+CREATE FUNCTION apply_shop_stock_totals_delta() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE shop_stock_totals t
+        SET units = t.units + d.units, value = t.value + d.value
+        FROM (
+            SELECT shop_id, SUM(stock) AS units, SUM(stock * price) AS value
+            FROM new_variants
+            GROUP BY shop_id
+        ) d
+        WHERE t.shop_id = d.shop_id AND (d.units <> 0 OR d.value <> 0);
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE shop_stock_totals t
+        SET units = t.units - d.units, value = t.value - d.value
+        FROM (
+            SELECT shop_id, SUM(stock) AS units, SUM(stock * price) AS value
+            FROM old_variants
+            GROUP BY shop_id
+        ) d
+        WHERE t.shop_id = d.shop_id AND (d.units <> 0 OR d.value <> 0);
+    ELSE
+        UPDATE shop_stock_totals t
+        SET units = t.units + d.units, value = t.value + d.value
+        FROM (
+            SELECT shop_id, SUM(units) AS units, SUM(value) AS value
+            FROM (
+                SELECT shop_id, stock AS units, stock * price AS value FROM new_variants
+                UNION ALL
+                SELECT shop_id, -stock, -(stock * price) FROM old_variants
+            ) changes
+            GROUP BY shop_id
+        ) d
+        WHERE t.shop_id = d.shop_id AND (d.units <> 0 OR d.value <> 0);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_variants_stock_totals_insert
+    AFTER INSERT ON product_variants
+    REFERENCING NEW TABLE AS new_variants
+    FOR EACH STATEMENT EXECUTE FUNCTION apply_shop_stock_totals_delta();
+
+CREATE TRIGGER trg_product_variants_stock_totals_update
+    AFTER UPDATE ON product_variants
+    REFERENCING OLD TABLE AS old_variants NEW TABLE AS new_variants
+    FOR EACH STATEMENT EXECUTE FUNCTION apply_shop_stock_totals_delta();
+
+CREATE TRIGGER trg_product_variants_stock_totals_delete
+    AFTER DELETE ON product_variants
+    REFERENCING OLD TABLE AS old_variants
+    FOR EACH STATEMENT EXECUTE FUNCTION apply_shop_stock_totals_delta();
+
+COMMENT ON TABLE shop_stock_totals IS 'Totaux de stock par boutique, maintenus par différence à chaque écriture sur les variants';
+COMMENT ON COLUMN shop_stock_totals.shop_id IS 'Identifiant de la boutique';
+COMMENT ON COLUMN shop_stock_totals.units IS 'Nombre total d''unités en stock';
+COMMENT ON COLUMN shop_stock_totals.value IS 'Valeur totale du stock (somme de stock x prix)';
@@ -0,0 +1,20 @@
+-- Per-variant stock version, bumped on every stock change whatever the write path (guarded UPDATEs,
+-- batches, reservations, flash sale flushes, JPA updates, imports).
+-- Stock writes return it with the new stock, so in-memory copies patched after commit can apply
+-- committed values in order and ignore a value older than the one they already hold.
+ALTER TABLE product_variants ADD COLUMN stock_version BIGINT NOT NULL DEFAULT 0;
+
+CREATE FUNCTION bump_product_variant_stock_version() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.stock_version := OLD.stock_version + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_variants_stock_version
+    BEFORE UPDATE OF stock ON product_variants
+    FOR EACH ROW
+    WHEN (NEW.stock IS DISTINCT FROM OLD.stock)
+    EXECUTE FUNCTION bump_product_variant_stock_version();
+
+COMMENT ON COLUMN product_variants.stock_version IS 'Version du stock du variant, incrémentée à chaque modification du stock';
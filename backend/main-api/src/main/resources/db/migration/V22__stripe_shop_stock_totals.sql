@@ -0,0 +1,85 @@
+-- Spread each shop's stock totals over 16 slot rows, picked by variant id
+-- With a single totals row per shop, every stock write on the shop updated that row and kept it locked
+-- until commit, which serialized all stock actions of a shop again. Writes on variants of different
+-- slots now update different rows; the stock summary sums the slots of the shop.
+CREATE FUNCTION stock_totals_slot(variant_id BIGINT) RETURNS INTEGER AS $$
+    SELECT (variant_id % 16)::INTEGER
+$$ LANGUAGE sql IMMUTABLE;
+
+ALTER TABLE shop_stock_totals DROP CONSTRAINT shop_stock_totals_pkey;
+ALTER TABLE shop_stock_totals ADD COLUMN slot INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE shop_stock_totals ALTER COLUMN slot DROP DEFAULT;
+
+-- Rebuild from the current catalog, one row per shop and slot
+DELETE FROM shop_stock_totals;
+INSERT INTO shop_stock_totals (shop_id, slot, units, value)
+SELECT s.id, g.slot, COALESCE(SUM(pv.stock), 0), COALESCE(SUM(pv.stock * pv.price), 0)
+FROM shops s
+CROSS JOIN generate_series(0, 15) AS g(slot)
+LEFT JOIN product_variants pv ON pv.shop_id = s.id AND stock_totals_slot(pv.id) = g.slot
+GROUP BY s.id, g.slot;
+
+ALTER TABLE shop_stock_totals ADD PRIMARY KEY (shop_id, slot);
+
+CREATE OR REPLACE FUNCTION create_shop_stock_totals() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO shop_stock_totals (shop_id, slot)
+    SELECT s.id, g.slot FROM new_shops s CROSS JOIN generate_series(0, 15) AS g(slot);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION add_shop_stock_totals(p_shop_id BIGINT, p_slot INTEGER, p_units BIGINT, p_value DECIMAL) RETURNS VOID AS $$
+BEGIN
+    IF p_units <> 0 OR p_value <> 0 THEN
+        UPDATE shop_stock_totals
+        SET units = units + p_units, value = value + p_value
+        WHERE shop_id = p_shop_id AND slot = p_slot;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Slots are updated one by one in (shop_id, slot) order: two statements touching the same slots
+-- lock them in the same order and cannot deadlock
+CREATE OR REPLACE FUNCTION apply_shop_stock_totals_delta() RETURNS TRIGGER AS $$
+DECLARE
+    d RECORD;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        FOR d IN
+            SELECT shop_id, stock_totals_slot(id) AS slot, SUM(stock) AS units, SUM(stock * price) AS value
+            FROM new_variants
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+        LOOP
+            PERFORM add_shop_stock_totals(d.shop_id, d.slot, d.units, d.value);
+        END LOOP;
+    ELSIF TG_OP = 'DELETE' THEN
+        FOR d IN
+            SELECT shop_id, stock_totals_slot(id) AS slot, SUM(stock) AS units, SUM(stock * price) AS value
+            FROM old_variants
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+        LOOP
+            PERFORM add_shop_stock_totals(d.shop_id, d.slot, -d.units, -d.value);
+        END LOOP;
+    ELSE
+        FOR d IN
+            SELECT shop_id, stock_totals_slot(id) AS slot, SUM(units) AS units, SUM(value) AS value
+            FROM (
+                SELECT id, shop_id, stock AS units, stock * price AS value FROM new_variants
+                UNION ALL
+                SELECT id, shop_id, -stock, -(stock * price) FROM old_variants
+            ) changes
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+        LOOP
+            PERFORM add_shop_stock_totals(d.shop_id, d.slot, d.units, d.value);
+        END LOOP;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON TABLE shop_stock_totals IS 'Totaux de stock par boutique, répartis sur 16 lignes par boutique et maintenus par différence à chaque écriture sur les variants';
+COMMENT ON COLUMN shop_stock_totals.slot IS 'Ligne de la boutique qui porte les variants dont l''identifiant modulo 16 vaut slot';
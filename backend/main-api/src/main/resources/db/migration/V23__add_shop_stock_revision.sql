@@ -0,0 +1,72 @@
+-- Per-shop stock revision, kept on the stock totals slots and summed like the totals
+-- Stock movements no longer bump shops.catalog_version: that UPDATE locked the shop row on every stock
+-- action. The catalog ETag combines catalog_version with this revision instead, which grows by the
+-- stock_version increments of the shop's variants and is written on the slot rows the movement already locks.
+ALTER TABLE shop_stock_totals ADD COLUMN stock_revision BIGINT NOT NULL DEFAULT 0;
+
+UPDATE shop_stock_totals t
+SET stock_revision = d.revision
+FROM (
+    SELECT shop_id, stock_totals_slot(id) AS slot, SUM(stock_version) AS revision
+    FROM product_variants
+    GROUP BY 1, 2
+) d
+WHERE t.shop_id = d.shop_id AND t.slot = d.slot;
+
+DROP FUNCTION add_shop_stock_totals(BIGINT, INTEGER, BIGINT, DECIMAL);
+
+CREATE FUNCTION add_shop_stock_totals(p_shop_id BIGINT, p_slot INTEGER, p_units BIGINT, p_value DECIMAL,
+                                      p_revision BIGINT) RETURNS VOID AS $$
+BEGIN
+    IF p_units <> 0 OR p_value <> 0 OR p_revision <> 0 THEN
+        UPDATE shop_stock_totals
+        SET units = units + p_units, value = value + p_value, stock_revision = stock_revision + p_revision
+        WHERE shop_id = p_shop_id AND slot = p_slot;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Inserts and deletes leave the revision alone: it only grows, so an ETag never repeats an older value
+CREATE OR REPLACE FUNCTION apply_shop_stock_totals_delta() RETURNS TRIGGER AS $$
+DECLARE
+    d RECORD;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        FOR d IN
+            SELECT shop_id, stock_totals_slot(id) AS slot, SUM(stock) AS units, SUM(stock * price) AS value
+            FROM new_variants
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+        LOOP
+            PERFORM add_shop_stock_totals(d.shop_id, d.slot, d.units, d.value, 0);
+        END LOOP;
+    ELSIF TG_OP = 'DELETE' THEN
+        FOR d IN
+            SELECT shop_id, stock_totals_slot(id) AS slot, SUM(stock) AS units, SUM(stock * price) AS value
+            FROM old_variants
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+        LOOP
+            PERFORM add_shop_stock_totals(d.shop_id, d.slot, -d.units, -d.value, 0);
+        END LOOP;
+    ELSE
+        FOR d IN
+            SELECT shop_id, stock_totals_slot(id) AS slot,
+                   SUM(units) AS units, SUM(value) AS value, SUM(revision)::BIGINT AS revision
+            FROM (
+                SELECT id, shop_id, stock AS units, stock * price AS value, stock_version AS revision
+                FROM new_variants
+                UNION ALL
+                SELECT id, shop_id, -stock, -(stock * price), -stock_version FROM old_variants
+            ) changes
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+        LOOP
+            PERFORM add_shop_stock_totals(d.shop_id, d.slot, d.units, d.value, d.revision);
+        END LOOP;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON COLUMN shop_stock_totals.stock_revision IS 'Somme des incréments de stock_version des variants du slot, utilisée dans l''ETag du catalogue';
@@ -0,0 +1,8 @@
+-- Stock can no longer drop below the quantity held by active reservations
+-- Stock actions, reservations and flash sales already guard their UPDATEs; variant updates and catalog
+-- imports replaced the stock without looking at reserved_stock. The constraint is the last line of defense
+-- for any write path. NOT VALID: rows written before this migration are not rescanned, every new write is checked.
+ALTER TABLE product_variants
+    ADD CONSTRAINT product_variants_stock_covers_reserved CHECK (stock >= reserved_stock) NOT VALID;
+
+COMMENT ON CONSTRAINT product_variants_stock_covers_reserved ON product_variants IS 'Le stock couvre toujours la quantité réservée';
@@ -0,0 +1,89 @@
+package com.shopifake.mainapi.benchmark;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopifake.mainapi.cache.KeyLocks;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Compare le chargement d'un cache Caffeine froid par des threads virtuels concurrents :
+ * chargement dans la map (cache.get(key, loader)), qui épingle le thread à son porteur pendant la requête,
+ * et chargement hors de la map sous un {@link KeyLocks}.
+ * La requête SQL est simulée par une attente de LOAD_MILLIS ; chaque lot lit KEYS clés, READERS_PER_KEY fois chacune.
+ *
+ * Lancement : mvn test-compile puis
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *   com.shopifake.mainapi.benchmark.CacheLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheLoadBenchmark {
+
+    private static final int KEYS = 64;
+    private static final int READERS_PER_KEY = 4;
+    private static final long LOAD_MILLIS = 2;
+
+    @Param({"1", "4"})
+    private int carriers;
+
+    private Cache<Long, String> cache;
+    private KeyLocks locks;
+
+    @Setup(Level.Trial)
+    public void configureScheduler() {
+        // Lu au premier démarrage d'un thread virtuel : chaque valeur du paramètre tourne dans son propre fork
+        System.setProperty("jdk.virtualThreadScheduler.parallelism", Integer.toString(carriers));
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        cache = Caffeine.newBuilder().maximumSize(10_000).build();
+        locks = new KeyLocks();
+    }
+
+    @Benchmark
+    public void loadInsideMap() {
+        readAll(key -> cache.get(key, CacheLoadBenchmark::load));
+    }
+
+    @Benchmark
+    public void loadUnderKeyLock() {
+        readAll(key -> locks.getOrLoad(cache, key, CacheLoadBenchmark::load));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheLoadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static void readAll(LongFunction<String> read) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < KEYS * READERS_PER_KEY; i++) {
+                long key = i % KEYS;
+                executor.submit(() -> read.apply(key));
+            }
+        }
+    }
+
+    private static String load(Long key) {
+        try {
+            Thread.sleep(LOAD_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "value-" + key;
+    }
+}
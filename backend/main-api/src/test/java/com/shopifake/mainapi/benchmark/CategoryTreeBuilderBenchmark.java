@@ -0,0 +1,120 @@
+package com.shopifake.mainapi.benchmark;
+
+import com.shopifake.mainapi.dto.CategoryTreeDto;
+import com.shopifake.mainapi.dto.CategoryTreeNodeDto;
+import com.shopifake.mainapi.mapper.CategoryMapper;
+import com.shopifake.mainapi.mapper.CategoryTreeBuilder;
+import com.shopifake.mainapi.model.Category;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare la construction de l'arbre des catégories en une passe (CategoryTreeBuilder)
+ * avec l'ancien algorithme récursif qui regroupait toute la liste à chaque niveau.
+ *
+ * Lancement : mvn test-compile puis
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *   com.shopifake.mainapi.benchmark.CategoryTreeBuilderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoryTreeBuilderBenchmark {
+
+    private static final int MAX_DEPTH = 4;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private List<Category> categories;
+    private CategoryMapper categoryMapper;
+    private CategoryTreeBuilder categoryTreeBuilder;
+
+    @Setup
+    public void setUp() {
+        categoryMapper = new CategoryMapper();
+        categoryTreeBuilder = new CategoryTreeBuilder(categoryMapper);
+        categories = generateCategories(size);
+    }
+
+    @Benchmark
+    public CategoryTreeDto singlePass() {
+        return categoryTreeBuilder.build(categories);
+    }
+
+    @Benchmark
+    public CategoryTreeDto groupingByPerLevel() {
+        return new CategoryTreeDto(buildTreeNaive(categories, null));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CategoryTreeBuilderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Ancienne implémentation de CategoryService.buildTree, conservée comme référence
+     */
+    private List<CategoryTreeNodeDto> buildTreeNaive(List<Category> categories, Long parentId) {
+        Map<Long, List<Category>> grouped = categories.stream()
+                .collect(Collectors.groupingBy(
+                        c -> c.getParentId() == null ? -1L : c.getParentId()
+                ));
+
+        long actualParentId = parentId == null ? -1L : parentId;
+
+        return grouped.getOrDefault(actualParentId, Collections.emptyList())
+                .stream()
+                .map(cat -> categoryMapper.toTreeNodeDto(
+                        cat,
+                        buildTreeNaive(categories, cat.getId())
+                ))
+                .toList();
+    }
+
+    /**
+     * Génère un arbre aléatoire (graine fixe) de profondeur au plus MAX_DEPTH
+     */
+    private static List<Category> generateCategories(int size) {
+        Random random = new Random(42);
+        List<Category> categories = new ArrayList<>(size);
+        List<Category> possibleParents = new ArrayList<>();
+        int[] depths = new int[size + 1];
+
+        for (long id = 1; id <= size; id++) {
+            Category category = new Category();
+            category.setId(id);
+            category.setShopId(1L);
+            category.setLabel("Catégorie " + id);
+            category.setSlug("categorie-" + id);
+            category.setPosition((int) id);
+
+            int depth = 1;
+            if (!possibleParents.isEmpty() && random.nextInt(10) != 0) {
+                Category parent = possibleParents.get(random.nextInt(possibleParents.size()));
+                category.setParentId(parent.getId());
+                depth = depths[parent.getId().intValue()] + 1;
+            }
+            depths[(int) id] = depth;
+            if (depth < MAX_DEPTH) {
+                possibleParents.add(category);
+            }
+            categories.add(category);
+        }
+        return categories;
+    }
+}
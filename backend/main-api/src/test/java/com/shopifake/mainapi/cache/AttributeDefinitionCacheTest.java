@@ -0,0 +1,108 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.AttributeDefinitionDto;
+import com.shopifake.mainapi.dto.CreateCategoryRequest;
+import com.shopifake.mainapi.dto.CreateProductRequest;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.service.CategoryService;
+import com.shopifake.mainapi.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "webhook.enabled=false"
+})
+class AttributeDefinitionCacheTest {
+
+    @Autowired
+    private AttributeDefinitionCache attributeDefinitionCache;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+    private Long shopId;
+    private Long categoryId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("attributes-" + UUID.randomUUID());
+        shop.setName("Attribute definition cache test shop");
+        shopId = shopRepository.save(shop).getId();
+        categoryId = categoryService.create(shopId, new CreateCategoryRequest("Chemises", null, null)).id();
+    }
+
+    @Test
+    void warmDictionaryIsServedWithoutAnyStatement() {
+        Long productId = createProduct("Couleur", "Taille");
+        assertThat(attributeDefinitionCache.getAttributeNames(productId).values())
+                .containsExactlyInAnyOrder("Couleur", "Taille");
+
+        statistics.clear();
+        Map<Long, String> names = attributeDefinitionCache.getAttributeNames(productId);
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(names.values()).containsExactlyInAnyOrder("Couleur", "Taille");
+        assertThat(meterRegistry.find("cache.gets").tag("cache", "attributeDefinitions").tag("result", "hit")
+                .functionCounter()).isNotNull()
+                .satisfies(hits -> assertThat(hits.count()).isPositive());
+        assertThat(meterRegistry.find("cache.gets").tag("cache", "attributeDefinitions").tag("result", "miss")
+                .functionCounter()).isNotNull()
+                .satisfies(misses -> assertThat(misses.count()).isPositive());
+    }
+
+    @Test
+    void deletedProductIsEvictedAfterCommit() {
+        Long productId = createProduct("Matière");
+        assertThat(attributeDefinitionCache.getAttributeNames(productId)).hasSize(1);
+
+        productService.deleteProduct(shopId, productId);
+
+        statistics.clear();
+        assertThat(attributeDefinitionCache.getAttributeNames(productId)).isEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isPositive();
+    }
+
+    private Long createProduct(String... attributeNames) {
+        List<AttributeDefinitionDto> definitions = new ArrayList<>();
+        for (int i = 0; i < attributeNames.length; i++) {
+            definitions.add(new AttributeDefinitionDto(null, attributeNames[i], i));
+        }
+        return productService.createProduct(shopId,
+                new CreateProductRequest(categoryId, shopId, "Chemise", null, true, definitions)).id();
+    }
+}
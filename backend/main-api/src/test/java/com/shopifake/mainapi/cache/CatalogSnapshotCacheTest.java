@@ -0,0 +1,152 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.BulkStockActionRequest;
+import com.shopifake.mainapi.dto.CursorPage;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.dto.UpdateProductRequest;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import com.shopifake.mainapi.service.ProductService;
+import com.shopifake.mainapi.service.StockService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "webhook.enabled=false"
+})
+class CatalogSnapshotCacheTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private CatalogSnapshotCache catalogSnapshotCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Shop shop;
+    private Product product;
+    private ProductVariant variant;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("snapshot-" + UUID.randomUUID());
+        shop.setName("Snapshot test shop");
+        shop = shopRepository.save(shop);
+
+        Category category = new Category();
+        category.setShopId(shop.getId());
+        category.setLabel("Chaussures");
+        category.setSlug("chaussures");
+        category = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(category.getId());
+
+        product = new Product();
+        product.setCategoryId(category.getId());
+        product.setShopId(shop.getId());
+        product.setName("Basket");
+        product.setSlug("basket");
+        product = productRepository.save(product);
+
+        variant = new ProductVariant();
+        variant.setProductId(product.getId());
+        variant.setShopId(shop.getId());
+        variant.setSku(UUID.randomUUID().toString());
+        variant.setPrice(BigDecimal.TEN);
+        variant.setStock(10);
+        variant = productVariantRepository.save(variant);
+    }
+
+    @Test
+    void repeatedReadsAreServedWithoutStatements() {
+        productService.getAllProductsWithVariants(shop.getId(), null, null);
+
+        statistics.clear();
+        CursorPage<ProductWithVariantsDto> page = productService.getAllProductsWithVariants(shop.getId(), null, null);
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(page.items()).hasSize(1);
+    }
+
+    @Test
+    void writesAreVisibleAfterCommit() {
+        productService.getAllProductsWithVariants(shop.getId(), null, null);
+
+        stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.REMOVE, 3));
+        productService.updateProduct(shop.getId(), product.getId(), new UpdateProductRequest("Basket montante", null, true));
+
+        ProductWithVariantsDto item = productService.getAllProductsWithVariants(shop.getId(), null, null).items().get(0);
+        assertThat(item.product().name()).isEqualTo("Basket montante");
+        assertThat(item.variants().get(0).stock()).isEqualTo(7);
+    }
+
+    @Test
+    void stockActionsPatchTheCachedSnapshotInPlace() {
+        CatalogSnapshot snapshot = catalogSnapshotCache.getSnapshot(shop.getId()).orElseThrow();
+
+        stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.REMOVE, 3));
+        stockService.performStockActions(shop.getId(), new BulkStockActionRequest(List.of(
+                new StockActionRequest(variant.getSku(), ActionType.ADD, 5))));
+
+        assertThat(catalogSnapshotCache.getSnapshot(shop.getId())).containsSame(snapshot);
+        assertThat(snapshot.findVariant(variant.getId()))
+                .hasValueSatisfying(cached -> assertThat(cached.stock()).isEqualTo(12));
+        assertThat(snapshot.getProducts().get(0).variants().get(0).stock()).isEqualTo(12);
+    }
+
+    @Test
+    void staleStockValuesAreIgnored() {
+        CatalogSnapshot snapshot = catalogSnapshotCache.getSnapshot(shop.getId()).orElseThrow();
+
+        // Valeur déjà couverte par le chargement (version 0)
+        snapshot.applyVariantStock(variant.getId(), 99, 0);
+        assertThat(snapshot.findVariant(variant.getId()).orElseThrow().stock()).isEqualTo(10);
+
+        stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.REMOVE, 1));
+        stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.REMOVE, 1));
+
+        // Listener du premier mouvement exécuté après celui du second
+        snapshot.applyVariantStock(variant.getId(), 9, 1);
+        assertThat(snapshot.findVariant(variant.getId()).orElseThrow().stock()).isEqualTo(8);
+    }
+}
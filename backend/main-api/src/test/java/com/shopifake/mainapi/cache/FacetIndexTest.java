@@ -0,0 +1,72 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.dto.ProductVariantDto;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FacetIndexTest {
+
+    private static final long SHOP_ID = 1L;
+    private static final long CATEGORY_ID = 10L;
+
+    @Test
+    void filtersAndCountsFacetsDisjunctively() {
+        FacetIndex index = new FacetIndex(List.of(
+                product(1L, "T-shirt",
+                        variant(11L, 1L, "Rouge", "M", 3),
+                        variant(12L, 1L, "Bleu", "M", 0)),
+                product(2L, "Pull",
+                        variant(21L, 2L, "Rouge", "S", 5),
+                        variant(22L, 2L, "Rouge", "L", 1))
+        ));
+
+        FacetIndex.Result result = index.filter(null,
+                Map.of("Couleur", Set.of("Rouge"), "Taille", Set.of("M", "L")), true);
+
+        assertThat(result.products()).extracting(FacetIndex.ProductRef::id).containsExactly(2L, 1L);
+        assertThat(result.variantCount()).isEqualTo(2);
+        // Les tailles sont comptées sans le filtre sur la taille, les couleurs sans le filtre sur la couleur
+        assertThat(result.facets().get("Taille")).isEqualTo(Map.of("M", 1, "S", 1, "L", 1));
+        assertThat(result.facets().get("Couleur")).isEqualTo(Map.of("Rouge", 2));
+    }
+
+    @Test
+    void incrementalUpdatesReplaceProductEntries() {
+        FacetIndex index = new FacetIndex(List.of(
+                product(1L, "T-shirt", variant(11L, 1L, "Rouge", "M", 0))
+        ));
+        Map<String, Set<String>> red = Map.of("Couleur", Set.of("Rouge"));
+
+        assertThat(index.filter(Set.of(CATEGORY_ID), red, true).variantCount()).isZero();
+        index.updateStock(11L, 4, true);
+        assertThat(index.filter(Set.of(CATEGORY_ID), red, true).variantCount()).isEqualTo(1);
+
+        index.putProduct(product(1L, "T-shirt", variant(12L, 1L, "Vert", "M", 2)));
+        assertThat(index.filter(null, red, false).products()).isEmpty();
+        assertThat(index.findProductId(12L)).isEqualTo(1L);
+        assertThat(index.findProductId(11L)).isNull();
+
+        index.removeProduct(1L);
+        assertThat(index.filter(null, Map.of(), false).variantCount()).isZero();
+        assertThat(index.filter(null, Map.of(), false).facets()).isEmpty();
+    }
+
+    private static ProductWithVariantsDto product(Long id, String name, ProductVariantDto... variants) {
+        ProductDto product = new ProductDto(id, CATEGORY_ID, SHOP_ID, name, name.toLowerCase(), null, true,
+                null, null, List.of());
+        return new ProductWithVariantsDto(product, List.of(variants));
+    }
+
+    private static ProductVariantDto variant(Long id, Long productId, String color, String size, int stock) {
+        return new ProductVariantDto(id, productId, SHOP_ID, "SKU-" + id, BigDecimal.TEN, stock, true, null, null,
+                Map.of("Couleur", color, "Taille", size));
+    }
+}
@@ -0,0 +1,109 @@
+package com.shopifake.mainapi.cache;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CreateCategoryRequest;
+import com.shopifake.mainapi.dto.UpdateShopRequest;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.Category;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.service.CategoryService;
+import com.shopifake.mainapi.service.ShopService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class SecondLevelCacheTest {
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+    private Shop shop;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("l2-" + UUID.randomUUID());
+        shop.setName("Second level cache test shop");
+        shop = shopRepository.save(shop);
+    }
+
+    @Test
+    void shopLookupsAreServedFromTheCacheAcrossCatalogWrites() {
+        Long categoryId = categoryService.create(shop.getId(), new CreateCategoryRequest("Vestes", null, null)).id();
+        // Une insertion IDENTITY n'alimente pas le cache : la première lecture le fait
+        Category category = categoryRepository.findByIdAndShopId(categoryId, shop.getId()).orElseThrow();
+        categoryService.create(shop.getId(), new CreateCategoryRequest("Manteaux", null, null));
+
+        statistics.clear();
+        assertThat(shopRepository.existsById(shop.getId())).isTrue();
+        assertThat(shopService.getShopByDomainName(shop.getDomainName()).getId()).isEqualTo(shop.getId());
+        assertThat(categoryRepository.findByIdAndShopId(categoryId, shop.getId())).isPresent();
+        assertThat(categoryRepository.findByShopIdAndSlug(shop.getId(), category.getSlug()))
+                .hasValueSatisfying(found -> assertThat(found.getId()).isEqualTo(categoryId));
+        assertThat(categoryRepository.findByIdAndShopId(categoryId, shop.getId() + 1)).isEmpty();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("shops").getHitCount()).isPositive();
+        assertThat(statistics.getDomainDataRegionStatistics("categories").getHitCount()).isPositive();
+        assertThat(statistics.getNaturalIdCacheHitCount()).isPositive();
+        assertThat(meterRegistry.find("hibernate.second.level.cache.requests").tag("region", "shops").meters())
+                .isNotEmpty();
+    }
+
+    @Test
+    void renamedDomainIsResolvedAndDeletedShopIsForgotten() {
+        String oldDomain = shop.getDomainName();
+        String newDomain = "l2-renamed-" + UUID.randomUUID();
+        shopService.getShopByDomainName(oldDomain);
+
+        UpdateShopRequest update = new UpdateShopRequest();
+        update.setDomainName(newDomain);
+        shopService.updateShop(shop.getId(), update);
+
+        assertThat(shopService.getShopByDomainName(newDomain).getId()).isEqualTo(shop.getId());
+        assertThatThrownBy(() -> shopService.getShopByDomainName(oldDomain))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        Long categoryId = categoryService.create(shop.getId(), new CreateCategoryRequest("Pulls", null, null)).id();
+        categoryRepository.findByIdAndShopId(categoryId, shop.getId()).orElseThrow();
+        shopService.deleteShop(shop.getId());
+
+        // Catégories supprimées par ON DELETE CASCADE : plus rien ne doit rester en cache
+        assertThat(shopRepository.existsById(shop.getId())).isFalse();
+        assertThat(categoryRepository.findByIdAndShopId(categoryId, shop.getId())).isEmpty();
+    }
+}
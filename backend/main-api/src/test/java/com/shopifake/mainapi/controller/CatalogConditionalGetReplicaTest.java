@@ -0,0 +1,116 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.cache.CatalogSnapshotCache;
+import com.shopifake.mainapi.datasource.ReplicaRoutingDataSource;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.service.CatalogVersionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Deux réplicas à des retards différents : A a rejoué la version 2 du catalogue, B n'en est qu'à la version 1.
+ * Chaque réplica renvoie sa version à toute requête, celle de l'ETag comme celle du corps.
+ */
+class CatalogConditionalGetReplicaTest {
+
+    private static final long SHOP_ID = 7L;
+    private static final String BODY_SQL = "SELECT catalog_version FROM shops WHERE id = ?";
+
+    private final ReplicaRoutingDataSource routing;
+    private final CatalogConditionalGet conditionalGet;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate serviceTransaction;
+
+    CatalogConditionalGetReplicaTest() throws SQLException {
+        DataSource primary = serverAt(2);
+        routing = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("a", serverAt(2)),
+                        new ReplicaRoutingDataSource.Replica("b", serverAt(1))),
+                () -> false, Duration.ofSeconds(10), Duration.ofHours(1));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // Transaction en lecture seule d'un service de lecture du catalogue
+        serviceTransaction = new TransactionTemplate(transactionManager);
+        serviceTransaction.setReadOnly(true);
+
+        CatalogSnapshotCache snapshotCache = mock(CatalogSnapshotCache.class);
+        when(snapshotCache.readAtLeast(any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+        conditionalGet = new CatalogConditionalGet(
+                new CatalogVersionService(mock(ShopRepository.class), jdbcTemplate), snapshotCache, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        routing.close();
+    }
+
+    @Test
+    void neverPairsAnETagWithABodyFromAMoreLaggedReplica() {
+        Set<String> etags = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            ResponseEntity<Long> response = conditionalGet.respond(SHOP_ID, newRequest(),
+                    () -> serviceTransaction.execute(status -> jdbcTemplate.queryForObject(BODY_SQL, Long.class, SHOP_ID)));
+
+            assertThat(response.getHeaders().getETag()).isEqualTo("\"" + SHOP_ID + "-" + response.getBody() + "-0\"");
+            etags.add(response.getHeaders().getETag());
+        }
+        // Les lectures ont bien été réparties sur les deux réplicas
+        assertThat(etags).hasSize(2);
+    }
+
+    private static ServletWebRequest newRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+
+    private static DataSource serverAt(long catalogVersion) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.next()).thenReturn(true, false);
+            when(rs.getMetaData()).thenReturn(metaData);
+            when(rs.getLong(1)).thenReturn(catalogVersion);
+            when(rs.getLong("catalog_version")).thenReturn(catalogVersion);
+            when(rs.getLong("stock_revision")).thenReturn(0L);
+            return rs;
+        });
+        return dataSource;
+    }
+}
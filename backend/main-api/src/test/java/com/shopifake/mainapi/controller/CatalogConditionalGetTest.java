@@ -0,0 +1,193 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.BulkStockActionRequest;
+import com.shopifake.mainapi.dto.CreateCategoryRequest;
+import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.event.CatalogChangedEvent;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import com.shopifake.mainapi.service.CategoryService;
+import com.shopifake.mainapi.service.StockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+@AutoConfigureMockMvc
+class CatalogConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long shopId;
+    private Product product;
+    private ProductVariant variant;
+
+    @BeforeEach
+    void setUp() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("etag-" + UUID.randomUUID());
+        shop.setName("ETag test shop");
+        shopId = shopRepository.save(shop).getId();
+
+        Category category = new Category();
+        category.setShopId(shopId);
+        category.setLabel("Lampes");
+        category.setSlug("lampes");
+        category = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(category.getId());
+
+        product = new Product();
+        product.setCategoryId(category.getId());
+        product.setShopId(shopId);
+        product.setName("Lampe");
+        product.setSlug("lampe");
+        product = productRepository.save(product);
+
+        variant = new ProductVariant();
+        variant.setProductId(product.getId());
+        variant.setShopId(shopId);
+        variant.setSku(UUID.randomUUID().toString());
+        variant.setPrice(BigDecimal.TEN);
+        variant.setStock(10);
+        variant = productVariantRepository.save(variant);
+    }
+
+    @Test
+    void matchingETagReturnsNotModifiedUntilTheCatalogChanges() throws Exception {
+        String url = "/api/shops/" + shopId + "/categories/tree";
+
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        categoryService.create(shopId, new CreateCategoryRequest("Maison", null, null));
+
+        String newEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+
+    @Test
+    void stockActionsChangeTheETagWithoutWritingTheShopRow() throws Exception {
+        String url = "/api/shops/" + shopId + "/products/with-variants";
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        long catalogVersion = catalogVersion();
+
+        stockService.performStockActions(shopId, new BulkStockActionRequest(List.of(
+                new StockActionRequest(variant.getSku(), ActionType.REMOVE, 2),
+                new StockActionRequest(variant.getSku(), ActionType.REMOVE, 1))));
+
+        String newEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].variants[0].stock").value(7))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+        assertThat(catalogVersion()).isEqualTo(catalogVersion);
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, newEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void catalogVersionIsBumpedOncePerTransaction() {
+        long catalogVersion = catalogVersion();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                eventPublisher.publishEvent(new CatalogChangedEvent(shopId, CatalogChangedEvent.Scope.PRODUCT, product.getId()));
+                eventPublisher.publishEvent(CatalogChangedEvent.stock(shopId, variant.getId(), 10, 0));
+            }
+        });
+        assertThat(catalogVersion()).isEqualTo(catalogVersion + 1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                eventPublisher.publishEvent(CatalogChangedEvent.stock(shopId, variant.getId(), 10, 0)));
+        assertThat(catalogVersion()).isEqualTo(catalogVersion + 1);
+    }
+
+    @Test
+    void newETagIsNeverServedWithAStaleSnapshot() throws Exception {
+        String url = "/api/shops/" + shopId + "/products/with-variants";
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].product.name").value("Lampe"));
+
+        // Écritures committées dont l'éviction après commit n'a pas encore eu lieu
+        jdbcTemplate.update("UPDATE product_variants SET stock = 4 WHERE id = ?", variant.getId());
+        String stockEtag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].variants[0].stock").value(4))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        jdbcTemplate.update("UPDATE products SET name = 'Lampe de chevet' WHERE id = ?", product.getId());
+        jdbcTemplate.update("UPDATE shops SET catalog_version = catalog_version + 1 WHERE id = ?", shopId);
+        String productEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, stockEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].product.name").value("Lampe de chevet"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(productEtag).isNotEqualTo(stockEtag);
+    }
+
+    private long catalogVersion() {
+        return jdbcTemplate.queryForObject("SELECT catalog_version FROM shops WHERE id = ?", Long.class, shopId);
+    }
+}
@@ -0,0 +1,126 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CatalogImportJobDto;
+import com.shopifake.mainapi.dto.CreateCategoryRequest;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import com.shopifake.mainapi.service.CatalogImportService;
+import com.shopifake.mainapi.service.CategoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {"webhook.enabled=false", "streaming.export-fetch-size=2"})
+@AutoConfigureMockMvc
+class CatalogExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Test
+    void exportsOneLinePerVariantAndCanBeReimported() throws Exception {
+        Long shopId = createShop();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Chemises", null, null)).id();
+        String sku = "EXP-" + shopId;
+        String ndjson = """
+                {"categoryId":%1$d,"productName":"Chemise","productDescription":"Lin, coupe droite","sku":"%2$s-1","price":45.50,"stock":3,"attributes":{"Taille":"M","Couleur":"Bleu"}}
+                {"categoryId":%1$d,"productName":"Chemise","sku":"%2$s-2","price":45.50,"stock":0,"attributes":{"Taille":"L","Couleur":"Bleu"}}
+                {"categoryId":%1$d,"productName":"Cravate","sku":"%2$s-3","price":20,"stock":8,"attributes":{}}
+                """.formatted(categoryId, sku);
+        assertThat(await(shopId, catalogImportService.startImport(shopId, "application/x-ndjson", stream(ndjson))).status())
+                .isEqualTo(CatalogImportJobDto.Status.COMPLETED);
+
+        String exportedNdjson = export("/api/shops/" + shopId + "/export", false);
+        String[] lines = exportedNdjson.split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).contains("\"sku\":\"" + sku + "-1\"", "\"productSlug\":\"chemise\"",
+                "\"attributes\":{\"Taille\":\"M\",\"Couleur\":\"Bleu\"}");
+        assertThat(lines[2]).contains("\"attributes\":{}");
+
+        String csv = export("/api/shops/" + shopId + "/export?format=csv&gzip=true", true);
+        String[] rows = csv.split("\n");
+        assertThat(rows).hasSize(4);
+        assertThat(rows[0]).isEqualTo("shopId,categoryId,productId,productName,productSlug,productDescription,productActive,"
+                + "variantId,sku,price,stock,variantActive,attributes.Couleur,attributes.Taille");
+        assertThat(rows[1]).contains("\"Lin, coupe droite\"").endsWith(",45.50,3,true,Bleu,M");
+        assertThat(rows[3]).endsWith(",20.00,8,true,,");
+
+        // Un export se réimporte tel quel : tous les variants sont reconnus par leur SKU
+        CatalogImportJobDto reimport = await(shopId, catalogImportService.startImport(shopId, "text/csv", stream(csv)));
+        assertThat(reimport.status()).isEqualTo(CatalogImportJobDto.Status.COMPLETED);
+        assertThat(reimport.variantsCreated()).isZero();
+        assertThat(reimport.variantsUpdated()).isEqualTo(3);
+    }
+
+    private String export(String url, boolean gzip) throws Exception {
+        MvcResult started = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, startsWith("attachment")))
+                .andReturn();
+        byte[] body = result.getResponse().getContentAsByteArray();
+        if (!gzip) {
+            assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+            return new String(body, StandardCharsets.UTF_8);
+        }
+        assertThat(result.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Long createShop() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("export-" + UUID.randomUUID());
+        shop.setName("Export test shop");
+        return shopRepository.save(shop).getId();
+    }
+
+    private CatalogImportJobDto await(Long shopId, CatalogImportJobDto job) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            CatalogImportJobDto current = catalogImportService.getJob(shopId, job.id());
+            if (current.status() == CatalogImportJobDto.Status.COMPLETED || current.status() == CatalogImportJobDto.Status.FAILED) {
+                return current;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Import " + job.id() + " did not finish");
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
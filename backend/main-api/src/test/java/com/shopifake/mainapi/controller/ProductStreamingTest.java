@@ -0,0 +1,113 @@
+package com.shopifake.mainapi.controller;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {"webhook.enabled=false", "streaming.fetch-size=2"})
+@AutoConfigureMockMvc
+class ProductStreamingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private AttributeDefinitionRepository attributeDefinitionRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private VariantAttributeRepository variantAttributeRepository;
+
+    @Test
+    void ndjsonStreamsOneProductPerLineAndJsonStaysTheDefault() throws Exception {
+        Long shopId = seedShop(5, 3);
+        String url = "/api/shops/" + shopId + "/products/with-variants";
+
+        MvcResult started = mockMvc.perform(get(url).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(5);
+        assertThat(lines[0]).startsWith("{\"product\":").contains("\"Produit 0\"", "\"Couleur\":\"Rouge\"");
+        assertThat(lines[4]).contains("\"Produit 4\"");
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5));
+    }
+
+    private Long seedShop(int productCount, int variantsPerProduct) {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("stream-" + UUID.randomUUID());
+        shop.setName("Streaming test shop");
+        shop = shopRepository.save(shop);
+
+        Category category = new Category();
+        category.setShopId(shop.getId());
+        category.setLabel("Sacs");
+        category.setSlug("sacs");
+        category = categoryRepository.save(category);
+
+        for (int p = 0; p < productCount; p++) {
+            Product product = new Product();
+            product.setCategoryId(category.getId());
+            product.setShopId(shop.getId());
+            product.setName("Produit " + p);
+            product.setSlug("produit-" + p);
+            product = productRepository.save(product);
+
+            AttributeDefinition color = attributeDefinitionRepository.save(
+                    new AttributeDefinition(null, product.getId(), "Couleur", 0, null));
+
+            for (int v = 0; v < variantsPerProduct; v++) {
+                ProductVariant variant = new ProductVariant();
+                variant.setProductId(product.getId());
+                variant.setShopId(shop.getId());
+                variant.setSku(UUID.randomUUID().toString());
+                variant.setPrice(BigDecimal.TEN);
+                variant.setStock(v);
+                variant = productVariantRepository.save(variant);
+
+                variantAttributeRepository.save(new VariantAttribute(null, variant.getId(), color.getId(), "Rouge"));
+            }
+        }
+        return shop.getId();
+    }
+}
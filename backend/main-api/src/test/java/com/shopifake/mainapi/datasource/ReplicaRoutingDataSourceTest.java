@@ -0,0 +1,110 @@
+package com.shopifake.mainapi.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replicaA = mock(DataSource.class);
+    private final DataSource replicaB = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection connectionA = mock(Connection.class);
+    private final Connection connectionB = mock(Connection.class);
+    private final AtomicBoolean primaryRequired = new AtomicBoolean();
+
+    @Test
+    void balancesReadsAcrossReplicasAndHonoursReadYourWrites() throws Exception {
+        stubConnections();
+        try (ReplicaRoutingDataSource routing = routing()) {
+            assertThat(List.of(routing.getConnection(), routing.getConnection(), routing.getConnection()))
+                    .containsExactly(connectionA, connectionB, connectionA);
+
+            primaryRequired.set(true);
+            assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        }
+    }
+
+    @Test
+    void ejectsFailingReplicasAndReadmitsThemOnceHealthy() throws Exception {
+        stubConnections();
+        doThrow(new SQLException("connection refused")).when(replicaA).getConnection();
+        try (ReplicaRoutingDataSource routing = routing()) {
+            assertThat(routing.getConnection()).isSameAs(connectionB);
+            assertThat(routing.healthyReplicaCount()).isEqualTo(1);
+            assertThat(routing.getConnection()).isSameAs(connectionB);
+
+            // Plus aucun réplica : repli sur le primaire
+            doThrow(new SQLException("connection refused")).when(replicaB).getConnection();
+            assertThat(routing.getConnection()).isSameAs(primaryConnection);
+            assertThat(routing.healthyReplicaCount()).isZero();
+
+            doReturn(healthyConnection(0)).when(replicaA).getConnection();
+            doReturn(healthyConnection(60)).when(replicaB).getConnection();
+            routing.checkReplicas();
+            // B répond mais a une minute de retard : seul A revient
+            assertThat(routing.healthyReplicaCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void keepsReplicasInRotationWhenTheirPoolIsExhausted() throws Exception {
+        stubConnections();
+        doThrow(new SQLTransientConnectionException("replica-a - Connection is not available, request timed out after 2000ms"))
+                .when(replicaA).getConnection();
+        try (ReplicaRoutingDataSource routing = routing()) {
+            // Seule cette connexion passe au réplica suivant
+            assertThat(routing.getConnection()).isSameAs(connectionB);
+            assertThat(routing.healthyReplicaCount()).isEqualTo(2);
+
+            doThrow(new SQLTimeoutException("replica-b - Connection is not available, request timed out after 2000ms"))
+                    .when(replicaB).getConnection();
+            assertThat(routing.getConnection()).isSameAs(primaryConnection);
+            assertThat(routing.healthyReplicaCount()).isEqualTo(2);
+
+            // Le pool se libère : le réplica sert de nouveau sans attendre la vérification périodique
+            doReturn(connectionA).when(replicaA).getConnection();
+            assertThat(List.of(routing.getConnection(), routing.getConnection())).contains(connectionA);
+        }
+    }
+
+    private void stubConnections() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replicaA.getConnection()).thenReturn(connectionA);
+        when(replicaB.getConnection()).thenReturn(connectionB);
+    }
+
+    private ReplicaRoutingDataSource routing() {
+        return new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("a", replicaA), new ReplicaRoutingDataSource.Replica("b", replicaB)),
+                primaryRequired::get, Duration.ofSeconds(10), Duration.ofHours(1));
+    }
+
+    private static Connection healthyConnection(double lagSeconds) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getDouble(1)).thenReturn(lagSeconds);
+        return connection;
+    }
+}
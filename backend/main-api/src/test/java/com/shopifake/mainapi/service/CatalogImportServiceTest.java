@@ -0,0 +1,150 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.*;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class CatalogImportServiceTest {
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importsNdjsonThenMergesCsvIntoExistingProductsAndVariants() throws Exception {
+        Long shopId = createShop();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Vestes", null, null)).id();
+
+        String ndjson = """
+                {"categoryId":%1$d,"productName":"Veste Pluie","productDescription":"Imperméable","sku":"%2$s-1","price":59.90,"stock":4,"attributes":{"Taille":"M","Couleur":"Jaune"}}
+                {"categoryId":%1$d,"productName":"Veste Pluie","sku":"%2$s-2","price":59.90,"stock":0,"attributes":{"Taille":"L","Couleur":"Jaune"}}
+                {"categoryId":%1$d,"productName":"Polaire","sku":"%2$s-3","price":35,"stock":10,"attributes":{}}
+                """.formatted(categoryId, "IMP-" + shopId);
+        CatalogImportJobDto first = await(shopId, catalogImportService.startImport(shopId, "application/x-ndjson", stream(ndjson)));
+
+        assertThat(first.status()).isEqualTo(CatalogImportJobDto.Status.COMPLETED);
+        assertThat(first.rowsRead()).isEqualTo(3);
+        assertThat(first.productsCreated()).isEqualTo(2);
+        assertThat(first.variantsCreated()).isEqualTo(3);
+
+        Long jacketId = jdbcTemplate.queryForObject("SELECT id FROM products WHERE category_id = ? AND slug = 'veste-pluie'",
+                Long.class, categoryId);
+        ProductDto jacket = productService.getProductById(shopId, jacketId);
+        // Les définitions suivent l'ordre des attributs dans le fichier
+        assertThat(jacket.attributeDefinitions()).extracting(AttributeDefinitionDto::attributeName).containsExactly("Taille", "Couleur");
+        Long sizeId = jacket.attributeDefinitions().get(0).id();
+        Long colorId = jacket.attributeDefinitions().get(1).id();
+        assertThat(jdbcTemplate.queryForObject("SELECT attribute_signature FROM product_variants WHERE sku = ?",
+                String.class, "IMP-" + shopId + "-1")).isEqualTo(AttributeSignature.of(Map.of(sizeId, "M", colorId, "Jaune")));
+        assertThat(jdbcTemplate.queryForObject("SELECT search_attributes FROM products WHERE id = ?", String.class, jacketId))
+                .contains("Jaune");
+
+        String csv = """
+                categoryId,productName,sku,price,stock,variantActive,attributes.Taille,attributes.Couleur
+                %1$d,Veste Pluie,%2$s-2,49.90,7,,L,Jaune
+                %1$d,Veste Pluie,%2$s-4,49.90,2,false,S,"Rouge ""vif\"""
+                """.formatted(categoryId, "IMP-" + shopId);
+        CatalogImportJobDto second = await(shopId, catalogImportService.startImport(shopId, "text/csv; charset=UTF-8", stream(csv)));
+
+        assertThat(second.status()).isEqualTo(CatalogImportJobDto.Status.COMPLETED);
+        assertThat(second.productsUpdated()).isEqualTo(1);
+        assertThat(second.variantsCreated()).isEqualTo(1);
+        assertThat(second.variantsUpdated()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForMap("SELECT price, stock, is_active FROM product_variants WHERE sku = ?", "IMP-" + shopId + "-2"))
+                .containsEntry("stock", 7)
+                .containsEntry("is_active", true);
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT va.attribute_value FROM variant_attributes va
+                INNER JOIN product_variants v ON v.id = va.variant_id
+                WHERE v.sku = ? AND va.attribute_definition_id = ?
+                """, String.class, "IMP-" + shopId + "-4", colorId)).isEqualTo("Rouge \"vif\"");
+    }
+
+    @Test
+    void rejectsTheWholeFileOnTheFirstInvalidLine() throws Exception {
+        Long shopId = createShop();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Bonnets", null, null)).id();
+
+        String ndjson = """
+                {"categoryId":%1$d,"productName":"Bonnet","sku":"BAD-%2$d-1","price":12,"stock":1,"attributes":{"Couleur":"Gris"}}
+                {"categoryId":%1$d,"productName":"Bonnet","sku":"BAD-%2$d-2","price":12,"stock":1,"attributes":{"Couleur":"Gris"}}
+                """.formatted(categoryId, shopId);
+        CatalogImportJobDto job = await(shopId, catalogImportService.startImport(shopId, "application/x-ndjson", stream(ndjson)));
+
+        assertThat(job.status()).isEqualTo(CatalogImportJobDto.Status.FAILED);
+        assertThat(job.error()).startsWith("Ligne 2 :");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM products WHERE category_id = ?", Long.class, categoryId))
+                .isZero();
+    }
+
+    @Test
+    void rejectsStockBelowTheReservedQuantity() throws Exception {
+        Long shopId = createShop();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Gants", null, null)).id();
+        String sku = "RES-" + shopId;
+        String line = "{\"categoryId\":%d,\"productName\":\"Gants\",\"sku\":\"%s\",\"price\":15,\"stock\":%d,\"attributes\":{}}\n";
+        assertThat(await(shopId, catalogImportService.startImport(shopId, "application/x-ndjson",
+                stream(line.formatted(categoryId, sku, 4)))).status()).isEqualTo(CatalogImportJobDto.Status.COMPLETED);
+        stockReservationService.reserve(shopId, new CreateStockReservationRequest(sku, 3, null));
+
+        CatalogImportJobDto job = await(shopId, catalogImportService.startImport(shopId, "application/x-ndjson",
+                stream(line.formatted(categoryId, sku, 2))));
+
+        assertThat(job.status()).isEqualTo(CatalogImportJobDto.Status.FAILED);
+        assertThat(job.error()).startsWith("Ligne 1 :").contains("réservée");
+        assertThat(jdbcTemplate.queryForObject("SELECT stock FROM product_variants WHERE sku = ?", Integer.class, sku))
+                .isEqualTo(4);
+    }
+
+    private Long createShop() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("import-" + UUID.randomUUID());
+        shop.setName("Import test shop");
+        return shopRepository.save(shop).getId();
+    }
+
+    private CatalogImportJobDto await(Long shopId, CatalogImportJobDto job) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            CatalogImportJobDto current = catalogImportService.getJob(shopId, job.id());
+            if (current.status() == CatalogImportJobDto.Status.COMPLETED || current.status() == CatalogImportJobDto.Status.FAILED) {
+                return current;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Import " + job.id() + " did not finish");
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
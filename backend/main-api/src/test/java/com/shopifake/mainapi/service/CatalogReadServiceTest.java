@@ -0,0 +1,181 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CursorPage;
+import com.shopifake.mainapi.dto.ProductWithVariantsDto;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "webhook.enabled=false",
+        "cache.catalog-snapshot.enabled=false"
+})
+class CatalogReadServiceTest {
+
+    @Autowired
+    private CatalogReadService catalogReadService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private AttributeDefinitionRepository attributeDefinitionRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private VariantAttributeRepository variantAttributeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void shopCatalogStatementCountDoesNotGrowWithCatalogSize() {
+        Shop smallShop = createShop();
+        Category smallCategory = createCategory(smallShop);
+        seedProducts(smallShop, smallCategory, 2, 2);
+
+        Shop largeShop = createShop();
+        Category largeCategory = createCategory(largeShop);
+        seedProducts(largeShop, largeCategory, 20, 5);
+
+        long smallCount = countStatements(() -> catalogReadService.getShopCatalog(smallShop.getId()));
+        long largeCount = countStatements(() -> catalogReadService.getShopCatalog(largeShop.getId()));
+
+        assertThat(largeCount).isEqualTo(smallCount);
+
+        List<ProductWithVariantsDto> catalog = catalogReadService.getShopCatalog(largeShop.getId());
+        assertThat(catalog).hasSize(20);
+        assertThat(catalog.get(0).variants()).hasSize(5);
+        assertThat(catalog.get(0).variants().get(0).attributes()).containsKeys("Couleur", "Taille");
+    }
+
+    @Test
+    void categoryCatalogStatementCountDoesNotGrowWithCatalogSize() {
+        Shop smallShop = createShop();
+        Category smallCategory = createCategory(smallShop);
+        seedProducts(smallShop, smallCategory, 2, 2);
+
+        Shop largeShop = createShop();
+        Category largeCategory = createCategory(largeShop);
+        seedProducts(largeShop, largeCategory, 20, 5);
+
+        long smallCount = countStatements(() ->
+                productService.getProductsWithVariantsByCategory(smallShop.getId(), smallCategory.getId()));
+        long largeCount = countStatements(() ->
+                productService.getProductsWithVariantsByCategory(largeShop.getId(), largeCategory.getId()));
+
+        assertThat(largeCount).isEqualTo(smallCount);
+    }
+
+    @Test
+    void pagedCatalogWalksAllProductsWithConstantStatementsPerPage() {
+        Shop shop = createShop();
+        Category category = createCategory(shop);
+        seedProducts(shop, category, 25, 3);
+
+        List<String> names = new ArrayList<>();
+        List<Long> statementsPerPage = new ArrayList<>();
+        String cursor = null;
+        do {
+            statistics.clear();
+            CursorPage<ProductWithVariantsDto> page = productService.getAllProductsWithVariants(shop.getId(), cursor, 10);
+            statementsPerPage.add(statistics.getPrepareStatementCount());
+            page.items().forEach(item -> names.add(item.product().name()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(names).hasSize(25).doesNotHaveDuplicates().isSorted();
+        assertThat(statementsPerPage).hasSize(3).containsOnly(statementsPerPage.get(0));
+    }
+
+    private long countStatements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Shop createShop() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("catalog-" + UUID.randomUUID());
+        shop.setName("Catalog test shop");
+        return shopRepository.save(shop);
+    }
+
+    private Category createCategory(Shop shop) {
+        Category category = new Category();
+        category.setShopId(shop.getId());
+        category.setLabel("Vêtements");
+        category.setSlug("vetements");
+        category = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(category.getId());
+        return category;
+    }
+
+    private void seedProducts(Shop shop, Category category, int productCount, int variantsPerProduct) {
+        for (int p = 0; p < productCount; p++) {
+            Product product = new Product();
+            product.setCategoryId(category.getId());
+            product.setShopId(shop.getId());
+            product.setName(String.format("Produit %03d", p));
+            product.setSlug("produit-" + p);
+            product = productRepository.save(product);
+
+            AttributeDefinition color = attributeDefinitionRepository.save(
+                    new AttributeDefinition(null, product.getId(), "Couleur", 0, null));
+            AttributeDefinition size = attributeDefinitionRepository.save(
+                    new AttributeDefinition(null, product.getId(), "Taille", 1, null));
+
+            for (int v = 0; v < variantsPerProduct; v++) {
+                ProductVariant variant = new ProductVariant();
+                variant.setProductId(product.getId());
+                variant.setShopId(shop.getId());
+                variant.setSku(UUID.randomUUID().toString());
+                variant.setPrice(BigDecimal.TEN);
+                variant.setStock(10);
+                variant = productVariantRepository.save(variant);
+
+                variantAttributeRepository.save(new VariantAttribute(null, variant.getId(), color.getId(), "Rouge"));
+                variantAttributeRepository.save(new VariantAttribute(null, variant.getId(), size.getId(), "T" + v));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CategoryDto;
+import com.shopifake.mainapi.dto.CreateCategoryRequest;
+import com.shopifake.mainapi.dto.MoveCategoryRequest;
+import com.shopifake.mainapi.dto.UpdateCategoryRequest;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.model.Category;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.repository.ShopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class CategoryServiceTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    private Long shopId;
+
+    @BeforeEach
+    void setUp() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("categories-" + UUID.randomUUID());
+        shop.setName("Category test shop");
+        shopId = shopRepository.save(shop).getId();
+    }
+
+    @Test
+    void closureTableFollowsCreateAndMove() {
+        CategoryDto clothes = create("Vêtements", null);
+        CategoryDto shoes = create("Chaussures", null);
+        CategoryDto running = create("Running", clothes.id());
+        CategoryDto trail = create("Trail", running.id());
+
+        assertThat(categoryRepository.findDescendants(clothes.id()))
+                .extracting(Category::getId)
+                .containsExactly(clothes.id(), running.id(), trail.id());
+
+        categoryService.move(shopId, running.id(), new MoveCategoryRequest(shoes.id(), null));
+
+        assertThat(categoryRepository.findDescendants(clothes.id()))
+                .extracting(Category::getId)
+                .containsExactly(clothes.id());
+        assertThat(categoryRepository.findAncestors(trail.id()))
+                .extracting(Category::getId)
+                .containsExactly(shoes.id(), running.id(), trail.id());
+
+        assertThatThrownBy(() -> categoryService.move(shopId, shoes.id(), new MoveCategoryRequest(trail.id(), null)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void moveKeepsTheWholeSubtreeWithinTheMaximumDepth() {
+        CategoryDto home = create("Maison", null);
+        CategoryDto kitchen = create("Cuisine", home.id());
+        CategoryDto outdoor = create("Extérieur", null);
+        CategoryDto garden = create("Jardin", outdoor.id());
+        CategoryDto tools = create("Outils", garden.id());
+
+        // Cuisine est au niveau 2 : Jardin (hauteur 1) y arriverait au niveau 3 et Outils au niveau 4
+        categoryService.move(shopId, garden.id(), new MoveCategoryRequest(kitchen.id(), null));
+        assertThat(categoryRepository.findAncestors(tools.id()))
+                .extracting(Category::getId)
+                .containsExactly(home.id(), kitchen.id(), garden.id(), tools.id());
+
+        // Rangement a une hauteur de 2 : sous Jardin (niveau 3) ou sous Cuisine (niveau 2), Murales arriverait
+        // au niveau 6 ou 5, alors que le parent seul est sous la limite
+        CategoryDto spare = create("Rangement", null);
+        CategoryDto shelves = create("Étagères", spare.id());
+        create("Murales", shelves.id());
+        assertThatThrownBy(() -> categoryService.move(shopId, spare.id(), new MoveCategoryRequest(garden.id(), null)))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> categoryService.update(shopId, spare.id(),
+                new UpdateCategoryRequest("Rangement", kitchen.id(), null)))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(categoryRepository.findAncestors(spare.id()))
+                .extracting(Category::getId)
+                .containsExactly(spare.id());
+    }
+
+    private CategoryDto create(String label, Long parentId) {
+        return categoryService.create(shopId, new CreateCategoryRequest(label, parentId, null));
+    }
+}
@@ -0,0 +1,228 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.config.FlashSaleProperties;
+import com.shopifake.mainapi.dto.StockActionDto;
+import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Retraits concurrents en vente flash : même contrat que le chemin classique (ni survente ni mouvement
+ * perdu), avec des allocations rendues à la sortie du mode et reprises au redémarrage d'une instance.
+ */
+@Slf4j
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "webhook.enabled=false",
+        "flash-sale.flush-interval=5ms",
+        "flash-sale.allocation-size=50",
+        "flash-sale.refresh-interval=200ms"
+})
+class FlashSaleStockTest {
+
+    private static final int INITIAL_STOCK = 400;
+    private static final int ATTEMPTS = 2 * INITIAL_STOCK;
+    private static final int THREADS = 64;
+
+    @Autowired
+    private FlashSaleStockService flashSaleStockService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void flashSaleRemovalsNeverOversellAndReturnTheirAllocation() throws Exception {
+        Product product = createProduct();
+        ProductVariant variant = createVariant(product, INITIAL_STOCK);
+        flashSaleStockService.setEnabled(product.getShopId(), true);
+
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long elapsed;
+        try {
+            for (int i = 0; i < ATTEMPTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    StockActionRequest request = new StockActionRequest(variant.getSku(), ActionType.REMOVE, 1);
+                    try {
+                        // Même enchaînement que StockController
+                        flashSaleStockService.tryRemove(product.getShopId(), request)
+                                .orElseGet(() -> stockService.performStockAction(request));
+                        accepted.incrementAndGet();
+                    } catch (BadRequestException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            long startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+            elapsed = System.nanoTime() - startNanos;
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("SKU {} en vente flash : {} retraits acceptés, {} refusés, {} retraits/s",
+                variant.getSku(), accepted.get(), rejected.get(), Math.round(accepted.get() / (elapsed / 1e9)));
+
+        assertThat(accepted.get()).isEqualTo(INITIAL_STOCK);
+        assertThat(rejected.get()).isEqualTo(ATTEMPTS - INITIAL_STOCK);
+        assertThat(stockOf(variant)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_actions WHERE sku = ? AND action_type = 'REMOVE'",
+                Integer.class, variant.getSku())).isEqualTo(INITIAL_STOCK);
+
+        // Restockage puis sortie du mode : l'allocation reprise sur le nouveau stock est rendue
+        stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.ADD, 10));
+        flashSaleStockService.tryRemove(product.getShopId(), new StockActionRequest(variant.getSku(), ActionType.REMOVE, 1));
+        flashSaleStockService.setEnabled(product.getShopId(), false);
+        waitUntil(() -> reservedOf(variant) == 0);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM stock_reservations WHERE variant_id = ?",
+                Integer.class, variant.getId())).isZero();
+    }
+
+    @Test
+    void restartedInstanceAdoptsItsAllocations() throws Exception {
+        Product product = createProduct();
+        ProductVariant variant = createVariant(product, 5);
+        flashSaleStockService.setEnabled(product.getShopId(), true);
+
+        // Allocation laissée par une instance arrêtée brutalement : tout le stock est en séquestre
+        String instanceId = "flash-test-" + UUID.randomUUID();
+        jdbcTemplate.update("UPDATE product_variants SET reserved_stock = 5 WHERE id = ?", variant.getId());
+        jdbcTemplate.update("""
+                INSERT INTO stock_reservations (shop_id, variant_id, sku, quantity, expires_at, holder)
+                VALUES (?, ?, ?, 5, CURRENT_TIMESTAMP + INTERVAL '1 minute', ?)
+                """, product.getShopId(), variant.getId(), variant.getSku(), instanceId);
+
+        FlashSaleProperties properties = new FlashSaleProperties();
+        properties.setInstanceId(instanceId);
+        properties.setFlushInterval(Duration.ofMillis(5));
+        FlashSaleStockService restarted = new FlashSaleStockService(jdbcTemplate, eventPublisher, transactionManager, properties);
+        try {
+            StockActionRequest removeOne = new StockActionRequest(variant.getSku(), ActionType.REMOVE, 1);
+            // Le chemin classique ne voit aucun stock disponible : seule l'allocation reprise peut servir
+            waitUntil(() -> restarted.tryRemove(product.getShopId(), removeOne).isPresent());
+            Optional<StockActionDto> rest = restarted.tryRemove(product.getShopId(),
+                    new StockActionRequest(variant.getSku(), ActionType.REMOVE, 4));
+            assertThat(rest).isPresent();
+            assertThat(restarted.tryRemove(product.getShopId(), removeOne)).isEmpty();
+        } finally {
+            restarted.shutdown();
+        }
+
+        assertThat(stockOf(variant)).isZero();
+        assertThat(reservedOf(variant)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM stock_reservations WHERE holder = ?",
+                Integer.class, instanceId)).isZero();
+        flashSaleStockService.setEnabled(product.getShopId(), false);
+    }
+
+    private int stockOf(ProductVariant variant) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM product_variants WHERE id = ?", Integer.class, variant.getId());
+    }
+
+    private int reservedOf(ProductVariant variant) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product_variants WHERE id = ?", Integer.class, variant.getId());
+    }
+
+    private Product createProduct() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("flash-" + UUID.randomUUID());
+        shop.setName("Flash sale test shop");
+        shop = shopRepository.save(shop);
+
+        Category category = new Category();
+        category.setShopId(shop.getId());
+        category.setLabel("Chaussures");
+        category.setSlug("chaussures");
+        category = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(category.getId());
+
+        Product product = new Product();
+        product.setCategoryId(category.getId());
+        product.setShopId(shop.getId());
+        product.setName("Basket");
+        product.setSlug("basket");
+        return productRepository.save(product);
+    }
+
+    private ProductVariant createVariant(Product product, int stock) {
+        ProductVariant variant = new ProductVariant();
+        variant.setProductId(product.getId());
+        variant.setShopId(product.getShopId());
+        variant.setSku(UUID.randomUUID().toString());
+        variant.setPrice(BigDecimal.TEN);
+        variant.setStock(stock);
+        return productVariantRepository.save(variant);
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (!condition.getAsBoolean()) {
+            assertThat(Instant.now()).as("condition reached before timeout").isBefore(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
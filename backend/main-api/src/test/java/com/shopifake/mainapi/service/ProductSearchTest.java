@@ -0,0 +1,68 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.*;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class ProductSearchTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductVariantService productVariantService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Test
+    void searchRanksNameMatchesFirstAndFindsVariantAttributeValues() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("search-" + UUID.randomUUID());
+        shop.setName("Search test shop");
+        Long shopId = shopRepository.save(shop).getId();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Maroquinerie", null, null)).id();
+
+        ProductDto bag = productService.createProduct(shopId, new CreateProductRequest(categoryId, shopId,
+                "Sac en cuir", "Grand sac de voyage", true, List.of(new AttributeDefinitionDto(null, "Couleur", 0))));
+        ProductDto wallet = productService.createProduct(shopId, new CreateProductRequest(categoryId, shopId,
+                "Portefeuille", "Finitions en cuir pleine fleur", true, null));
+        productService.createProduct(shopId, new CreateProductRequest(categoryId, shopId,
+                "Ceinture", "Toile de coton", true, null));
+
+        Long colorId = bag.attributeDefinitions().get(0).id();
+        productVariantService.createVariant(shopId, new CreateProductVariantRequest(bag.id(), shopId,
+                UUID.randomUUID().toString(), BigDecimal.TEN, 1, true, Map.of(colorId, "Bordeaux")));
+
+        CursorPage<ProductSearchResultDto> first = productService.searchProducts(shopId, "cuirs", null, 1);
+        assertThat(first.items()).extracting(result -> result.product().id()).containsExactly(bag.id());
+        assertThat(first.items().get(0).highlight()).contains("<mark>cuir</mark>");
+        assertThat(first.nextCursor()).isNotNull();
+
+        CursorPage<ProductSearchResultDto> second = productService.searchProducts(shopId, "cuirs", first.nextCursor(), 1);
+        assertThat(second.items()).extracting(result -> result.product().id()).containsExactly(wallet.id());
+        assertThat(second.nextCursor()).isNull();
+
+        assertThat(productService.searchProducts(shopId, "bordeaux", null, null).items())
+                .extracting(result -> result.product().id())
+                .containsExactly(bag.id());
+    }
+}
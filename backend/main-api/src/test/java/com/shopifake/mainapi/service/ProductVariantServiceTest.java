@@ -0,0 +1,113 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.*;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class ProductVariantServiceTest {
+
+    @Autowired
+    private ProductVariantService productVariantService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void attributeSignatureRejectsDuplicateCombinationsAndMatchesTheMigration() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("variants-" + UUID.randomUUID());
+        shop.setName("Variant test shop");
+        Long shopId = shopRepository.save(shop).getId();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Chemises", null, null)).id();
+        ProductDto shirt = productService.createProduct(shopId, new CreateProductRequest(categoryId, shopId, "Chemise", null, true,
+                List.of(new AttributeDefinitionDto(null, "Couleur", 0), new AttributeDefinitionDto(null, "Taille", 1))));
+        Long colorId = shirt.attributeDefinitions().get(0).id();
+        Long sizeId = shirt.attributeDefinitions().get(1).id();
+
+        ProductVariantDto blue = productVariantService.createVariant(shopId, new CreateProductVariantRequest(shirt.id(), shopId,
+                UUID.randomUUID().toString(), BigDecimal.TEN, 1, true, Map.of(colorId, "Bleu ciel", sizeId, "M")));
+        productVariantService.createVariant(shopId, new CreateProductVariantRequest(shirt.id(), shopId,
+                UUID.randomUUID().toString(), BigDecimal.TEN, 1, true, Map.of(colorId, "Bleu ciel", sizeId, "L")));
+
+        assertThatThrownBy(() -> productVariantService.createVariant(shopId, new CreateProductVariantRequest(shirt.id(), shopId,
+                UUID.randomUUID().toString(), BigDecimal.TEN, 1, true, Map.of(sizeId, "M", colorId, "Bleu ciel"))))
+                .isInstanceOf(BadRequestException.class);
+
+        // Même calcul que la migration V15 : l'empreinte Java doit correspondre à celle calculée en SQL
+        String sqlSignature = jdbcTemplate.queryForObject("""
+                SELECT encode(sha256(convert_to(coalesce((
+                    SELECT string_agg(va.attribute_definition_id || ':' || char_length(va.attribute_value) || ':' || va.attribute_value,
+                                      E'\\n' ORDER BY va.attribute_definition_id)
+                    FROM variant_attributes va
+                    WHERE va.variant_id = ?
+                ), ''), 'UTF8')), 'hex')
+                """, String.class, blue.id());
+        String storedSignature = jdbcTemplate.queryForObject(
+                "SELECT attribute_signature FROM product_variants WHERE id = ?", String.class, blue.id());
+        assertThat(storedSignature).isEqualTo(sqlSignature);
+    }
+
+    @Test
+    void bulkCreationInsertsAllVariantsOrRejectsTheWholeBatch() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("bulk-" + UUID.randomUUID());
+        shop.setName("Bulk test shop");
+        Long shopId = shopRepository.save(shop).getId();
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Chaussettes", null, null)).id();
+        ProductDto socks = productService.createProduct(shopId, new CreateProductRequest(categoryId, shopId, "Chaussette", null, true,
+                List.of(new AttributeDefinitionDto(null, "Pointure", 0))));
+        Long sizeId = socks.attributeDefinitions().get(0).id();
+        String skuPrefix = UUID.randomUUID().toString();
+
+        List<CreateProductVariantRequest> variants = IntStream.range(0, 120)
+                .mapToObj(i -> new CreateProductVariantRequest(socks.id(), shopId, skuPrefix + "-" + i,
+                        BigDecimal.ONE, i, true, Map.of(sizeId, "P" + i)))
+                .toList();
+        BulkCreatedVariantsDto created = productVariantService.createVariants(shopId, new BulkCreateProductVariantsRequest(variants));
+
+        assertThat(created.created()).isEqualTo(120);
+        assertThat(created.variantIds()).doesNotHaveDuplicates();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM variant_attributes WHERE variant_id IN (SELECT id FROM product_variants WHERE product_id = ?)",
+                Long.class, socks.id())).isEqualTo(120L);
+        assertThat(productVariantService.getVariantById(shopId, created.variantIds().get(7)).attributes())
+                .containsEntry("Pointure", "P7");
+
+        // Un seul SKU déjà pris : rien n'est créé
+        List<CreateProductVariantRequest> conflicting = List.of(
+                new CreateProductVariantRequest(socks.id(), shopId, skuPrefix + "-new", BigDecimal.ONE, 1, true, Map.of(sizeId, "P-new")),
+                new CreateProductVariantRequest(socks.id(), shopId, skuPrefix + "-0", BigDecimal.ONE, 1, true, Map.of(sizeId, "P-other")));
+        assertThatThrownBy(() -> productVariantService.createVariants(shopId, new BulkCreateProductVariantsRequest(conflicting)))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM product_variants WHERE product_id = ?", Long.class, socks.id()))
+                .isEqualTo(120L);
+    }
+}
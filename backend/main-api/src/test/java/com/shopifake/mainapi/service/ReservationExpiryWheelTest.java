@@ -0,0 +1,54 @@
+package com.shopifake.mainapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReservationExpiryWheelTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ReservationExpiryWheel wheel = new ReservationExpiryWheel(Duration.ofSeconds(1), 8, now::get);
+
+    @Test
+    void releasesEachHoldOnTheFirstTickAfterItsDeadline() {
+        wheel.schedule(1, at(2_500));
+        wheel.schedule(2, at(3_000));
+        // Plus d'un tour de roue : même case que la réservation 1, mais un tour plus tard
+        wheel.schedule(3, at(10_500));
+
+        now.addAndGet(2_000);
+        assertThat(wheel.advance()).isEmpty();
+
+        now.addAndGet(1_000);
+        assertThat(wheel.advance()).containsExactlyInAnyOrder(1L, 2L);
+
+        now.addAndGet(5_000);
+        assertThat(wheel.advance()).isEmpty();
+
+        now.addAndGet(3_000);
+        assertThat(wheel.advance()).containsExactly(3L);
+    }
+
+    @Test
+    void catchesUpAfterAPauseAndSchedulesPastDeadlinesOnTheNextTick() {
+        wheel.schedule(1, at(1_000));
+        wheel.schedule(2, at(30_000));
+
+        // Pause de plusieurs tours : chaque case n'est parcourue qu'une fois
+        now.addAndGet(40_000);
+        assertThat(wheel.advance()).containsExactlyInAnyOrder(1L, 2L);
+
+        wheel.schedule(3, at(-5_000));
+        assertThat(wheel.advance()).isEmpty();
+        now.addAndGet(1_000);
+        assertThat(wheel.advance()).containsExactly(3L);
+    }
+
+    private Instant at(long offsetMillis) {
+        return Instant.ofEpochMilli(1_000_000 + offsetMillis);
+    }
+}
@@ -0,0 +1,59 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CreateShopRequest;
+import com.shopifake.mainapi.dto.ShopResponse;
+import com.shopifake.mainapi.dto.UpdateShopRequest;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class ShopDomainResolverTest {
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void knownAndUnknownDomainsAreServedWithoutStatementsUntilTheShopChanges() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String domain = "resolver-" + UUID.randomUUID();
+
+        assertThatThrownBy(() -> shopService.getShopByDomainName(domain)).isInstanceOf(ResourceNotFoundException.class);
+        statistics.clear();
+        assertThatThrownBy(() -> shopService.getShopByDomainName(domain)).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        // La création remplace l'entrée négative
+        ShopResponse created = shopService.createShop(new CreateShopRequest(UUID.randomUUID(), domain, "Resolver shop", null, null));
+        statistics.clear();
+        assertThat(shopService.getShopByDomainName(domain).getId()).isEqualTo(created.getId());
+        assertThat(shopService.getShopByDomainName(domain).getName()).isEqualTo("Resolver shop");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        String renamed = "resolver-renamed-" + UUID.randomUUID();
+        UpdateShopRequest update = new UpdateShopRequest();
+        update.setDomainName(renamed);
+        update.setName("Renamed shop");
+        shopService.updateShop(created.getId(), update);
+        assertThat(shopService.getShopByDomainName(renamed).getName()).isEqualTo("Renamed shop");
+        assertThatThrownBy(() -> shopService.getShopByDomainName(domain)).isInstanceOf(ResourceNotFoundException.class);
+
+        shopService.deleteShop(created.getId());
+        assertThatThrownBy(() -> shopService.getShopByDomainName(renamed)).isInstanceOf(ResourceNotFoundException.class);
+    }
+}
@@ -0,0 +1,68 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.Category;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.CategoryRepository;
+import com.shopifake.mainapi.repository.ShopRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "webhook.enabled=false"
+})
+class ShopOwnershipValidatorTest {
+
+    @Autowired
+    private ShopOwnershipValidator shopOwnershipValidator;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void ownershipIsCachedAfterTheFirstCheck() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("ownership-" + UUID.randomUUID());
+        shop.setName("Ownership test shop");
+        Long shopId = shopRepository.save(shop).getId();
+
+        Category category = new Category();
+        category.setShopId(shopId);
+        category.setLabel("Jardin");
+        category.setSlug("jardin");
+        Long categoryId = categoryRepository.save(category).getId();
+
+        shopOwnershipValidator.validateCategory(shopId, categoryId);
+        statistics.clear();
+        shopOwnershipValidator.validateCategory(shopId, categoryId);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        assertThatThrownBy(() -> shopOwnershipValidator.validateCategory(shopId + 1, categoryId))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> shopOwnershipValidator.validateProduct(shopId, Long.MAX_VALUE))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+}
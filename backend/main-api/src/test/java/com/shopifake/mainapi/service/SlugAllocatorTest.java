@@ -0,0 +1,82 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CreateCategoryRequest;
+import com.shopifake.mainapi.dto.CreateProductRequest;
+import com.shopifake.mainapi.dto.ProductDto;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class SlugAllocatorTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    private Long shopId;
+
+    @BeforeEach
+    void setUp() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("slugs-" + UUID.randomUUID());
+        shop.setName("Slug test shop");
+        shopId = shopRepository.save(shop).getId();
+    }
+
+    @Test
+    void nextSuffixFollowsTheLargestExistingOne() {
+        List<String> slugs = IntStream.range(0, 3)
+                .mapToObj(i -> categoryService.create(shopId, new CreateCategoryRequest("Maison & Jardin", null, null)).slug())
+                .toList();
+
+        assertThat(slugs).containsExactly("maison-jardin", "maison-jardin-1", "maison-jardin-2");
+        assertThat(categoryService.create(shopId, new CreateCategoryRequest("Maison", null, null)).slug())
+                .isEqualTo("maison");
+    }
+
+    @Test
+    void concurrentCreatesRetryOnTheUniqueConstraint() throws Exception {
+        Long categoryId = categoryService.create(shopId, new CreateCategoryRequest("Sacs", null, null)).id();
+        Callable<ProductDto> create = () -> productService.createProduct(shopId,
+                new CreateProductRequest(categoryId, shopId, "Sac cabas", null, true, null));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ProductDto>> futures = executor.invokeAll(IntStream.range(0, 8).mapToObj(i -> create).toList());
+            List<String> slugs = futures.stream().map(future -> {
+                try {
+                    return future.get().slug();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+
+            assertThat(slugs).doesNotHaveDuplicates().hasSize(8).contains("sac-cabas", "sac-cabas-7");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
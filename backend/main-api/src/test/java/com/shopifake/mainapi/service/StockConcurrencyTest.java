@@ -0,0 +1,238 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.BulkStockActionRequest;
+import com.shopifake.mainapi.dto.StockActionDto;
+import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Retraits concurrents sur quelques SKU très sollicités : chaque SKU reçoit deux fois plus de demandes
+ * unitaires que son stock. Exactement stock initial retraits doivent aboutir, les autres être refusés,
+ * sans stock négatif ni mouvement journalisé en trop. Le débit obtenu par SKU est journalisé.
+ */
+@Slf4j
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class StockConcurrencyTest {
+
+    private static final int HOT_SKUS = 3;
+    private static final int INITIAL_STOCK = 200;
+    private static final int ATTEMPTS_PER_SKU = 2 * INITIAL_STOCK;
+    private static final int THREADS = 32;
+
+    private record HotSku(String sku, AtomicInteger accepted, AtomicInteger rejected, AtomicLong lastDoneNanos) {
+    }
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentRemovalsNeverOversell() throws Exception {
+        Product product = createProduct();
+        List<HotSku> hotSkus = new ArrayList<>();
+        for (int i = 0; i < HOT_SKUS; i++) {
+            hotSkus.add(new HotSku(createVariant(product, INITIAL_STOCK).getSku(),
+                    new AtomicInteger(), new AtomicInteger(), new AtomicLong()));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Demandes entrelacées : les SKU sont sollicités en même temps, pas l'un après l'autre
+            for (int attempt = 0; attempt < ATTEMPTS_PER_SKU; attempt++) {
+                for (HotSku hot : hotSkus) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            stockService.performStockAction(new StockActionRequest(hot.sku(), ActionType.REMOVE, 1));
+                            hot.accepted().incrementAndGet();
+                        } catch (BadRequestException e) {
+                            hot.rejected().incrementAndGet();
+                        }
+                        hot.lastDoneNanos().accumulateAndGet(System.nanoTime(), Math::max);
+                        return null;
+                    }));
+                }
+            }
+            long startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                // Toute autre exception (verrou mortel, contrainte CHECK violée) fait échouer le test
+                future.get(2, TimeUnit.MINUTES);
+            }
+
+            for (HotSku hot : hotSkus) {
+                double seconds = (hot.lastDoneNanos().get() - startNanos) / 1e9;
+                log.info("SKU {} : {} retraits acceptés, {} refusés, {} retraits/s",
+                        hot.sku(), hot.accepted().get(), hot.rejected().get(), Math.round(hot.accepted().get() / seconds));
+
+                assertThat(hot.accepted().get()).isEqualTo(INITIAL_STOCK);
+                assertThat(hot.rejected().get()).isEqualTo(ATTEMPTS_PER_SKU - INITIAL_STOCK);
+                assertThat(productVariantRepository.findBySku(hot.sku()).orElseThrow().getStock()).isZero();
+                assertThat(jdbcTemplate.queryForObject(
+                        "SELECT COALESCE(SUM(quantity), 0) FROM stock_actions WHERE sku = ? AND action_type = 'REMOVE'",
+                        Integer.class, hot.sku())).isEqualTo(INITIAL_STOCK);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectionsLeaveStockAndJournalUntouched() {
+        ProductVariant variant = createVariant(createProduct(), 2);
+
+        StockActionDto added = stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.ADD, 3));
+        assertThat(added.id()).isNotNull();
+        assertThat(added.createdAt()).isNotNull();
+
+        assertThatThrownBy(() -> stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.REMOVE, 6)))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("Stock actuel : 5");
+        assertThatThrownBy(() -> stockService.performStockAction(new StockActionRequest("inconnu-" + UUID.randomUUID(), ActionType.ADD, 1)))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(productVariantRepository.findBySku(variant.getSku()).orElseThrow().getStock()).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM stock_actions WHERE sku = ?", Integer.class, variant.getSku()))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void batchIsAppliedEntirelyOrNotAtAll() {
+        Product product = createProduct();
+        ProductVariant shoes = createVariant(product, 5);
+        ProductVariant laces = createVariant(product, 1);
+
+        assertThatThrownBy(() -> stockService.performStockActions(product.getShopId(), new BulkStockActionRequest(List.of(
+                new StockActionRequest(shoes.getSku(), ActionType.REMOVE, 2),
+                new StockActionRequest(laces.getSku(), ActionType.REMOVE, 2)))))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining(laces.getSku());
+        assertThat(productVariantRepository.findBySku(shoes.getSku()).orElseThrow().getStock()).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM stock_actions WHERE variant_id IN (?, ?)",
+                Integer.class, shoes.getId(), laces.getId())).isZero();
+
+        // Les quantités d'un même SKU se cumulent : 5 - 4 + 2 - 3 = 0
+        List<StockActionDto> applied = stockService.performStockActions(product.getShopId(), new BulkStockActionRequest(List.of(
+                new StockActionRequest(shoes.getSku(), ActionType.REMOVE, 4),
+                new StockActionRequest(laces.getSku(), ActionType.REMOVE, 1),
+                new StockActionRequest(shoes.getSku(), ActionType.ADD, 2),
+                new StockActionRequest(shoes.getSku(), ActionType.REMOVE, 3))));
+        assertThat(applied).extracting(StockActionDto::quantity).containsExactly(4, 1, 2, 3);
+        assertThat(applied).extracting(StockActionDto::id).isSorted().doesNotContainNull();
+        assertThat(productVariantRepository.findBySku(shoes.getSku()).orElseThrow().getStock()).isZero();
+        assertThat(productVariantRepository.findBySku(laces.getSku()).orElseThrow().getStock()).isZero();
+
+        // Un SKU d'une autre boutique est inconnu pour cette boutique
+        ProductVariant elsewhere = createVariant(createProduct(), 10);
+        assertThatThrownBy(() -> stockService.performStockActions(product.getShopId(), new BulkStockActionRequest(List.of(
+                new StockActionRequest(elsewhere.getSku(), ActionType.REMOVE, 1)))))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void overlappingBatchesInOppositeOrderDoNotDeadlock() throws Exception {
+        Product product = createProduct();
+        ProductVariant first = createVariant(product, 1_000);
+        ProductVariant second = createVariant(product, 1_000);
+
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < 200; i++) {
+                List<StockActionRequest> actions = new ArrayList<>(List.of(
+                        new StockActionRequest(first.getSku(), ActionType.REMOVE, 1),
+                        new StockActionRequest(second.getSku(), ActionType.REMOVE, 1)));
+                if (i % 2 == 1) {
+                    Collections.reverse(actions);
+                }
+                futures.add(executor.submit(() -> stockService.performStockActions(product.getShopId(), new BulkStockActionRequest(actions))));
+            }
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(productVariantRepository.findBySku(first.getSku()).orElseThrow().getStock()).isEqualTo(800);
+        assertThat(productVariantRepository.findBySku(second.getSku()).orElseThrow().getStock()).isEqualTo(800);
+    }
+
+    private Product createProduct() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("stock-" + UUID.randomUUID());
+        shop.setName("Stock test shop");
+        shop = shopRepository.save(shop);
+
+        Category category = new Category();
+        category.setShopId(shop.getId());
+        category.setLabel("Chaussures");
+        category.setSlug("chaussures");
+        category = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(category.getId());
+
+        Product product = new Product();
+        product.setCategoryId(category.getId());
+        product.setShopId(shop.getId());
+        product.setName("Basket");
+        product.setSlug("basket");
+        return productRepository.save(product);
+    }
+
+    private ProductVariant createVariant(Product product, int stock) {
+        ProductVariant variant = new ProductVariant();
+        variant.setProductId(product.getId());
+        variant.setShopId(product.getShopId());
+        variant.setSku(UUID.randomUUID().toString());
+        variant.setPrice(BigDecimal.TEN);
+        variant.setStock(stock);
+        return productVariantRepository.save(variant);
+    }
+}
@@ -0,0 +1,187 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.CreateStockReservationRequest;
+import com.shopifake.mainapi.dto.StockActionDto;
+import com.shopifake.mainapi.dto.StockActionRequest;
+import com.shopifake.mainapi.dto.StockReservationDto;
+import com.shopifake.mainapi.dto.UpdateProductVariantRequest;
+import com.shopifake.mainapi.exception.BadRequestException;
+import com.shopifake.mainapi.exception.ResourceNotFoundException;
+import com.shopifake.mainapi.model.*;
+import com.shopifake.mainapi.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "webhook.enabled=false",
+        "stock-reservations.tick=100ms",
+        "stock-reservations.sweep-interval=500ms"
+})
+class StockReservationServiceTest {
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProductVariantService productVariantService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long shopId;
+    private ProductVariant variant;
+
+    @BeforeEach
+    void setUp() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("reservations-" + UUID.randomUUID());
+        shop.setName("Reservation test shop");
+        shopId = shopRepository.save(shop).getId();
+
+        Category category = new Category();
+        category.setShopId(shopId);
+        category.setLabel("Chaussures");
+        category.setSlug("chaussures");
+        category = categoryRepository.save(category);
+        categoryClosureRepository.insertSelfPath(category.getId());
+
+        Product product = new Product();
+        product.setCategoryId(category.getId());
+        product.setShopId(shopId);
+        product.setName("Basket");
+        product.setSlug("basket");
+        product = productRepository.save(product);
+
+        variant = new ProductVariant();
+        variant.setProductId(product.getId());
+        variant.setShopId(shopId);
+        variant.setSku(UUID.randomUUID().toString());
+        variant.setPrice(BigDecimal.TEN);
+        variant.setStock(5);
+        variant = productVariantRepository.save(variant);
+    }
+
+    @Test
+    void stockCannotBeSetBelowTheReservedQuantity() {
+        stockReservationService.reserve(shopId, new CreateStockReservationRequest(variant.getSku(), 3, null));
+
+        assertThatThrownBy(() -> productVariantService.updateVariant(shopId, variant.getId(),
+                new UpdateProductVariantRequest(variant.getSku(), BigDecimal.TEN, 2, null)))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(stockReservationService.getAvailability(shopId, variant.getSku()).stock()).isEqualTo(5);
+
+        productVariantService.updateVariant(shopId, variant.getId(),
+                new UpdateProductVariantRequest(variant.getSku(), BigDecimal.TEN, 3, null));
+        assertThat(stockReservationService.getAvailability(shopId, variant.getSku()))
+                .satisfies(availability -> {
+                    assertThat(availability.stock()).isEqualTo(3);
+                    assertThat(availability.available()).isZero();
+                });
+
+        // Contrainte de la table, pour les chemins d'écriture qui ne vérifieraient pas la quantité réservée
+        assertThatThrownBy(() -> jdbcTemplate.update("UPDATE product_variants SET stock = 1 WHERE id = ?", variant.getId()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void holdsReduceAvailabilityUntilConfirmedIntoARemoval() {
+        StockReservationDto reservation = stockReservationService.reserve(shopId,
+                new CreateStockReservationRequest(variant.getSku(), 3, null));
+
+        assertThat(stockReservationService.getAvailability(shopId, variant.getSku()))
+                .satisfies(availability -> {
+                    assertThat(availability.stock()).isEqualTo(5);
+                    assertThat(availability.reserved()).isEqualTo(3);
+                    assertThat(availability.available()).isEqualTo(2);
+                });
+        // Ni une autre réservation ni un retrait direct ne peuvent consommer la quantité retenue
+        assertThatThrownBy(() -> stockReservationService.reserve(shopId, new CreateStockReservationRequest(variant.getSku(), 3, null)))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> stockService.performStockAction(new StockActionRequest(variant.getSku(), ActionType.REMOVE, 3)))
+                .isInstanceOf(BadRequestException.class);
+
+        StockActionDto removal = stockReservationService.confirm(shopId, reservation.id());
+        assertThat(removal.actionType()).isEqualTo(ActionType.REMOVE);
+        assertThat(removal.quantity()).isEqualTo(3);
+        assertThat(stockReservationService.getAvailability(shopId, variant.getSku()))
+                .satisfies(availability -> {
+                    assertThat(availability.stock()).isEqualTo(2);
+                    assertThat(availability.reserved()).isZero();
+                });
+        assertThatThrownBy(() -> stockReservationService.confirm(shopId, reservation.id()))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void expiredHoldsAreReleased() {
+        StockReservationDto reservation = stockReservationService.reserve(shopId,
+                new CreateStockReservationRequest(variant.getSku(), 4, 1));
+
+        waitUntil(() -> stockReservationService.getAvailability(shopId, variant.getSku()).available() == 5);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM stock_reservations WHERE id = ?", Integer.class, reservation.id()))
+                .isZero();
+        assertThatThrownBy(() -> stockReservationService.confirm(shopId, reservation.id()))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void holdsMissingFromTheWheelAreReleasedByTheSweep() {
+        // Réservation placée par une autre instance : elle n'est connue que de la table
+        jdbcTemplate.update("UPDATE product_variants SET reserved_stock = reserved_stock + 2 WHERE id = ?", variant.getId());
+        jdbcTemplate.update("""
+                INSERT INTO stock_reservations (shop_id, variant_id, sku, quantity, expires_at)
+                VALUES (?, ?, ?, 2, CURRENT_TIMESTAMP - INTERVAL '1 minute')
+                """, shopId, variant.getId(), variant.getSku());
+
+        waitUntil(() -> stockReservationService.getAvailability(shopId, variant.getSku()).reserved() == 0);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (!condition.getAsBoolean()) {
+            assertThat(Instant.now()).as("condition reached before timeout").isBefore(deadline);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
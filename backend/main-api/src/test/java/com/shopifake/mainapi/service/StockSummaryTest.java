@@ -0,0 +1,227 @@
+package com.shopifake.mainapi.service;
+
+import com.shopifake.mainapi.TestcontainersConfiguration;
+import com.shopifake.mainapi.dto.*;
+import com.shopifake.mainapi.model.ActionType;
+import com.shopifake.mainapi.model.Shop;
+import com.shopifake.mainapi.repository.ShopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "webhook.enabled=false")
+class StockSummaryTest {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProductVariantService productVariantService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long shopId;
+    private Long categoryId;
+
+    @BeforeEach
+    void setUp() {
+        Shop shop = new Shop();
+        shop.setAdminId(UUID.randomUUID());
+        shop.setDomainName("summary-" + UUID.randomUUID());
+        shop.setName("Stock summary test shop");
+        shopId = shopRepository.save(shop).getId();
+        categoryId = categoryService.create(shopId, new CreateCategoryRequest("Accessoires", null, null)).id();
+    }
+
+    @Test
+    void totalsFollowEveryVariantWriteWithoutAggregatingTheCatalog() {
+        assertThat(stockService.getStockSummary(shopId)).satisfies(summary -> {
+            assertThat(summary.totalUnits()).isZero();
+            assertThat(summary.totalValue()).isEqualByComparingTo("0");
+            assertThat(summary.recentActions()).isEmpty();
+        });
+
+        ProductVariantDto silk = createVariant("10.00", 3);
+        ProductVariantDto wool = createVariant("2.50", 4);
+        assertSummary(7, "40.00");
+
+        StockActionDto added = stockService.performStockAction(new StockActionRequest(silk.sku(), ActionType.ADD, 5));
+        assertSummary(12, "90.00");
+
+        List<StockActionDto> batch = stockService.performStockActions(shopId, new BulkStockActionRequest(List.of(
+                new StockActionRequest(wool.sku(), ActionType.REMOVE, 2),
+                new StockActionRequest(silk.sku(), ActionType.REMOVE, 1))));
+        assertSummary(9, "75.00");
+
+        productVariantService.updateVariant(shopId, silk.id(), new UpdateProductVariantRequest(silk.sku(), new BigDecimal("20.00"), 7, true));
+        assertSummary(9, "145.00");
+
+        assertThat(stockService.getStockSummary(shopId).recentActions())
+                .extracting(StockActionDto::id)
+                .containsExactly(batch.get(1).id(), batch.get(0).id(), added.id());
+
+        // La suppression retire le stock du variant et ses mouvements
+        productVariantService.deleteVariant(shopId, wool.id());
+        assertSummary(7, "140.00");
+        assertThat(stockService.getStockSummary(shopId).recentActions())
+                .extracting(StockActionDto::id)
+                .containsExactly(batch.get(1).id(), added.id());
+    }
+
+    @Test
+    void recentActionsKeepOnlyTheLatestMovements() {
+        ProductVariantDto variant = createVariant("1.00", 0);
+        stockService.getStockSummary(shopId);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            ids.add(stockService.performStockAction(new StockActionRequest(variant.sku(), ActionType.ADD, 1)).id());
+        }
+
+        assertThat(stockService.getStockSummary(shopId).recentActions())
+                .extracting(StockActionDto::id)
+                .containsExactlyElementsOf(ids.reversed().subList(0, 20));
+        assertSummary(25, "25.00");
+    }
+
+    @Test
+    void writesOnDifferentSkusOfAShopDoNotWaitForEachOther() throws Exception {
+        ProductVariantDto first = createVariant("1.00", 10);
+        ProductVariantDto second = createVariant("1.00", 10);
+        int created = 2;
+        // Variants portés par deux lignes de totaux différentes (voir V22)
+        while (second.id() % 16 == first.id() % 16) {
+            second = createVariant("1.00", 10);
+            created++;
+        }
+        String secondSku = second.sku();
+
+        CountDownLatch applied = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Premier mouvement gardé non committé : ses verrous restent posés
+            Future<?> held = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                stockService.performStockAction(new StockActionRequest(first.sku(), ActionType.REMOVE, 1));
+                applied.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(applied.await(30, TimeUnit.SECONDS)).isTrue();
+
+            // Avec une seule ligne de totaux par boutique, ce mouvement attendrait le commit du premier
+            Future<StockActionDto> concurrent = executor.submit(() ->
+                    stockService.performStockAction(new StockActionRequest(secondSku, ActionType.REMOVE, 1)));
+            assertThat(concurrent.get(10, TimeUnit.SECONDS).id()).isNotNull();
+
+            release.countDown();
+            held.get(30, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        int units = created * 10 - 2;
+        assertSummary(units, units + ".00");
+    }
+
+    @Test
+    void parallelWritesOnDifferentSkusKeepTotalsExact() throws Exception {
+        List<ProductVariantDto> variants = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            variants.add(createVariant("2.00", 100));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            for (int i = 0; i < 400; i++) {
+                ProductVariantDto variant = variants.get(i % variants.size());
+                ActionType type = i % 4 == 0 ? ActionType.ADD : ActionType.REMOVE;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return stockService.performStockAction(new StockActionRequest(variant.sku(), type, 1));
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 100 ajouts et 300 retraits d'une unité à 2.00
+        assertSummary(800 - 200, "1200.00");
+    }
+
+    @Test
+    void totalsBeyondIntegerRangeAreReportedExactly() {
+        for (int i = 0; i < 3; i++) {
+            createVariant("1.00", Integer.MAX_VALUE);
+        }
+
+        StockSummaryDto summary = stockService.getStockSummary(shopId);
+        assertThat(summary.totalUnits()).isEqualTo(3L * Integer.MAX_VALUE);
+        assertThat(summary.totalValue()).isEqualByComparingTo(3L * Integer.MAX_VALUE + ".00");
+    }
+
+    private ProductVariantDto createVariant(String price, int stock) {
+        // Un produit par variant : sans attribut, un produit n'a qu'une combinaison possible
+        Long productId = productService.createProduct(shopId,
+                new CreateProductRequest(categoryId, shopId, "Cravate", null, true, List.of())).id();
+        return productVariantService.createVariant(shopId, new CreateProductVariantRequest(productId, shopId,
+                UUID.randomUUID().toString(), new BigDecimal(price), stock, true, Map.of()));
+    }
+
+    /**
+     * Les totaux maintenus doivent correspondre à une agrégation complète du catalogue
+     */
+    private void assertSummary(int units, String value) {
+        StockSummaryDto summary = stockService.getStockSummary(shopId);
+        assertThat(summary.totalUnits()).isEqualTo(units);
+        assertThat(summary.totalValue()).isEqualByComparingTo(value);
+
+        Map<String, Object> aggregated = jdbcTemplate.queryForMap("""
+                SELECT COALESCE(SUM(stock), 0) AS units, COALESCE(SUM(stock * price), 0) AS value
+                FROM product_variants WHERE shop_id = ?
+                """, shopId);
+        assertThat(((Number) aggregated.get("units")).intValue()).isEqualTo(units);
+        assertThat((BigDecimal) aggregated.get("value")).isEqualByComparingTo(value);
+    }
+}
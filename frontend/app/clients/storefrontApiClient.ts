@@ -7,11 +7,48 @@ import { API_CONFIG } from '../config/api';
 import type {
   CategoryDTO,
   CategoryTreeDTO,
+  CursorPageDTO,
   ProductDTO,
   ProductVariantDTO,
   ProductWithVariantsDTO,
 } from '../lib/storefront/dto';
 
+/**
+ * Fetch one page of a cursor-paginated list endpoint
+ */
+async function fetchPage<T>(url: string, cursor: string | null, errorLabel: string): Promise<CursorPageDTO<T>> {
+  const pageUrl: string = cursor ? `${url}?cursor=${encodeURIComponent(cursor)}` : url;
+  const response = await fetch(pageUrl, {
+    method: 'GET',
+    headers: {
+      'Accept': 'application/json',
+    },
+  });
+
+  if (!response.ok) {
+    throw new Error(`Failed to fetch ${errorLabel}: ${response.status} ${response.statusText}`);
+  }
+
+  return response.json();
+}
+
+/**
+ * Fetch every page of a cursor-paginated list endpoint.
+ * Only for back-office lists that need the complete set; storefront pages load on demand.
+ */
+async function fetchAllPages<T>(url: string, errorLabel: string): Promise<T[]> {
+  const items: T[] = [];
+  let cursor: string | null = null;
+
+  do {
+    const page: CursorPageDTO<T> = await fetchPage<T>(url, cursor, errorLabel);
+    items.push(...page.items);
+    cursor = page.nextCursor;
+  } while (cursor);
+
+  return items;
+}
+
 /**
  * CATEGORIES
  */
@@ -179,36 +216,14 @@ export async function updateCategory(
  * Fetch all products of a shop
  */
 export async function fetchProductsByShop(shopId: number): Promise<ProductDTO[]> {
-  const response = await fetch(API_CONFIG.endpoints.products.byShop(shopId), {
-    method: 'GET',
-    headers: {
-      'Accept': 'application/json',
-    },
-  });
-
-  if (!response.ok) {
-    throw new Error(`Failed to fetch products: ${response.status} ${response.statusText}`);
-  }
-
-  return response.json();
+  return fetchAllPages<ProductDTO>(API_CONFIG.endpoints.products.byShop(shopId), 'products');
 }
 
 /**
  * Fetch products of a category
  */
 export async function fetchProductsByCategory(shopId: number, categoryId: number): Promise<ProductDTO[]> {
-  const response = await fetch(API_CONFIG.endpoints.products.byCategory(shopId, categoryId), {
-    method: 'GET',
-    headers: {
-      'Accept': 'application/json',
-    },
-  });
-
-  if (!response.ok) {
-    throw new Error(`Failed to fetch products: ${response.status} ${response.statusText}`);
-  }
-
-  return response.json();
+  return fetchAllPages<ProductDTO>(API_CONFIG.endpoints.products.byCategory(shopId, categoryId), 'products');
 }
 
 /**
@@ -291,18 +306,7 @@ export async function fetchProductById(shopId: number, productId: number): Promi
  * Fetch variants of a product
  */
 export async function fetchVariantsByProduct(shopId: number, productId: number): Promise<ProductVariantDTO[]> {
-  const response = await fetch(API_CONFIG.endpoints.variants.byProduct(shopId, productId), {
-    method: 'GET',
-    headers: {
-      'Accept': 'application/json',
-    },
-  });
-
-  if (!response.ok) {
-    throw new Error(`Failed to fetch variants: ${response.status} ${response.statusText}`);
-  }
-
-  return response.json();
+  return fetchAllPages<ProductVariantDTO>(API_CONFIG.endpoints.variants.byProduct(shopId, productId), 'variants');
 }
 
 /**
@@ -412,23 +416,35 @@ export async function fetchProductsWithVariantsByCategory(
 }
 
 /**
- * Fetch all products with their variants for a shop (all categories)
+ * Fetch one page of products with their variants for a shop (all categories), sorted by name.
+ * Pass the nextCursor of the previous page to get the following one.
  */
-export async function fetchAllProductsWithVariants(
-  shopId: number
-): Promise<ProductWithVariantsDTO[]> {
-  const response = await fetch(API_CONFIG.endpoints.products.allWithVariants(shopId), {
-    method: 'GET',
-    headers: {
-      'Accept': 'application/json',
-    },
-  });
-
-  if (!response.ok) {
-    throw new Error(`Failed to fetch all products with variants: ${response.status} ${response.statusText}`);
-  }
+export async function fetchProductsWithVariantsPage(
+  shopId: number,
+  cursor: string | null = null
+): Promise<CursorPageDTO<ProductWithVariantsDTO>> {
+  return fetchPage<ProductWithVariantsDTO>(API_CONFIG.endpoints.products.allWithVariants(shopId), cursor, 'products with variants');
+}
 
-  return response.json();
+/**
+ * Find a product with its variants by slug, reading pages only until it is found
+ */
+export async function findProductWithVariantsBySlug(
+  shopId: number,
+  slug: string
+): Promise<ProductWithVariantsDTO | null> {
+  let cursor: string | null = null;
+
+  do {
+    const page = await fetchProductsWithVariantsPage(shopId, cursor);
+    const found = page.items.find(item => item.product.slug === slug);
+    if (found) {
+      return found;
+    }
+    cursor = page.nextCursor;
+  } while (cursor);
+
+  return null;
 }
 
 /**
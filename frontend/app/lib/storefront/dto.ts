@@ -81,3 +81,12 @@ export interface ProductWithVariantsDTO {
   product: ProductDTO;
   variants: ProductVariantDTO[];
 }
+
+/**
+ * Cursor-paginated page returned by list endpoints
+ * nextCursor is null on the last page
+ */
+export interface CursorPageDTO<T> {
+  items: T[];
+  nextCursor: string | null;
+}
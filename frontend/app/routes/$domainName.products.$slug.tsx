@@ -8,7 +8,7 @@ import { Button } from '../components/ui/button';
 import { Badge } from '../components/ui/badge';
 import { Separator } from '../components/ui/separator';
 import { fetchShopByDomain } from '../clients/shopApiClient';
-import { fetchAllProductsWithVariants } from '../clients/storefrontApiClient';
+import { findProductWithVariantsBySlug } from '../clients/storefrontApiClient';
 import { transformProductsWithVariants } from '../lib/storefront/transform';
 import type { ProductVariant } from '../lib/types/storefront';
 export const meta: MetaFunction = () => {
@@ -52,12 +52,10 @@ function ProductDetailContent() {
         // Fetch shop
         const shopData = await fetchShopByDomain(domainName);
 
-        // Fetch all products with variants
-        const productsWithVariants = await fetchAllProductsWithVariants(shopData.id);
-        const allVariants = transformProductsWithVariants(productsWithVariants);
-
-        // Find product by slug
-        const foundProduct = allVariants.find(v => v.productSlug === slug);
+        // Find product by slug, without loading the rest of the catalog
+        const productWithVariants = await findProductWithVariantsBySlug(shopData.id, slug);
+        const productVariants = productWithVariants ? transformProductsWithVariants([productWithVariants]) : [];
+        const foundProduct = productVariants[0];
         
         if (!foundProduct) {
           setError('Product not found');
@@ -65,9 +63,6 @@ function ProductDetailContent() {
           return;
         }
 
-        // Group all variants by product
-        const productVariants = allVariants.filter(v => v.productSlug === slug);
-
         // Extract attribute definitions
         const attributeMap = new Map<string, Set<string>>();
         productVariants.forEach(variant => {
@@ -1,4 +1,4 @@
-import { useState, useMemo, useEffect } from 'react';
+import { useState, useMemo, useEffect, useRef, useCallback } from 'react';
 import { useNavigate, useParams, type MetaFunction } from 'react-router';
 import { Search, ShoppingCart, X, Menu, Loader2 } from 'lucide-react';
 import { CartProvider, useCart } from '../contexts/CartContext';
@@ -11,7 +11,7 @@ import { Input } from '../components/ui/input';
 import { Button } from '../components/ui/button';
 import { Separator } from '../components/ui/separator';
 import { Sheet, SheetContent, SheetHeader, SheetTitle, SheetTrigger } from '../components/ui/sheet';
-import { fetchRootCategories, fetchCategoryChildren, fetchCategoryBreadcrumb, fetchProductsWithVariantsByCategory, fetchAllProductsWithVariants } from '../clients/storefrontApiClient';
+import { fetchRootCategories, fetchCategoryChildren, fetchCategoryBreadcrumb, fetchProductsWithVariantsByCategory, fetchProductsWithVariantsPage } from '../clients/storefrontApiClient';
 import { fetchShopByDomain } from '../clients/shopApiClient';
 import { searchProducts } from '../clients/chatbotApiClient';
 import { transformCategory, transformProductsWithVariants } from '../lib/storefront/transform';
@@ -45,6 +45,11 @@ function StorefrontContent() {
   const [currentCategoryId, setCurrentCategoryId] = useState<number | null>(null);
   const [breadcrumb, setBreadcrumb] = useState<Category[]>([]);
   const [allVariants, setAllVariants] = useState<ProductVariant[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
+  const loadMoreRef = useRef<HTMLDivElement | null>(null);
+  // Incremented on every category change, so a page that arrives late is not appended to another listing
+  const listingGeneration = useRef(0);
   const [isLoading, setIsLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
 
@@ -114,19 +119,22 @@ function StorefrontContent() {
     const loadVariants = async () => {
       if (!shop) return;
       
+      const generation = ++listingGeneration.current;
       try {
         const shopId = shop.id;
         
         if (selectedCategoryId === null) {
-          // No category selected - show all variants from all categories
-          const productsWithVariants = await fetchAllProductsWithVariants(shopId);
-          const variants = transformProductsWithVariants(productsWithVariants);
-          setAllVariants(variants);
+          // No category selected - show the first page of all categories, the next ones load on scroll
+          const page = await fetchProductsWithVariantsPage(shopId);
+          if (generation !== listingGeneration.current) return;
+          setAllVariants(transformProductsWithVariants(page.items));
+          setNextCursor(page.nextCursor);
         } else {
           // Fetch products with variants for selected category and subcategories
           const productsWithVariants = await fetchProductsWithVariantsByCategory(shopId, selectedCategoryId);
-          const variants = transformProductsWithVariants(productsWithVariants);
-          setAllVariants(variants);
+          if (generation !== listingGeneration.current) return;
+          setAllVariants(transformProductsWithVariants(productsWithVariants));
+          setNextCursor(null);
         }
       } catch (err) {
         console.error('Failed to load variants:', err);
@@ -137,6 +145,40 @@ function StorefrontContent() {
     loadVariants();
   }, [selectedCategoryId, shop]);
 
+  // Load the next page of the all-categories listing
+  const loadMoreVariants = useCallback(async () => {
+    if (!shop || !nextCursor || isLoadingMore) return;
+
+    const generation = listingGeneration.current;
+    try {
+      setIsLoadingMore(true);
+      const page = await fetchProductsWithVariantsPage(shop.id, nextCursor);
+      if (generation !== listingGeneration.current) return;
+      setAllVariants(previous => [...previous, ...transformProductsWithVariants(page.items)]);
+      setNextCursor(page.nextCursor);
+    } catch (err) {
+      console.error('Failed to load more variants:', err);
+      setError(err instanceof Error ? err.message : 'Failed to load products');
+    } finally {
+      setIsLoadingMore(false);
+    }
+  }, [shop, nextCursor, isLoadingMore]);
+
+  // Infinite scroll: request the next page when the end of the grid becomes visible
+  useEffect(() => {
+    const sentinel = loadMoreRef.current;
+    if (!sentinel || !nextCursor || searchResults.length > 0) return;
+
+    const observer = new IntersectionObserver((entries) => {
+      if (entries[0].isIntersecting) {
+        loadMoreVariants();
+      }
+    }, { rootMargin: '400px' });
+    observer.observe(sentinel);
+
+    return () => observer.disconnect();
+  }, [nextCursor, searchResults, loadMoreVariants]);
+
   // Handle semantic search with button click
   const handleSemanticSearch = async () => {
     if (!searchQuery.trim() || !shop) {
@@ -487,6 +529,11 @@ function StorefrontContent() {
                   />
                 ))}
               </div>
+              {searchResults.length === 0 && nextCursor && (
+                <div ref={loadMoreRef} className="flex justify-center py-8">
+                  {isLoadingMore && <Loader2 className="w-6 h-6 animate-spin text-muted-foreground" />}
+                </div>
+              )}
             </>
           )}
         </div>